@@ -0,0 +1,141 @@
+package com.tk.learn.employee;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link DataSource} that lets at most {@code maxConcurrent} connections be checked out at once.
+ * <p>
+ * A connection takes a permit from a fair semaphore before it is borrowed from the target
+ * pool and gives it back when closed, so callers beyond the limit queue here, in arrival
+ * order, instead of inside the pool. The permit covers the whole connection, so a transaction
+ * holds one permit however many statements it runs. Callers that get no permit within the
+ * acquire timeout fail with a {@link SQLTransientConnectionException}, like a pool timeout,
+ * which Spring translates to {@code CannotGetJdbcConnectionException}.
+ */
+public class BoundedDataSource extends DelegatingDataSource {
+
+    private final int maxConcurrent;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param target the connection pool
+     * @param maxConcurrent connections checked out at once
+     * @param acquireTimeoutMillis how long a caller waits for a permit
+     */
+    public BoundedDataSource(DataSource target, int maxConcurrent, long acquireTimeoutMillis) {
+        super(target);
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Max concurrent connections must be positive");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return bounded(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return bounded(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Number of connection requests that found no free permit and had to wait.
+     */
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    /**
+     * Number of connection requests that gave up after the acquire timeout.
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    private void acquire() throws SQLException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        waits.increment();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + acquireTimeoutMillis + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for a database connection", e);
+        }
+    }
+
+    /**
+     * Wraps the connection so that its first {@code close()} returns the permit.
+     */
+    private Connection bounded(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        try {
+                            connection.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                        return null;
+                    }
+                    if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,56 @@
+package com.tk.learn.employee;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application's {@link DataSource} in a {@link BoundedDataSource} when the servlet
+ * stack runs on virtual threads.
+ * <p>
+ * With platform threads the servlet container's worker pool (200 by default) bounds how many
+ * requests reach the database at once. With virtual threads every request has its own thread,
+ * so thousands of them can pile onto the connection pool and time out inside it. The bound
+ * keeps them queued, parked without holding a carrier thread, until a connection is free.
+ * Size {@code max-concurrent} to the connection pool, and the pool to what the database can
+ * serve in parallel (roughly twice its cores), not to the number of clients.
+ *
+ * Configuration:
+ * - spring.threads.virtual.enabled: Enables the bound (default: false)
+ * - employee.datasource.max-concurrent: Connections checked out at once (default: 10, Hikari's pool size)
+ * - employee.datasource.acquire-timeout-millis: How long a caller waits for a connection (default: 30000)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "spring.threads.virtual.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class BoundedDataSourcePostProcessor implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedDataSourcePostProcessor.class);
+
+    private final int maxConcurrent;
+    private final long acquireTimeoutMillis;
+
+    public BoundedDataSourcePostProcessor(
+            @Value("${employee.datasource.max-concurrent:10}") int maxConcurrent,
+            @Value("${employee.datasource.acquire-timeout-millis:30000}") long acquireTimeoutMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof BoundedDataSource)) {
+            log.info("Bounding {} to {} concurrent connections", beanName, maxConcurrent);
+            return new BoundedDataSource(dataSource, maxConcurrent, acquireTimeoutMillis);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,227 @@
+package com.tk.learn.employee;
+
+import com.tk.learn.model.dao.Employee;
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process cache of employees by ID, in front of {@link EmployeeRepository}.
+ * <p>
+ * Changes made through this node are invalidated locally and published on the
+ * {@link InvalidationBus} (if one is configured) under {@link #TOPIC}; invalidations from other
+ * nodes drop the local entry. With a bus the TTL can be long, since it then only bounds
+ * staleness after missed messages. Entries are stored and returned as copies.
+ * <p>
+ * A reader that loaded an employee before a concurrent invalidation must not cache it
+ * afterwards. Every invalidation bumps a generation counter (striped by ID); readers capture
+ * {@link #generation} before loading and pass it to {@link #put(Employee, long)}, which drops
+ * the entry again if an invalidation of that stripe happened in between.
+ *
+ * Configuration:
+ * - employee.cache.enabled: Enables the cache (default: false)
+ * - employee.cache.max-size: Maximum number of cached employees (default: 10000)
+ * - employee.cache.ttl-seconds: Entry lifetime (default: 600)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "employee.cache.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class EmployeeCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeCache.class);
+
+    /**
+     * Invalidation topic carrying employee IDs.
+     */
+    public static final String TOPIC = "employee";
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final InvalidationBus bus;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public EmployeeCache(@Value("${employee.cache.max-size:10000}") int maxSize,
+                         @Value("${employee.cache.ttl-seconds:600}") long ttlSeconds,
+                         ObjectProvider<InvalidationBus> bus) {
+        this(maxSize, ttlSeconds, bus.getIfAvailable());
+    }
+
+    /**
+     * @param bus bus to exchange invalidations with other nodes, or {@code null}
+     */
+    public EmployeeCache(int maxSize, long ttlSeconds, InvalidationBus bus) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Employee cache max size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.bus = bus;
+        if (bus != null) {
+            bus.subscribe(TOPIC, new InvalidationListener() {
+                @Override
+                public void invalidate(Collection<String> ids) {
+                    for (String id : ids) {
+                        try {
+                            invalidateLocally(Long.valueOf(id));
+                        } catch (NumberFormatException e) {
+                            log.debug("Ignoring invalidation of non-numeric employee id {}", id);
+                        }
+                    }
+                }
+
+                @Override
+                public void invalidateAll() {
+                    for (int i = 0; i < GENERATION_STRIPES; i++) {
+                        generations.incrementAndGet(i);
+                    }
+                    entries.clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return a copy of the cached employee, or {@code null} if absent or expired
+     */
+    public Employee get(Long id) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            if (entry.expiresAtMillis > System.currentTimeMillis()) {
+                hits.increment();
+                return copy(entry.employee);
+            }
+            entries.remove(id, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches an employee known to be current.
+     */
+    public void put(Employee employee) {
+        if (employee == null || employee.getId() == null) {
+            return;
+        }
+        store(employee);
+    }
+
+    /**
+     * Caches an employee loaded after {@code generation} was read from {@link #generation},
+     * unless it has been invalidated since.
+     */
+    public void put(Employee employee, long generation) {
+        if (employee == null || employee.getId() == null || generation(employee.getId()) != generation) {
+            return;
+        }
+        Entry entry = store(employee);
+        // An invalidation bumps the generation before removing, so one that raced the store
+        // above either removed the entry already or is seen here
+        if (generation(employee.getId()) != generation) {
+            entries.remove(employee.getId(), entry);
+        }
+    }
+
+    /**
+     * Current invalidation generation of the employee's stripe; capture it before loading the
+     * employee for {@link #put(Employee, long)}.
+     */
+    public long generation(Long id) {
+        return generations.get(stripe(id));
+    }
+
+    /**
+     * Drops the employee here and on the other nodes.
+     */
+    public void invalidate(Long id) {
+        invalidateLocally(id);
+        if (bus != null) {
+            bus.publish(TOPIC, String.valueOf(id));
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry store(Employee employee) {
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxSize && !entries.containsKey(employee.getId())) {
+            sweep(now);
+        }
+        Entry entry = new Entry(copy(employee), now + ttlMillis);
+        entries.put(employee.getId(), entry);
+        return entry;
+    }
+
+    private void invalidateLocally(Long id) {
+        generations.incrementAndGet(stripe(id));
+        entries.remove(id);
+    }
+
+    private static int stripe(Long id) {
+        return Objects.hashCode(id) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Drops expired entries, then arbitrary live ones, until the cache is below 90% of its
+     * maximum size. Only one thread sweeps at a time.
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxSize - Math.max(1, maxSize / 10);
+            entries.values().removeIf(entry -> entry.expiresAtMillis <= now);
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && entries.size() > target; ) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static Employee copy(Employee employee) {
+        return new Employee(employee.getId(), employee.getFirstName(), employee.getLastName(), employee.getEmail());
+    }
+
+    private record Entry(Employee employee, long expiresAtMillis) {
+    }
+}
@@ -1,7 +1,11 @@
 package com.tk.learn.employee;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import com.tk.learn.model.dao.Employee;
 
 import java.util.List;
@@ -11,9 +15,19 @@ import java.util.NoSuchElementException;
 public class EmployeeService {
 
     private final EmployeeRepository repository;
+    private final EmployeeCache cache;
 
     public EmployeeService(EmployeeRepository repository) {
+        this(repository, null);
+    }
+
+    /**
+     * @param cache read cache for {@link #get}, used when {@code employee.cache.enabled=true}
+     */
+    @Autowired
+    public EmployeeService(EmployeeRepository repository, ObjectProvider<EmployeeCache> cache) {
         this.repository = repository;
+        this.cache = cache != null ? cache.getIfAvailable() : null;
     }
 
     @Transactional
@@ -28,12 +42,26 @@ public class EmployeeService {
         existing.setFirstName(updated.getFirstName());
         existing.setLastName(updated.getLastName());
         existing.setEmail(updated.getEmail());
-        return repository.save(existing);
+        Employee saved = repository.save(existing);
+        invalidate(id);
+        return saved;
     }
 
     public Employee get(Long id) {
-        return repository.findById(id)
+        long generation = 0;
+        if (cache != null) {
+            Employee cached = cache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+            generation = cache.generation(id);
+        }
+        Employee employee = repository.findById(id)
                 .orElseThrow(() -> new NoSuchElementException("Employee not found: " + id));
+        if (cache != null) {
+            cache.put(employee, generation);
+        }
+        return employee;
     }
 
     public List<Employee> list() {
@@ -45,5 +73,27 @@ public class EmployeeService {
             throw new NoSuchElementException("Employee not found: " + id);
         }
         repository.deleteById(id);
+        invalidate(id);
+    }
+
+    /**
+     * Invalidates the cached employee once the change is visible: after the surrounding
+     * transaction commits, so a concurrent {@link #get} cannot re-cache the old row in between,
+     * or right away outside a transaction.
+     */
+    private void invalidate(Long id) {
+        if (cache == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(id);
+                }
+            });
+        } else {
+            cache.invalidate(id);
+        }
     }
 }
@@ -0,0 +1,104 @@
+package com.tk.learn.employee;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BoundedDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Test
+    @DisplayName("getConnection() should time out while all permits are checked out and return them on close")
+    void getConnection_shouldWaitForPermits() throws Exception {
+        Connection pooled = mock(Connection.class);
+        given(target.getConnection()).willReturn(pooled);
+        BoundedDataSource dataSource = new BoundedDataSource(target, 2, 20);
+
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        assertThat(dataSource.getAvailablePermits()).isZero();
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(dataSource.getTimeoutCount()).isEqualTo(1);
+
+        first.close();
+        first.close();
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+        dataSource.getConnection().close();
+        second.close();
+
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(2);
+        verify(target, times(3)).getConnection();
+        verify(pooled, times(4)).close();
+    }
+
+    @Test
+    @DisplayName("getConnection() should give the permit back when the pool fails")
+    void getConnection_shouldReleaseOnFailure() throws Exception {
+        given(target.getConnection()).willThrow(new SQLException("pool exhausted"));
+        BoundedDataSource dataSource = new BoundedDataSource(target, 1, 20);
+
+        assertThatThrownBy(dataSource::getConnection).hasMessage("pool exhausted");
+
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Virtual threads beyond the bound should queue instead of reaching the pool")
+    void getConnection_shouldBoundVirtualThreads() throws Exception {
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        given(target.getConnection()).willAnswer(invocation -> {
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            Connection connection = mock(Connection.class);
+            doAnswer(close -> open.decrementAndGet()).when(connection).close();
+            return connection;
+        });
+        BoundedDataSource dataSource = new BoundedDataSource(target, 3, 10_000);
+
+        List<Future<?>> calls = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                calls.add(executor.submit(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        connection.createStatement();
+                        Thread.sleep(1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> call : calls) {
+                call.get();
+            }
+        }
+
+        assertThat(maxOpen.get()).isLessThanOrEqualTo(3);
+        assertThat(dataSource.getWaitCount()).isPositive();
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(3);
+        verify(target, times(200)).getConnection();
+    }
+}
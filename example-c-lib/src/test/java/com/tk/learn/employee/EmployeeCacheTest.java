@@ -0,0 +1,141 @@
+package com.tk.learn.employee;
+
+import com.tk.learn.model.dao.Employee;
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.impl.LoopbackInvalidationBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class EmployeeCacheTest {
+
+    @Mock
+    private EmployeeRepository repository;
+
+    @Mock
+    private ObjectProvider<EmployeeCache> cacheProvider;
+
+    private LoopbackInvalidationBus bus1;
+    private LoopbackInvalidationBus bus2;
+
+    @BeforeEach
+    void setUp() {
+        // A long window keeps invalidations pending until the bus is destroyed
+        bus1 = new LoopbackInvalidationBus(60_000, 500);
+        bus2 = bus1.newPeer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus1.destroy();
+        bus2.destroy();
+    }
+
+    @Test
+    @DisplayName("get() should read the repository once and then serve copies from the cache")
+    void get_shouldReadThrough() {
+        EmployeeCache cache = new EmployeeCache(100, 600, bus1);
+        given(cacheProvider.getIfAvailable()).willReturn(cache);
+        EmployeeService service = new EmployeeService(repository, cacheProvider);
+        Employee e = new Employee(1L, "A", "B", "a@b.com");
+        given(repository.findById(1L)).willReturn(Optional.of(e));
+
+        Employee first = service.get(1L);
+        Employee second = service.get(1L);
+
+        assertThat(first).isSameAs(e);
+        assertThat(second).isNotSameAs(e);
+        assertThat(second.getEmail()).isEqualTo("a@b.com");
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        verify(repository, times(1)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("delete() should drop the entry on this node and on the other nodes")
+    void delete_shouldInvalidateEverywhere() {
+        EmployeeCache node1 = new EmployeeCache(100, 600, bus1);
+        EmployeeCache node2 = new EmployeeCache(100, 600, bus2);
+        given(cacheProvider.getIfAvailable()).willReturn(node1);
+        given(repository.existsById(1L)).willReturn(true);
+        EmployeeService service = new EmployeeService(repository, cacheProvider);
+        node1.put(new Employee(1L, "A", "B", "a@b.com"));
+        node2.put(new Employee(1L, "A", "B", "a@b.com"));
+
+        service.delete(1L);
+        bus1.destroy();
+
+        assertThat(node1.get(1L)).isNull();
+        assertThat(node2.get(1L)).isNull();
+    }
+
+    @Test
+    @DisplayName("update() should invalidate only after the transaction commits")
+    void update_shouldInvalidateAfterCommit() {
+        EmployeeCache cache = new EmployeeCache(100, 600, (InvalidationBus) null);
+        given(cacheProvider.getIfAvailable()).willReturn(cache);
+        EmployeeService service = new EmployeeService(repository, cacheProvider);
+        Employee existing = new Employee(1L, "A", "B", "a@b.com");
+        given(repository.findById(1L)).willReturn(Optional.of(existing));
+        given(repository.save(any(Employee.class))).willAnswer(invocation -> invocation.getArgument(0));
+        cache.put(new Employee(1L, "A", "B", "a@b.com"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.update(1L, new Employee("A", "B", "new@b.com"));
+            assertThat(cache.get(1L)).as("still cached before commit").isNotNull();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    @DisplayName("put() should not cache an employee loaded before a racing invalidation")
+    void put_shouldSkipAfterInvalidation() {
+        EmployeeCache cache = new EmployeeCache(100, 600, (InvalidationBus) null);
+        Employee stale = new Employee(1L, "A", "B", "old@b.com");
+
+        long generation = cache.generation(1L);
+        cache.invalidate(1L);
+        cache.put(stale, generation);
+
+        assertThat(cache.get(1L)).isNull();
+        cache.put(stale, cache.generation(1L));
+        assertThat(cache.get(1L)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("put() should stay bounded by max size and get() should honour the TTL")
+    void put_shouldStayBounded() {
+        EmployeeCache cache = new EmployeeCache(10, 600, (InvalidationBus) null);
+        EmployeeCache expired = new EmployeeCache(10, 0, (InvalidationBus) null);
+
+        for (long id = 0; id < 100; id++) {
+            cache.put(new Employee(id, "A", "B", "a@b.com"));
+        }
+        expired.put(new Employee(1L, "A", "B", "a@b.com"));
+
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+        assertThat(expired.get(1L)).isNull();
+        assertThat(expired.getMissCount()).isEqualTo(1);
+    }
+}
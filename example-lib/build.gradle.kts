@@ -31,4 +31,17 @@ dependencies {
     testImplementation(TestLibs.mockito)
     testImplementation(TestLibs.mockitoJunit)
     testImplementation(TestLibs.springTest)
+
+    // Microbenchmarks (src/test/java/**/*Benchmark.java)
+    testImplementation("org.openjdk.jmh:jmh-core:1.37")
+    testAnnotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks; filter with -Pjmh.includes=<regex>"
+    dependsOn("testClasses")
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args(providers.gradleProperty("jmh.includes").getOrElse(".*Benchmark.*"))
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.tk.learn.model.dto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide dictionary assigning small integer IDs to role or permission names, so a
+ * user's authorities can be held as an {@link AuthoritySet} bitset and every cached user
+ * shares one {@link String} instance per name.
+ * <p>
+ * IDs are assigned on first sight and never reused. The dictionary is bounded: once full,
+ * new names get no ID ({@code -1}) and are kept by name instead, so an unexpected flood of
+ * distinct names cannot grow it without limit.
+ */
+public final class AuthorityDictionary {
+
+    /**
+     * Maximum number of distinct names per dictionary; deployments typically have a few hundred.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    public static final AuthorityDictionary ROLES = new AuthorityDictionary(DEFAULT_MAX_SIZE);
+    public static final AuthorityDictionary PERMISSIONS = new AuthorityDictionary(DEFAULT_MAX_SIZE);
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> names;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public AuthorityDictionary(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Authority dictionary max size must be positive");
+        }
+        this.names = new AtomicReferenceArray<>(maxSize);
+    }
+
+    /**
+     * Returns the ID of a name, assigning one if it is new.
+     *
+     * @return the ID, or {@code -1} for {@code null} or when the dictionary is full
+     */
+    public int idOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        id = ids.computeIfAbsent(name, this::register);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the ID of a known name without assigning one; does not allocate.
+     *
+     * @return the ID, or {@code -1} if the name has none
+     */
+    public int find(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return the name with the given ID, or {@code null} if none
+     */
+    public String nameOf(int id) {
+        return id >= 0 && id < names.length() ? names.get(id) : null;
+    }
+
+    /**
+     * Returns the shared instance of a name, registering it if new. Names that do not fit
+     * in a full dictionary are returned as given.
+     */
+    public String intern(String name) {
+        int id = idOf(name);
+        return id >= 0 ? names.get(id) : name;
+    }
+
+    /**
+     * Replaces every name in a modifiable list with its shared instance, in place.
+     *
+     * @return the same list, for chaining; {@code null} stays {@code null}
+     */
+    public List<String> internAll(List<String> names) {
+        if (names != null) {
+            names.replaceAll(this::intern);
+        }
+        return names;
+    }
+
+    public int size() {
+        return Math.min(nextId.get(), names.length());
+    }
+
+    public int maxSize() {
+        return names.length();
+    }
+
+    private Integer register(String name) {
+        // Stop counting once full, so repeated misses cannot overflow the counter
+        if (nextId.get() >= names.length()) {
+            return null;
+        }
+        int id = nextId.getAndIncrement();
+        if (id >= names.length()) {
+            return null;
+        }
+        names.set(id, name);
+        return id;
+    }
+}
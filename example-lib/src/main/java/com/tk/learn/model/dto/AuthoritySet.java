@@ -0,0 +1,133 @@
+package com.tk.learn.model.dto;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable set of role or permission names, held as a bitset over an
+ * {@link AuthorityDictionary}'s IDs.
+ * <p>
+ * Membership is a dictionary lookup and a bit test; {@link #containsAll(AuthoritySet)} is a
+ * word-wise AND, so authorization checks against a pre-built requirement set allocate
+ * nothing. Names the dictionary had no room for are kept in a small overflow set.
+ */
+public final class AuthoritySet {
+
+    private static final long[] NO_WORDS = new long[0];
+
+    private final AuthorityDictionary dictionary;
+    private final long[] words;
+    private final Set<String> overflow;
+
+    private AuthoritySet(AuthorityDictionary dictionary, long[] words, Set<String> overflow) {
+        this.dictionary = dictionary;
+        this.words = words;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Builds the set of the given names, registering new ones in the dictionary.
+     *
+     * @param names the names; {@code null} yields an empty set
+     */
+    public static AuthoritySet of(AuthorityDictionary dictionary, Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return new AuthoritySet(dictionary, NO_WORDS, null);
+        }
+        long[] words = NO_WORDS;
+        Set<String> overflow = null;
+        for (String name : names) {
+            if (name == null) {
+                continue;
+            }
+            int id = dictionary.idOf(name);
+            if (id < 0) {
+                if (overflow == null) {
+                    overflow = new HashSet<>();
+                }
+                overflow.add(name);
+                continue;
+            }
+            int word = id >>> 6;
+            if (word >= words.length) {
+                long[] grown = new long[word + 1];
+                System.arraycopy(words, 0, grown, 0, words.length);
+                words = grown;
+            }
+            words[word] |= 1L << id;
+        }
+        return new AuthoritySet(dictionary, words, overflow);
+    }
+
+    /**
+     * Builds a requirement set, e.g. once per secured endpoint, for {@link #containsAll(AuthoritySet)}.
+     */
+    public static AuthoritySet of(AuthorityDictionary dictionary, String... names) {
+        return of(dictionary, List.of(names));
+    }
+
+    public boolean contains(String name) {
+        int id = dictionary.find(name);
+        if (id >= 0) {
+            int word = id >>> 6;
+            return word < words.length && (words[word] & (1L << id)) != 0;
+        }
+        return overflow != null && overflow.contains(name);
+    }
+
+    /**
+     * Whether every name in {@code required} is in this set. Both sets must come from the
+     * same dictionary.
+     */
+    public boolean containsAll(AuthoritySet required) {
+        if (required.dictionary != dictionary) {
+            throw new IllegalArgumentException("Authority sets from different dictionaries");
+        }
+        long[] requiredWords = required.words;
+        for (int i = 0; i < requiredWords.length; i++) {
+            long word = i < words.length ? words[i] : 0;
+            if ((requiredWords[i] & ~word) != 0) {
+                return false;
+            }
+        }
+        return required.overflow == null || (overflow != null && overflow.containsAll(required.overflow));
+    }
+
+    /**
+     * Whether any name in {@code candidates} is in this set.
+     */
+    public boolean containsAny(AuthoritySet candidates) {
+        if (candidates.dictionary != dictionary) {
+            throw new IllegalArgumentException("Authority sets from different dictionaries");
+        }
+        long[] candidateWords = candidates.words;
+        int common = Math.min(words.length, candidateWords.length);
+        for (int i = 0; i < common; i++) {
+            if ((candidateWords[i] & words[i]) != 0) {
+                return true;
+            }
+        }
+        if (candidates.overflow != null && overflow != null) {
+            for (String name : candidates.overflow) {
+                if (overflow.contains(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        int size = overflow != null ? overflow.size() : 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.tk.learn.model.dto;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * User details whose enrichment (user cache and/or user service lookup) is deferred until
+ * one of the enriched fields is first read.
+ * <p>
+ * The identity fields taken from the JWT ({@code userId}, {@code sessionId},
+ * {@code issuedAt}, {@code expiresAt}) are available immediately. The first access to
+ * {@code email}, {@code username}, {@code roles} or {@code permissions} runs the resolver
+ * once and memoizes its result, so a request that never looks at them costs no remote call.
+ * Serialization and the copy constructor resolve first and yield a plain {@link UserDetailsDto}.
+ * <p>
+ * The resolver performs blocking I/O, so concurrent readers wait on a {@link ReentrantLock}
+ * rather than a monitor, which would pin a virtual thread to its carrier for the whole call.
+ */
+public class DeferredUserDetailsDto extends UserDetailsDto {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private transient Supplier<UserDetailsDto> resolver;
+    private transient volatile boolean resolved;
+    private final transient ReentrantLock resolveLock = new ReentrantLock();
+
+    /**
+     * @param jwtDetails the details extracted from the token
+     * @param resolver returns the enriched details, or {@code null} to keep the token's
+     */
+    public DeferredUserDetailsDto(UserDetailsDto jwtDetails, Supplier<UserDetailsDto> resolver) {
+        super(jwtDetails);
+        this.resolver = resolver;
+    }
+
+    /**
+     * Whether the enrichment has run.
+     */
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    @Override
+    public String getEmail() {
+        resolve();
+        return super.getEmail();
+    }
+
+    @Override
+    public void setEmail(String email) {
+        resolve();
+        super.setEmail(email);
+    }
+
+    @Override
+    public String getUsername() {
+        resolve();
+        return super.getUsername();
+    }
+
+    @Override
+    public void setUsername(String username) {
+        resolve();
+        super.setUsername(username);
+    }
+
+    @Override
+    public List<String> getRoles() {
+        resolve();
+        return super.getRoles();
+    }
+
+    @Override
+    public void setRoles(List<String> roles) {
+        resolve();
+        super.setRoles(roles);
+    }
+
+    @Override
+    public List<String> getPermissions() {
+        resolve();
+        return super.getPermissions();
+    }
+
+    @Override
+    public void setPermissions(List<String> permissions) {
+        resolve();
+        super.setPermissions(permissions);
+    }
+
+    @Override
+    public void mergeFrom(UserDetailsDto enriched) {
+        resolve();
+        super.mergeFrom(enriched);
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new UserDetailsDto(this);
+    }
+
+    private void resolve() {
+        if (resolved) {
+            return;
+        }
+        resolveLock.lock();
+        try {
+            if (resolved) {
+                return;
+            }
+            Supplier<UserDetailsDto> pending = resolver;
+            resolver = null;
+            // Set before running, so the resolver may read this instance without recursing
+            resolved = true;
+            UserDetailsDto enriched = pending != null ? pending.get() : null;
+            if (enriched != null && enriched != this) {
+                super.setEmail(enriched.getEmail());
+                super.setUsername(enriched.getUsername());
+                super.setRoles(enriched.getRoles());
+                super.setPermissions(enriched.getPermissions());
+            }
+        } finally {
+            resolveLock.unlock();
+        }
+    }
+}
@@ -1,11 +1,25 @@
 package com.tk.learn.model.dto;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
 import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * DTO representing user details extracted from JWT and/or Redis cache.
- * Implements Serializable for Redis caching support.
+ * Caches store it through a {@code UserDetailsCodec}; it also stays Serializable for the
+ * {@code java} encoding.
+ * <p>
+ * Authorization checks ({@link #hasRole}, {@link #hasPermission}, {@link #hasAllRoles},
+ * {@link #hasAllPermissions}) go through {@link AuthoritySet} bitsets built on first use over
+ * the shared {@link AuthorityDictionary} instances. The constructors and setters copy the
+ * role and permission lists into lists that drop their bitset when modified, so the getters
+ * hand out the stored, modifiable lists and the bitsets are rebuilt only after a change.
  */
 public class UserDetailsDto implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -19,6 +33,9 @@ public class UserDetailsDto implements Serializable {
     private long issuedAt;
     private long expiresAt;
 
+    private static final AuthoritySet NO_ROLES = AuthoritySet.of(AuthorityDictionary.ROLES, List.of());
+    private static final AuthoritySet NO_PERMISSIONS = AuthoritySet.of(AuthorityDictionary.PERMISSIONS, List.of());
+
     public UserDetailsDto() {
     }
 
@@ -29,12 +46,40 @@ public class UserDetailsDto implements Serializable {
         this.email = email;
         this.username = username;
         this.sessionId = sessionId;
-        this.roles = roles;
-        this.permissions = permissions;
+        this.roles = AuthorityList.copyOf(roles);
+        this.permissions = AuthorityList.copyOf(permissions);
         this.issuedAt = issuedAt;
         this.expiresAt = expiresAt;
     }
 
+    /**
+     * Copy constructor; the role and permission lists are copied too, so the copy can be
+     * mutated independently (e.g. by a cache handing out entries).
+     */
+    public UserDetailsDto(UserDetailsDto other) {
+        this(other.getUserId(), other.getEmail(), other.getUsername(), other.getSessionId(),
+                other.getRoles(), other.getPermissions(), other.getIssuedAt(), other.getExpiresAt());
+    }
+
+    /**
+     * Overlays details from the user service onto these (JWT-derived) details; enriched
+     * values win where present.
+     */
+    public void mergeFrom(UserDetailsDto enriched) {
+        if (enriched.getEmail() != null) {
+            setEmail(enriched.getEmail());
+        }
+        if (enriched.getUsername() != null) {
+            setUsername(enriched.getUsername());
+        }
+        if (enriched.getRoles() != null && !enriched.getRoles().isEmpty()) {
+            setRoles(enriched.getRoles());
+        }
+        if (enriched.getPermissions() != null && !enriched.getPermissions().isEmpty()) {
+            setPermissions(enriched.getPermissions());
+        }
+    }
+
     public String getUserId() {
         return userId;
     }
@@ -72,7 +117,7 @@ public class UserDetailsDto implements Serializable {
     }
 
     public void setRoles(List<String> roles) {
-        this.roles = roles;
+        this.roles = AuthorityList.copyOf(roles);
     }
 
     public List<String> getPermissions() {
@@ -80,7 +125,45 @@ public class UserDetailsDto implements Serializable {
     }
 
     public void setPermissions(List<String> permissions) {
-        this.permissions = permissions;
+        this.permissions = AuthorityList.copyOf(permissions);
+    }
+
+    public boolean hasRole(String role) {
+        return getRoleSet().contains(role);
+    }
+
+    public boolean hasPermission(String permission) {
+        return getPermissionSet().contains(permission);
+    }
+
+    /**
+     * @param required roles built once with {@code AuthoritySet.of(AuthorityDictionary.ROLES, ...)}
+     */
+    public boolean hasAllRoles(AuthoritySet required) {
+        return getRoleSet().containsAll(required);
+    }
+
+    /**
+     * @param required permissions built once with {@code AuthoritySet.of(AuthorityDictionary.PERMISSIONS, ...)}
+     */
+    public boolean hasAllPermissions(AuthoritySet required) {
+        return getPermissionSet().containsAll(required);
+    }
+
+    public AuthoritySet getRoleSet() {
+        return authorities(getRoles(), AuthorityDictionary.ROLES, NO_ROLES);
+    }
+
+    public AuthoritySet getPermissionSet() {
+        return authorities(getPermissions(), AuthorityDictionary.PERMISSIONS, NO_PERMISSIONS);
+    }
+
+    private static AuthoritySet authorities(List<String> names, AuthorityDictionary dictionary, AuthoritySet none) {
+        if (names == null) {
+            return none;
+        }
+        // A subclass may hand out a list other than the stored one
+        return names instanceof AuthorityList list ? list.authorities(dictionary) : AuthoritySet.of(dictionary, names);
     }
 
     public long getIssuedAt() {
@@ -98,5 +181,85 @@ public class UserDetailsDto implements Serializable {
     public void setExpiresAt(long expiresAt) {
         this.expiresAt = expiresAt;
     }
-}
 
+    /**
+     * Serialized lists are plain {@link ArrayList}s, as before; they are wrapped again here.
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        roles = AuthorityList.copyOf(roles);
+        permissions = AuthorityList.copyOf(permissions);
+    }
+
+    /**
+     * A list of authority names that memoizes its {@link AuthoritySet} and drops it on any
+     * change, whether made directly, through an iterator or through a sub-list.
+     */
+    private static final class AuthorityList extends AbstractList<String> implements RandomAccess, Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> names;
+        private transient AuthoritySet authorities;
+
+        private AuthorityList(Collection<String> names) {
+            this.names = new ArrayList<>(names);
+        }
+
+        static List<String> copyOf(List<String> names) {
+            return names != null ? new AuthorityList(names) : null;
+        }
+
+        AuthoritySet authorities(AuthorityDictionary dictionary) {
+            AuthoritySet set = authorities;
+            if (set == null) {
+                set = AuthoritySet.of(dictionary, names);
+                authorities = set;
+            }
+            return set;
+        }
+
+        @Override
+        public String get(int index) {
+            return names.get(index);
+        }
+
+        @Override
+        public int size() {
+            return names.size();
+        }
+
+        @Override
+        public String set(int index, String name) {
+            authorities = null;
+            return names.set(index, name);
+        }
+
+        @Override
+        public void add(int index, String name) {
+            authorities = null;
+            modCount++;
+            names.add(index, name);
+        }
+
+        @Override
+        public String remove(int index) {
+            authorities = null;
+            modCount++;
+            return names.remove(index);
+        }
+
+        @Override
+        public void clear() {
+            authorities = null;
+            modCount++;
+            names.clear();
+        }
+
+        @Serial
+        private Object writeReplace() {
+            return new ArrayList<>(names);
+        }
+    }
+}
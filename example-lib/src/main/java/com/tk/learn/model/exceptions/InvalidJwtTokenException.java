@@ -2,6 +2,10 @@ package com.tk.learn.model.exceptions;
 
 /**
  * Exception thrown when JWT token validation fails.
+ * <p>
+ * Rejections of untrusted input are expected and frequent, so validation code creates them
+ * with {@link #stackless(String)}: no stack trace is captured, and instances without
+ * request-specific details can be shared as constants.
  */
 public class InvalidJwtTokenException extends RuntimeException {
     private static final long serialVersionUID = 1L;
@@ -13,5 +17,24 @@ public class InvalidJwtTokenException extends RuntimeException {
     public InvalidJwtTokenException(String message, Throwable cause) {
         super(message, cause);
     }
-}
 
+    protected InvalidJwtTokenException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, false, writableStackTrace);
+    }
+
+    /**
+     * Creates a rejection without a stack trace or suppressed exceptions. Its cause is fixed
+     * at construction, so instances are immutable and safe to share between threads.
+     */
+    public static InvalidJwtTokenException stackless(String message) {
+        return new InvalidJwtTokenException(message, null, false);
+    }
+
+    /**
+     * Creates a rejection without a stack trace that wraps the failure behind it (e.g. an
+     * unreachable JWK Set endpoint), whose own stack trace is kept.
+     */
+    public static InvalidJwtTokenException stackless(String message, Throwable cause) {
+        return new InvalidJwtTokenException(message, cause, false);
+    }
+}
@@ -0,0 +1,21 @@
+package com.tk.learn.model.exceptions;
+
+/**
+ * Thrown to a caller that gave up waiting for a shared (coalesced or batched) user lookup.
+ * <p>
+ * Unlike a {@code null} result, which means the user is unknown, this is a failure: the
+ * caller's dependency guard counts it and the JWT-only details it falls back to are not cached.
+ * Raised while the user service is slow, i.e. for many requests at once, so no stack trace is
+ * captured.
+ */
+public class UserLookupTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UserLookupTimeoutException(String message) {
+        super(message, null, false, false);
+    }
+
+    public UserLookupTimeoutException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
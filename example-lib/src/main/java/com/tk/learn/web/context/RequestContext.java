@@ -0,0 +1,165 @@
+package com.tk.learn.web.context;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable request attributes backed by a single array of alternating keys and values.
+ * <p>
+ * Request contexts hold a handful of attributes, so lookups scan the array instead of hashing
+ * and neither {@link #get} nor {@link #size} allocates. Being a {@link Map}, a context can be
+ * handed to code expecting {@link RequestContextHolder#getContext()} as is. Adding an attribute
+ * with {@link #with} copies the array; contexts are meant to be built once per request.
+ * <p>
+ * Only the context itself is immutable: attribute values (e.g. nested maps parsed from a JSON
+ * header) are stored as given.
+ */
+public final class RequestContext extends AbstractMap<String, Object> {
+
+    public static final RequestContext EMPTY = new RequestContext(new Object[0]);
+
+    private final Object[] entries;
+
+    private RequestContext(Object[] entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Copies a map into a context; {@code null} keys are skipped.
+     */
+    public static RequestContext of(Map<String, ?> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return EMPTY;
+        }
+        if (attributes instanceof RequestContext context) {
+            return context;
+        }
+        Object[] entries = new Object[attributes.size() * 2];
+        int length = 0;
+        for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+            if (entry.getKey() != null) {
+                entries[length++] = entry.getKey();
+                entries[length++] = entry.getValue();
+            }
+        }
+        return new RequestContext(length == entries.length ? entries : Arrays.copyOf(entries, length));
+    }
+
+    /**
+     * Returns a context with {@code key} set to {@code value}, replacing any previous value.
+     */
+    public RequestContext with(String key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Request context keys must not be null");
+        }
+        int index = indexOf(key);
+        Object[] copy;
+        if (index >= 0) {
+            copy = entries.clone();
+        } else {
+            index = entries.length;
+            copy = Arrays.copyOf(entries, entries.length + 2);
+            copy[index] = key;
+        }
+        copy[index + 1] = value;
+        return new RequestContext(copy);
+    }
+
+    /**
+     * Returns a context holding this context's attributes overlaid with {@code attributes}.
+     */
+    public RequestContext withAll(Map<String, ?> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return of(attributes);
+        }
+        RequestContext merged = this;
+        for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+            if (entry.getKey() != null) {
+                merged = merged.with(entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Typed {@link #get}, for callers that know the attribute's type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T attribute(String key) {
+        return (T) get(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? entries[index + 1] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return entries.length / 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < entries.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (next >= entries.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, Object> entry =
+                                new SimpleImmutableEntry<>((String) entries[next], entries[next + 1]);
+                        next += 2;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return RequestContext.this.size();
+            }
+        };
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        for (int i = 0; i < entries.length; i += 2) {
+            if (key.equals(entries[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
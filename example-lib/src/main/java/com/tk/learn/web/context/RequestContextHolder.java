@@ -11,6 +11,11 @@ import java.util.Map;
  * current request thread by {@code RequestContextFilter}. Application code can
  * access these attributes anywhere within the same request thread via the
  * static accessors. Always cleared after the request completes.
+ * <p>
+ * While a {@link ScopedRequestContext} is bound ({@code request.context.scoped=true}), the
+ * accessors read the bound immutable {@link RequestContext} instead, without allocating, and
+ * {@link #put} is rejected. Attributes put before the scope is opened (e.g. by
+ * {@code JwtAuthFilter}) are carried into it by {@code SideCarRequestContextFilter}.
  */
 public final class RequestContextHolder {
 
@@ -24,6 +29,10 @@ public final class RequestContextHolder {
      * Returns an unmodifiable view of the current context map. Never null.
      */
     public static Map<String, Object> getContext() {
+        RequestContext bound = ScopedRequestContext.bound();
+        if (bound != null) {
+            return bound;
+        }
         Map<String, Object> map = CONTEXT.get();
         if (map == null) {
             return Collections.emptyMap();
@@ -36,14 +45,24 @@ public final class RequestContextHolder {
      */
     @SuppressWarnings("unchecked")
     public static <T> T get(String key) {
+        RequestContext bound = ScopedRequestContext.bound();
+        if (bound != null) {
+            return bound.attribute(key);
+        }
         Map<String, Object> map = CONTEXT.get();
         return map == null ? null : (T) map.get(key);
     }
 
     /**
      * Set a specific attribute.
+     *
+     * @throws IllegalStateException while a {@link ScopedRequestContext} is bound
      */
     public static void put(String key, Object value) {
+        if (ScopedRequestContext.isBound()) {
+            throw new IllegalStateException("Request context is immutable while scoped; bind a new "
+                    + "context with ScopedRequestContext.open(current().with(key, value))");
+        }
         Map<String, Object> map = CONTEXT.get();
         if (map == null) {
             map = new HashMap<>();
@@ -0,0 +1,131 @@
+package com.tk.learn.web.context;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Binds an immutable {@link RequestContext} for the duration of a scope, in the manner of
+ * {@code ScopedValue}: a context is bound once (normally by {@code SideCarRequestContextFilter}),
+ * read any number of times without allocation, and unbound when the scope exits, whatever the
+ * outcome, restoring the enclosing binding. Nothing survives the scope, so pooled and virtual
+ * threads cannot leak a request's context into the next one.
+ * <p>
+ * {@code ScopedValue} itself is a preview API on the project's JDK 21 toolchain and would
+ * force {@code --enable-preview} on every application using this library, so the binding is
+ * held in a single thread-local slot that is only ever written when entering and leaving a
+ * scope. The API mirrors {@code ScopedValue.where(...).run/call} so the slot can be replaced by
+ * a {@code ScopedValue} once the toolchain moves to a JDK where it is final.
+ * <p>
+ * As with {@code ScopedValue}, bindings are not inherited by other threads; use
+ * {@link #wrap(Runnable)} to carry the current context into tasks handed to an executor.
+ */
+public final class ScopedRequestContext {
+
+    private static final ThreadLocal<RequestContext> BOUND = new ThreadLocal<>();
+
+    private ScopedRequestContext() {
+        // utility
+    }
+
+    /**
+     * Whether a context is bound to the current thread.
+     */
+    public static boolean isBound() {
+        return BOUND.get() != null;
+    }
+
+    /**
+     * Returns the bound context, or {@link RequestContext#EMPTY} outside any scope.
+     */
+    public static RequestContext current() {
+        RequestContext context = BOUND.get();
+        return context != null ? context : RequestContext.EMPTY;
+    }
+
+    /**
+     * Returns the bound context, or {@code null} outside any scope.
+     */
+    static RequestContext bound() {
+        return BOUND.get();
+    }
+
+    /**
+     * Returns an attribute of the bound context, or {@code null}.
+     */
+    public static <T> T get(String key) {
+        return current().attribute(key);
+    }
+
+    /**
+     * Runs {@code action} with {@code context} bound.
+     */
+    public static void run(RequestContext context, Runnable action) {
+        Scope scope = open(context);
+        try {
+            action.run();
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Calls {@code action} with {@code context} bound.
+     */
+    public static <R> R call(RequestContext context, Callable<R> action) throws Exception {
+        Scope scope = open(context);
+        try {
+            return action.call();
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Binds {@code context} until the returned scope is closed, for callers that cannot pass a
+     * lambda (e.g. code throwing several checked exceptions). Scopes must be closed on the
+     * thread that opened them, innermost first, in a {@code finally} block.
+     */
+    public static Scope open(RequestContext context) {
+        RequestContext previous = BOUND.get();
+        BOUND.set(context != null ? context : RequestContext.EMPTY);
+        return new Scope(previous);
+    }
+
+    /**
+     * Returns a task that runs {@code task} with the context bound now, or {@code task} itself
+     * when none is bound.
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestContext context = BOUND.get();
+        return context == null ? task : () -> run(context, task);
+    }
+
+    /**
+     * An open binding; closing it restores the enclosing one.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Thread owner = Thread.currentThread();
+        private final RequestContext previous;
+        private boolean closed;
+
+        private Scope(RequestContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            if (Thread.currentThread() != owner) {
+                throw new IllegalStateException("Request context scope closed by another thread");
+            }
+            closed = true;
+            if (previous == null) {
+                BOUND.remove();
+            } else {
+                BOUND.set(previous);
+            }
+        }
+    }
+}
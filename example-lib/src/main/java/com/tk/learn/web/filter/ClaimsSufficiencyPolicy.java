@@ -0,0 +1,33 @@
+package com.tk.learn.web.filter;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+
+import java.util.List;
+
+/**
+ * Decides when the claims of a validated token are enough on their own, so
+ * {@link JwtAuthFilter} can skip the user cache and user service lookups.
+ */
+public enum ClaimsSufficiencyPolicy {
+
+    /** Always enrich from the user cache / user service. */
+    NEVER,
+
+    /** The token carries at least one role. */
+    ROLES,
+
+    /** The token carries at least one role and at least one permission (or scope). */
+    ROLES_AND_PERMISSIONS;
+
+    public boolean isSatisfiedBy(UserDetailsDto userDetails) {
+        return switch (this) {
+            case NEVER -> false;
+            case ROLES -> hasValues(userDetails.getRoles());
+            case ROLES_AND_PERMISSIONS -> hasValues(userDetails.getRoles()) && hasValues(userDetails.getPermissions());
+        };
+    }
+
+    private static boolean hasValues(List<String> values) {
+        return values != null && !values.isEmpty();
+    }
+}
@@ -0,0 +1,409 @@
+package com.tk.learn.web.filter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the latency of calls to one blocking dependency (e.g. the user cache or the user
+ * service) with a timeout, a concurrency bulkhead and a circuit breaker.
+ * <p>
+ * A guarded call runs on the guard's own worker threads while the caller waits at most the
+ * timeout. At most {@code maxConcurrent} calls are in flight; a call that times out keeps
+ * its slot until it actually returns, so a hung dependency cannot pile up threads. On
+ * platform threads, calls beyond the limit are rejected immediately.
+ * <p>
+ * Timeouts, rejections and failures count as failures for the circuit breaker: after
+ * {@code failureThreshold} consecutive failures the circuit opens and calls are
+ * short-circuited for the open duration; then a single trial call is let through
+ * (half-open), which closes the circuit on success or reopens it on failure. Whenever a
+ * call does not produce a result the caller receives the fallback value instead.
+ * <p>
+ * With virtual threads, each guarded call gets a fresh virtual thread instead of a pooled
+ * worker; the bulkhead alone bounds the calls in flight, and a timed-out call costs a parked
+ * virtual thread rather than one of a fixed number of platform threads. Since nothing else
+ * limits how many requests arrive at once, a caller beyond the limit waits for a slot
+ * instead of being rejected; the wait counts against the same timeout, so the caller still
+ * gets an answer (the result or the fallback) within it.
+ * <p>
+ * An {@linkplain #unguarded unguarded} instance runs calls inline and only converts
+ * failures to the fallback, keeping the counters comparable.
+ */
+public class DependencyGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(DependencyGuard.class);
+
+    /**
+     * Circuit breaker states.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final long timeoutMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Semaphore bulkhead;
+    private final boolean waitForPermit;
+    private final ExecutorService executor;
+    private final ReentrantLock transitionLock = new ReentrantLock();
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder bulkheadWaits = new LongAdder();
+    private final LongAdder shortCircuits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder[] transitions = new LongAdder[State.values().length];
+
+    /**
+     * @param name dependency name used in logs and thread names
+     * @param timeoutMillis how long a caller waits for the dependency
+     * @param maxConcurrent maximum number of calls in flight
+     * @param failureThreshold consecutive failures that open the circuit
+     * @param openSeconds how long the circuit stays open before a trial call
+     */
+    public DependencyGuard(String name, long timeoutMillis, int maxConcurrent,
+                           int failureThreshold, long openSeconds) {
+        this(name, timeoutMillis, maxConcurrent, failureThreshold, openSeconds, false);
+    }
+
+    /**
+     * @param virtualThreads run each call on its own virtual thread instead of a worker pool
+     */
+    public DependencyGuard(String name, long timeoutMillis, int maxConcurrent,
+                           int failureThreshold, long openSeconds, boolean virtualThreads) {
+        this(name, timeoutMillis, maxConcurrent, failureThreshold, openSeconds,
+                newExecutor(name, maxConcurrent, virtualThreads), virtualThreads);
+    }
+
+    /**
+     * Runs guarded calls on the given executor; {@code null} runs them inline, unguarded.
+     */
+    DependencyGuard(String name, long timeoutMillis, int maxConcurrent,
+                    int failureThreshold, long openSeconds, ExecutorService executor) {
+        this(name, timeoutMillis, maxConcurrent, failureThreshold, openSeconds, executor, false);
+    }
+
+    /**
+     * @param waitForPermit wait up to the timeout for a bulkhead slot instead of rejecting at once
+     */
+    DependencyGuard(String name, long timeoutMillis, int maxConcurrent, int failureThreshold,
+                    long openSeconds, ExecutorService executor, boolean waitForPermit) {
+        this.name = name;
+        this.timeoutMillis = timeoutMillis;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openSeconds * 1000;
+        for (int i = 0; i < transitions.length; i++) {
+            transitions[i] = new LongAdder();
+        }
+        this.executor = executor;
+        this.waitForPermit = waitForPermit;
+        if (executor == null) {
+            this.bulkhead = null;
+            return;
+        }
+        if (maxConcurrent <= 0 || failureThreshold <= 0) {
+            executor.shutdownNow();
+            throw new IllegalArgumentException("Max concurrency and failure threshold must be positive");
+        }
+        // Fair, so callers waiting for a slot are served in arrival order
+        this.bulkhead = new Semaphore(maxConcurrent, waitForPermit);
+    }
+
+    private static ExecutorService newExecutor(String name, int maxConcurrent, boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-guard-", 0).factory());
+        }
+        return new ThreadPoolExecutor(0, Math.max(1, maxConcurrent), 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-guard");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * A guard that runs calls inline without timeout, bulkhead or circuit breaker.
+     */
+    public static DependencyGuard unguarded(String name) {
+        return new DependencyGuard(name, 0, 0, 0, 0, null);
+    }
+
+    /**
+     * Runs the call, returning {@code fallback} if it fails, times out, is rejected by the
+     * bulkhead or is short-circuited by an open circuit. The caller waits at most the timeout
+     * in total, including any wait for a bulkhead slot.
+     */
+    public <T> T call(Callable<T> call, T fallback) {
+        if (executor == null) {
+            return callInline(call, fallback);
+        }
+        boolean trial = false;
+        if (state != State.CLOSED) {
+            if (!allowTrial()) {
+                shortCircuits.increment();
+                return fallback(fallback);
+            }
+            trial = true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        boolean permitted;
+        try {
+            permitted = acquirePermit(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseTrial(trial);
+            return fallback(fallback);
+        }
+        if (!permitted) {
+            rejections.increment();
+            onFailure(trial);
+            return fallback(fallback);
+        }
+
+        // The permit is returned exactly once: by the task when it runs, or by the caller when it
+        // gives up on a task that has not started (a cancelled task that never ran has no finally)
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return call.call();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // A worker released its permit but has not returned to the pool yet
+            bulkhead.release();
+            rejections.increment();
+            onFailure(trial);
+            return fallback(fallback);
+        }
+
+        try {
+            T result = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            onSuccess(trial);
+            return result;
+        } catch (TimeoutException e) {
+            abandon(future, claimed);
+            timeouts.increment();
+            log.warn("{} call timed out after {} ms", name, timeoutMillis);
+        } catch (ExecutionException e) {
+            failures.increment();
+            log.warn("{} call failed: {}", name, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(future, claimed);
+            // The caller gave up, which says nothing about the dependency; let another trial through
+            releaseTrial(trial);
+            return fallback(fallback);
+        }
+        onFailure(trial);
+        return fallback(fallback);
+    }
+
+    private boolean acquirePermit(long deadline) throws InterruptedException {
+        if (bulkhead.tryAcquire()) {
+            return true;
+        }
+        if (!waitForPermit) {
+            return false;
+        }
+        bulkheadWaits.increment();
+        return bulkhead.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancels a call the caller no longer waits for. A call already running keeps its permit
+     * until it returns; one that has not started gives it back now and will not run.
+     */
+    private void abandon(Future<?> future, AtomicBoolean claimed) {
+        if (claimed.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+        future.cancel(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getSuccessCount() {
+        return successes.sum();
+    }
+
+    /**
+     * Number of calls that threw.
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Number of bulkhead slots currently free.
+     */
+    public int getAvailablePermits() {
+        return bulkhead != null ? bulkhead.availablePermits() : 0;
+    }
+
+    /**
+     * Number of calls rejected because the bulkhead was full (for virtual-thread guards,
+     * still full when the timeout elapsed).
+     */
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Number of calls that had to wait for a bulkhead slot; only virtual-thread guards wait.
+     */
+    public long getBulkheadWaitCount() {
+        return bulkheadWaits.sum();
+    }
+
+    /**
+     * Number of calls skipped because the circuit was open.
+     */
+    public long getShortCircuitCount() {
+        return shortCircuits.sum();
+    }
+
+    /**
+     * Number of calls answered with the fallback value, for any reason.
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * Number of times the circuit moved into the given state.
+     */
+    public long getTransitionCount(State to) {
+        return transitions[to.ordinal()].sum();
+    }
+
+    /**
+     * Stops the worker threads; calls still in flight are interrupted.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> T callInline(Callable<T> call, T fallback) {
+        try {
+            T result = call.call();
+            successes.increment();
+            return result;
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("{} call failed: {}", name, e.getMessage());
+            return fallback(fallback);
+        }
+    }
+
+    /**
+     * Lets one trial call through once the open period has elapsed.
+     */
+    private boolean allowTrial() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt < openMillis) {
+            return false;
+        }
+        if (!trialInFlight.compareAndSet(false, true)) {
+            return false;
+        }
+        transition(State.HALF_OPEN);
+        return true;
+    }
+
+    private void onSuccess(boolean trial) {
+        successes.increment();
+        consecutiveFailures.set(0);
+        if (trial) {
+            transition(State.CLOSED);
+            trialInFlight.set(false);
+        }
+    }
+
+    private void onFailure(boolean trial) {
+        if (trial) {
+            open();
+            trialInFlight.set(false);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold && state == State.CLOSED) {
+            open();
+        }
+    }
+
+    private void releaseTrial(boolean trial) {
+        if (trial) {
+            trialInFlight.set(false);
+        }
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        consecutiveFailures.set(0);
+        transition(State.OPEN);
+    }
+
+    private void transition(State to) {
+        State from;
+        transitionLock.lock();
+        try {
+            from = state;
+            if (from == to) {
+                return;
+            }
+            state = to;
+            transitions[to.ordinal()].increment();
+        } finally {
+            transitionLock.unlock();
+        }
+        if (to == State.OPEN) {
+            log.warn("{} circuit {} -> OPEN; falling back for {} ms", name, from, openMillis);
+        } else {
+            log.info("{} circuit {} -> {}", name, from, to);
+        }
+    }
+
+    private <T> T fallback(T fallback) {
+        fallbacks.increment();
+        return fallback;
+    }
+}
@@ -0,0 +1,77 @@
+package com.tk.learn.web.filter;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@link DependencyGuard}s that {@link JwtAuthFilter} puts around its user cache and
+ * user service calls, so a slow Redis or user directory degrades requests to JWT-only user
+ * details instead of stalling the servlet container's worker threads.
+ *
+ * Configuration:
+ * - jwt.resilience.enabled: Enables the guards (default: false)
+ * - jwt.resilience.cache.timeout-millis: User cache call timeout (default: 100)
+ * - jwt.resilience.cache.max-concurrent: User cache calls in flight (default: 50)
+ * - jwt.resilience.user-service.timeout-millis: User service call timeout (default: 1000)
+ * - jwt.resilience.user-service.max-concurrent: User service calls in flight (default: 20)
+ * - jwt.resilience.*.failure-threshold: Consecutive failures that open a circuit (default: 5)
+ * - jwt.resilience.*.open-seconds: How long an open circuit falls back (default: 30)
+ * - spring.threads.virtual.enabled: Runs guarded calls on virtual threads, where calls beyond
+ *   max-concurrent wait up to the timeout for a slot instead of being rejected (default: false)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.resilience.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class EnrichmentGuards implements DisposableBean {
+
+    private final DependencyGuard cache;
+    private final DependencyGuard userService;
+
+    public EnrichmentGuards(DependencyGuard cache, DependencyGuard userService) {
+        this.cache = cache;
+        this.userService = userService;
+    }
+
+    @Autowired
+    public EnrichmentGuards(@Value("${jwt.resilience.cache.timeout-millis:100}") long cacheTimeoutMillis,
+                            @Value("${jwt.resilience.cache.max-concurrent:50}") int cacheMaxConcurrent,
+                            @Value("${jwt.resilience.cache.failure-threshold:5}") int cacheFailureThreshold,
+                            @Value("${jwt.resilience.cache.open-seconds:30}") long cacheOpenSeconds,
+                            @Value("${jwt.resilience.user-service.timeout-millis:1000}") long serviceTimeoutMillis,
+                            @Value("${jwt.resilience.user-service.max-concurrent:20}") int serviceMaxConcurrent,
+                            @Value("${jwt.resilience.user-service.failure-threshold:5}") int serviceFailureThreshold,
+                            @Value("${jwt.resilience.user-service.open-seconds:30}") long serviceOpenSeconds,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(new DependencyGuard("user-cache", cacheTimeoutMillis, cacheMaxConcurrent,
+                        cacheFailureThreshold, cacheOpenSeconds, virtualThreads),
+                new DependencyGuard("user-service", serviceTimeoutMillis, serviceMaxConcurrent,
+                        serviceFailureThreshold, serviceOpenSeconds, virtualThreads));
+    }
+
+    /**
+     * Guards that only convert failures to fallbacks, used when resilience is not enabled.
+     */
+    static EnrichmentGuards unguarded() {
+        return new EnrichmentGuards(DependencyGuard.unguarded("user-cache"), DependencyGuard.unguarded("user-service"));
+    }
+
+    public DependencyGuard cache() {
+        return cache;
+    }
+
+    public DependencyGuard userService() {
+        return userService;
+    }
+
+    @Override
+    public void destroy() {
+        cache.shutdown();
+        userService.shutdown();
+    }
+}
@@ -1,5 +1,6 @@
 package com.tk.learn.web.filter;
 
+import com.tk.learn.model.dto.DeferredUserDetailsDto;
 import com.tk.learn.model.dto.UserDetailsDto;
 import com.tk.learn.model.exceptions.InvalidJwtTokenException;
 import com.tk.learn.web.context.RequestContextHolder;
@@ -33,6 +34,12 @@ import java.util.Optional;
  * Features:
  * - Validates JWT token format and claims
  * - Retrieves user details from Redis cache or User Service
+ * - Skips the cache and User Service when the token's own claims satisfy the configured
+ *   {@link ClaimsSufficiencyPolicy} (jwt.enrichment.claims-sufficient-policy, default: NEVER)
+ * - Bounds cache and User Service latency with timeouts, bulkheads and circuit breakers
+ *   ({@link EnrichmentGuards}), falling back to the JWT-only user details
+ * - Optionally defers enrichment until the user details' enriched fields are first read
+ *   ({@link DeferredUserDetailsDto}, jwt.enrichment.lazy, default: false)
  * - Sets user details in RequestContextHolder for downstream processing
  * - Returns 401 Unauthorized for invalid tokens
  * - Can be enabled/disabled via profile-based configuration
@@ -53,22 +60,50 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String USER_DETAILS_KEY = "userDetails";
     private static final String JWT_SESSION_ID_KEY = "jwtSessionId";
-    private static final String UNAUTHORIZED_RESPONSE = "{\"error\":\"Unauthorized - Invalid or missing JWT token\"}";
+    /** Fallback marking a user service call that produced no answer. */
+    private static final UserDetailsDto SERVICE_UNAVAILABLE = new UserDetailsDto();
+    private static final byte[] UNAUTHORIZED_RESPONSE =
+            "{\"error\":\"Unauthorized - Invalid or missing JWT token\"}".getBytes(StandardCharsets.UTF_8);
 
     private final JwtTokenValidator jwtTokenValidator;
     private final UserCacheService userCacheService;
     private final UserService userService;
     private final long cacheTtlSeconds;
+    private final ClaimsSufficiencyPolicy claimsSufficiencyPolicy;
+    private final EnrichmentGuards guards;
+    private final boolean lazyEnrichment;
+
+    public JwtAuthFilter(JwtTokenValidator jwtTokenValidator,
+                        UserCacheService userCacheService,
+                        UserService userService,
+                        long cacheTtlSeconds) {
+        this(jwtTokenValidator, userCacheService, userService, cacheTtlSeconds, ClaimsSufficiencyPolicy.NEVER, null, false);
+    }
 
     @Autowired(required = false)
     public JwtAuthFilter(JwtTokenValidator jwtTokenValidator,
                         @Autowired(required = false) UserCacheService userCacheService,
                         @Autowired(required = false) UserService userService,
-                        @Value("${jwt.cache.ttl-seconds:3600}") long cacheTtlSeconds) {
+                        @Value("${jwt.cache.ttl-seconds:3600}") long cacheTtlSeconds,
+                        @Value("${jwt.enrichment.claims-sufficient-policy:NEVER}")
+                        ClaimsSufficiencyPolicy claimsSufficiencyPolicy,
+                        @Autowired(required = false) EnrichmentGuards guards,
+                        @Value("${jwt.enrichment.lazy:false}") boolean lazyEnrichment) {
         this.jwtTokenValidator = jwtTokenValidator;
         this.userCacheService = userCacheService;
         this.userService = userService;
         this.cacheTtlSeconds = cacheTtlSeconds;
+        this.claimsSufficiencyPolicy = claimsSufficiencyPolicy;
+        this.guards = guards != null ? guards : EnrichmentGuards.unguarded();
+        this.lazyEnrichment = lazyEnrichment;
+    }
+
+    /**
+     * Guards around the user cache and User Service calls, exposing their circuit state
+     * transitions and fallback counts.
+     */
+    public EnrichmentGuards getGuards() {
+        return guards;
     }
 
     @Override
@@ -87,7 +122,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             }
 
         } catch (InvalidJwtTokenException e) {
-            log.warn("JWT validation failed: {}", e.getMessage());
+            // Already reported (rate-limited) by JwtTokenValidator
+            log.debug("JWT validation failed: {}", e.getMessage());
             sendUnauthorizedResponse(response);
         } catch (Exception e) {
             log.error("Unexpected error in JWT filter: {}", e.getMessage(), e);
@@ -107,26 +143,19 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             UserDetailsDto userDetails = jwtTokenValidator.validateAndExtractClaims(token);
             log.info("JWT token validated for user: {}", userDetails.getUserId());
 
-            // Step 2: Try to get user details from cache
+            // Step 2: Enrich from cache / User Service, unless the token is self-sufficient;
+            // in lazy mode enrichment waits until an enriched field is first read
             String sessionId = userDetails.getSessionId();
-            UserDetailsDto cachedUserDetails = getUserDetailsFromCache(sessionId);
-
-            if (cachedUserDetails != null) {
-                log.debug("User details retrieved from cache for session: {}", sessionId);
-                userDetails = cachedUserDetails;
+            if (claimsSufficiencyPolicy.isSatisfiedBy(userDetails)) {
+                log.debug("Token claims are sufficient; skipping user details enrichment");
+            } else if (lazyEnrichment) {
+                UserDetailsDto jwtDetails = userDetails;
+                userDetails = new DeferredUserDetailsDto(jwtDetails, () -> resolveUserDetails(jwtDetails, sessionId));
             } else {
-                log.debug("User details not found in cache, fetching from user service");
-                // Step 3: Fetch user details from User Service if cache miss
-                userDetails = enrichUserDetailsFromService(userDetails);
-
-                // Step 4: Cache the user details for future requests
-                if (userCacheService != null && StringUtils.hasText(sessionId)) {
-                    userCacheService.cacheUser(sessionId, userDetails, cacheTtlSeconds);
-                    log.debug("User details cached for session: {} with TTL: {} seconds", sessionId, cacheTtlSeconds);
-                }
+                userDetails = resolveUserDetails(userDetails, sessionId);
             }
 
-            // Step 5: Set user details in RequestContextHolder
+            // Step 3: Set user details in RequestContextHolder
             RequestContextHolder.put(USER_DETAILS_KEY, userDetails);
             RequestContextHolder.put(JWT_SESSION_ID_KEY, sessionId);
             log.debug("User details set in RequestContextHolder for session: {}", sessionId);
@@ -140,71 +169,74 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     }
 
     /**
-     * Retrieves user details from cache service.
+     * Resolves the full user details: from the cache if present, otherwise enriched from the
+     * User Service and written back to the cache.
      */
-    private UserDetailsDto getUserDetailsFromCache(String sessionId) {
-        if (userCacheService == null || !StringUtils.hasText(sessionId)) {
-            return null;
+    private UserDetailsDto resolveUserDetails(UserDetailsDto userDetails, String sessionId) {
+        UserDetailsDto cachedUserDetails = getUserDetailsFromCache(sessionId);
+        if (cachedUserDetails != null) {
+            log.debug("User details retrieved from cache for session: {}", sessionId);
+            return cachedUserDetails;
         }
 
-        try {
-            return userCacheService.getUserFromCache(sessionId);
-        } catch (Exception e) {
-            log.warn("Error retrieving user details from cache: {}", e.getMessage(), e);
+        log.debug("User details not found in cache, fetching from user service");
+        boolean enriched = enrichUserDetailsFromService(userDetails);
+
+        // JWT-only fallbacks are not cached, so the next request retries once the User Service recovers
+        if (enriched && userCacheService != null && StringUtils.hasText(sessionId)) {
+            guards.cache().call(() -> {
+                userCacheService.cacheUser(sessionId, userDetails, cacheTtlSeconds);
+                return null;
+            }, null);
+            log.debug("User details cached for session: {} with TTL: {} seconds", sessionId, cacheTtlSeconds);
+        }
+        return userDetails;
+    }
+
+    /**
+     * Retrieves user details from cache service; a failed, slow or short-circuited cache
+     * counts as a miss.
+     */
+    private UserDetailsDto getUserDetailsFromCache(String sessionId) {
+        if (userCacheService == null || !StringUtils.hasText(sessionId)) {
             return null;
         }
+        return guards.cache().call(() -> userCacheService.getUserFromCache(sessionId), null);
     }
 
     /**
      * Enriches user details by calling the User Service.
+     *
+     * @return {@code false} if the User Service call failed, timed out or was short-circuited,
+     *         leaving the JWT-only details
      */
-    private UserDetailsDto enrichUserDetailsFromService(UserDetailsDto userDetails) {
+    private boolean enrichUserDetailsFromService(UserDetailsDto userDetails) {
         if (userService == null) {
             log.warn("UserService not available; cannot enrich user details");
-            return userDetails;
+            return true;
         }
 
-        try {
-            UserDetailsDto enrichedDetails;
-            if (StringUtils.hasText(userDetails.getUserId())) {
-                enrichedDetails = userService.getUserDetailsById(userDetails.getUserId());
-            } else if (StringUtils.hasText(userDetails.getEmail())) {
-                enrichedDetails = userService.getUserDetailsByEmail(userDetails.getEmail());
-            } else {
-                log.warn("Cannot enrich user details: no userId or email available");
-                return userDetails;
-            }
-
-            if (enrichedDetails != null) {
-                // Merge enriched details with JWT claims
-                mergeUserDetails(userDetails, enrichedDetails);
-            }
-
-            return userDetails;
-
-        } catch (Exception e) {
-            log.warn("Error enriching user details from service: {}", e.getMessage(), e);
-            return userDetails;
+        String userId = userDetails.getUserId();
+        String email = userDetails.getEmail();
+        UserDetailsDto enrichedDetails;
+        if (StringUtils.hasText(userId)) {
+            enrichedDetails = guards.userService().call(() -> userService.getUserDetailsById(userId), SERVICE_UNAVAILABLE);
+        } else if (StringUtils.hasText(email)) {
+            enrichedDetails = guards.userService().call(() -> userService.getUserDetailsByEmail(email), SERVICE_UNAVAILABLE);
+        } else {
+            log.warn("Cannot enrich user details: no userId or email available");
+            return true;
         }
-    }
 
-    /**
-     * Merges enriched user details from service with JWT claims.
-     */
-    private void mergeUserDetails(UserDetailsDto jwtDetails, UserDetailsDto enrichedDetails) {
-        // Prefer enriched data if available
-        if (enrichedDetails.getEmail() != null) {
-            jwtDetails.setEmail(enrichedDetails.getEmail());
-        }
-        if (enrichedDetails.getUsername() != null) {
-            jwtDetails.setUsername(enrichedDetails.getUsername());
-        }
-        if (enrichedDetails.getRoles() != null && !enrichedDetails.getRoles().isEmpty()) {
-            jwtDetails.setRoles(enrichedDetails.getRoles());
+        if (enrichedDetails == SERVICE_UNAVAILABLE) {
+            log.debug("User service unavailable; continuing with JWT-only user details");
+            return false;
         }
-        if (enrichedDetails.getPermissions() != null && !enrichedDetails.getPermissions().isEmpty()) {
-            jwtDetails.setPermissions(enrichedDetails.getPermissions());
+        if (enrichedDetails != null) {
+            // Merge enriched details with JWT claims
+            userDetails.mergeFrom(enrichedDetails);
         }
+        return true;
     }
 
     /**
@@ -222,7 +254,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
         response.setContentType("application/json");
         response.setCharacterEncoding(StandardCharsets.UTF_8.name());
-        response.getOutputStream().write(UNAUTHORIZED_RESPONSE.getBytes(StandardCharsets.UTF_8));
+        response.setContentLength(UNAUTHORIZED_RESPONSE.length);
+        response.getOutputStream().write(UNAUTHORIZED_RESPONSE);
     }
 }
 
@@ -1,12 +1,15 @@
 package com.tk.learn.web.filter;
 
+import com.tk.learn.web.context.RequestContext;
 import com.tk.learn.web.context.RequestContextHolder;
+import com.tk.learn.web.context.ScopedRequestContext;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -24,6 +27,15 @@ import java.util.Map;
 /**
  * Filter that extracts a JSON map from a configured HTTP header and stores it
  * in a ThreadLocal-backed context for the duration of the request.
+ * <p>
+ * In scoped mode the header attributes, together with any attributes already put by earlier
+ * filters (which take precedence), are bound once as an immutable {@link RequestContext} through
+ * {@link ScopedRequestContext} for the rest of the chain, instead of being copied into the
+ * thread-local map.
+ *
+ * Configuration:
+ * - request.context.header: Header carrying the Base64 JSON context (default: X-Request-Context)
+ * - request.context.scoped: Bind an immutable scoped context (default: false)
  */
 @Component
 public class SideCarRequestContextFilter extends OncePerRequestFilter {
@@ -33,11 +45,19 @@ public class SideCarRequestContextFilter extends OncePerRequestFilter {
 
     private final JsonMapper objectMapper;
     private final String headerName;
+    private final boolean scoped;
 
+    public SideCarRequestContextFilter(JsonMapper objectMapper, String headerName) {
+        this(objectMapper, headerName, false);
+    }
+
+    @Autowired
     public SideCarRequestContextFilter(JsonMapper objectMapper,
-                                       @Value("${request.context.header:X-Request-Context}") String headerName) {
+                                       @Value("${request.context.header:X-Request-Context}") String headerName,
+                                       @Value("${request.context.scoped:false}") boolean scoped) {
         this.objectMapper = objectMapper;
         this.headerName = headerName;
+        this.scoped = scoped;
     }
 
     @Override
@@ -47,12 +67,15 @@ public class SideCarRequestContextFilter extends OncePerRequestFilter {
         String header = request.getHeader(headerName);
 
         try {
+            Map<String, Object> ctx = null;
             if (StringUtils.hasText(header)) {
                 try {
                     Base64.Decoder decoder = Base64.getDecoder();
                     header = new String(decoder.decode(header));
-                    Map<String, Object> ctx = objectMapper.readValue(header, MAP_TYPE);
-                    RequestContextHolder.setContext(ctx);
+                    ctx = objectMapper.readValue(header, MAP_TYPE);
+                    if (!scoped) {
+                        RequestContextHolder.setContext(ctx);
+                    }
                 } catch (JacksonException e) {
                     log.warn("Invalid JSON in header {}: {}", headerName, e.getOriginalMessage());
                     response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -63,7 +86,18 @@ public class SideCarRequestContextFilter extends OncePerRequestFilter {
                 }
             }
 
-            filterChain.doFilter(request, response);
+            if (scoped) {
+                // Attributes set by earlier filters (e.g. the authenticated user) win over the header's
+                RequestContext context = RequestContext.of(ctx).withAll(RequestContextHolder.getContext());
+                ScopedRequestContext.Scope scope = ScopedRequestContext.open(context);
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    scope.close();
+                }
+            } else {
+                filterChain.doFilter(request, response);
+            }
         } finally {
             // Always clear the context at the end of the request
             RequestContextHolder.clear();
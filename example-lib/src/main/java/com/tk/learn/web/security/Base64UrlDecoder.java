@@ -0,0 +1,102 @@
+package com.tk.learn.web.security;
+
+import java.util.Arrays;
+
+/**
+ * Base64URL (RFC 4648 section 5) decoder that reads a range of a {@link CharSequence}
+ * and writes into a caller-supplied buffer.
+ * <p>
+ * Unlike {@link java.util.Base64.Decoder} it needs neither a substring nor an intermediate
+ * byte array for the input, nor a fresh array for the output, which lets the JWT decode
+ * path reuse a per-thread buffer. Accepts the same input as
+ * {@code Base64.getUrlDecoder()}: the URL-safe alphabet with optional {@code '='} padding.
+ */
+final class Base64UrlDecoder {
+
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < 26; i++) {
+            DECODE_TABLE['A' + i] = (byte) i;
+            DECODE_TABLE['a' + i] = (byte) (26 + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            DECODE_TABLE['0' + i] = (byte) (52 + i);
+        }
+        DECODE_TABLE['-'] = 62;
+        DECODE_TABLE['_'] = 63;
+    }
+
+    private Base64UrlDecoder() {
+        // utility
+    }
+
+    /**
+     * Whether {@code c} belongs to the Base64URL alphabet (padding excluded).
+     */
+    static boolean isAlphabet(char c) {
+        return c < 128 && DECODE_TABLE[c] >= 0;
+    }
+
+    /**
+     * Upper bound of the decoded size for {@code encodedLength} input characters.
+     */
+    static int maxDecodedLength(int encodedLength) {
+        return (encodedLength / 4) * 3 + 2;
+    }
+
+    /**
+     * Decodes {@code src[from, to)} into {@code dst} starting at index 0.
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the input is not valid Base64URL
+     * @throws ArrayIndexOutOfBoundsException if {@code dst} is smaller than
+     *                                        {@link #maxDecodedLength(int)}
+     */
+    static int decode(CharSequence src, int from, int to, byte[] dst) {
+        int end = to;
+        int padding = 0;
+        while (end > from && padding < 2 && src.charAt(end - 1) == '=') {
+            end--;
+            padding++;
+        }
+        int length = end - from;
+        if (length % 4 == 1 || (padding > 0 && (length + padding) % 4 != 0)) {
+            throw new IllegalArgumentException("Invalid Base64URL length");
+        }
+
+        int out = 0;
+        int i = from;
+        int fullGroupsEnd = from + (length & ~3);
+        while (i < fullGroupsEnd) {
+            int bits = value(src.charAt(i)) << 18
+                    | value(src.charAt(i + 1)) << 12
+                    | value(src.charAt(i + 2)) << 6
+                    | value(src.charAt(i + 3));
+            dst[out++] = (byte) (bits >> 16);
+            dst[out++] = (byte) (bits >> 8);
+            dst[out++] = (byte) bits;
+            i += 4;
+        }
+
+        int remaining = end - i;
+        if (remaining == 2) {
+            int bits = value(src.charAt(i)) << 18 | value(src.charAt(i + 1)) << 12;
+            dst[out++] = (byte) (bits >> 16);
+        } else if (remaining == 3) {
+            int bits = value(src.charAt(i)) << 18 | value(src.charAt(i + 1)) << 12 | value(src.charAt(i + 2)) << 6;
+            dst[out++] = (byte) (bits >> 16);
+            dst[out++] = (byte) (bits >> 8);
+        }
+        return out;
+    }
+
+    private static int value(char c) {
+        int v = c < DECODE_TABLE.length ? DECODE_TABLE[c] : -1;
+        if (v < 0) {
+            throw new IllegalArgumentException("Illegal Base64URL character: 0x" + Integer.toHexString(c));
+        }
+        return v;
+    }
+}
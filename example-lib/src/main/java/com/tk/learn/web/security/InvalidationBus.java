@@ -0,0 +1,25 @@
+package com.tk.learn.web.security;
+
+/**
+ * Broadcasts key-level cache invalidations to the other nodes of a deployment, so in-process
+ * caches (e.g. the user near cache or the employee cache) can use long TTLs without serving
+ * stale entries after another node changed the data.
+ * <p>
+ * Keys are grouped by topic, one per cache. Publishing is asynchronous: keys are coalesced
+ * and sent in batches over a short window. Listeners receive only invalidations published by
+ * other nodes; the publishing node is expected to have updated its own caches already.
+ */
+public interface InvalidationBus {
+
+    /**
+     * Queues an invalidation of {@code key} in {@code topic} for the other nodes.
+     */
+    void publish(String topic, String key);
+
+    /**
+     * Registers a listener for invalidations of a topic published by other nodes.
+     */
+    void subscribe(String topic, InvalidationListener listener);
+
+    void unsubscribe(String topic, InvalidationListener listener);
+}
@@ -0,0 +1,21 @@
+package com.tk.learn.web.security;
+
+import java.util.Collection;
+
+/**
+ * Receives invalidations for one topic of an {@link InvalidationBus}.
+ * Called on the bus's delivery thread; implementations should only drop local entries.
+ */
+public interface InvalidationListener {
+
+    /**
+     * Drops the entries for the given keys.
+     */
+    void invalidate(Collection<String> keys);
+
+    /**
+     * Drops every entry, because invalidations may have been missed (e.g. while the bus
+     * was reconnecting).
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,103 @@
+package com.tk.learn.web.security;
+
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PublicJwk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a fetched JWK Set: the raw JSON plus its signing keys, decoded once
+ * with JJWT and indexed by {@code kid}.
+ * <p>
+ * Only public RSA and EC keys usable for signatures are kept; encryption keys
+ * ({@code "use": "enc"}), symmetric keys and keys pinned to unsupported algorithms are skipped.
+ */
+final class JwkKeySet {
+
+    private static final Logger log = LoggerFactory.getLogger(JwkKeySet.class);
+
+    private final String json;
+    private final Map<String, VerificationKey> keysById;
+    private final VerificationKey soleKey;
+    private final int keyCount;
+    private final long fetchedAt;
+
+    private JwkKeySet(String json, Map<String, VerificationKey> keysById, List<VerificationKey> keys, long fetchedAt) {
+        this.json = json;
+        this.keysById = Map.copyOf(keysById);
+        this.soleKey = keys.size() == 1 ? keys.get(0) : null;
+        this.keyCount = keys.size();
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Parses a JWK Set document and decodes its signing keys.
+     *
+     * @throws IllegalArgumentException if the document holds no usable signing key
+     * @throws io.jsonwebtoken.JwtException if the document is not a valid JWK Set
+     */
+    static JwkKeySet parse(String json, long fetchedAt) {
+        JwkSet jwkSet = Jwks.setParser().ignoreUnsupported(true).build().parse(json);
+
+        Map<String, VerificationKey> keysById = new HashMap<>();
+        List<VerificationKey> keys = new ArrayList<>();
+        for (Jwk<?> jwk : jwkSet.getKeys()) {
+            if (!(jwk instanceof PublicJwk<?> publicJwk) || "enc".equals(publicJwk.getPublicKeyUse())) {
+                log.debug("Skipping non-signing JWK: kid={}, kty={}", jwk.getId(), jwk.getType());
+                continue;
+            }
+            JwsAlgorithm algorithm = null;
+            if (jwk.getAlgorithm() != null) {
+                algorithm = JwsAlgorithm.fromName(jwk.getAlgorithm());
+                if (algorithm == null) {
+                    log.debug("Skipping JWK with unsupported algorithm: kid={}, alg={}", jwk.getId(), jwk.getAlgorithm());
+                    continue;
+                }
+            }
+            VerificationKey key = new VerificationKey(jwk.getId(), publicJwk.toKey(), algorithm);
+            if (!key.publicKey().getAlgorithm().equals("RSA") && !key.publicKey().getAlgorithm().equals("EC")) {
+                log.debug("Skipping JWK with unsupported key type: kid={}, kty={}", jwk.getId(), jwk.getType());
+                continue;
+            }
+            if (key.keyId() != null && keysById.putIfAbsent(key.keyId(), key) != null) {
+                log.warn("Duplicate kid in JWK Set, keeping the first key: {}", key.keyId());
+                continue;
+            }
+            keys.add(key);
+        }
+
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("JWK Set contains no usable RSA or EC signing keys");
+        }
+        return new JwkKeySet(json, keysById, keys, fetchedAt);
+    }
+
+    /**
+     * Looks up the key for a token's {@code kid}. Tokens without a {@code kid} resolve only
+     * when the set holds exactly one signing key.
+     *
+     * @return the key, or {@code null} if none matches
+     */
+    VerificationKey find(String keyId) {
+        return keyId == null ? soleKey : keysById.get(keyId);
+    }
+
+    String getJson() {
+        return json;
+    }
+
+    long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    int size() {
+        return keyCount;
+    }
+}
@@ -2,35 +2,203 @@ package com.tk.learn.web.security;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * JWK (JSON Web Key) Set provider that fetches and caches JWK Sets from configured URLs.
  * Used by JwtTokenValidator for JWT signature verification using keys from JWK endpoint.
+ * <p>
+ * Each fetched JWK Set is parsed once into a {@link JwkKeySet} of decoded public keys
+ * indexed by {@code kid}, so resolving a token's key is a map lookup with no JSON parsing
+ * or key decoding on the request path.
+ * <p>
+ * Fetches are single-flight: at most one request to the JWK endpoint is in progress, and
+ * threads that need a key set while it runs wait for its result instead of fetching too.
+ * In background refresh mode (the default) a refresh is scheduled ahead of expiry and
+ * callers keep receiving the current key set while it runs; only a cold start, or a set
+ * that has been stale for longer than {@code jwt.jwk-max-stale-minutes}, blocks callers.
+ * Failed fetches keep serving the previous set and are retried with exponential backoff.
+ * <p>
+ * A token whose {@code kid} is not in the current set triggers an on-demand refresh, so keys
+ * rotated in by the issuer are picked up before the TTL elapses. These refreshes share the
+ * single-flight fetch and are limited to one per {@code jwt.jwk-unknown-kid-refresh-interval-seconds},
+ * so tokens carrying random {@code kid} values cannot force a fetch per request.
+ * <p>
+ * With {@code jwt.jwk-snapshot.path} set, every successful fetch is also written to disk and
+ * the snapshot is loaded on startup if younger than {@code jwt.jwk-snapshot.max-age-minutes},
+ * so a restarted instance verifies tokens without waiting for the JWK endpoint. Unless
+ * disabled, the set is also prefetched in the background on startup; {@link #prefetch()}
+ * offers the same as a blocking call.
+ *
+ * Configuration:
+ * - jwt.jwk-set-uri: URL to fetch the JWK Set from
+ * - jwt.jwk-cache-ttl-minutes: How long a fetched set is considered fresh (default: 60)
+ * - jwt.jwk-background-refresh: Refresh ahead of expiry without blocking callers (default: true)
+ * - jwt.jwk-refresh-ahead-seconds: How long before expiry to refresh, capped at half the TTL (default: 300)
+ * - jwt.jwk-max-stale-minutes: How long past expiry a set may be served while refreshes fail (default: 1440)
+ * - jwt.jwk-refresh-backoff-max-seconds: Upper bound of the retry backoff after failures (default: 300)
+ * - jwt.jwk-refresh-on-unknown-kid: Refresh when a token references an unknown kid (default: true)
+ * - jwt.jwk-unknown-kid-refresh-interval-seconds: Minimum time between such refreshes (default: 30)
+ * - jwt.jwk-prefetch-on-startup: Fetch the set in the background on startup (default: true)
+ * - jwt.jwk-snapshot.path: File to persist the last good JWK Set to (default: none, disabled)
+ * - jwt.jwk-snapshot.max-age-minutes: Oldest snapshot accepted on startup (default: 1440)
  */
 @Component
-public class JwkSetProvider {
+public class JwkSetProvider implements InitializingBean, DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(JwkSetProvider.class);
 
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+
     @Value("${jwt.jwk-set-uri:#{null}}")
     private String jwkSetUri;
 
     @Value("${jwt.jwk-cache-ttl-minutes:60}")
     private long jwkCacheTtlMinutes;
 
+    @Value("${jwt.jwk-background-refresh:true}")
+    private boolean backgroundRefresh = true;
+
+    @Value("${jwt.jwk-refresh-ahead-seconds:300}")
+    private long refreshAheadSeconds = 300;
+
+    @Value("${jwt.jwk-max-stale-minutes:1440}")
+    private long maxStaleMinutes = 1440;
+
+    @Value("${jwt.jwk-refresh-backoff-max-seconds:300}")
+    private long maxBackoffSeconds = 300;
+
+    @Value("${jwt.jwk-refresh-on-unknown-kid:true}")
+    private boolean refreshOnUnknownKid = true;
+
+    @Value("${jwt.jwk-unknown-kid-refresh-interval-seconds:30}")
+    private long unknownKidRefreshIntervalSeconds = 30;
+
+    @Value("${jwt.jwk-prefetch-on-startup:true}")
+    private boolean prefetchOnStartup = true;
+
+    @Value("${jwt.jwk-snapshot.path:#{null}}")
+    private String snapshotPath;
+
+    @Value("${jwt.jwk-snapshot.max-age-minutes:1440}")
+    private long snapshotMaxAgeMinutes = 1440;
+
     private final RestTemplate restTemplate;
 
-    private volatile String cachedJwkSet;
-    private volatile long cachedJwkSetTime;
+    /** Serialises fetches; never held while callers merely read the cached set. */
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private final AtomicBoolean backgroundRefreshPending = new AtomicBoolean();
+    private final ScheduledThreadPoolExecutor refreshExecutor;
+
+    private volatile JwkKeySet cachedKeySet;
+    private volatile JwkSetSnapshotStore snapshotStore;
+    private volatile int consecutiveFailures;
+    private volatile long nextAttemptAt;
+    private volatile Exception lastFailure;
+    private volatile ScheduledFuture<?> scheduledRefresh;
+    private volatile long lastUnknownKidRefreshAt = Long.MIN_VALUE;
+
+    private final LongAdder unknownKidRefreshes = new LongAdder();
+    private final LongAdder unknownKidRefreshesThrottled = new LongAdder();
 
     public JwkSetProvider() {
         this.restTemplate = new RestTemplate();
+        this.refreshExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "jwk-set-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refreshExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Loads the on-disk snapshot, if configured, and starts the startup prefetch or schedules
+     * the snapshot's refresh.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        if (!isConfigured()) {
+            return;
+        }
+        if (snapshotPath != null && !snapshotPath.isEmpty()) {
+            snapshotStore = new JwkSetSnapshotStore(Path.of(snapshotPath),
+                    TimeUnit.MINUTES.toMillis(snapshotMaxAgeMinutes));
+            JwkKeySet snapshot = snapshotStore.load();
+            if (snapshot != null) {
+                cachedKeySet = snapshot;
+                log.info("Loaded JWK Set with {} signing keys from snapshot {}", snapshot.size(), snapshotPath);
+            }
+        }
+
+        JwkKeySet keySet = cachedKeySet;
+        long ttl = TimeUnit.MINUTES.toMillis(jwkCacheTtlMinutes);
+        long refreshIn = keySet == null
+                ? 0
+                : keySet.getFetchedAt() + ttl - refreshAheadMillis(ttl) - System.currentTimeMillis();
+        if (refreshIn > 0) {
+            scheduleRefresh(refreshIn);
+        } else if (prefetchOnStartup) {
+            triggerBackgroundRefresh();
+        }
+    }
+
+    /**
+     * Creates an independent provider for another JWK Set URI with this provider's cache,
+     * refresh and snapshot settings. Used for per-issuer key sets in multi-issuer mode; the
+     * snapshot file, if any, gets a suffix derived from the URI. The caller manages the
+     * returned provider's lifecycle ({@link #afterPropertiesSet()} and {@link #destroy()}).
+     */
+    public JwkSetProvider forJwkSetUri(String uri) {
+        JwkSetProvider provider = new JwkSetProvider();
+        provider.jwkSetUri = uri;
+        provider.jwkCacheTtlMinutes = jwkCacheTtlMinutes;
+        provider.backgroundRefresh = backgroundRefresh;
+        provider.refreshAheadSeconds = refreshAheadSeconds;
+        provider.maxStaleMinutes = maxStaleMinutes;
+        provider.maxBackoffSeconds = maxBackoffSeconds;
+        provider.refreshOnUnknownKid = refreshOnUnknownKid;
+        provider.unknownKidRefreshIntervalSeconds = unknownKidRefreshIntervalSeconds;
+        provider.prefetchOnStartup = prefetchOnStartup;
+        provider.snapshotMaxAgeMinutes = snapshotMaxAgeMinutes;
+        if (snapshotPath != null && !snapshotPath.isEmpty() && uri != null) {
+            provider.snapshotPath = snapshotPath + "." + Integer.toHexString(uri.hashCode());
+        }
+        return provider;
+    }
+
+    /**
+     * Makes sure a key set is loaded, fetching it on the caller's thread if needed. Intended
+     * for applications that want to gate readiness on having verification keys.
+     *
+     * @return whether a usable key set is available
+     */
+    public boolean prefetch() {
+        try {
+            return getKeySet() != null;
+        } catch (RuntimeException e) {
+            log.warn("JWK Set prefetch failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Whether a JWK Set URI is configured, i.e. whether signatures can be verified.
+     */
+    public boolean isConfigured() {
+        return jwkSetUri != null && !jwkSetUri.isEmpty();
     }
 
     /**
@@ -41,16 +209,134 @@ public class JwkSetProvider {
      * @throws RuntimeException if fetching JWK Set fails
      */
     public String getJwkSet() {
-        if (jwkSetUri == null || jwkSetUri.isEmpty()) {
+        return getKeySet().getJson();
+    }
+
+    /**
+     * Resolves the verification key for a token's {@code kid} from the cached key set,
+     * refreshing the set once (subject to rate limiting) if the {@code kid} is unknown.
+     *
+     * @param keyId the token's {@code kid} header, or {@code null} if absent
+     * @return the key, or {@code null} if the key set has no matching key
+     * @throws IllegalStateException if JWK Set URI is not configured
+     * @throws RuntimeException if fetching JWK Set fails
+     */
+    public VerificationKey getVerificationKey(String keyId) {
+        JwkKeySet keySet = getKeySet();
+        VerificationKey key = keySet.find(keyId);
+        if (key != null || keyId == null || !refreshOnUnknownKid) {
+            return key;
+        }
+        JwkKeySet refreshed = refreshForUnknownKid(keySet, keyId);
+        return refreshed != keySet ? refreshed.find(keyId) : null;
+    }
+
+    public long getUnknownKidRefreshCount() {
+        return unknownKidRefreshes.sum();
+    }
+
+    public long getUnknownKidRefreshThrottledCount() {
+        return unknownKidRefreshesThrottled.sum();
+    }
+
+    private JwkKeySet getKeySet() {
+        if (!isConfigured()) {
             throw new IllegalStateException("JWK Set URI (jwt.jwk-set-uri) is not configured");
         }
 
-        // Check cache validity
-        if (isCacheValid()) {
+        JwkKeySet keySet = cachedKeySet;
+        if (keySet == null) {
+            return fetchBlocking(null);
+        }
+
+        long age = System.currentTimeMillis() - keySet.getFetchedAt();
+        long ttl = TimeUnit.MINUTES.toMillis(jwkCacheTtlMinutes);
+        if (age < ttl - refreshAheadMillis(ttl)) {
             log.debug("Using cached JWK Set");
-            return cachedJwkSet;
+            return keySet;
         }
 
+        if (backgroundRefresh) {
+            // Serve the current set and let one background task refresh it
+            triggerBackgroundRefresh();
+            if (isServable(keySet)) {
+                return keySet;
+            }
+        } else if (age < ttl || (isBackingOff() && isServable(keySet))) {
+            return keySet;
+        }
+        return fetchBlocking(keySet);
+    }
+
+    /**
+     * Fetches on the caller's thread, coalescing with any fetch already in progress: threads
+     * that queued behind it return its result instead of fetching again.
+     */
+    private JwkKeySet fetchBlocking(JwkKeySet seen) {
+        fetchLock.lock();
+        try {
+            JwkKeySet current = cachedKeySet;
+            if (current != null && current != seen) {
+                return current;
+            }
+            if (isBackingOff()) {
+                return staleOrFail(current, lastFailure);
+            }
+            try {
+                return fetchAndPublish();
+            } catch (RuntimeException e) {
+                return staleOrFail(current, e);
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    /**
+     * Refreshes the set because a token referenced an unknown {@code kid}. Callers arriving
+     * while a fetch is running wait for it and use its result; outside of that, at most one
+     * such refresh runs per interval and throttled callers return immediately.
+     *
+     * @return the set to resolve the {@code kid} against; {@code seen} if no refresh happened
+     */
+    private JwkKeySet refreshForUnknownKid(JwkKeySet seen, String keyId) {
+        if (!fetchLock.isLocked() && isUnknownKidRefreshThrottled()) {
+            unknownKidRefreshesThrottled.increment();
+            return seen;
+        }
+        fetchLock.lock();
+        try {
+            JwkKeySet current = cachedKeySet;
+            if (current != null && current != seen) {
+                return current;
+            }
+            if (isUnknownKidRefreshThrottled() || isBackingOff()) {
+                unknownKidRefreshesThrottled.increment();
+                return seen;
+            }
+            lastUnknownKidRefreshAt = System.currentTimeMillis();
+            unknownKidRefreshes.increment();
+            log.info("Refreshing JWK Set for unknown kid: {}", keyId);
+            try {
+                return fetchAndPublish();
+            } catch (RuntimeException e) {
+                return seen;
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private boolean isUnknownKidRefreshThrottled() {
+        long last = lastUnknownKidRefreshAt;
+        return last != Long.MIN_VALUE
+                && System.currentTimeMillis() - last < TimeUnit.SECONDS.toMillis(unknownKidRefreshIntervalSeconds);
+    }
+
+    /**
+     * Fetches and parses the JWK Set, then publishes it. Must be called holding {@link #fetchLock}.
+     */
+    private JwkKeySet fetchAndPublish() {
         try {
             log.debug("Fetching JWK Set from: {}", jwkSetUri);
             String jwkSet = restTemplate.getForObject(new URI(jwkSetUri), String.class);
@@ -59,29 +345,108 @@ public class JwkSetProvider {
                 throw new RuntimeException("JWK Set response is empty");
             }
 
-            // Update cache
-            this.cachedJwkSet = jwkSet;
-            this.cachedJwkSetTime = System.currentTimeMillis();
+            // Decode the keys once per fetch, then publish the snapshot atomically
+            JwkKeySet keySet = JwkKeySet.parse(jwkSet, System.currentTimeMillis());
+            this.cachedKeySet = keySet;
+            this.consecutiveFailures = 0;
+            this.nextAttemptAt = 0;
+            this.lastFailure = null;
+
+            long ttl = TimeUnit.MINUTES.toMillis(jwkCacheTtlMinutes);
+            scheduleRefresh(ttl - refreshAheadMillis(ttl));
+
+            JwkSetSnapshotStore store = snapshotStore;
+            if (store != null) {
+                store.save(keySet);
+            }
 
-            log.info("Successfully fetched JWK Set from: {}", jwkSetUri);
-            return jwkSet;
+            log.info("Successfully fetched JWK Set with {} signing keys from: {}", keySet.size(), jwkSetUri);
+            return keySet;
 
         } catch (Exception e) {
-            log.error("Failed to fetch JWK Set from {}: {}", jwkSetUri, e.getMessage(), e);
+            int failures = ++consecutiveFailures;
+            long backoff = Math.min(INITIAL_BACKOFF_MILLIS << Math.min(failures - 1, 20),
+                    TimeUnit.SECONDS.toMillis(maxBackoffSeconds));
+            this.nextAttemptAt = System.currentTimeMillis() + backoff;
+            this.lastFailure = e;
+            scheduleRefresh(backoff);
+
+            log.error("Failed to fetch JWK Set from {} (attempt {}, retrying in {} ms): {}",
+                    jwkSetUri, failures, backoff, e.getMessage(), e);
             throw new RuntimeException("Failed to fetch JWK Set: " + e.getMessage(), e);
         }
     }
 
+    private void triggerBackgroundRefresh() {
+        if (!isBackingOff() && backgroundRefreshPending.compareAndSet(false, true)) {
+            try {
+                refreshExecutor.execute(this::refreshInBackground);
+            } catch (RuntimeException e) {
+                backgroundRefreshPending.set(false);
+                log.warn("Could not schedule background JWK Set refresh: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void refreshInBackground() {
+        try {
+            if (!fetchLock.tryLock()) {
+                // A blocking fetch is already running; it will publish the new set
+                return;
+            }
+            try {
+                fetchAndPublish();
+            } catch (RuntimeException e) {
+                // Already logged; the previous set stays in place until it is too stale
+            } finally {
+                fetchLock.unlock();
+            }
+        } finally {
+            backgroundRefreshPending.set(false);
+        }
+    }
+
     /**
-     * Checks if the cached JWK Set is still valid.
+     * Schedules the next background refresh, replacing any previously scheduled one.
      */
-    private boolean isCacheValid() {
-        if (cachedJwkSet == null) {
-            return false;
+    private void scheduleRefresh(long delayMillis) {
+        if (!backgroundRefresh || delayMillis <= 0 || refreshExecutor.isShutdown()) {
+            return;
+        }
+        ScheduledFuture<?> previous = scheduledRefresh;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        scheduledRefresh = refreshExecutor.schedule(() -> {
+            if (backgroundRefreshPending.compareAndSet(false, true)) {
+                refreshInBackground();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private JwkKeySet staleOrFail(JwkKeySet current, Exception failure) {
+        if (current != null && isServable(current)) {
+            log.warn("Serving stale JWK Set fetched at {} while the JWK endpoint is failing", current.getFetchedAt());
+            return current;
         }
+        String reason = failure != null ? failure.getMessage() : "retry backoff in effect";
+        throw new RuntimeException("Failed to fetch JWK Set: " + reason, failure);
+    }
+
+    /**
+     * Whether the set is still within its TTL plus the permitted staleness.
+     */
+    private boolean isServable(JwkKeySet keySet) {
+        long age = System.currentTimeMillis() - keySet.getFetchedAt();
+        return age < TimeUnit.MINUTES.toMillis(jwkCacheTtlMinutes) + TimeUnit.MINUTES.toMillis(maxStaleMinutes);
+    }
+
+    private boolean isBackingOff() {
+        return System.currentTimeMillis() < nextAttemptAt;
+    }
 
-        long ageMinutes = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - cachedJwkSetTime);
-        return ageMinutes < jwkCacheTtlMinutes;
+    private long refreshAheadMillis(long ttl) {
+        return Math.min(TimeUnit.SECONDS.toMillis(refreshAheadSeconds), ttl / 2);
     }
 
     /**
@@ -89,8 +454,19 @@ public class JwkSetProvider {
      */
     public void clearCache() {
         log.info("Clearing JWK Set cache");
-        this.cachedJwkSet = null;
-        this.cachedJwkSetTime = 0;
+        ScheduledFuture<?> previous = scheduledRefresh;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        this.cachedKeySet = null;
+        this.consecutiveFailures = 0;
+        this.nextAttemptAt = 0;
+        this.lastFailure = null;
+        this.lastUnknownKidRefreshAt = Long.MIN_VALUE;
     }
-}
 
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+}
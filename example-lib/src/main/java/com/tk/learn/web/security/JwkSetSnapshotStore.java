@@ -0,0 +1,88 @@
+package com.tk.learn.web.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * On-disk copy of the last successfully fetched JWK Set, used to warm {@link JwkSetProvider}
+ * on startup without a network call.
+ * <p>
+ * The file holds the JWK Set JSON exactly as served, so it can be inspected or replaced by
+ * hand; its last-modified time records when the set was fetched. Writes go to a temporary
+ * file in the same directory that is then moved over the snapshot, so a crash mid-write
+ * never leaves a truncated snapshot behind.
+ */
+final class JwkSetSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JwkSetSnapshotStore.class);
+
+    private final Path path;
+    private final long maxAgeMillis;
+
+    JwkSetSnapshotStore(Path path, long maxAgeMillis) {
+        this.path = path;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Loads the snapshot if it exists, is younger than the maximum age and parses.
+     *
+     * @return the key set with its original fetch time, or {@code null} if unusable
+     */
+    JwkKeySet load() {
+        try {
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            long fetchedAt = Files.getLastModifiedTime(path).toMillis();
+            long age = System.currentTimeMillis() - fetchedAt;
+            if (age > maxAgeMillis) {
+                log.info("Ignoring JWK Set snapshot {} older than the maximum age ({} ms)", path, age);
+                return null;
+            }
+            String json = Files.readString(path, StandardCharsets.UTF_8);
+            return JwkKeySet.parse(json, fetchedAt);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load JWK Set snapshot from {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Atomically replaces the snapshot with the given key set. Failures are logged, not thrown:
+     * the snapshot is an optimisation and must never fail a refresh.
+     */
+    void save(JwkKeySet keySet) {
+        Path temp = null;
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            Files.writeString(temp, keySet.getJson(), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(keySet.getFetchedAt()));
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.debug("Wrote JWK Set snapshot to {}", path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write JWK Set snapshot to {}: {}", path, e.getMessage());
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort; a stray temp file is harmless
+                }
+            }
+        }
+    }
+}
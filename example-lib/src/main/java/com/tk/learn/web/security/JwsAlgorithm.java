@@ -0,0 +1,75 @@
+package com.tk.learn.web.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * Asymmetric JWS signature algorithms accepted by {@link JwtTokenValidator}.
+ * <p>
+ * Symmetric ({@code HS*}) and unsecured ({@code none}) algorithms are deliberately absent,
+ * so a token can never select a verification mode that a public key could satisfy.
+ * ECDSA signatures in a JWS are the raw {@code R || S} concatenation, which the JDK
+ * verifies directly with its {@code *inP1363Format} signature variants.
+ */
+public enum JwsAlgorithm {
+
+    RS256("SHA256withRSA", "RSA"),
+    RS384("SHA384withRSA", "RSA"),
+    RS512("SHA512withRSA", "RSA"),
+    ES256("SHA256withECDSAinP1363Format", "EC"),
+    ES384("SHA384withECDSAinP1363Format", "EC"),
+    ES512("SHA512withECDSAinP1363Format", "EC");
+
+    private static final JwsAlgorithm[] VALUES = values();
+
+    private final String jcaName;
+    private final String keyAlgorithm;
+    private final byte[] headerValue;
+
+    JwsAlgorithm(String jcaName, String keyAlgorithm) {
+        this.jcaName = jcaName;
+        this.keyAlgorithm = keyAlgorithm;
+        this.headerValue = name().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * JCA {@link java.security.Signature} algorithm name.
+     */
+    public String getJcaName() {
+        return jcaName;
+    }
+
+    /**
+     * Whether {@code key} is of the family this algorithm signs with (RSA or EC).
+     */
+    public boolean isCompatibleWith(PublicKey key) {
+        return keyAlgorithm.equals(key.getAlgorithm());
+    }
+
+    /**
+     * Resolves a JWS {@code alg} value, or returns {@code null} if it is not supported.
+     */
+    public static JwsAlgorithm fromName(String name) {
+        for (JwsAlgorithm algorithm : VALUES) {
+            if (algorithm.name().equals(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the {@code alg} value held in {@code bytes[from, to)} without allocating,
+     * or returns {@code null} if it is not supported.
+     */
+    static JwsAlgorithm fromName(byte[] bytes, int from, int to) {
+        for (JwsAlgorithm algorithm : VALUES) {
+            byte[] value = algorithm.headerValue;
+            if (value.length == to - from && Arrays.equals(bytes, from, to, value, 0, value.length)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,114 @@
+package com.tk.learn.web.security;
+
+import java.util.List;
+
+/**
+ * Mutable holder for the JWT claims understood by {@link JwtTokenValidator}.
+ * <p>
+ * Filled in a single pass by {@link JwtClaimsParser}, header parameters first when the
+ * signature is verified. Timestamps are normalised to epoch milliseconds: {@code exp}/{@code iat}
+ * are converted from seconds, while the application claims {@code expiresAt}/{@code issuedAt}
+ * are taken as-is.
+ * <p>
+ * Instances are reused per thread by the validator, so {@link #reset()} must be called
+ * between tokens. The expected issuer/audience are inputs: when the payload carries an
+ * identical value, the parser assigns the expected String instead of decoding a new one.
+ */
+final class JwtClaims {
+
+    static final long ABSENT = Long.MIN_VALUE;
+
+    /** Expected issuer, or {@code null} when not validated. */
+    String expectedIssuer;
+
+    /** Expected audience, or {@code null} when not validated. */
+    String expectedAudience;
+
+    /** Header {@code alg}, or {@code null} if absent or not a supported algorithm. */
+    JwsAlgorithm algorithm;
+
+    /** Header {@code kid}, or {@code null} if absent. */
+    String keyId;
+
+    String userId;
+    String email;
+    String username;
+    String sessionId;
+    String issuer;
+
+    /** The expected audience when present in {@code aud}, otherwise the first audience value. */
+    String audience;
+
+    /** Whether {@code aud} (string or array) contains {@link #expectedAudience}. */
+    boolean audienceMatched;
+
+    /**
+     * Audiences of all trusted issuers in multi-issuer mode, or {@code null}. At most 64; the
+     * issuer is only known once the whole payload is read, so {@code aud} is matched against all.
+     */
+    String[] acceptedAudiences;
+
+    /** Bit {@code i} is set when {@code aud} contains {@code acceptedAudiences[i]}. */
+    long acceptedAudienceMask;
+
+    /** {@code roles} claim, or {@code null} if absent. */
+    List<String> roles;
+
+    /** {@code permissions} claim, or {@code null} if absent. */
+    List<String> permissions;
+
+    /** OAuth scopes from {@code scope} (space-delimited) or {@code scp}, or {@code null} if absent. */
+    List<String> scopes;
+
+    /** Registered {@code exp} claim in milliseconds, or {@link #ABSENT}. */
+    long exp = ABSENT;
+
+    /** Registered {@code iat} claim in milliseconds, or {@link #ABSENT}. */
+    long iat = ABSENT;
+
+    /** Application {@code expiresAt} claim in milliseconds, or {@link #ABSENT}. */
+    long expiresAt = ABSENT;
+
+    /** Application {@code issuedAt} claim in milliseconds, or {@link #ABSENT}. */
+    long issuedAt = ABSENT;
+
+    /**
+     * Effective expiry for the user details: {@code exp} wins over {@code expiresAt}.
+     */
+    long effectiveExpiresAt() {
+        return exp != ABSENT ? exp : expiresAt;
+    }
+
+    /**
+     * Effective issue time for the user details: {@code iat} wins over {@code issuedAt}.
+     */
+    long effectiveIssuedAt() {
+        return iat != ABSENT ? iat : issuedAt;
+    }
+
+    /**
+     * Clears inputs and parsed values so the holder can be reused for the next token.
+     */
+    void reset() {
+        expectedIssuer = null;
+        expectedAudience = null;
+        algorithm = null;
+        keyId = null;
+        userId = null;
+        email = null;
+        username = null;
+        sessionId = null;
+        issuer = null;
+        audience = null;
+        audienceMatched = false;
+        acceptedAudiences = null;
+        acceptedAudienceMask = 0;
+        roles = null;
+        permissions = null;
+        scopes = null;
+        exp = ABSENT;
+        iat = ABSENT;
+        expiresAt = ABSENT;
+        issuedAt = ABSENT;
+    }
+}
@@ -0,0 +1,744 @@
+package com.tk.learn.web.security;
+
+import com.tk.learn.model.exceptions.InvalidJwtTokenException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass streaming parser for decoded JWT payloads and JOSE headers.
+ * <p>
+ * Walks the UTF-8 payload bytes once, matching claim names in place against the known
+ * claim set and filling a {@link JwtClaims} holder. Unknown claims (including nested
+ * objects and arrays) are skipped without materialising them, and an issuer/audience equal
+ * to the expected value reuses that String, so the only allocations are the String values
+ * of the user claims that are actually used. Role, permission and scope claims are read as
+ * string lists.
+ * <p>
+ * Handles insignificant whitespace, escaped strings ({@code \n}, {@code \"}, {@code \\uXXXX}
+ * and friends) and numeric claims given either as JSON numbers or numeric strings.
+ * Instances are single-use and not thread-safe; use the static {@code parse} methods.
+ */
+final class JwtClaimsParser {
+
+    private static final int MAX_DEPTH = 32;
+    // Long.MAX_VALUE has 19 digits
+    private static final int MAX_LONG_DIGITS = 19;
+
+    private static final int UNKNOWN = -1;
+    private static final int USER_ID = 0;
+    private static final int EMAIL = 1;
+    private static final int USERNAME = 2;
+    private static final int SESSION_ID = 3;
+    private static final int ISSUER = 4;
+    private static final int AUDIENCE = 5;
+    private static final int EXP = 6;
+    private static final int IAT = 7;
+    private static final int EXPIRES_AT = 8;
+    private static final int ISSUED_AT = 9;
+    private static final int ROLES = 10;
+    private static final int PERMISSIONS = 11;
+    private static final int SCOPE = 12;
+    private static final int SCP = 13;
+
+    private static final int ALG = 0;
+    private static final int KID = 1;
+    private static final int CRIT = 2;
+
+    /** Claim names indexed by the claim ids above. */
+    private static final byte[][] CLAIM_NAMES = {
+            ascii("userId"),
+            ascii("email"),
+            ascii("username"),
+            ascii("sessionId"),
+            ascii("iss"),
+            ascii("aud"),
+            ascii("exp"),
+            ascii("iat"),
+            ascii("expiresAt"),
+            ascii("issuedAt"),
+            ascii("roles"),
+            ascii("permissions"),
+            ascii("scope"),
+            ascii("scp")
+    };
+
+    /** JOSE header parameter names indexed by the header ids above. */
+    private static final byte[][] HEADER_NAMES = {
+            ascii("alg"),
+            ascii("kid"),
+            ascii("crit")
+    };
+
+    private static final InvalidJwtTokenException INVALID_NUMBER =
+            InvalidJwtTokenException.stackless("Invalid number format in JWT payload");
+    private static final InvalidJwtTokenException UNSUPPORTED_CRITICAL =
+            InvalidJwtTokenException.stackless("Unsupported critical JWT header parameters");
+
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] NULL = ascii("null");
+
+    private final byte[] buf;
+    private final int end;
+    private final byte[][] names;
+    private int pos;
+
+    private JwtClaimsParser(byte[] buf, int offset, int length, byte[][] names) {
+        this.buf = buf;
+        this.pos = offset;
+        this.end = offset + length;
+        this.names = names;
+    }
+
+    /**
+     * Parses a complete JSON payload into a new claims holder.
+     */
+    static JwtClaims parse(byte[] json) {
+        return parse(json, 0, json.length, new JwtClaims());
+    }
+
+    /**
+     * Parses {@code length} bytes of JSON starting at {@code offset} into the given holder.
+     *
+     * @throws InvalidJwtTokenException if the payload is not a well-formed JSON object
+     *                                  or a numeric claim is not a valid number
+     */
+    static JwtClaims parse(byte[] json, int offset, int length, JwtClaims claims) {
+        JwtClaimsParser parser = new JwtClaimsParser(json, offset, length, CLAIM_NAMES);
+        parser.parseClaims(claims);
+        return claims;
+    }
+
+    /**
+     * Parses {@code length} bytes of a JOSE header starting at {@code offset}, filling
+     * {@link JwtClaims#algorithm} and {@link JwtClaims#keyId}.
+     *
+     * @throws InvalidJwtTokenException if the header is malformed or carries {@code crit}
+     *                                  parameters, none of which are understood
+     */
+    static JwtClaims parseHeader(byte[] json, int offset, int length, JwtClaims claims) {
+        JwtClaimsParser parser = new JwtClaimsParser(json, offset, length, HEADER_NAMES);
+        parser.parseClaims(claims);
+        return claims;
+    }
+
+    private void parseClaims(JwtClaims claims) {
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                int claim = readClaimName();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                readClaimValue(claim, claims);
+                skipWhitespace();
+                byte c = next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw malformed("expected ',' or '}' at offset " + (pos - 1));
+                }
+            }
+        }
+        skipWhitespace();
+        if (pos != end) {
+            throw malformed("unexpected trailing data at offset " + pos);
+        }
+    }
+
+    private void readClaimValue(int claim, JwtClaims claims) {
+        if (names == HEADER_NAMES) {
+            readHeaderValue(claim, claims);
+            return;
+        }
+        switch (claim) {
+            case USER_ID -> claims.userId = readText();
+            case EMAIL -> claims.email = readText();
+            case USERNAME -> claims.username = readText();
+            case SESSION_ID -> claims.sessionId = readText();
+            case ISSUER -> claims.issuer = readCanonical(claims.expectedIssuer);
+            case AUDIENCE -> readAudience(claims);
+            case EXP -> claims.exp = secondsToMillis(readNumber());
+            case IAT -> claims.iat = secondsToMillis(readNumber());
+            case EXPIRES_AT -> claims.expiresAt = readNumber();
+            case ISSUED_AT -> claims.issuedAt = readNumber();
+            case ROLES -> claims.roles = readStringList(false);
+            case PERMISSIONS -> claims.permissions = readStringList(false);
+            case SCOPE, SCP -> claims.scopes = readStringList(true);
+            default -> skipValue(0);
+        }
+    }
+
+    private void readHeaderValue(int parameter, JwtClaims claims) {
+        switch (parameter) {
+            case ALG -> claims.algorithm = readAlgorithm();
+            case KID -> claims.keyId = readText();
+            case CRIT -> throw UNSUPPORTED_CRITICAL;
+            default -> skipValue(0);
+        }
+    }
+
+    /**
+     * Resolves {@code alg} in place; unsupported or non-string values yield {@code null}.
+     */
+    private JwsAlgorithm readAlgorithm() {
+        if (peek() != '"') {
+            skipValue(0);
+            return null;
+        }
+        int start = pos + 1;
+        pos = start;
+        skipStringBody();
+        return JwsAlgorithm.fromName(buf, start, pos - 1);
+    }
+
+    /**
+     * Reads the claim name (positioned after its opening quote) and resolves it to a claim id
+     * without allocating, unless the name itself contains escapes.
+     */
+    private int readClaimName() {
+        int start = pos;
+        while (pos < end) {
+            byte c = buf[pos];
+            if (c == '"') {
+                int claim = nameId(names, buf, start, pos);
+                pos++;
+                return claim;
+            }
+            if (c == '\\') {
+                pos = start;
+                byte[] name = readStringBody().getBytes(StandardCharsets.UTF_8);
+                return nameId(names, name, 0, name.length);
+            }
+            pos++;
+        }
+        throw malformed("unterminated string");
+    }
+
+    private static int nameId(byte[][] names, byte[] bytes, int from, int to) {
+        int length = to - from;
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i];
+            if (name.length == length && Arrays.equals(bytes, from, to, name, 0, length)) {
+                return i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Reads a textual claim. Numbers are kept as their literal text; null, booleans,
+     * objects and arrays yield {@code null}.
+     */
+    private String readText() {
+        byte c = peek();
+        if (c == '"') {
+            pos++;
+            return readStringBody();
+        }
+        if (isNumberStart(c)) {
+            int start = pos;
+            scanNumber();
+            return new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+        }
+        skipValue(0);
+        return null;
+    }
+
+    /**
+     * Reads a claim holding an array of strings, or a single string treated as a one-element
+     * array ({@code splitSpaces} splits it on spaces instead, as for the OAuth {@code scope}
+     * claim). Non-string array elements are skipped; any other value yields {@code null}.
+     */
+    private List<String> readStringList(boolean splitSpaces) {
+        byte c = peek();
+        if (c == '"') {
+            pos++;
+            String value = readStringBody();
+            List<String> values = new ArrayList<>(splitSpaces ? 4 : 1);
+            if (!splitSpaces) {
+                values.add(value);
+                return values;
+            }
+            int from = 0;
+            for (int i = 0; i <= value.length(); i++) {
+                if (i == value.length() || value.charAt(i) == ' ') {
+                    if (i > from) {
+                        values.add(value.substring(from, i));
+                    }
+                    from = i + 1;
+                }
+            }
+            return values;
+        }
+        if (c != '[') {
+            skipValue(0);
+            return null;
+        }
+        pos++;
+        List<String> values = new ArrayList<>();
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return values;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() == '"') {
+                pos++;
+                values.add(readStringBody());
+            } else {
+                skipValue(1);
+            }
+            skipWhitespace();
+            byte sep = next();
+            if (sep == ']') {
+                return values;
+            }
+            if (sep != ',') {
+                throw malformed("expected ',' or ']' at offset " + (pos - 1));
+            }
+        }
+    }
+
+    /**
+     * Reads a textual claim, returning {@code canonical} itself when the raw payload value is
+     * byte-for-byte equal to it so that the expected issuer/audience never allocate.
+     */
+    private String readCanonical(String canonical) {
+        if (canonical == null || peek() != '"') {
+            return readText();
+        }
+        int start = pos + 1;
+        int stop = start;
+        while (stop < end && buf[stop] != '"' && buf[stop] != '\\') {
+            stop++;
+        }
+        if (stop < end && buf[stop] == '"' && asciiEquals(start, stop, canonical)) {
+            pos = stop + 1;
+            return canonical;
+        }
+        pos++;
+        return readStringBody();
+    }
+
+    private boolean asciiEquals(int from, int to, String value) {
+        if (to - from != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80 || buf[from + i] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads {@code aud}, which RFC 7519 allows to be a single string or an array of strings.
+     */
+    private void readAudience(JwtClaims claims) {
+        String expected = claims.expectedAudience;
+        claims.audience = null;
+        claims.audienceMatched = false;
+        byte c = peek();
+        if (c == '"') {
+            claims.audience = readAudienceValue(claims);
+            claims.audienceMatched = expected != null && expected.equals(claims.audience);
+            return;
+        }
+        if (c != '[') {
+            skipValue(0);
+            return;
+        }
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() == '"') {
+                String value = readAudienceValue(claims);
+                if (expected != null && expected.equals(value)) {
+                    claims.audience = value;
+                    claims.audienceMatched = true;
+                } else if (claims.audience == null) {
+                    claims.audience = value;
+                }
+            } else {
+                skipValue(1);
+            }
+            skipWhitespace();
+            byte sep = next();
+            if (sep == ']') {
+                return;
+            }
+            if (sep != ',') {
+                throw malformed("expected ',' or ']' at offset " + (pos - 1));
+            }
+        }
+    }
+
+    /**
+     * Reads one {@code aud} string. With {@link JwtClaims#acceptedAudiences} set, the raw value
+     * is compared in place against each of them and matches are recorded in
+     * {@link JwtClaims#acceptedAudienceMask}; otherwise it is read against the single expected audience.
+     */
+    private String readAudienceValue(JwtClaims claims) {
+        String[] accepted = claims.acceptedAudiences;
+        if (accepted == null) {
+            return readCanonical(claims.expectedAudience);
+        }
+        int start = pos + 1;
+        int stop = start;
+        while (stop < end && buf[stop] != '"' && buf[stop] != '\\') {
+            stop++;
+        }
+        if (stop < end && buf[stop] == '"') {
+            for (int i = 0; i < accepted.length; i++) {
+                if (asciiEquals(start, stop, accepted[i])) {
+                    claims.acceptedAudienceMask |= 1L << i;
+                    pos = stop + 1;
+                    return accepted[i];
+                }
+            }
+        }
+        pos++;
+        String value = readStringBody();
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i].equals(value)) {
+                claims.acceptedAudienceMask |= 1L << i;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reads a numeric claim given as a JSON number or a numeric string. Fractions are
+     * truncated. Returns {@link JwtClaims#ABSENT} for {@code null}.
+     */
+    private long readNumber() {
+        byte c = peek();
+        if (c == 'n') {
+            expectLiteral(NULL);
+            return JwtClaims.ABSENT;
+        }
+        int start;
+        int stop;
+        if (c == '"') {
+            pos++;
+            start = pos;
+            while (pos < end && buf[pos] != '"') {
+                pos++;
+            }
+            if (pos >= end) {
+                throw malformed("unterminated string");
+            }
+            stop = pos;
+            pos++;
+        } else if (isNumberStart(c)) {
+            start = pos;
+            scanNumber();
+            stop = pos;
+        } else {
+            throw invalidNumber();
+        }
+        return parseLong(start, stop);
+    }
+
+    private long parseLong(int start, int stop) {
+        int i = start;
+        boolean negative = i < stop && buf[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == stop) {
+            throw invalidNumber();
+        }
+        long value = 0;
+        try {
+            for (; i < stop; i++) {
+                byte c = buf[i];
+                if (c < '0' || c > '9') {
+                    return parseDecimal(start, stop);
+                }
+                value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+            }
+        } catch (ArithmeticException e) {
+            throw invalidNumber();
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a fraction or exponent literal, truncated to a long. The magnitude is checked
+     * before rescaling: {@code setScale} on a literal such as {@code 1e9999999} would compute
+     * a power of ten with millions of digits, and claims are parsed before the signature is
+     * verified.
+     */
+    private long parseDecimal(int start, int stop) {
+        try {
+            String literal = new String(buf, start, stop - start, StandardCharsets.US_ASCII);
+            BigDecimal value = new BigDecimal(literal);
+            if (value.signum() == 0) {
+                return 0;
+            }
+            // Number of digits before the decimal point
+            long integerDigits = (long) value.precision() - value.scale();
+            if (integerDigits <= 0) {
+                return 0;
+            }
+            if (integerDigits > MAX_LONG_DIGITS) {
+                throw invalidNumber();
+            }
+            return value.setScale(0, RoundingMode.DOWN).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw invalidNumber();
+        }
+    }
+
+    private static long secondsToMillis(long seconds) {
+        if (seconds == JwtClaims.ABSENT) {
+            return JwtClaims.ABSENT;
+        }
+        try {
+            return Math.multiplyExact(seconds, 1000L);
+        } catch (ArithmeticException e) {
+            throw invalidNumber();
+        }
+    }
+
+    /**
+     * Decodes a JSON string positioned after its opening quote and consumes the closing quote.
+     */
+    private String readStringBody() {
+        int start = pos;
+        while (pos < end) {
+            byte c = buf[pos];
+            if (c == '"') {
+                String value = new String(buf, start, pos - start, StandardCharsets.UTF_8);
+                pos++;
+                return value;
+            }
+            if (c == '\\') {
+                return readEscapedString(start);
+            }
+            if ((c & 0xFF) < 0x20) {
+                throw malformed("control character in string at offset " + pos);
+            }
+            pos++;
+        }
+        throw malformed("unterminated string");
+    }
+
+    /**
+     * Slow path for strings containing escapes. UTF-8 continuation bytes never collide
+     * with {@code '"'} or {@code '\\'}, so raw runs between escapes decode independently.
+     */
+    private String readEscapedString(int start) {
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        int runStart = start;
+        while (pos < end) {
+            byte c = buf[pos];
+            if (c == '"') {
+                sb.append(new String(buf, runStart, pos - runStart, StandardCharsets.UTF_8));
+                pos++;
+                return sb.toString();
+            }
+            if (c == '\\') {
+                sb.append(new String(buf, runStart, pos - runStart, StandardCharsets.UTF_8));
+                pos++;
+                sb.append(readEscape());
+                runStart = pos;
+            } else if ((c & 0xFF) < 0x20) {
+                throw malformed("control character in string at offset " + pos);
+            } else {
+                pos++;
+            }
+        }
+        throw malformed("unterminated string");
+    }
+
+    private char readEscape() {
+        byte c = next();
+        return switch (c) {
+            case '"' -> '"';
+            case '\\' -> '\\';
+            case '/' -> '/';
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> readUnicodeEscape();
+            default -> throw malformed("invalid escape sequence at offset " + (pos - 1));
+        };
+    }
+
+    private char readUnicodeEscape() {
+        if (end - pos < 4) {
+            throw malformed("truncated unicode escape");
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buf[pos++], 16);
+            if (digit < 0) {
+                throw malformed("invalid unicode escape at offset " + (pos - 1));
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    /**
+     * Skips any JSON value, including nested objects and arrays, without materialising it.
+     */
+    private void skipValue(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw malformed("nesting deeper than " + MAX_DEPTH);
+        }
+        byte c = peek();
+        switch (c) {
+            case '"' -> {
+                pos++;
+                skipStringBody();
+            }
+            case '{' -> skipContainer(depth, '}', true);
+            case '[' -> skipContainer(depth, ']', false);
+            case 't' -> expectLiteral(TRUE);
+            case 'f' -> expectLiteral(FALSE);
+            case 'n' -> expectLiteral(NULL);
+            default -> {
+                if (!isNumberStart(c)) {
+                    throw malformed("unexpected character at offset " + pos);
+                }
+                scanNumber();
+            }
+        }
+    }
+
+    private void skipContainer(int depth, char close, boolean object) {
+        pos++;
+        skipWhitespace();
+        if (peek() == close) {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            if (object) {
+                expect('"');
+                skipStringBody();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+            }
+            skipValue(depth + 1);
+            skipWhitespace();
+            byte c = next();
+            if (c == close) {
+                return;
+            }
+            if (c != ',') {
+                throw malformed("expected ',' or '" + close + "' at offset " + (pos - 1));
+            }
+        }
+    }
+
+    private void skipStringBody() {
+        while (pos < end) {
+            byte c = buf[pos++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                pos++;
+            } else if ((c & 0xFF) < 0x20) {
+                throw malformed("control character in string at offset " + (pos - 1));
+            }
+        }
+        throw malformed("unterminated string");
+    }
+
+    private void scanNumber() {
+        int start = pos;
+        while (pos < end) {
+            byte c = buf[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (pos == start) {
+            throw malformed("expected number at offset " + pos);
+        }
+    }
+
+    private static boolean isNumberStart(byte c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    private void expectLiteral(byte[] literal) {
+        if (end - pos < literal.length || !Arrays.equals(buf, pos, pos + literal.length, literal, 0, literal.length)) {
+            throw malformed("invalid literal at offset " + pos);
+        }
+        pos += literal.length;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte c = buf[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw malformed("expected '" + expected + "' at offset " + (pos - 1));
+        }
+    }
+
+    private byte peek() {
+        if (pos >= end) {
+            throw malformed("unexpected end of payload");
+        }
+        return buf[pos];
+    }
+
+    private byte next() {
+        byte c = peek();
+        pos++;
+        return c;
+    }
+
+    private static InvalidJwtTokenException malformed(String reason) {
+        return InvalidJwtTokenException.stackless("Malformed JWT payload: " + reason);
+    }
+
+    private static InvalidJwtTokenException invalidNumber() {
+        return INVALID_NUMBER;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,196 @@
+package com.tk.learn.web.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trusted issuers for multi-issuer JWT validation, e.g. PCF UAA and Azure AD side by side.
+ * <p>
+ * Each issuer has its own JWK Set URI and optional audience. {@link JwtTokenValidator} routes
+ * a token by its {@code iss} claim with a single map lookup and verifies it against that
+ * issuer's keys; every issuer gets an independent {@link JwkSetProvider}, so key caches,
+ * refresh schedules and failure backoff do not affect one another. Tokens from issuers not
+ * listed here are rejected. The provider settings ({@code jwt.jwk-cache-ttl-minutes} etc.)
+ * are shared with the default provider.
+ *
+ * Configuration:
+ * - jwt.multi-issuer.enabled: Enables multi-issuer mode (default: false)
+ * - jwt.multi-issuer.issuers[n].issuer: Exact {@code iss} value of a trusted issuer
+ * - jwt.multi-issuer.issuers[n].jwk-set-uri: JWK Set URL of that issuer
+ * - jwt.multi-issuer.issuers[n].audience: Expected audience for that issuer (optional)
+ *
+ * In this mode jwt.issuer, jwt.audience and jwt.jwk-set-uri are not used.
+ */
+@Component
+@ConfigurationProperties(prefix = "jwt.multi-issuer")
+@ConditionalOnProperty(
+    name = "jwt.multi-issuer.enabled",
+    havingValue = "true"
+)
+public class JwtIssuerRegistry implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtIssuerRegistry.class);
+
+    /** Audience matches are tracked in a 64-bit mask, see {@link JwtClaims#acceptedAudienceMask}. */
+    private static final int MAX_AUDIENCES = Long.SIZE;
+
+    private final JwkSetProvider defaultProvider;
+
+    private List<Issuer> issuers = new ArrayList<>();
+
+    private Map<String, IssuerRoute> routes = Map.of();
+    private String[] audiences;
+
+    @Autowired
+    public JwtIssuerRegistry(JwkSetProvider defaultProvider) {
+        this.defaultProvider = defaultProvider;
+    }
+
+    public List<Issuer> getIssuers() {
+        return issuers;
+    }
+
+    public void setIssuers(List<Issuer> issuers) {
+        this.issuers = issuers;
+    }
+
+    /**
+     * Builds the routing table and starts one key set provider per issuer.
+     *
+     * @throws IllegalStateException if no issuers are configured or an entry is incomplete
+     */
+    @Override
+    public void afterPropertiesSet() {
+        if (issuers == null || issuers.isEmpty()) {
+            throw new IllegalStateException("jwt.multi-issuer.enabled is set but no jwt.multi-issuer.issuers are configured");
+        }
+
+        Map<String, IssuerRoute> byIssuer = new HashMap<>();
+        List<String> distinctAudiences = new ArrayList<>();
+        for (Issuer issuer : issuers) {
+            if (!hasText(issuer.getIssuer()) || !hasText(issuer.getJwkSetUri())) {
+                throw new IllegalStateException("Each jwt.multi-issuer.issuers entry needs issuer and jwk-set-uri");
+            }
+            int audienceIndex = -1;
+            if (hasText(issuer.getAudience())) {
+                audienceIndex = distinctAudiences.indexOf(issuer.getAudience());
+                if (audienceIndex < 0) {
+                    audienceIndex = distinctAudiences.size();
+                    distinctAudiences.add(issuer.getAudience());
+                }
+            }
+            if (audienceIndex >= MAX_AUDIENCES) {
+                throw new IllegalStateException("At most " + MAX_AUDIENCES + " distinct audiences are supported");
+            }
+            JwkSetProvider provider = defaultProvider.forJwkSetUri(issuer.getJwkSetUri());
+            IssuerRoute route = new IssuerRoute(issuer.getIssuer(), provider,
+                    audienceIndex < 0 ? null : issuer.getAudience(), audienceIndex);
+            if (byIssuer.putIfAbsent(issuer.getIssuer(), route) != null) {
+                throw new IllegalStateException("Duplicate jwt.multi-issuer issuer: " + issuer.getIssuer());
+            }
+        }
+
+        this.routes = Map.copyOf(byIssuer);
+        this.audiences = distinctAudiences.toArray(new String[0]);
+        for (IssuerRoute route : routes.values()) {
+            route.jwkSetProvider().afterPropertiesSet();
+        }
+        log.info("Multi-issuer JWT validation enabled for issuers: {}", routes.keySet());
+    }
+
+    /**
+     * Resolves the route for a token's {@code iss} claim.
+     *
+     * @return the route, or {@code null} if the issuer is not trusted
+     */
+    IssuerRoute route(String issuer) {
+        return issuer == null ? null : routes.get(issuer);
+    }
+
+    /**
+     * Distinct audiences of all issuers; index {@code i} corresponds to {@link IssuerRoute#audienceIndex()}.
+     */
+    String[] audiences() {
+        return audiences;
+    }
+
+    /**
+     * Clears every issuer's JWK Set cache.
+     */
+    public void clearCaches() {
+        for (IssuerRoute route : routes.values()) {
+            route.jwkSetProvider().clearCache();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (IssuerRoute route : routes.values()) {
+            route.jwkSetProvider().destroy();
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    /**
+     * A trusted issuer as configured under {@code jwt.multi-issuer.issuers}.
+     */
+    public static class Issuer {
+
+        private String issuer;
+        private String jwkSetUri;
+        private String audience;
+
+        public Issuer() {
+        }
+
+        public Issuer(String issuer, String jwkSetUri, String audience) {
+            this.issuer = issuer;
+            this.jwkSetUri = jwkSetUri;
+            this.audience = audience;
+        }
+
+        public String getIssuer() {
+            return issuer;
+        }
+
+        public void setIssuer(String issuer) {
+            this.issuer = issuer;
+        }
+
+        public String getJwkSetUri() {
+            return jwkSetUri;
+        }
+
+        public void setJwkSetUri(String jwkSetUri) {
+            this.jwkSetUri = jwkSetUri;
+        }
+
+        public String getAudience() {
+            return audience;
+        }
+
+        public void setAudience(String audience) {
+            this.audience = audience;
+        }
+    }
+
+    /**
+     * Resolved issuer: its key set provider and expected audience ({@code null} if not checked).
+     */
+    record IssuerRoute(String issuer, JwkSetProvider jwkSetProvider, String audience, int audienceIndex) {
+    }
+}
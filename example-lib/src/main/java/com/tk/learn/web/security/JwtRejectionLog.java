@@ -0,0 +1,72 @@
+package com.tk.learn.web.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate-limited, aggregated logging of rejected JWT tokens.
+ * <p>
+ * The first rejection of each interval is logged at WARN with its reason; later ones in the
+ * same interval are only counted per reason (and logged at DEBUG). The counts are reported
+ * in one summary line when the next interval starts, so a flood of bad tokens produces a
+ * bounded number of log lines. At most {@link #MAX_TRACKED_REASONS} distinct reasons are
+ * tracked per interval, since reasons may contain values taken from the token.
+ */
+final class JwtRejectionLog {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtTokenValidator.class);
+
+    private static final int MAX_TRACKED_REASONS = 32;
+    private static final String OTHER_REASONS = "other";
+
+    private final LongAdder total = new LongAdder();
+    private final Map<String, LongAdder> suppressed = new ConcurrentHashMap<>();
+    private final AtomicLong intervalStart = new AtomicLong(Long.MIN_VALUE);
+
+    void record(String reason, long intervalMillis) {
+        total.increment();
+        long now = System.currentTimeMillis();
+        long start = intervalStart.get();
+        if ((start == Long.MIN_VALUE || now - start >= intervalMillis) && intervalStart.compareAndSet(start, now)) {
+            if (start != Long.MIN_VALUE) {
+                reportSuppressed(now - start);
+            }
+            log.warn("JWT token validation failed: {}", reason);
+            return;
+        }
+
+        String key = reason;
+        if (!suppressed.containsKey(key) && suppressed.size() >= MAX_TRACKED_REASONS) {
+            key = OTHER_REASONS;
+        }
+        suppressed.computeIfAbsent(key, k -> new LongAdder()).increment();
+        log.debug("JWT token validation failed: {}", reason);
+    }
+
+    long getTotal() {
+        return total.sum();
+    }
+
+    private void reportSuppressed(long elapsedMillis) {
+        if (suppressed.isEmpty()) {
+            return;
+        }
+        Map<String, Long> counts = new TreeMap<>();
+        long sum = 0;
+        for (String reason : suppressed.keySet()) {
+            LongAdder counter = suppressed.remove(reason);
+            if (counter != null) {
+                long count = counter.sum();
+                counts.put(reason, count);
+                sum += count;
+            }
+        }
+        log.warn("{} further JWT tokens rejected in the last {} ms: {}", sum, elapsedMillis, counts);
+    }
+}
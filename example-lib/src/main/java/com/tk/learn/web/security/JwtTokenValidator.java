@@ -1,5 +1,6 @@
 package com.tk.learn.web.security;
 
+import com.tk.learn.model.dto.AuthorityDictionary;
 import com.tk.learn.model.dto.UserDetailsDto;
 import com.tk.learn.model.exceptions.InvalidJwtTokenException;
 import org.slf4j.Logger;
@@ -9,20 +10,37 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import java.util.Base64;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 /**
  * Production-grade JWT token validator with JWK Set support using JJWT library.
  *
  * Features:
  * - Validates JWT format and claims
- * - Extracts and validates JWT claims
- * - Supports OAuth2/OIDC compliant JWK endpoints for signature verification
+ * - Extracts and validates JWT claims in a single streaming pass (see {@link JwtClaimsParser})
+ * - Verifies RS256/384/512 and ES256/384/512 signatures against keys from an OAuth2/OIDC
+ *   compliant JWK endpoint, resolved by {@code kid} from {@link JwkSetProvider}
  * - Handles claim validation including expiration and issuer/audience
  * - Thread-safe with proper error handling
- * - Ready for JJWT signature verification with JWK Set
+ * - Caches successfully validated tokens by digest until their expiry
+ * - Validates batches of tokens with per-token results (see {@link #validateAll(List, ForkJoinPool)})
+ * - Rejects malformed tokens with cheap structural checks before any decoding, using
+ *   stackless exceptions and rate-limited, aggregated logging (see {@link JwtRejectionLog})
+ * - Optionally trusts several issuers, each with its own keys and audience, routed by the
+ *   {@code iss} claim (see {@link JwtIssuerRegistry})
+ * - Extracts {@code roles}, {@code permissions} and OAuth scopes ({@code scope}/{@code scp});
+ *   scopes are used as permissions when the token has no {@code permissions} claim
  *
  * Configuration:
  * - jwt.jwk-set-uri: URL to fetch JWK Set (for production signature validation)
@@ -30,10 +48,13 @@ import java.util.Map;
  * - jwt.token-prefix: Bearer prefix (default: "Bearer ")
  * - jwt.issuer: Expected token issuer (optional)
  * - jwt.audience: Expected token audience (optional)
+ * - jwt.token-cache.*: Verified token cache, see {@link VerifiedTokenCache}
+ * - jwt.multi-issuer.*: Multi-issuer mode, see {@link JwtIssuerRegistry}
+ * - jwt.max-token-length: Longest accepted token, excluding the prefix (default: 16384)
+ * - jwt.rejection-log.interval-seconds: Interval for aggregated rejection logging (default: 10)
  *
- * Note: For production use with JWK Set and proper signature verification,
- * implement custom JJWT SigningKeyResolver to fetch keys from jwk-set-uri.
- * See JWT-JJWT-GUIDE.md for implementation details.
+ * Note: Signatures are only verified when jwt.jwk-set-uri is configured; without it tokens
+ * are accepted on their claims alone and a warning is logged once.
  */
 @Component
 public class JwtTokenValidator {
@@ -49,14 +70,61 @@ public class JwtTokenValidator {
     @Value("${jwt.audience:#{null}}")
     private String expectedAudience;
 
-    private static final String TOKEN_DELIMITER = "\\.";
-    private static final int EXPECTED_TOKEN_PARTS = 3;
+    @Value("${jwt.max-token-length:16384}")
+    private int maxTokenLength = 16384;
+
+    @Value("${jwt.rejection-log.interval-seconds:10}")
+    private long rejectionLogIntervalSeconds = 10;
+
+    private static final char TOKEN_DELIMITER = '.';
+
+    // Shared, stackless rejections for reasons that carry no request-specific detail
+    private static final InvalidJwtTokenException MISSING_TOKEN =
+            InvalidJwtTokenException.stackless("JWT token is missing or empty");
+    private static final InvalidJwtTokenException INVALID_FORMAT =
+            InvalidJwtTokenException.stackless("Invalid JWT token format: expected 3 parts (header.payload.signature)");
+    private static final InvalidJwtTokenException INVALID_CHARACTER =
+            InvalidJwtTokenException.stackless("Invalid JWT token format: character outside the Base64URL alphabet");
+    private static final InvalidJwtTokenException TOKEN_TOO_LONG =
+            InvalidJwtTokenException.stackless("Invalid JWT token format: token exceeds the maximum length");
+    private static final InvalidJwtTokenException UNSUPPORTED_ALGORITHM =
+            InvalidJwtTokenException.stackless("Missing or unsupported JWT signature algorithm");
+    private static final InvalidJwtTokenException INVALID_SIGNATURE =
+            InvalidJwtTokenException.stackless("JWT signature verification failed");
+    private static final InvalidJwtTokenException EXPIRED =
+            InvalidJwtTokenException.stackless("JWT token has expired");
+    private static final InvalidJwtTokenException MISSING_USER_ID =
+            InvalidJwtTokenException.stackless("JWT payload missing required field: userId");
+
+    /** Token-supplied values quoted in rejection reasons are cut to this many characters. */
+    private static final int MAX_LOGGED_CLAIM_CHARS = 64;
+
+    /** Decode buffers larger than this are used once and not retained. */
+    private static final int MAX_RETAINED_BUFFER_BYTES = 16 * 1024;
+
+    private static final ScratchPool<DecodeScratch> DECODE_SCRATCH = ScratchPool.forProcessors(DecodeScratch::new);
 
     private final JwkSetProvider jwkSetProvider;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final JwtIssuerRegistry issuerRegistry;
+    private final AtomicBoolean unverifiedWarningLogged = new AtomicBoolean();
+    private final JwtRejectionLog rejectionLog = new JwtRejectionLog();
+
+    public JwtTokenValidator(JwkSetProvider jwkSetProvider) {
+        this(jwkSetProvider, null);
+    }
+
+    public JwtTokenValidator(JwkSetProvider jwkSetProvider, VerifiedTokenCache verifiedTokenCache) {
+        this(jwkSetProvider, verifiedTokenCache, null);
+    }
 
     @Autowired
-    public JwtTokenValidator(@Autowired(required = false) JwkSetProvider jwkSetProvider) {
+    public JwtTokenValidator(@Autowired(required = false) JwkSetProvider jwkSetProvider,
+                             @Autowired(required = false) VerifiedTokenCache verifiedTokenCache,
+                             @Autowired(required = false) JwtIssuerRegistry issuerRegistry) {
         this.jwkSetProvider = jwkSetProvider;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.issuerRegistry = issuerRegistry;
     }
 
     /**
@@ -67,18 +135,124 @@ public class JwtTokenValidator {
      * @throws InvalidJwtTokenException if token is invalid or verification fails
      */
     public UserDetailsDto validateAndExtractClaims(String token) {
-        if (!StringUtils.hasText(token)) {
-            throw new InvalidJwtTokenException("JWT token is missing or empty");
+        UserDetailsDto userDetails = validate(token);
+        log.info("JWT token validated successfully for user: {}", userDetails.getUserId());
+        return userDetails;
+    }
+
+    /**
+     * Validates a batch of tokens, e.g. from a message queue listener, without throwing.
+     *
+     * @param tokens the tokens to validate (with or without Bearer prefix)
+     * @return one result per token, in the same order
+     * @see #validateAll(List, ForkJoinPool)
+     */
+    public List<TokenValidationResult> validateAll(List<String> tokens) {
+        return validateAll(tokens, null);
+    }
+
+    /**
+     * Validates a batch of tokens without throwing. Identical tokens within the batch are
+     * validated once; each occurrence gets its own copy of the user details. With a pool,
+     * the distinct tokens are validated in parallel on it, which pays off for large batches
+     * of tokens needing signature verification.
+     *
+     * @param tokens the tokens to validate (with or without Bearer prefix)
+     * @param pool the pool to spread validation across, or {@code null} to validate on the caller's thread
+     * @return one result per token, in the same order
+     */
+    public List<TokenValidationResult> validateAll(List<String> tokens, ForkJoinPool pool) {
+        int size = tokens.size();
+
+        // Map each position to the index of its distinct token
+        Map<String, Integer> distinctIndex = new HashMap<>(Math.max(16, size * 4 / 3 + 1));
+        List<String> distinct = new ArrayList<>(size);
+        int[] slots = new int[size];
+        for (int i = 0; i < size; i++) {
+            String token = tokens.get(i);
+            Integer index = distinctIndex.putIfAbsent(token, distinct.size());
+            if (index == null) {
+                index = distinct.size();
+                distinct.add(token);
+            }
+            slots[i] = index;
         }
 
+        TokenValidationResult[] verdicts = new TokenValidationResult[distinct.size()];
+        if (pool == null || verdicts.length < 2) {
+            for (int i = 0; i < verdicts.length; i++) {
+                verdicts[i] = validateForBatch(distinct.get(i));
+            }
+        } else {
+            // join() makes the workers' writes to verdicts visible here
+            pool.submit(() -> IntStream.range(0, verdicts.length).parallel()
+                    .forEach(i -> verdicts[i] = validateForBatch(distinct.get(i))))
+                    .join();
+        }
+
+        List<TokenValidationResult> results = new ArrayList<>(size);
+        boolean[] handedOut = new boolean[verdicts.length];
+        int valid = 0;
+        for (int i = 0; i < size; i++) {
+            int index = slots[i];
+            TokenValidationResult verdict = verdicts[index];
+            results.add(handedOut[index] ? verdict.copy() : verdict);
+            handedOut[index] = true;
+            if (verdict.isValid()) {
+                valid++;
+            }
+        }
+        log.info("Validated JWT batch: {} tokens ({} distinct), {} valid", size, verdicts.length, valid);
+        return results;
+    }
+
+    private TokenValidationResult validateForBatch(String token) {
         try {
-            // Remove Bearer prefix if present
-            String cleanToken = removeTokenPrefix(token);
+            return TokenValidationResult.valid(validate(token));
+        } catch (InvalidJwtTokenException e) {
+            return TokenValidationResult.invalid(e);
+        }
+    }
+
+    private UserDetailsDto validate(String token) {
+        DecodeScratch scratch = DECODE_SCRATCH.acquire();
+        try {
+            return validate(token, scratch);
+        } finally {
+            DECODE_SCRATCH.release(scratch);
+        }
+    }
+
+    private UserDetailsDto validate(String token, DecodeScratch scratch) {
+        try {
+            if (!StringUtils.hasText(token)) {
+                throw MISSING_TOKEN;
+            }
+
+            // Skip Bearer prefix if present
+            int tokenStart = tokenStart(token);
+
+            // Structural checks first: garbage is rejected before hashing or decoding anything
+            long segments = locateSegments(token, tokenStart);
+            int firstDot = (int) (segments >>> 32);
+            int secondDot = (int) segments;
+
+            // Tokens are re-sent many times within their lifetime; reuse the earlier verdict
+            VerifiedTokenCache.TokenDigest digest = verifiedTokenCache != null
+                    ? verifiedTokenCache.digest(token, tokenStart)
+                    : null;
+            if (digest != null) {
+                UserDetailsDto cached = verifiedTokenCache.get(digest);
+                if (cached != null) {
+                    log.debug("JWT token found in verified token cache for user: {}", cached.getUserId());
+                    return cached;
+                }
+            }
 
             log.debug("Starting JWT validation for token");
 
-            // Parse token: validate format and extract payload
-            Map<String, Object> claims = parseToken(cleanToken);
+            // Parse token: decode segments, extract claims and verify the signature
+            JwtClaims claims = parseToken(token, tokenStart, firstDot, secondDot, scratch);
 
             // Validate claims
             validateClaims(claims);
@@ -86,166 +260,281 @@ public class JwtTokenValidator {
             // Extract user details from claims
             UserDetailsDto userDetails = extractUserDetails(claims);
 
-            log.info("JWT token validated successfully for user: {}", userDetails.getUserId());
+            if (digest != null) {
+                verifiedTokenCache.put(digest, userDetails);
+            }
             return userDetails;
 
         } catch (InvalidJwtTokenException e) {
-            log.warn("JWT token validation failed: {}", e.getMessage());
+            rejectionLog.record(e.getMessage(), TimeUnit.SECONDS.toMillis(rejectionLogIntervalSeconds));
             throw e;
         } catch (Exception e) {
-            log.error("Unexpected error during JWT validation: {}", e.getMessage(), e);
-            throw new InvalidJwtTokenException("JWT validation failed: " + e.getMessage(), e);
+            // Typically the key lookup failing for every request while the JWK Set endpoint is
+            // down; keyed by type so the rejection log aggregates it into one line per interval
+            String reason = "JWT validation failed: " + e.getClass().getSimpleName();
+            rejectionLog.record(reason, TimeUnit.SECONDS.toMillis(rejectionLogIntervalSeconds));
+            log.debug("Unexpected error during JWT validation", e);
+            throw InvalidJwtTokenException.stackless(reason + ": " + loggable(e.getMessage()), e);
+        } finally {
+            // Don't keep the previous user's claims reachable from the reused scratch
+            scratch.claims.reset();
         }
     }
 
     /**
-     * Parses JWT token and extracts claims from payload.
+     * Finds the two segment delimiters in a single scan that also enforces the length bound
+     * and the Base64URL alphabet, so malformed tokens cost one pass over their characters.
+     *
+     * @return the first dot's index in the high 32 bits and the second dot's in the low 32 bits
      */
-    private Map<String, Object> parseToken(String token) {
-        try {
-            // Validate token format (3 parts: header.payload.signature)
-            String[] parts = token.split(TOKEN_DELIMITER);
-            if (parts.length != EXPECTED_TOKEN_PARTS) {
-                throw new InvalidJwtTokenException("Invalid JWT token format: expected 3 parts, got " + parts.length);
+    private long locateSegments(String token, int tokenStart) {
+        int end = token.length();
+        if (end - tokenStart > maxTokenLength) {
+            throw TOKEN_TOO_LONG;
+        }
+        int firstDot = -1;
+        int secondDot = -1;
+        for (int i = tokenStart; i < end; i++) {
+            char c = token.charAt(i);
+            if (c == TOKEN_DELIMITER) {
+                if (firstDot < 0) {
+                    firstDot = i;
+                } else if (secondDot < 0) {
+                    secondDot = i;
+                } else {
+                    throw INVALID_FORMAT;
+                }
+            } else if (!Base64UrlDecoder.isAlphabet(c) && c != '=') {
+                throw INVALID_CHARACTER;
             }
+        }
+        // header, payload and signature must all be present
+        if (secondDot < 0 || firstDot == tokenStart || secondDot == firstDot + 1 || secondDot == end - 1) {
+            throw INVALID_FORMAT;
+        }
+        return ((long) firstDot << 32) | secondDot;
+    }
 
-            // Decode and parse payload (part[1])
-            String payload = decodePayload(parts[1]);
-            return parseJsonPayload(payload);
+    /**
+     * Parses JWT token, verifies its signature and extracts claims from payload.
+     * <p>
+     * The segments are located by index and each one is Base64URL-decoded straight from
+     * the token into reusable scratch buffers, then parsed in place into the scratch's
+     * reusable {@link JwtClaims}; no substrings, split arrays or payload copies are created.
+     * The payload is parsed before the signature is checked so that, in multi-issuer mode,
+     * {@code iss} selects the keys; no claim is used before the signature is verified.
+     */
+    private JwtClaims parseToken(String token, int tokenStart, int firstDot, int secondDot, DecodeScratch scratch) {
+        // Header (part[0]): alg and kid, needed to verify the signature
+        boolean verify = isSignatureVerificationEnabled();
+        JwtClaims claims = scratch.claims;
+        if (verify) {
+            parseHeader(token, tokenStart, firstDot, scratch);
+        }
 
-        } catch (InvalidJwtTokenException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new InvalidJwtTokenException("Failed to parse JWT token: " + e.getMessage(), e);
+        // Decode payload (part[1]) and parse its claims in a single pass
+        byte[] buffer = scratch.segmentBuffer(Base64UrlDecoder.maxDecodedLength(secondDot - firstDot - 1));
+        int length = decodePayload(token, firstDot + 1, secondDot, buffer);
+
+        if (issuerRegistry != null) {
+            claims.acceptedAudiences = issuerRegistry.audiences();
+        } else {
+            claims.expectedIssuer = StringUtils.hasText(expectedIssuer) ? expectedIssuer : null;
+            claims.expectedAudience = StringUtils.hasText(expectedAudience) ? expectedAudience : null;
+        }
+        JwtClaimsParser.parse(buffer, 0, length, claims);
+
+        // Verify the signature over header.payload before trusting any claim
+        JwkSetProvider keyProvider = issuerRegistry != null ? routeIssuer(claims) : jwkSetProvider;
+        if (verify) {
+            verifySignature(token, tokenStart, secondDot, keyProvider, scratch);
+        }
+        return claims;
+    }
+
+    private void parseHeader(String token, int tokenStart, int firstDot, DecodeScratch scratch) {
+        byte[] header = scratch.segmentBuffer(Base64UrlDecoder.maxDecodedLength(firstDot - tokenStart));
+        int headerLength = decodeSegment(token, tokenStart, firstDot, header, "header");
+        JwtClaimsParser.parseHeader(header, 0, headerLength, scratch.claims);
+        if (scratch.claims.algorithm == null) {
+            throw UNSUPPORTED_ALGORITHM;
         }
     }
 
     /**
-     * Decodes the Base64 payload portion of the JWT.
+     * Multi-issuer mode: resolves the token's issuer and checks its audience.
+     *
+     * @return the issuer's key set provider
      */
-    private String decodePayload(String encodedPayload) {
-        try {
-            byte[] decodedBytes = Base64.getUrlDecoder().decode(encodedPayload);
-            return new String(decodedBytes);
-        } catch (IllegalArgumentException e) {
-            throw new InvalidJwtTokenException("Failed to decode JWT payload: invalid Base64", e);
+    private JwkSetProvider routeIssuer(JwtClaims claims) {
+        JwtIssuerRegistry.IssuerRoute route = issuerRegistry.route(claims.issuer);
+        if (route == null) {
+            throw InvalidJwtTokenException.stackless("JWT issuer not trusted: " + loggable(claims.issuer));
         }
+        if (route.audience() != null && (claims.acceptedAudienceMask & (1L << route.audienceIndex())) == 0) {
+            throw InvalidJwtTokenException.stackless(
+                    "JWT audience mismatch. Expected: " + route.audience() + ", got: " + loggable(claims.audience)
+            );
+        }
+        return route.jwkSetProvider();
     }
 
     /**
-     * Parses JSON payload string into map.
+     * Verifies the JWS signature using the pre-decoded key for the header's {@code kid}:
+     * a map lookup in {@link JwkSetProvider} followed by a JCA signature check with the
+     * scratch's cached {@link Signature} instance.
      */
-    private Map<String, Object> parseJsonPayload(String payload) {
-        try {
-            // Simple JSON parsing for basic JWT claims
-            Map<String, Object> claims = new HashMap<>();
-
-            // Extract string fields
-            claims.put("userId", extractJsonField(payload, "userId"));
-            claims.put("email", extractJsonField(payload, "email"));
-            claims.put("username", extractJsonField(payload, "username"));
-            claims.put("sessionId", extractJsonField(payload, "sessionId"));
-            claims.put("iss", extractJsonField(payload, "iss"));
-            claims.put("aud", extractJsonField(payload, "aud"));
-
-            // Extract numeric fields (timestamps)
-            String expStr = extractJsonField(payload, "exp");
-            if (StringUtils.hasText(expStr)) {
-                claims.put("exp", Long.parseLong(expStr) * 1000); // Convert to milliseconds
-            }
+    private void verifySignature(String token, int tokenStart, int secondDot, JwkSetProvider keyProvider,
+                                 DecodeScratch scratch) {
+        JwtClaims claims = scratch.claims;
+        JwsAlgorithm algorithm = claims.algorithm;
+
+        VerificationKey key = keyProvider.getVerificationKey(claims.keyId);
+        if (key == null) {
+            throw InvalidJwtTokenException.stackless("No JWK found for key id: " + loggable(claims.keyId));
+        }
+        if (!key.supports(algorithm)) {
+            throw InvalidJwtTokenException.stackless("JWT algorithm " + algorithm + " not permitted for key id: " + loggable(claims.keyId));
+        }
 
-            String iatStr = extractJsonField(payload, "iat");
-            if (StringUtils.hasText(iatStr)) {
-                claims.put("iat", Long.parseLong(iatStr) * 1000); // Convert to milliseconds
-            }
+        // Signing input is the ASCII text of header.payload (the alphabet was checked up front)
+        int inputLength = secondDot - tokenStart;
+        byte[] signingInput = scratch.signingInputBuffer(inputLength);
+        for (int i = 0; i < inputLength; i++) {
+            signingInput[i] = (byte) token.charAt(tokenStart + i);
+        }
 
-            return claims;
+        // Signature (part[2])
+        byte[] signature = scratch.signatureBuffer(Base64UrlDecoder.maxDecodedLength(token.length() - secondDot - 1));
+        int signatureLength = decodeSegment(token, secondDot + 1, token.length(), signature, "signature");
 
-        } catch (NumberFormatException e) {
-            throw new InvalidJwtTokenException("Invalid number format in JWT payload", e);
+        try {
+            Signature verifier = scratch.verifier(algorithm);
+            verifier.initVerify(key.publicKey());
+            verifier.update(signingInput, 0, inputLength);
+            if (!verifier.verify(signature, 0, signatureLength)) {
+                throw INVALID_SIGNATURE;
+            }
+        } catch (InvalidKeyException | SignatureException e) {
+            throw InvalidJwtTokenException.stackless("JWT signature verification failed: " + e.getMessage());
         }
     }
 
+    private boolean isSignatureVerificationEnabled() {
+        if (issuerRegistry != null) {
+            // Every trusted issuer has a JWK Set URI
+            return true;
+        }
+        if (jwkSetProvider != null && jwkSetProvider.isConfigured()) {
+            return true;
+        }
+        if (unverifiedWarningLogged.compareAndSet(false, true)) {
+            log.warn("jwt.jwk-set-uri is not configured; JWT signatures are NOT verified");
+        }
+        return false;
+    }
+
     /**
-     * Simple JSON field extractor for string values.
-     * For production, use Jackson or Gson for proper JSON parsing.
+     * Makes a token-supplied value safe to quote in a rejection reason, which is logged at
+     * WARN and aggregated into summary lines: control and line separator characters are
+     * replaced so a crafted {@code kid} cannot forge log lines, and the value is cut to
+     * {@link #MAX_LOGGED_CLAIM_CHARS} characters so it cannot bloat them.
      */
-    private String extractJsonField(String json, String fieldName) {
-        // Match patterns: "fieldName":"value" or "fieldName":123
-        String pattern = "\"" + fieldName + "\":\"([^\"]*)\"";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
+    static String loggable(String value) {
+        if (value == null) {
+            return null;
+        }
+        int length = Math.min(value.length(), MAX_LOGGED_CLAIM_CHARS);
+        StringBuilder sb = new StringBuilder(length + 3);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            int type = Character.getType(c);
+            boolean unsafe = Character.isISOControl(c)
+                    || type == Character.LINE_SEPARATOR || type == Character.PARAGRAPH_SEPARATOR;
+            sb.append(unsafe ? '?' : c);
         }
+        if (value.length() > MAX_LOGGED_CLAIM_CHARS) {
+            sb.append("...");
+        }
+        return sb.toString();
+    }
 
-        // Try numeric pattern
-        pattern = "\"" + fieldName + "\":([0-9]+)";
-        p = java.util.regex.Pattern.compile(pattern);
-        m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
+    private int decodeSegment(String token, int from, int to, byte[] buffer, String segment) {
+        try {
+            return Base64UrlDecoder.decode(token, from, to, buffer);
+        } catch (IllegalArgumentException e) {
+            throw InvalidJwtTokenException.stackless("Failed to decode JWT " + segment + ": invalid Base64");
         }
+    }
 
-        return null;
+    /**
+     * Decodes the Base64URL payload segment {@code token[from, to)} into {@code buffer}.
+     *
+     * @return the number of decoded bytes
+     */
+    private int decodePayload(String token, int from, int to, byte[] buffer) {
+        return decodeSegment(token, from, to, buffer, "payload");
     }
 
     /**
      * Validates JWT claims (expiration, issuer, audience).
      */
-    private void validateClaims(Map<String, Object> claims) {
+    private void validateClaims(JwtClaims claims) {
         // Check expiration
-        Long exp = (Long) claims.get("exp");
-        if (exp != null && exp < System.currentTimeMillis()) {
-            throw new InvalidJwtTokenException("JWT token has expired");
+        if (claims.exp != JwtClaims.ABSENT && claims.exp < System.currentTimeMillis()) {
+            throw EXPIRED;
+        }
+
+        // Issuer and audience were checked when routing in multi-issuer mode
+        if (issuerRegistry != null) {
+            return;
         }
 
         // Validate issuer if configured
-        if (StringUtils.hasText(expectedIssuer)) {
-            String issuer = (String) claims.get("iss");
-            if (!expectedIssuer.equals(issuer)) {
-                throw new InvalidJwtTokenException(
-                        "JWT issuer mismatch. Expected: " + expectedIssuer + ", got: " + issuer
-                );
-            }
+        if (StringUtils.hasText(expectedIssuer) && !expectedIssuer.equals(claims.issuer)) {
+            throw InvalidJwtTokenException.stackless(
+                    "JWT issuer mismatch. Expected: " + expectedIssuer + ", got: " + loggable(claims.issuer)
+            );
         }
 
         // Validate audience if configured
-        if (StringUtils.hasText(expectedAudience)) {
-            String audience = (String) claims.get("aud");
-            if (!expectedAudience.equals(audience)) {
-                throw new InvalidJwtTokenException(
-                        "JWT audience mismatch. Expected: " + expectedAudience + ", got: " + audience
-                );
-            }
+        if (StringUtils.hasText(expectedAudience) && !claims.audienceMatched) {
+            throw InvalidJwtTokenException.stackless(
+                    "JWT audience mismatch. Expected: " + expectedAudience + ", got: " + loggable(claims.audience)
+            );
         }
     }
 
     /**
      * Extracts user details from JWT claims.
      */
-    private UserDetailsDto extractUserDetails(Map<String, Object> claims) {
-        String userId = (String) claims.get("userId");
+    private UserDetailsDto extractUserDetails(JwtClaims claims) {
+        String userId = claims.userId;
 
         if (!StringUtils.hasText(userId)) {
-            throw new InvalidJwtTokenException("JWT payload missing required field: userId");
+            throw MISSING_USER_ID;
         }
 
         UserDetailsDto userDetails = new UserDetailsDto();
         userDetails.setUserId(userId);
-        userDetails.setEmail((String) claims.get("email"));
-        userDetails.setUsername((String) claims.get("username"));
-        userDetails.setSessionId((String) claims.get("sessionId"));
+        userDetails.setEmail(claims.email);
+        userDetails.setUsername(claims.username);
+        userDetails.setSessionId(claims.sessionId);
+        // Share one String instance per role/permission name across all sessions
+        userDetails.setRoles(AuthorityDictionary.ROLES.internAll(claims.roles));
+        // Scopes stand in for permissions when the token carries no permissions claim
+        userDetails.setPermissions(AuthorityDictionary.PERMISSIONS.internAll(
+                claims.permissions != null ? claims.permissions : claims.scopes));
 
         // Set timestamps
-        Long iat = (Long) claims.get("iat");
-        if (iat != null) {
-            userDetails.setIssuedAt(iat);
+        long issuedAt = claims.effectiveIssuedAt();
+        if (issuedAt != JwtClaims.ABSENT) {
+            userDetails.setIssuedAt(issuedAt);
         }
 
-        Long exp = (Long) claims.get("exp");
-        if (exp != null) {
-            userDetails.setExpiresAt(exp);
+        long expiresAt = claims.effectiveExpiresAt();
+        if (expiresAt != JwtClaims.ABSENT) {
+            userDetails.setExpiresAt(expiresAt);
         }
 
         log.debug("Successfully extracted user details for user: {}", userId);
@@ -253,23 +542,103 @@ public class JwtTokenValidator {
     }
 
     /**
-     * Removes the Bearer prefix from the token if present.
+     * Returns the index where the token starts, skipping the Bearer prefix if present.
      */
-    private String removeTokenPrefix(String token) {
-        if (token.startsWith(tokenPrefix)) {
-            return token.substring(tokenPrefix.length());
-        }
-        return token;
+    private int tokenStart(String token) {
+        return token.startsWith(tokenPrefix) ? tokenPrefix.length() : 0;
+    }
+
+    /**
+     * Total number of rejected tokens since startup.
+     */
+    public long getRejectedTokenCount() {
+        return rejectionLog.getTotal();
     }
 
     /**
      * Forces refresh of JWK Set cache (useful for testing or manual updates).
+     * Also drops cached token verdicts, since they were reached with the previous keys.
      */
     public void refreshJwkSetCache() {
         if (jwkSetProvider != null) {
             log.info("Refreshing JWK Set cache");
             jwkSetProvider.clearCache();
         }
+        if (issuerRegistry != null) {
+            issuerRegistry.clearCaches();
+        }
+        if (verifiedTokenCache != null) {
+            verifiedTokenCache.clear();
+        }
     }
-}
 
+    /**
+     * Decode state reused through {@link ScratchPool}: the segment buffers, the claims holder
+     * they are parsed into, and one {@link Signature} instance per algorithm.
+     */
+    private static final class DecodeScratch {
+
+        private static final int INITIAL_BUFFER_BYTES = 1024;
+
+        private final JwtClaims claims = new JwtClaims();
+        private final Signature[] verifiers = new Signature[JwsAlgorithm.values().length];
+        private byte[] segment = new byte[INITIAL_BUFFER_BYTES];
+        private byte[] signingInput = new byte[INITIAL_BUFFER_BYTES];
+        private byte[] signature = new byte[INITIAL_BUFFER_BYTES];
+
+        /**
+         * Buffer for the header, then the payload, of at least {@code size} bytes.
+         */
+        byte[] segmentBuffer(int size) {
+            byte[] buffer = grow(segment, size);
+            if (buffer.length <= MAX_RETAINED_BUFFER_BYTES) {
+                segment = buffer;
+            }
+            return buffer;
+        }
+
+        byte[] signingInputBuffer(int size) {
+            byte[] buffer = grow(signingInput, size);
+            if (buffer.length <= MAX_RETAINED_BUFFER_BYTES) {
+                signingInput = buffer;
+            }
+            return buffer;
+        }
+
+        byte[] signatureBuffer(int size) {
+            byte[] buffer = grow(signature, size);
+            if (buffer.length <= MAX_RETAINED_BUFFER_BYTES) {
+                signature = buffer;
+            }
+            return buffer;
+        }
+
+        Signature verifier(JwsAlgorithm algorithm) {
+            Signature verifier = verifiers[algorithm.ordinal()];
+            if (verifier == null) {
+                try {
+                    verifier = Signature.getInstance(algorithm.getJcaName());
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("JCA provider lacks " + algorithm.getJcaName(), e);
+                }
+                verifiers[algorithm.ordinal()] = verifier;
+            }
+            return verifier;
+        }
+
+        /**
+         * Returns {@code current} if it holds {@code size} bytes, otherwise a larger buffer:
+         * doubled up to {@link #MAX_RETAINED_BUFFER_BYTES}, or exactly {@code size} beyond it
+         * (callers do not retain those).
+         */
+        private static byte[] grow(byte[] current, int size) {
+            if (size <= current.length) {
+                return current;
+            }
+            if (size > MAX_RETAINED_BUFFER_BYTES) {
+                return new byte[size];
+            }
+            return new byte[Math.max(size, Math.min(current.length * 2, MAX_RETAINED_BUFFER_BYTES))];
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tk.learn.web.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Reusable per-call scratch state (buffers, {@code MessageDigest} and {@code Signature}
+ * instances) for code that runs on both platform and virtual threads.
+ * <p>
+ * Platform threads are long-lived pool workers, so each keeps its own instance in a
+ * {@link ThreadLocal}. A virtual thread lives for one request, so a thread-local instance
+ * would be built and thrown away on every call; virtual threads borrow from a small shared
+ * pool instead and return the instance when done. When the pool is empty a new instance is
+ * created, and one returned to a full pool is dropped, so the pool only bounds what is
+ * retained, never how many callers run at once.
+ */
+final class ScratchPool<T> {
+
+    private final Supplier<T> factory;
+    private final ThreadLocal<T> perThread;
+    private final ArrayBlockingQueue<T> shared;
+
+    /**
+     * @param factory creates scratch instances
+     * @param capacity maximum number of instances retained for virtual threads
+     */
+    ScratchPool(Supplier<T> factory, int capacity) {
+        this.factory = factory;
+        this.perThread = ThreadLocal.withInitial(factory);
+        this.shared = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Sized to the number of carrier threads that can use scratch instances at the same time,
+     * with headroom for virtual threads that block while holding one.
+     */
+    static <T> ScratchPool<T> forProcessors(Supplier<T> factory) {
+        return new ScratchPool<>(factory, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Must be paired with {@link #release} on the same thread once the instance is no longer used.
+     */
+    T acquire() {
+        if (!Thread.currentThread().isVirtual()) {
+            return perThread.get();
+        }
+        T scratch = shared.poll();
+        return scratch != null ? scratch : factory.get();
+    }
+
+    void release(T scratch) {
+        if (Thread.currentThread().isVirtual()) {
+            shared.offer(scratch);
+        }
+    }
+
+    /**
+     * Instances currently retained for virtual threads.
+     */
+    int pooled() {
+        return shared.size();
+    }
+}
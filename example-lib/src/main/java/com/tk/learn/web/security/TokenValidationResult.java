@@ -0,0 +1,36 @@
+package com.tk.learn.web.security;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.model.exceptions.InvalidJwtTokenException;
+
+/**
+ * Outcome of validating one token in a batch: either the extracted user details or the
+ * reason the token was rejected.
+ *
+ * @param userDetails the user details, or {@code null} if the token was rejected
+ * @param error the rejection, or {@code null} if the token is valid
+ */
+public record TokenValidationResult(UserDetailsDto userDetails, InvalidJwtTokenException error) {
+
+    static TokenValidationResult valid(UserDetailsDto userDetails) {
+        return new TokenValidationResult(userDetails, null);
+    }
+
+    static TokenValidationResult invalid(InvalidJwtTokenException error) {
+        return new TokenValidationResult(null, error);
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * Result for a repeated token: the same verdict with its own, independently mutable user details.
+     */
+    TokenValidationResult copy() {
+        if (userDetails == null) {
+            return this;
+        }
+        return valid(new UserDetailsDto(userDetails));
+    }
+}
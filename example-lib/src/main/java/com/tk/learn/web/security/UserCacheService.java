@@ -2,6 +2,10 @@ package com.tk.learn.web.security;
 
 import com.tk.learn.model.dto.UserDetailsDto;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Service interface for user details caching (e.g., Redis, Memcached).
  * Implementations can use Azure Redis Cache, local cache, or other backends.
@@ -31,5 +35,59 @@ public interface UserCacheService {
      * @param sessionId the JWT session ID
      */
     void removeUserFromCache(String sessionId);
-}
 
+    /**
+     * Retrieves several sessions' user details in one call.
+     * <p>
+     * The default implementation falls back to one {@link #getUserFromCache} call per session;
+     * remote implementations should override it with a single round trip.
+     *
+     * @param sessionIds the JWT session IDs
+     * @return user details keyed by session ID; sessions not in cache are absent
+     */
+    default Map<String, UserDetailsDto> getUsersFromCache(Collection<String> sessionIds) {
+        Map<String, UserDetailsDto> result = new HashMap<>();
+        for (String sessionId : sessionIds) {
+            UserDetailsDto userDetails = getUserFromCache(sessionId);
+            if (userDetails != null) {
+                result.put(sessionId, userDetails);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores several sessions' user details with the same TTL in one call.
+     * <p>
+     * The default implementation falls back to one {@link #cacheUser} call per session.
+     *
+     * @param usersBySessionId user details keyed by session ID
+     * @param ttlSeconds time-to-live in seconds (0 or negative for no expiry)
+     */
+    default void cacheUsers(Map<String, UserDetailsDto> usersBySessionId, long ttlSeconds) {
+        usersBySessionId.forEach((sessionId, userDetails) -> cacheUser(sessionId, userDetails, ttlSeconds));
+    }
+
+    /**
+     * Removes every cached session of a user, e.g. after their roles change or their account
+     * is disabled.
+     * <p>
+     * Requires a cache that tracks sessions per user ({@code jwt.cache.session-index.enabled});
+     * decorators forward the call to the cache they wrap. The default implementation removes
+     * nothing and returns 0, so callers that must know the sessions are gone check
+     * {@link #supportsEvictUser()} first.
+     *
+     * @param userId the user ID
+     * @return the number of sessions removed
+     */
+    default int evictUser(String userId) {
+        return 0;
+    }
+
+    /**
+     * Whether {@link #evictUser} removes every cached session of a user.
+     */
+    default boolean supportsEvictUser() {
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package com.tk.learn.web.security;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+
+/**
+ * Encodes {@link UserDetailsDto} to bytes and back, for {@link UserCacheService}
+ * implementations that store users outside the heap (e.g. Redis).
+ */
+public interface UserDetailsCodec {
+
+    /**
+     * Encodes the user details.
+     *
+     * @param userDetails the user details to encode
+     * @return the encoded bytes
+     */
+    byte[] encode(UserDetailsDto userDetails);
+
+    /**
+     * Decodes user details previously produced by {@link #encode}.
+     *
+     * @param bytes the encoded bytes
+     * @return the decoded user details
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    UserDetailsDto decode(byte[] bytes);
+}
@@ -2,6 +2,10 @@ package com.tk.learn.web.security;
 
 import com.tk.learn.model.dto.UserDetailsDto;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Service interface for retrieving user details from an external source.
  * Implementations can integrate with user management systems, AD, etc.
@@ -23,5 +27,24 @@ public interface UserService {
      * @return UserDetailsDto containing user information
      */
     UserDetailsDto getUserDetailsByEmail(String email);
-}
 
+    /**
+     * Retrieves user details for several user IDs in one call.
+     * <p>
+     * The default implementation falls back to one {@link #getUserDetailsById} call per ID;
+     * implementations backed by a remote directory should override it with a single request.
+     *
+     * @param userIds the user identifiers
+     * @return user details keyed by user ID; IDs without details are absent
+     */
+    default Map<String, UserDetailsDto> getUserDetailsByIds(Collection<String> userIds) {
+        Map<String, UserDetailsDto> result = new HashMap<>();
+        for (String userId : userIds) {
+            UserDetailsDto userDetails = getUserDetailsById(userId);
+            if (userDetails != null) {
+                result.put(userId, userDetails);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,23 @@
+package com.tk.learn.web.security;
+
+import java.security.PublicKey;
+
+/**
+ * A decoded public key from the JWK Set, ready for signature verification.
+ *
+ * @param keyId     the JWK {@code kid}, may be {@code null}
+ * @param publicKey the decoded RSA or EC public key
+ * @param algorithm the JWK {@code alg} the key is pinned to, or {@code null} if unrestricted
+ */
+public record VerificationKey(String keyId, PublicKey publicKey, JwsAlgorithm algorithm) {
+
+    /**
+     * Whether this key may verify a token signed with {@code tokenAlgorithm}.
+     */
+    public boolean supports(JwsAlgorithm tokenAlgorithm) {
+        if (algorithm != null) {
+            return algorithm == tokenAlgorithm;
+        }
+        return tokenAlgorithm.isCompatibleWith(publicKey);
+    }
+}
@@ -0,0 +1,271 @@
+package com.tk.learn.web.security;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, concurrent cache of successfully validated JWT tokens.
+ * <p>
+ * Entries are keyed by the first 128 bits of the SHA-256 digest of the raw token (without
+ * the Bearer prefix), so the cache never retains the tokens themselves. An entry expires at
+ * the earlier of the token's expiry and {@code jwt.token-cache.ttl-seconds} after caching.
+ * <p>
+ * When {@code jwt.token-cache.max-size} is reached, a single thread sweeps the map, dropping
+ * expired entries and then arbitrary live ones until the cache is back under 90% of the
+ * maximum. Keys are uniformly distributed digests, so the map's iteration order makes this
+ * an approximately random eviction.
+ * <p>
+ * Hit, miss, eviction and expiration counters are exposed for monitoring.
+ *
+ * Configuration:
+ * - jwt.token-cache.enabled: Enables the cache (default: true)
+ * - jwt.token-cache.max-size: Maximum number of cached tokens (default: 10000)
+ * - jwt.token-cache.ttl-seconds: Upper bound on how long a token stays cached (default: 300)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.token-cache.enabled",
+    havingValue = "true",
+    matchIfMissing = true
+)
+public class VerifiedTokenCache {
+
+    private static final Logger log = LoggerFactory.getLogger(VerifiedTokenCache.class);
+
+    /** Tokens longer than this are not cached (and would be rejected by most gateways anyway). */
+    private static final int MAX_CACHEABLE_TOKEN_LENGTH = 8 * 1024;
+
+    private static final ScratchPool<DigestScratch> DIGEST_SCRATCH = ScratchPool.forProcessors(DigestScratch::new);
+
+    private final Map<TokenDigest, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public VerifiedTokenCache(@Value("${jwt.token-cache.max-size:10000}") int maxSize,
+                              @Value("${jwt.token-cache.ttl-seconds:300}") long ttlSeconds) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("jwt.token-cache.max-size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Computes the cache key for {@code token[from, token.length())}.
+     *
+     * @return the digest, or {@code null} if the token is not cacheable (too long or non-ASCII)
+     */
+    public TokenDigest digest(String token, int from) {
+        int length = token.length() - from;
+        if (length <= 0 || length > MAX_CACHEABLE_TOKEN_LENGTH) {
+            return null;
+        }
+        DigestScratch scratch = DIGEST_SCRATCH.acquire();
+        try {
+            byte[] bytes = scratch.bytes(length);
+            for (int i = 0; i < length; i++) {
+                char c = token.charAt(from + i);
+                if (c >= 0x80) {
+                    // Not a compact JWS; it will fail validation, so don't bother caching it
+                    return null;
+                }
+                bytes[i] = (byte) c;
+            }
+            MessageDigest sha256 = scratch.sha256;
+            sha256.update(bytes, 0, length);
+            byte[] hash = sha256.digest();
+            return new TokenDigest(toLong(hash, 0), toLong(hash, 8));
+        } finally {
+            DIGEST_SCRATCH.release(scratch);
+        }
+    }
+
+    /**
+     * Returns a fresh copy of the cached user details, or {@code null} on a miss or expired entry.
+     */
+    public UserDetailsDto get(TokenDigest digest) {
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+            if (entries.remove(digest, entry)) {
+                expirations.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.copy();
+    }
+
+    /**
+     * Caches a snapshot of the validated user details. The entry expires no later than the
+     * token's {@code expiresAt}, when present.
+     */
+    public void put(TokenDigest digest, UserDetailsDto userDetails) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        if (userDetails.getExpiresAt() > 0) {
+            expiresAt = Math.min(expiresAt, userDetails.getExpiresAt());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            sweep(now);
+        }
+        entries.put(digest, new Entry(userDetails, expiresAt));
+    }
+
+    /**
+     * Removes all cached tokens.
+     */
+    public void clear() {
+        log.info("Clearing verified token cache");
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Drops expired entries, then arbitrary live ones, until the cache is below 90% of its
+     * maximum size. Only one thread sweeps at a time; concurrent writers just insert, so the
+     * cache can briefly overshoot by at most the number of concurrent writers.
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxSize - Math.max(1, maxSize / 10);
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                if (it.next().expiresAtMillis <= now) {
+                    it.remove();
+                    expirations.increment();
+                }
+            }
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && entries.size() > target; ) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+            log.debug("Verified token cache swept; size now {}", entries.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 128-bit token digest used as the cache key.
+     */
+    public record TokenDigest(long high, long low) {
+    }
+
+    private static final class Entry {
+
+        private final String userId;
+        private final String email;
+        private final String username;
+        private final String sessionId;
+        private final List<String> roles;
+        private final List<String> permissions;
+        private final long issuedAt;
+        private final long expiresAt;
+        private final long expiresAtMillis;
+
+        private Entry(UserDetailsDto userDetails, long expiresAtMillis) {
+            this.userId = userDetails.getUserId();
+            this.email = userDetails.getEmail();
+            this.username = userDetails.getUsername();
+            this.sessionId = userDetails.getSessionId();
+            this.roles = userDetails.getRoles() != null ? List.copyOf(userDetails.getRoles()) : null;
+            this.permissions = userDetails.getPermissions() != null ? List.copyOf(userDetails.getPermissions()) : null;
+            this.issuedAt = userDetails.getIssuedAt();
+            this.expiresAt = userDetails.getExpiresAt();
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        /**
+         * Callers (e.g. JwtAuthFilter) mutate the returned DTO, so every hit gets its own copy.
+         */
+        private UserDetailsDto copy() {
+            return new UserDetailsDto(userId, email, username, sessionId,
+                    roles != null ? new ArrayList<>(roles) : null,
+                    permissions != null ? new ArrayList<>(permissions) : null,
+                    issuedAt, expiresAt);
+        }
+    }
+
+    private static final class DigestScratch {
+
+        private final MessageDigest sha256;
+        private byte[] bytes = new byte[2048];
+
+        private DigestScratch() {
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        private byte[] bytes(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[MAX_CACHEABLE_TOKEN_LENGTH];
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base {@link InvalidationBus} that coalesces published keys and hands them to the transport
+ * in batches.
+ * <p>
+ * The first key published after a flush starts a window timer; when it fires, or as soon as
+ * the batch reaches its maximum size, every pending key is sent in one {@link #send} call on
+ * a single dispatch thread. Publishing the same key again within a window costs nothing.
+ * A failed send is logged and counted; the keys are not retried, since the receiving caches'
+ * TTLs still bound their staleness.
+ */
+public abstract class BatchingInvalidationBus implements InvalidationBus, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingInvalidationBus.class);
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledThreadPoolExecutor dispatcher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private Map<String, Set<String>> pending = new LinkedHashMap<>();
+    private int pendingCount;
+
+    private final Map<String, List<InvalidationListener>> listeners = new ConcurrentHashMap<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    /**
+     * @param threadName name of the dispatch thread
+     * @param windowMillis how long keys are collected before being sent
+     * @param maxBatchSize number of pending keys that triggers an immediate send
+     */
+    protected BatchingInvalidationBus(String threadName, long windowMillis, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalidation batch size must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Pending windows are flushed inline by destroy() instead of waited for
+        dispatcher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    @Override
+    public void publish(String topic, String key) {
+        if (topic == null || key == null) {
+            return;
+        }
+        boolean startWindow;
+        boolean full;
+        lock.lock();
+        try {
+            if (!pending.computeIfAbsent(topic, t -> new LinkedHashSet<>()).add(key)) {
+                coalesced.increment();
+                return;
+            }
+            published.increment();
+            startWindow = ++pendingCount == 1;
+            full = pendingCount == maxBatchSize;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (full) {
+                dispatcher.execute(this::flush);
+            } else if (startWindow) {
+                dispatcher.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down: send on the caller's thread rather than drop the keys
+            flush();
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, InvalidationListener listener) {
+        listeners.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public void unsubscribe(String topic, InvalidationListener listener) {
+        List<InvalidationListener> topicListeners = listeners.get(topic);
+        if (topicListeners != null) {
+            topicListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Sends one batch to the other nodes. Calls never overlap, so implementations need no
+     * locking of their own.
+     *
+     * @param batch keys by topic, each non-empty
+     */
+    protected abstract void send(Map<String, Set<String>> batch);
+
+    /**
+     * Hands keys received from another node to this node's listeners.
+     */
+    protected void deliver(String topic, Collection<String> keys) {
+        List<InvalidationListener> topicListeners = listeners.get(topic);
+        if (topicListeners == null || keys.isEmpty()) {
+            return;
+        }
+        received.add(keys.size());
+        for (InvalidationListener listener : topicListeners) {
+            try {
+                listener.invalidate(keys);
+            } catch (RuntimeException e) {
+                log.warn("Invalidation listener for {} failed: {}", topic, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tells every listener to drop all entries, e.g. after invalidations may have been lost.
+     */
+    protected void deliverAll() {
+        listeners.forEach((topic, topicListeners) -> {
+            for (InvalidationListener listener : topicListeners) {
+                try {
+                    listener.invalidateAll();
+                } catch (RuntimeException e) {
+                    log.warn("Invalidation listener for {} failed: {}", topic, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of distinct keys queued for sending.
+     */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * Number of publishes absorbed by an identical key already pending.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getSendFailureCount() {
+        return sendFailures.sum();
+    }
+
+    /**
+     * Number of keys received from other nodes and handed to listeners.
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(windowMillis + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    void flush() {
+        Map<String, Set<String>> batch;
+        lock.lock();
+        try {
+            if (pendingCount == 0) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            pendingCount = 0;
+        } finally {
+            lock.unlock();
+        }
+        batches.increment();
+        sendLock.lock();
+        try {
+            send(batch);
+        } catch (RuntimeException e) {
+            sendFailures.increment();
+            log.warn("Failed to send {} cache invalidations: {}",
+                    batch.values().stream().mapToInt(Set::size).sum(), e.getMessage());
+        } finally {
+            sendLock.unlock();
+        }
+    }
+}
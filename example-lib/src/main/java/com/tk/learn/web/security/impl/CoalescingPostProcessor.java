@@ -0,0 +1,45 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps the application's {@link UserService} in a {@link CoalescingUserService}, so concurrent
+ * lookups of the same user share one call to the user directory. Opt-in like the other
+ * decorators: the wrapper only implements {@link UserService}, so the service must be
+ * injected by that interface, and callers wait at most {@code max-wait-millis}.
+ *
+ * Configuration:
+ * - jwt.user-service.coalescing.enabled: Enables coalescing (default: false)
+ * - jwt.user-service.coalescing.max-wait-millis: How long a caller waits for another's lookup (default: 2000)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.user-service.coalescing.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class CoalescingPostProcessor implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingPostProcessor.class);
+
+    private final long maxWaitMillis;
+
+    public CoalescingPostProcessor(@Value("${jwt.user-service.coalescing.max-wait-millis:2000}") long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof UserService userService && !(bean instanceof CoalescingUserService)) {
+            log.info("Coalescing concurrent lookups on {} (max wait {} ms)", beanName, maxWaitMillis);
+            return new CoalescingUserService(userService, maxWaitMillis);
+        }
+        return bean;
+    }
+}
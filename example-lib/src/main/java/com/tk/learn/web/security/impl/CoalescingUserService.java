@@ -0,0 +1,141 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.model.exceptions.UserLookupTimeoutException;
+import com.tk.learn.web.security.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@link UserService} decorator that coalesces concurrent lookups of the same user into one
+ * call to the delegate (single flight).
+ * <p>
+ * The first caller for a userId (or email) performs the lookup on its own thread; callers
+ * arriving while it is in flight wait for its result instead of calling the delegate, and
+ * each receives its own copy of the returned DTO. A failure of the shared lookup is rethrown
+ * to every waiter. Waiters give up after the maximum wait with a
+ * {@link UserLookupTimeoutException}, so the failure is not mistaken for an unknown user and
+ * cached; the lookup itself is not cancelled.
+ */
+public class CoalescingUserService implements UserService {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingUserService.class);
+
+    private final UserService delegate;
+    private final long maxWaitMillis;
+
+    private final Map<String, CompletableFuture<UserDetailsDto>> byId = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<UserDetailsDto>> byEmail = new ConcurrentHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public CoalescingUserService(UserService delegate, long maxWaitMillis) {
+        this.delegate = delegate;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public UserDetailsDto getUserDetailsById(String userId) {
+        if (userId == null) {
+            return delegate.getUserDetailsById(null);
+        }
+        return lookup(byId, userId, () -> delegate.getUserDetailsById(userId));
+    }
+
+    @Override
+    public UserDetailsDto getUserDetailsByEmail(String email) {
+        if (email == null) {
+            return delegate.getUserDetailsByEmail(null);
+        }
+        return lookup(byEmail, email, () -> delegate.getUserDetailsByEmail(email));
+    }
+
+    /**
+     * Batch lookups are passed straight to the delegate; they are already one call.
+     */
+    @Override
+    public Map<String, UserDetailsDto> getUserDetailsByIds(Collection<String> userIds) {
+        return delegate.getUserDetailsByIds(userIds);
+    }
+
+    public UserService getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Number of lookups sent to the delegate.
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Number of calls served by another caller's in-flight lookup.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Number of waiters that gave up after the maximum wait.
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    private UserDetailsDto lookup(Map<String, CompletableFuture<UserDetailsDto>> inFlight, String key,
+                                  Supplier<UserDetailsDto> lookup) {
+        CompletableFuture<UserDetailsDto> future = new CompletableFuture<>();
+        CompletableFuture<UserDetailsDto> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, key);
+        }
+
+        lookups.increment();
+        try {
+            UserDetailsDto userDetails = lookup.get();
+            future.complete(userDetails);
+            return userDetails;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private UserDetailsDto await(CompletableFuture<UserDetailsDto> future, String key) {
+        try {
+            UserDetailsDto userDetails = future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            return userDetails != null ? new UserDetailsDto(userDetails) : null;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("Gave up waiting {} ms for in-flight user lookup: {}", maxWaitMillis, key);
+            throw new UserLookupTimeoutException("Gave up waiting " + maxWaitMillis + " ms for in-flight user lookup");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UserLookupTimeoutException("Interrupted waiting for in-flight user lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("User lookup failed", e.getCause());
+        }
+    }
+}
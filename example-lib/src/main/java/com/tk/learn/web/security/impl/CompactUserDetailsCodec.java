@@ -0,0 +1,364 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.AuthorityDictionary;
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserDetailsCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versioned {@link UserDetailsCodec} sized for the cache: a format version byte, a byte of
+ * null flags, then
+ * <ul>
+ *   <li>userId, email, username and sessionId as varint lengths followed by UTF-8 bytes;</li>
+ *   <li>an authority table holding each distinct role and permission name once, sorted and
+ *       front-coded (varint length of the prefix shared with the previous name, then the rest
+ *       of the name as a string);</li>
+ *   <li>roles and permissions as a varint count followed by varint table indices
+ *       (index + 1, {@code 0} for a {@code null} element);</li>
+ *   <li>issuedAt as a zigzag varint, and expiresAt as a zigzag varint delta from it.</li>
+ * </ul>
+ * For the user in {@code UserDetailsCodecBenchmark} that is 136 bytes, against 172 for
+ * {@link LengthPrefixedUserDetailsCodec}, 256 for JSON and 425 for Java serialization. Decoding
+ * is about as fast as the length-prefixed form; encoding is slower, as it builds the table.
+ * <p>
+ * The table is carried in each message rather than as {@link AuthorityDictionary} IDs, which
+ * are local to each process; decoded names are interned in the dictionaries.
+ * <p>
+ * Bytes written by another format, including {@link LengthPrefixedUserDetailsCodec} (whose
+ * first byte is the high byte of a length, i.e. {@code 0} or {@code 0xFF}), are rejected with
+ * {@link IllegalArgumentException}, so caches treat them as misses.
+ */
+public class CompactUserDetailsCodec implements UserDetailsCodec {
+
+    static final int VERSION = 1;
+
+    private static final int NULL_USER_ID = 1;
+    private static final int NULL_EMAIL = 1 << 1;
+    private static final int NULL_USERNAME = 1 << 2;
+    private static final int NULL_SESSION_ID = 1 << 3;
+    private static final int NULL_ROLES = 1 << 4;
+    private static final int NULL_PERMISSIONS = 1 << 5;
+
+    @Override
+    public byte[] encode(UserDetailsDto userDetails) {
+        List<String> roles = userDetails.getRoles();
+        List<String> permissions = userDetails.getPermissions();
+        String[] table = authorityTable(roles, permissions);
+
+        Writer out = new Writer(64 + 16 * table.length);
+        out.writeByte(VERSION);
+        out.writeByte(nullFlags(userDetails));
+        out.writeString(userDetails.getUserId());
+        out.writeString(userDetails.getEmail());
+        out.writeString(userDetails.getUsername());
+        out.writeString(userDetails.getSessionId());
+        out.writeVarint(table.length);
+        byte[] previous = new byte[0];
+        for (String authority : table) {
+            byte[] name = authority.getBytes(StandardCharsets.UTF_8);
+            int shared = sharedPrefix(previous, name);
+            out.writeVarint(shared);
+            out.writeVarint(name.length - shared);
+            out.writeBytes(name, shared, name.length - shared);
+            previous = name;
+        }
+        writeIndices(out, roles, table);
+        writeIndices(out, permissions, table);
+        out.writeVarlong(zigzag(userDetails.getIssuedAt()));
+        out.writeVarlong(zigzag(userDetails.getExpiresAt() - userDetails.getIssuedAt()));
+        return out.toByteArray();
+    }
+
+    @Override
+    public UserDetailsDto decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported encoded user details version: " + version);
+        }
+        int nulls = in.readByte();
+        String userId = in.readString((nulls & NULL_USER_ID) != 0);
+        String email = in.readString((nulls & NULL_EMAIL) != 0);
+        String username = in.readString((nulls & NULL_USERNAME) != 0);
+        String sessionId = in.readString((nulls & NULL_SESSION_ID) != 0);
+
+        // Every table entry takes at least its two varints
+        int tableSize = in.readCount(2);
+        String[] table = new String[tableSize];
+        // The previous name's UTF-8 bytes: in the input unless it shared a prefix
+        byte[] previous = bytes;
+        int previousOffset = 0;
+        int previousLength = 0;
+        for (int i = 0; i < tableSize; i++) {
+            int shared = in.readVarint();
+            if (shared > previousLength) {
+                throw new IllegalArgumentException("Invalid authority prefix in encoded user details: " + shared);
+            }
+            int suffix = in.readCount(1);
+            if (shared == 0) {
+                previous = bytes;
+                previousOffset = in.position();
+                previousLength = suffix;
+                table[i] = in.readString(suffix);
+            } else {
+                byte[] name = new byte[shared + suffix];
+                System.arraycopy(previous, previousOffset, name, 0, shared);
+                in.readBytes(name, shared, suffix);
+                previous = name;
+                previousOffset = 0;
+                previousLength = name.length;
+                table[i] = new String(name, StandardCharsets.UTF_8);
+            }
+        }
+        List<String> roles = readIndices(in, (nulls & NULL_ROLES) != 0, table, AuthorityDictionary.ROLES);
+        List<String> permissions = readIndices(in, (nulls & NULL_PERMISSIONS) != 0, table,
+                AuthorityDictionary.PERMISSIONS);
+        long issuedAt = unzigzag(in.readVarlong());
+        long expiresAt = issuedAt + unzigzag(in.readVarlong());
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing bytes in encoded user details");
+        }
+        return new UserDetailsDto(userId, email, username, sessionId, roles, permissions, issuedAt, expiresAt);
+    }
+
+    private static int nullFlags(UserDetailsDto userDetails) {
+        int flags = 0;
+        if (userDetails.getUserId() == null) {
+            flags |= NULL_USER_ID;
+        }
+        if (userDetails.getEmail() == null) {
+            flags |= NULL_EMAIL;
+        }
+        if (userDetails.getUsername() == null) {
+            flags |= NULL_USERNAME;
+        }
+        if (userDetails.getSessionId() == null) {
+            flags |= NULL_SESSION_ID;
+        }
+        if (userDetails.getRoles() == null) {
+            flags |= NULL_ROLES;
+        }
+        if (userDetails.getPermissions() == null) {
+            flags |= NULL_PERMISSIONS;
+        }
+        return flags;
+    }
+
+    /**
+     * Distinct non-null role and permission names, sorted so neighbours share prefixes.
+     */
+    private static String[] authorityTable(List<String> roles, List<String> permissions) {
+        String[] names = new String[size(roles) + size(permissions)];
+        int count = addNames(names, 0, roles);
+        count = addNames(names, count, permissions);
+        Arrays.sort(names, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || !names[i].equals(names[distinct - 1])) {
+                names[distinct++] = names[i];
+            }
+        }
+        return distinct == names.length ? names : Arrays.copyOf(names, distinct);
+    }
+
+    private static int addNames(String[] names, int count, List<String> values) {
+        if (values != null) {
+            for (String value : values) {
+                if (value != null) {
+                    names[count++] = value;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int size(List<String> values) {
+        return values != null ? values.size() : 0;
+    }
+
+    private static int sharedPrefix(byte[] a, byte[] b) {
+        int mismatch = Arrays.mismatch(a, b);
+        return mismatch < 0 ? a.length : mismatch;
+    }
+
+    private static void writeIndices(Writer out, List<String> values, String[] table) {
+        if (values == null) {
+            return;
+        }
+        out.writeVarint(values.size());
+        for (String value : values) {
+            out.writeVarint(value != null ? Arrays.binarySearch(table, value) + 1 : 0);
+        }
+    }
+
+    private static List<String> readIndices(Reader in, boolean isNull, String[] table, AuthorityDictionary dictionary) {
+        if (isNull) {
+            return null;
+        }
+        int count = in.readCount(1);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = in.readVarint();
+            if (index == 0) {
+                values.add(null);
+                continue;
+            }
+            if (index > table.length) {
+                throw new IllegalArgumentException("Invalid authority index in encoded user details: " + index);
+            }
+            values.add(dictionary.intern(table[index - 1]));
+        }
+        return values;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Growable output buffer with unsigned LEB128 varints.
+     */
+    private static final class Writer {
+
+        private byte[] bytes;
+        private int size;
+
+        Writer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarint(int value) {
+            if ((value & ~0x7F) == 0) {
+                writeByte(value);
+            } else {
+                writeVarlong(value & 0xFFFFFFFFL);
+            }
+        }
+
+        void writeVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            if (value != null) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(utf8.length);
+                writeBytes(utf8, 0, utf8.length);
+            }
+        }
+
+        void writeBytes(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Bounds-checked reader; every malformed input ends in {@link IllegalArgumentException}.
+     */
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Truncated encoded user details");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        int readVarint() {
+            if (position < bytes.length && bytes[position] >= 0) {
+                return bytes[position++];
+            }
+            long value = readVarlong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Varint out of range in encoded user details");
+            }
+            return (int) value;
+        }
+
+        long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in encoded user details");
+        }
+
+        /**
+         * Reads a count or length, checked against the bytes left given each item's minimum size.
+         */
+        int readCount(int minBytesEach) {
+            int count = readVarint();
+            if (count > (bytes.length - position) / minBytesEach) {
+                throw new IllegalArgumentException("Invalid length in encoded user details: " + count);
+            }
+            return count;
+        }
+
+        String readString(boolean isNull) {
+            return isNull ? null : readString(readCount(1));
+        }
+
+        /**
+         * Reads a string whose length has already been read and checked.
+         */
+        String readString(int length) {
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        void readBytes(byte[] target, int offset, int length) {
+            System.arraycopy(bytes, position, target, offset, length);
+            position += length;
+        }
+
+        int position() {
+            return position;
+        }
+
+        boolean hasRemaining() {
+            return position < bytes.length;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserDetailsCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * {@link UserDetailsCodec} using Java serialization, for reading entries written by existing
+ * {@link java.io.Serializable}-based caches and as a baseline in benchmarks.
+ * Deserialization is restricted to {@link UserDetailsDto} and the JDK collection types its
+ * role and permission lists may use.
+ */
+public class JavaSerializationUserDetailsCodec implements UserDetailsCodec {
+
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            UserDetailsDto.class.getName() + ";java.util.*;java.lang.*;!*");
+
+    @Override
+    public byte[] encode(UserDetailsDto userDetails) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(userDetails);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public UserDetailsDto decode(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            in.setObjectInputFilter(FILTER);
+            return (UserDetailsDto) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid serialized user details", e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.AuthorityDictionary;
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserDetailsCodec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link UserDetailsCodec} writing the fields in a fixed order with length prefixes:
+ * strings as a 4-byte length ({@code -1} for {@code null}) followed by UTF-8 bytes, lists as a
+ * 4-byte count ({@code -1} for {@code null}) followed by their strings, and the timestamps as
+ * 8-byte longs. Around a third of the size of the Java serialization form.
+ * Decoded role and permission names are interned in {@link AuthorityDictionary}.
+ */
+public class LengthPrefixedUserDetailsCodec implements UserDetailsCodec {
+
+    private static final int NULL_LENGTH = -1;
+
+    @Override
+    public byte[] encode(UserDetailsDto userDetails) {
+        byte[] userId = utf8(userDetails.getUserId());
+        byte[] email = utf8(userDetails.getEmail());
+        byte[] username = utf8(userDetails.getUsername());
+        byte[] sessionId = utf8(userDetails.getSessionId());
+        byte[][] roles = utf8(userDetails.getRoles());
+        byte[][] permissions = utf8(userDetails.getPermissions());
+
+        int size = sizeOf(userId) + sizeOf(email) + sizeOf(username) + sizeOf(sessionId)
+                + sizeOf(roles) + sizeOf(permissions) + 2 * Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        putString(buffer, userId);
+        putString(buffer, email);
+        putString(buffer, username);
+        putString(buffer, sessionId);
+        putList(buffer, roles);
+        putList(buffer, permissions);
+        buffer.putLong(userDetails.getIssuedAt());
+        buffer.putLong(userDetails.getExpiresAt());
+        return buffer.array();
+    }
+
+    @Override
+    public UserDetailsDto decode(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            UserDetailsDto userDetails = new UserDetailsDto(getString(buffer), getString(buffer),
+                    getString(buffer), getString(buffer),
+                    AuthorityDictionary.ROLES.internAll(getList(buffer)),
+                    AuthorityDictionary.PERMISSIONS.internAll(getList(buffer)),
+                    buffer.getLong(), buffer.getLong());
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing bytes in encoded user details");
+            }
+            return userDetails;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated encoded user details", e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[][] utf8(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        byte[][] encoded = new byte[values.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = utf8(values.get(i));
+        }
+        return encoded;
+    }
+
+    private static int sizeOf(byte[] value) {
+        return Integer.BYTES + (value != null ? value.length : 0);
+    }
+
+    private static int sizeOf(byte[][] values) {
+        int size = Integer.BYTES;
+        if (values != null) {
+            for (byte[] value : values) {
+                size += sizeOf(value);
+            }
+        }
+        return size;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static void putList(ByteBuffer buffer, byte[][] values) {
+        if (values == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(values.length);
+        for (byte[] value : values) {
+            putString(buffer, value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length in encoded user details: " + length);
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static List<String> getList(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count == NULL_LENGTH) {
+            return null;
+        }
+        // Every element takes at least its 4-byte length
+        if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+            throw new IllegalArgumentException("Invalid list size in encoded user details: " + count);
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(getString(buffer));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,70 @@
+package com.tk.learn.web.security.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-JVM {@link com.tk.learn.web.security.InvalidationBus}: batches are delivered directly to
+ * the other buses on the same network. A bus created by Spring is alone on its network, which
+ * suits single-node deployments; tests simulate several nodes with {@link #newPeer()}.
+ *
+ * Configuration:
+ * - jwt.invalidation.transport: loopback selects this bus (default: none)
+ * - jwt.invalidation.window-millis: Coalescing window before a batch is sent (default: 10)
+ * - jwt.invalidation.max-batch-size: Pending keys that trigger an immediate send (default: 500)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.invalidation.transport",
+    havingValue = "loopback",
+    matchIfMissing = false
+)
+public class LoopbackInvalidationBus extends BatchingInvalidationBus {
+
+    private final List<LoopbackInvalidationBus> network;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    @Autowired
+    public LoopbackInvalidationBus(@Value("${jwt.invalidation.window-millis:10}") long windowMillis,
+                                   @Value("${jwt.invalidation.max-batch-size:500}") int maxBatchSize) {
+        this(new CopyOnWriteArrayList<>(), windowMillis, maxBatchSize);
+    }
+
+    private LoopbackInvalidationBus(List<LoopbackInvalidationBus> network, long windowMillis, int maxBatchSize) {
+        super("invalidation-loopback", windowMillis, maxBatchSize);
+        this.network = network;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        network.add(this);
+    }
+
+    /**
+     * Creates another bus on this bus's network, standing in for another node.
+     */
+    public LoopbackInvalidationBus newPeer() {
+        return new LoopbackInvalidationBus(network, windowMillis, maxBatchSize);
+    }
+
+    @Override
+    protected void send(Map<String, Set<String>> batch) {
+        for (LoopbackInvalidationBus peer : network) {
+            if (peer != this) {
+                batch.forEach(peer::deliver);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        network.remove(this);
+    }
+}
@@ -0,0 +1,82 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Wraps the application's {@link UserService} in a {@link MicroBatchingUserService}, so userId
+ * lookups from concurrent requests reach the user directory as batch calls.
+ * <p>
+ * Runs before the other {@link UserService} post-processors, so the batcher sits directly in
+ * front of the directory and e.g. coalescing wraps it. Spring only destroys the beans it
+ * created, not the wrappers returned here, so this post-processor shuts them down itself.
+ *
+ * Configuration:
+ * - jwt.user-service.batching.enabled: Enables micro-batching (default: false)
+ * - jwt.user-service.batching.window-millis: How long a batch collects lookups (default: 5)
+ * - jwt.user-service.batching.max-batch-size: Batch size that dispatches immediately (default: 100)
+ * - jwt.user-service.batching.max-wait-millis: How long a caller waits for its batch (default: 2000)
+ * - jwt.resilience.user-service.max-concurrent: Batch calls in flight at once (default: 20)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.user-service.batching.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class MicroBatchingPostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MicroBatchingPostProcessor.class);
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+    private final int maxConcurrentBatches;
+
+    private final List<MicroBatchingUserService> wrappers = new CopyOnWriteArrayList<>();
+
+    public MicroBatchingPostProcessor(@Value("${jwt.user-service.batching.window-millis:5}") long windowMillis,
+                                      @Value("${jwt.user-service.batching.max-batch-size:100}") int maxBatchSize,
+                                      @Value("${jwt.user-service.batching.max-wait-millis:2000}") long maxWaitMillis,
+                                      @Value("${jwt.resilience.user-service.max-concurrent:20}") int maxConcurrentBatches) {
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof UserService userService
+                && !(bean instanceof MicroBatchingUserService)
+                && !(bean instanceof CoalescingUserService)) {
+            log.info("Batching lookups on {} (window {} ms, max batch size {})", beanName, windowMillis, maxBatchSize);
+            MicroBatchingUserService wrapper = new MicroBatchingUserService(userService, windowMillis,
+                    maxBatchSize, maxWaitMillis, maxConcurrentBatches);
+            wrappers.add(wrapper);
+            return wrapper;
+        }
+        return bean;
+    }
+
+    @Override
+    public void destroy() {
+        wrappers.forEach(MicroBatchingUserService::destroy);
+        wrappers.clear();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
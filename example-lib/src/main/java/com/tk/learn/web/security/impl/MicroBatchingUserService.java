@@ -0,0 +1,268 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.model.exceptions.UserLookupTimeoutException;
+import com.tk.learn.web.security.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link UserService} decorator that gathers userId lookups from concurrent requests into
+ * batches and sends each batch to the delegate as one {@link UserService#getUserDetailsByIds}
+ * call, so a burst of cold sessions (e.g. after a deploy) becomes a handful of directory calls.
+ * <p>
+ * A batch is opened by the first lookup and dispatched when it reaches the maximum batch size
+ * or when the batching window elapses, whichever comes first. The dispatcher thread only keeps
+ * time: batch calls run on a separate pool of at most {@code maxConcurrentBatches} workers, so
+ * a slow batch does not hold up the batches of later windows; batches beyond that wait in a
+ * queue. Lookups of the same userId within a batch share one slot. Every caller receives its
+ * own copy of the returned DTO; a failed batch call is rethrown to all of its callers. Callers
+ * give up after the maximum wait with a {@link UserLookupTimeoutException}.
+ * <p>
+ * Email lookups have no batch counterpart and are passed straight to the delegate.
+ * <p>
+ * Every request thread passes through the batch lock, so it is a {@link ReentrantLock}:
+ * contended monitors pin virtual threads to their carriers on JDK 21.
+ */
+public class MicroBatchingUserService implements UserService, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MicroBatchingUserService.class);
+
+    /**
+     * Matches the default {@code jwt.resilience.user-service.max-concurrent}.
+     */
+    static final int DEFAULT_MAX_CONCURRENT_BATCHES = 20;
+
+    private final UserService delegate;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledThreadPoolExecutor dispatcher;
+    private final ThreadPoolExecutor batchExecutor;
+
+    // Guarded by lock
+    private Map<String, CompletableFuture<UserDetailsDto>> pending = new LinkedHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedIds = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param delegate the user directory
+     * @param windowMillis how long a batch stays open for more lookups
+     * @param maxBatchSize number of distinct userIds that dispatches a batch immediately
+     * @param maxWaitMillis how long a caller waits for its batch to complete
+     */
+    public MicroBatchingUserService(UserService delegate, long windowMillis, int maxBatchSize, long maxWaitMillis) {
+        this(delegate, windowMillis, maxBatchSize, maxWaitMillis, DEFAULT_MAX_CONCURRENT_BATCHES);
+    }
+
+    /**
+     * @param maxConcurrentBatches number of batch calls in flight at once
+     */
+    public MicroBatchingUserService(UserService delegate, long windowMillis, int maxBatchSize, long maxWaitMillis,
+                                    int maxConcurrentBatches) {
+        if (maxBatchSize <= 0 || maxConcurrentBatches <= 0) {
+            throw new IllegalArgumentException("Max batch size and concurrent batches must be positive");
+        }
+        this.delegate = delegate;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.dispatcher = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "user-batch-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger workers = new AtomicInteger();
+        this.batchExecutor = new ThreadPoolExecutor(maxConcurrentBatches, maxConcurrentBatches,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "user-batch-" + workers.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.batchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public UserDetailsDto getUserDetailsById(String userId) {
+        if (userId == null) {
+            return delegate.getUserDetailsById(null);
+        }
+        requests.increment();
+
+        CompletableFuture<UserDetailsDto> future;
+        Map<String, CompletableFuture<UserDetailsDto>> fullBatch = null;
+        lock.lock();
+        try {
+            boolean opened = pending.isEmpty();
+            future = pending.computeIfAbsent(userId, id -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takePending();
+            } else if (opened) {
+                Map<String, CompletableFuture<UserDetailsDto>> batch = pending;
+                dispatcher.schedule(() -> dispatchIfPending(batch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (fullBatch != null) {
+            submit(fullBatch);
+        }
+        return await(future, userId);
+    }
+
+    @Override
+    public UserDetailsDto getUserDetailsByEmail(String email) {
+        return delegate.getUserDetailsByEmail(email);
+    }
+
+    @Override
+    public Map<String, UserDetailsDto> getUserDetailsByIds(Collection<String> userIds) {
+        return delegate.getUserDetailsByIds(userIds);
+    }
+
+    public UserService getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Number of userId lookups received from callers.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Number of batch calls sent to the delegate.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Number of distinct userIds sent to the delegate across all batches.
+     */
+    public long getBatchedIdCount() {
+        return batchedIds.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0.0 : (double) batchedIds.sum() / count;
+    }
+
+    /**
+     * Number of callers that gave up after the maximum wait.
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+        batchExecutor.shutdownNow();
+        Map<String, CompletableFuture<UserDetailsDto>> batch;
+        lock.lock();
+        try {
+            batch = takePending();
+        } finally {
+            lock.unlock();
+        }
+        shutDown(batch);
+    }
+
+    private Map<String, CompletableFuture<UserDetailsDto>> takePending() {
+        Map<String, CompletableFuture<UserDetailsDto>> batch = pending;
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    /**
+     * Window expiry: dispatches the batch the timer was scheduled for, unless it already
+     * filled up and was dispatched by a caller.
+     */
+    private void dispatchIfPending(Map<String, CompletableFuture<UserDetailsDto>> batch) {
+        lock.lock();
+        try {
+            if (pending != batch) {
+                return;
+            }
+            takePending();
+        } finally {
+            lock.unlock();
+        }
+        submit(batch);
+    }
+
+    private void submit(Map<String, CompletableFuture<UserDetailsDto>> batch) {
+        try {
+            batchExecutor.execute(() -> dispatch(batch));
+        } catch (RejectedExecutionException e) {
+            shutDown(batch);
+        }
+    }
+
+    /**
+     * Fails the callers of a batch that will not be sent; {@code null} would read as unknown users.
+     */
+    private static void shutDown(Map<String, CompletableFuture<UserDetailsDto>> batch) {
+        IllegalStateException shutDown = new IllegalStateException("User batching is shut down");
+        batch.values().forEach(future -> future.completeExceptionally(shutDown));
+    }
+
+    private void dispatch(Map<String, CompletableFuture<UserDetailsDto>> batch) {
+        batches.increment();
+        batchedIds.add(batch.size());
+        try {
+            Map<String, UserDetailsDto> found = delegate.getUserDetailsByIds(batch.keySet());
+            batch.forEach((userId, future) -> future.complete(found.get(userId)));
+            log.debug("User batch of {} resolved {} users", batch.size(), found.size());
+        } catch (RuntimeException | Error e) {
+            log.warn("User batch lookup of {} ids failed: {}", batch.size(), e.getMessage());
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private UserDetailsDto await(CompletableFuture<UserDetailsDto> future, String userId) {
+        try {
+            UserDetailsDto userDetails = future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            return userDetails != null ? new UserDetailsDto(userDetails) : null;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("Gave up waiting {} ms for batched user lookup: {}", maxWaitMillis, userId);
+            throw new UserLookupTimeoutException("Gave up waiting " + maxWaitMillis + " ms for batched user lookup");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UserLookupTimeoutException("Interrupted waiting for batched user lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("User batch lookup failed", e.getCause());
+        }
+    }
+}
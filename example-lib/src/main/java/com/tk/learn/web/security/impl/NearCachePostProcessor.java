@@ -0,0 +1,55 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.UserCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps the application's {@link UserCacheService} (e.g. Redis) in a
+ * {@link NearCacheUserCacheService}, so every consumer transparently reads through the L1 tier.
+ * If an {@link InvalidationBus} is configured, L1 entries replaced on other nodes are dropped,
+ * which makes longer L1 TTLs safe.
+ *
+ * Configuration:
+ * - jwt.cache.near-cache.enabled: Enables the L1 tier (default: false)
+ * - jwt.cache.near-cache.max-size: Maximum number of sessions held in L1 (default: 10000)
+ * - jwt.cache.near-cache.ttl-seconds: L1 entry lifetime, capped by jwt.cache.ttl-seconds (default: 30)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.cache.near-cache.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class NearCachePostProcessor implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(NearCachePostProcessor.class);
+
+    private final int maxSize;
+    private final long ttlSeconds;
+    private final ObjectProvider<InvalidationBus> invalidationBus;
+
+    public NearCachePostProcessor(ObjectProvider<InvalidationBus> invalidationBus,
+                                  @Value("${jwt.cache.near-cache.max-size:10000}") int maxSize,
+                                  @Value("${jwt.cache.near-cache.ttl-seconds:30}") long ttlSeconds,
+                                  @Value("${jwt.cache.ttl-seconds:3600}") long cacheTtlSeconds) {
+        this.invalidationBus = invalidationBus;
+        this.maxSize = maxSize;
+        this.ttlSeconds = Math.min(ttlSeconds, cacheTtlSeconds);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof UserCacheService userCacheService && !(bean instanceof NearCacheUserCacheService)) {
+            log.info("Adding L1 near cache (max size {}, TTL {} s) in front of {}", maxSize, ttlSeconds, beanName);
+            return new NearCacheUserCacheService(userCacheService, maxSize, ttlSeconds, invalidationBus.getIfAvailable());
+        }
+        return bean;
+    }
+}
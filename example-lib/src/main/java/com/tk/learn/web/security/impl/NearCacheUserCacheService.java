@@ -0,0 +1,284 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.InvalidationListener;
+import com.tk.learn.web.security.UserCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier {@link UserCacheService}: a bounded in-heap L1 tier in front of a remote tier
+ * (e.g. Redis), so repeated requests for a session skip the network round trip.
+ * <p>
+ * Reads try L1 first and fill it from the remote tier on a miss; writes and removals go
+ * through to the remote tier. An L1 entry lives for the L1 TTL, capped by the TTL of the
+ * write and the user's {@code expiresAt}, so it never outlives the remote entry it mirrors.
+ * When the maximum size is reached, a single thread sweeps expired entries and then
+ * arbitrary live ones until L1 is back under 90% of the maximum.
+ * <p>
+ * Entries are stored and returned as copies, since callers mutate the DTOs they receive.
+ * Hits and misses are counted per tier for sizing.
+ * <p>
+ * With an {@link InvalidationBus}, every write and removal is published under
+ * {@link #SESSION_TOPIC}, and sessions published by other nodes are dropped from L1, so the
+ * L1 TTL can be long without serving entries another node has replaced.
+ * <p>
+ * A read that misses L1 must not put back a session removed while it was reading the remote
+ * tier (a logout racing the request). Every removal and invalidation bumps a generation
+ * counter (striped by session ID); the read captures it before going remote and drops its L1
+ * entry again if an invalidation of that stripe happened in between.
+ */
+public class NearCacheUserCacheService implements UserCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(NearCacheUserCacheService.class);
+
+    /**
+     * Invalidation topic carrying session IDs.
+     */
+    public static final String SESSION_TOPIC = "user-session";
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final UserCacheService remote;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final InvalidationBus bus;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l1Misses = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param remote the remote tier
+     * @param maxSize maximum number of L1 entries
+     * @param ttlSeconds upper bound on how long an entry stays in L1
+     */
+    public NearCacheUserCacheService(UserCacheService remote, int maxSize, long ttlSeconds) {
+        this(remote, maxSize, ttlSeconds, null);
+    }
+
+    /**
+     * @param remote the remote tier
+     * @param maxSize maximum number of L1 entries
+     * @param ttlSeconds upper bound on how long an entry stays in L1
+     * @param bus bus to exchange session invalidations with other nodes, or {@code null}
+     */
+    public NearCacheUserCacheService(UserCacheService remote, int maxSize, long ttlSeconds, InvalidationBus bus) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Near cache max size must be positive");
+        }
+        this.remote = remote;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.bus = bus;
+        if (bus != null) {
+            bus.subscribe(SESSION_TOPIC, new InvalidationListener() {
+                @Override
+                public void invalidate(Collection<String> sessionIds) {
+                    sessionIds.forEach(NearCacheUserCacheService.this::removeLocal);
+                }
+
+                @Override
+                public void invalidateAll() {
+                    for (int i = 0; i < GENERATION_STRIPES; i++) {
+                        generations.incrementAndGet(i);
+                    }
+                    entries.clear();
+                }
+            });
+        }
+    }
+
+    @Override
+    public UserDetailsDto getUserFromCache(String sessionId) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(sessionId);
+        if (entry != null) {
+            if (entry.expiresAtMillis > now) {
+                l1Hits.increment();
+                return new UserDetailsDto(entry.userDetails);
+            }
+            entries.remove(sessionId, entry);
+        }
+        l1Misses.increment();
+
+        long generation = generation(sessionId);
+        UserDetailsDto userDetails = remote.getUserFromCache(sessionId);
+        if (userDetails == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        if (generation(sessionId) == generation) {
+            // The remote entry's remaining TTL is unknown, so only the L1 TTL and expiresAt apply
+            Entry filled = putLocal(sessionId, userDetails, 0, now);
+            // A removal bumps the generation before removing, so one that raced the put above
+            // either removed the entry already or is seen here
+            if (filled != null && generation(sessionId) != generation) {
+                entries.remove(sessionId, filled);
+            }
+        }
+        return userDetails;
+    }
+
+    @Override
+    public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+        remote.cacheUser(sessionId, userDetails, ttlSeconds);
+        putLocal(sessionId, userDetails, ttlSeconds, System.currentTimeMillis());
+        publish(sessionId);
+    }
+
+    @Override
+    public void removeUserFromCache(String sessionId) {
+        removeLocal(sessionId);
+        remote.removeUserFromCache(sessionId);
+        publish(sessionId);
+    }
+
+    /**
+     * Forwarded to the remote tier; the session index removes each session through the
+     * outermost cache, which clears the L1 entries too.
+     */
+    @Override
+    public int evictUser(String userId) {
+        return remote.evictUser(userId);
+    }
+
+    @Override
+    public boolean supportsEvictUser() {
+        return remote.supportsEvictUser();
+    }
+
+    public UserCacheService getRemote() {
+        return remote;
+    }
+
+    public long getL1HitCount() {
+        return l1Hits.sum();
+    }
+
+    public long getL1MissCount() {
+        return l1Misses.sum();
+    }
+
+    public long getRemoteHitCount() {
+        return remoteHits.sum();
+    }
+
+    public long getRemoteMissCount() {
+        return remoteMisses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Fraction of reads served by L1.
+     */
+    public double getL1HitRatio() {
+        return ratio(l1Hits.sum(), l1Misses.sum());
+    }
+
+    /**
+     * Fraction of L1 misses served by the remote tier.
+     */
+    public double getRemoteHitRatio() {
+        return ratio(remoteHits.sum(), remoteMisses.sum());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the stored entry, or {@code null} if none was stored
+     */
+    private Entry putLocal(String sessionId, UserDetailsDto userDetails, long ttlSeconds, long now) {
+        if (sessionId == null) {
+            return null;
+        }
+        long expiresAt = now + ttlMillis;
+        if (ttlSeconds > 0) {
+            expiresAt = Math.min(expiresAt, now + ttlSeconds * 1000);
+        }
+        if (userDetails.getExpiresAt() > 0) {
+            expiresAt = Math.min(expiresAt, userDetails.getExpiresAt());
+        }
+        if (expiresAt <= now) {
+            entries.remove(sessionId);
+            return null;
+        }
+        if (entries.size() >= maxSize && !entries.containsKey(sessionId)) {
+            sweep(now);
+        }
+        Entry entry = new Entry(new UserDetailsDto(userDetails), expiresAt);
+        entries.put(sessionId, entry);
+        return entry;
+    }
+
+    private void removeLocal(String sessionId) {
+        generations.incrementAndGet(stripe(sessionId));
+        entries.remove(sessionId);
+    }
+
+    private long generation(String sessionId) {
+        return generations.get(stripe(sessionId));
+    }
+
+    private static int stripe(String sessionId) {
+        return Objects.hashCode(sessionId) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Drops expired entries, then arbitrary live ones, until L1 is below 90% of its maximum
+     * size. Only one thread sweeps at a time.
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxSize - Math.max(1, maxSize / 10);
+            entries.values().removeIf(entry -> entry.expiresAtMillis <= now);
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && entries.size() > target; ) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+            log.debug("User near cache swept; size now {}", entries.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private void publish(String sessionId) {
+        if (bus != null) {
+            bus.publish(SESSION_TOPIC, sessionId);
+        }
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    private record Entry(UserDetailsDto userDetails, long expiresAtMillis) {
+    }
+}
@@ -5,15 +5,21 @@ import com.tk.learn.web.security.UserCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
  * No-op implementation of UserCacheService.
- * Used when no actual cache implementation (e.g., Redis) is configured.
+ * Used when no actual cache implementation (e.g., Redis or off-heap) is configured.
  * This is a fallback component to prevent NullPointerException.
  */
 @Component
 @ConditionalOnMissingBean(UserCacheService.class)
+@ConditionalOnProperty(
+    name = {"jwt.cache.redis.enabled", "jwt.cache.off-heap.enabled"},
+    havingValue = "false",
+    matchIfMissing = true
+)
 public class NoOpUserCacheService implements UserCacheService {
 
     private static final Logger log = LoggerFactory.getLogger(NoOpUserCacheService.class);
@@ -34,5 +40,19 @@ public class NoOpUserCacheService implements UserCacheService {
     public void removeUserFromCache(String sessionId) {
         log.debug("No-op cache: removeUserFromCache called for sessionId: {}", sessionId);
     }
+
+    @Override
+    public int evictUser(String userId) {
+        log.debug("No-op cache: evictUser called for userId: {}", userId);
+        return 0;
+    }
+
+    /**
+     * Nothing is ever cached, so there is never a session left to evict.
+     */
+    @Override
+    public boolean supportsEvictUser() {
+        return true;
+    }
 }
 
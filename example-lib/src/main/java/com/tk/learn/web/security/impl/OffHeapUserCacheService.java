@@ -0,0 +1,441 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserCacheService;
+import com.tk.learn.web.security.UserDetailsCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process {@link UserCacheService} that keeps entries off the Java heap, so millions of
+ * cached sessions add no old-gen pressure or GC pause time.
+ * <p>
+ * The cache is split into segments, each guarded by its own lock and owning two direct
+ * buffers: a ring buffer holding the encoded entries in write order, and an open-addressing
+ * index (linear probing, 64-bit sessionId hash to ring offset). Each ring record carries the
+ * sessionId, so hash collisions are resolved exactly, and its expiry time, checked on read.
+ * When a write needs space, or a segment holds its share of {@code maxEntries}, the oldest
+ * records are evicted first. Removals shift later index slots back instead of leaving
+ * tombstones, so the index never needs rebuilding. Only the segment objects live on the heap.
+ * <p>
+ * Entries are encoded with a {@link UserDetailsCodec} and every read decodes a fresh copy.
+ * An entry larger than a segment's ring is not cached.
+ *
+ * Configuration:
+ * - jwt.cache.off-heap.enabled: Enables the off-heap cache (default: false)
+ * - jwt.cache.off-heap.capacity-mb: Total ring buffer size across segments (default: 256)
+ * - jwt.cache.off-heap.max-entries: Maximum number of sessions (default: 1000000)
+ * - jwt.cache.off-heap.segments: Number of independently locked segments, a power of two (default: 16)
+ * - jwt.cache.off-heap.encoding: compact, length-prefixed or java (default: compact)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.cache.off-heap.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class OffHeapUserCacheService implements UserCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapUserCacheService.class);
+
+    private final Segment[] segments;
+    private final UserDetailsCodec codec;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    @Autowired
+    public OffHeapUserCacheService(@Value("${jwt.cache.off-heap.capacity-mb:256}") long capacityMb,
+                                   @Value("${jwt.cache.off-heap.max-entries:1000000}") int maxEntries,
+                                   @Value("${jwt.cache.off-heap.segments:16}") int segmentCount,
+                                   @Value("${jwt.cache.off-heap.encoding:compact}") String encoding) {
+        this(capacityMb * 1024 * 1024, maxEntries, segmentCount,
+                UserDetailsCodecs.forName(encoding, "jwt.cache.off-heap.encoding"));
+        log.info("Off-heap user cache: {} MB, {} entries max, {} segments, {} encoding",
+                capacityMb, maxEntries, segmentCount, encoding);
+    }
+
+    /**
+     * @param capacityBytes total ring buffer size, split evenly across segments
+     * @param maxEntries maximum number of cached sessions, split evenly across segments
+     * @param segmentCount number of segments, a power of two
+     * @param codec encoding of the stored entries
+     */
+    public OffHeapUserCacheService(long capacityBytes, int maxEntries, int segmentCount, UserDetailsCodec codec) {
+        if (segmentCount <= 0 || Integer.bitCount(segmentCount) != 1) {
+            throw new IllegalArgumentException("Off-heap cache segments must be a positive power of two");
+        }
+        long segmentCapacity = capacityBytes / segmentCount;
+        if (segmentCapacity < Segment.HEADER_SIZE || segmentCapacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap cache capacity per segment must be between "
+                    + Segment.HEADER_SIZE + " bytes and 2 GB, was " + segmentCapacity);
+        }
+        if (maxEntries < segmentCount) {
+            throw new IllegalArgumentException("Off-heap cache max entries must be at least the segment count");
+        }
+        this.codec = codec;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment((int) segmentCapacity, maxEntries / segmentCount);
+        }
+    }
+
+    @Override
+    public UserDetailsDto getUserFromCache(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        byte[] key = sessionId.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(key);
+        byte[] value = segmentFor(hash).get(key, hash, System.currentTimeMillis());
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return codec.decode(value);
+    }
+
+    @Override
+    public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+        if (sessionId == null) {
+            return;
+        }
+        byte[] key = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] value = codec.encode(userDetails);
+        long now = System.currentTimeMillis();
+        long expiresAt = ttlSeconds > 0 ? now + ttlSeconds * 1000 : Long.MAX_VALUE;
+        long hash = hash(key);
+        if (!segmentFor(hash).put(key, hash, value, expiresAt, now)) {
+            rejections.increment();
+            log.debug("User details for session {} too large for the off-heap cache ({} bytes)",
+                    sessionId, value.length);
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        byte[] key = sessionId.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(key);
+        segmentFor(hash).remove(key, hash);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of entries dropped because they were read after expiring.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Number of unexpired entries dropped to make room for newer ones.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of writes skipped because the entry was larger than a segment.
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Ring buffer bytes currently occupied by records, including superseded ones not yet reclaimed.
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            used += segment.usedBytes();
+        }
+        return used;
+    }
+
+    private Segment segmentFor(long hash) {
+        // The index uses the low bits, so pick the segment from the high ones
+        return segments[(int) (hash >>> 40) & (segments.length - 1)];
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 sessionId, remapped away from the empty-slot marker.
+     */
+    static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 29;
+        return hash != Segment.EMPTY ? hash : 1;
+    }
+
+    /**
+     * One independently locked ring buffer and its index. Ring positions are tracked as
+     * ever-increasing logical offsets; the physical position is the offset modulo capacity.
+     * <p>
+     * Record layout: {@code int length, int keyLength, long hash, long expiresAt, key, value}.
+     * A record never wraps; the bytes left at the end of the ring are skipped as padding.
+     */
+    private final class Segment {
+
+        static final int HEADER_SIZE = 24;
+        static final long EMPTY = 0;
+        private static final int PADDING = -1;
+        private static final int SLOT_SIZE = 16;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ByteBuffer ring;
+        private final ByteBuffer index;
+        private final int capacity;
+        private final int maxEntries;
+        private final int slotMask;
+
+        private long head;
+        private long tail;
+        private int size;
+
+        Segment(int capacity, int maxEntries) {
+            this.capacity = capacity;
+            this.maxEntries = maxEntries;
+            // At most half full, so probe sequences stay short
+            int slots = Integer.highestOneBit(Math.max(1, maxEntries) * 2 - 1) << 1;
+            this.slotMask = slots - 1;
+            this.ring = ByteBuffer.allocateDirect(capacity);
+            this.index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        }
+
+        byte[] get(byte[] key, long hash, long now) {
+            lock.lock();
+            try {
+                int slot = find(key, hash);
+                if (slot < 0) {
+                    return null;
+                }
+                int position = position(index.getLong(slot * SLOT_SIZE + 8));
+                if (ring.getLong(position + 16) <= now) {
+                    delete(slot);
+                    expirations.increment();
+                    return null;
+                }
+                byte[] value = new byte[ring.getInt(position) - HEADER_SIZE - key.length];
+                ring.get(position + HEADER_SIZE + key.length, value);
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return false if the record cannot fit in the ring at all
+         */
+        boolean put(byte[] key, long hash, byte[] value, long expiresAt, long now) {
+            long length = (long) HEADER_SIZE + key.length + value.length;
+            lock.lock();
+            try {
+                int existing = find(key, hash);
+                if (existing >= 0) {
+                    delete(existing);
+                }
+                if (length > capacity) {
+                    return false;
+                }
+                int remaining = capacity - position(tail);
+                if (remaining < length) {
+                    reserve(remaining, now);
+                    if (remaining >= HEADER_SIZE) {
+                        int position = position(tail);
+                        ring.putInt(position, remaining);
+                        ring.putInt(position + 4, PADDING);
+                    }
+                    tail += remaining;
+                }
+                reserve(length, now);
+                while (size >= maxEntries) {
+                    evictOldest(now);
+                }
+                int position = position(tail);
+                ring.putInt(position, (int) length);
+                ring.putInt(position + 4, key.length);
+                ring.putLong(position + 8, hash);
+                ring.putLong(position + 16, expiresAt);
+                ring.put(position + HEADER_SIZE, key);
+                ring.put(position + HEADER_SIZE + key.length, value);
+                insert(hash, tail);
+                tail += length;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(byte[] key, long hash) {
+            lock.lock();
+            try {
+                int slot = find(key, hash);
+                if (slot >= 0) {
+                    delete(slot);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long usedBytes() {
+            lock.lock();
+            try {
+                return tail - head;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Evicts the oldest records until {@code length} bytes are free at the tail.
+         */
+        private void reserve(long length, long now) {
+            while (capacity - (tail - head) < length) {
+                evictOldest(now);
+            }
+        }
+
+        /**
+         * Advances the head past the oldest record, dropping its index slot if the record is
+         * still the current entry for its session.
+         */
+        private void evictOldest(long now) {
+            int position = position(head);
+            int remaining = capacity - position;
+            if (remaining < HEADER_SIZE) {
+                head += remaining;
+                return;
+            }
+            int length = ring.getInt(position);
+            if (ring.getInt(position + 4) != PADDING) {
+                int slot = slotOf(ring.getLong(position + 8), head);
+                if (slot >= 0) {
+                    delete(slot);
+                    if (ring.getLong(position + 16) > now) {
+                        evictions.increment();
+                    }
+                }
+            }
+            head += length;
+        }
+
+        private int find(byte[] key, long hash) {
+            for (int slot = (int) hash & slotMask; ; slot = (slot + 1) & slotMask) {
+                long slotHash = index.getLong(slot * SLOT_SIZE);
+                if (slotHash == EMPTY) {
+                    return -1;
+                }
+                if (slotHash == hash && keyEquals(position(index.getLong(slot * SLOT_SIZE + 8)), key)) {
+                    return slot;
+                }
+            }
+        }
+
+        private int slotOf(long hash, long offset) {
+            for (int slot = (int) hash & slotMask; ; slot = (slot + 1) & slotMask) {
+                long slotHash = index.getLong(slot * SLOT_SIZE);
+                if (slotHash == EMPTY) {
+                    return -1;
+                }
+                if (slotHash == hash && index.getLong(slot * SLOT_SIZE + 8) == offset) {
+                    return slot;
+                }
+            }
+        }
+
+        private void insert(long hash, long offset) {
+            int slot = (int) hash & slotMask;
+            while (index.getLong(slot * SLOT_SIZE) != EMPTY) {
+                slot = (slot + 1) & slotMask;
+            }
+            index.putLong(slot * SLOT_SIZE, hash);
+            index.putLong(slot * SLOT_SIZE + 8, offset);
+            size++;
+        }
+
+        /**
+         * Empties a slot and shifts back any later slot in the probe run that would otherwise
+         * become unreachable (backward-shift deletion).
+         */
+        private void delete(int slot) {
+            int hole = slot;
+            for (int next = (hole + 1) & slotMask; ; next = (next + 1) & slotMask) {
+                long nextHash = index.getLong(next * SLOT_SIZE);
+                if (nextHash == EMPTY) {
+                    break;
+                }
+                int home = (int) nextHash & slotMask;
+                // Move the entry into the hole unless its home lies cyclically in (hole, next]
+                if (((next - home) & slotMask) >= ((next - hole) & slotMask)) {
+                    index.putLong(hole * SLOT_SIZE, nextHash);
+                    index.putLong(hole * SLOT_SIZE + 8, index.getLong(next * SLOT_SIZE + 8));
+                    hole = next;
+                }
+            }
+            index.putLong(hole * SLOT_SIZE, EMPTY);
+            index.putLong(hole * SLOT_SIZE + 8, 0);
+            size--;
+        }
+
+        private boolean keyEquals(int position, byte[] key) {
+            if (ring.getInt(position + 4) != key.length) {
+                return false;
+            }
+            int keyPosition = position + HEADER_SIZE;
+            for (int i = 0; i < key.length; i++) {
+                if (ring.get(keyPosition + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int position(long offset) {
+            return (int) (offset % capacity);
+        }
+    }
+}
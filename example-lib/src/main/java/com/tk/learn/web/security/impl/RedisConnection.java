@@ -0,0 +1,235 @@
+package com.tk.learn.web.security.impl;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single blocking connection speaking RESP2, the Redis wire protocol.
+ * <p>
+ * Commands are buffered by {@link #write} and sent by {@link #flush}, so several commands can
+ * be pipelined in one round trip and their replies read back in order with {@link #read}.
+ * Replies are mapped as bulk strings to {@code byte[]}, integers to {@link Long}, simple
+ * strings to {@link String}, arrays (e.g. pub/sub messages) to {@link List} and nil to
+ * {@code null}. Error replies are thrown as {@link IllegalStateException}. Not thread-safe;
+ * use through {@link RedisConnectionPool} or from a single owning thread.
+ * <p>
+ * With TLS the server certificate must both chain to a trusted CA and match the host name,
+ * as for HTTPS; the handshake completes before any command (including AUTH) is sent.
+ */
+final class RedisConnection implements Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private boolean broken;
+
+    /**
+     * Connects, authenticates and selects the database.
+     *
+     * @param password the password, or {@code null} when the server requires no AUTH
+     */
+    RedisConnection(String host, int port, boolean ssl, String password, int database,
+                    int timeoutMillis) throws IOException {
+        Socket plain = new Socket();
+        try {
+            plain.connect(new InetSocketAddress(host, port), timeoutMillis);
+            plain.setSoTimeout(timeoutMillis);
+            plain.setTcpNoDelay(true);
+            this.socket = ssl ? startTls(plain, host, port) : plain;
+            this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        } catch (IOException e) {
+            plain.close();
+            throw e;
+        }
+        try {
+            if (password != null && !password.isEmpty()) {
+                write(ascii("AUTH"), password.getBytes(StandardCharsets.UTF_8));
+            }
+            if (database != 0) {
+                write(ascii("SELECT"), ascii(Integer.toString(database)));
+            }
+            flush();
+            if (password != null && !password.isEmpty()) {
+                read();
+            }
+            if (database != 0) {
+                read();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static SSLSocket startTls(Socket plain, String host, int port) throws IOException {
+        SSLSocket tls = verifyingHostname(
+                (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(plain, host, port, true));
+        tls.startHandshake();
+        return tls;
+    }
+
+    /**
+     * Makes the handshake check the certificate against the host name; JSSE only does so for
+     * sockets that ask for an endpoint identification algorithm.
+     */
+    static SSLSocket verifyingHostname(SSLSocket socket) {
+        SSLParameters parameters = socket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        socket.setSSLParameters(parameters);
+        return socket;
+    }
+
+    /**
+     * Buffers one command as a RESP array of bulk strings.
+     */
+    void write(byte[]... args) throws IOException {
+        try {
+            out.write('*');
+            writeDecimal(args.length);
+            for (byte[] arg : args) {
+                out.write('$');
+                writeDecimal(arg.length);
+                out.write(arg);
+                out.write(CRLF);
+            }
+        } catch (IOException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    void flush() throws IOException {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next reply.
+     *
+     * @throws IllegalStateException for a Redis error reply; the connection stays usable
+     */
+    Object read() throws IOException {
+        try {
+            int type = in.read();
+            return switch (type) {
+                case '$' -> readBulk();
+                case ':' -> Long.parseLong(readLine());
+                case '+' -> readLine();
+                case '*' -> readArray();
+                case '-' -> throw new RedisErrorReply(readLine());
+                case -1 -> throw new EOFException("Redis closed the connection");
+                default -> throw new IOException("Unexpected RESP reply type: " + (char) type);
+            };
+        } catch (RedisErrorReply e) {
+            throw new IllegalStateException("Redis error: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Changes the read timeout, e.g. to 0 (wait forever) for a pub/sub subscriber.
+     */
+    void setReadTimeout(int timeoutMillis) throws IOException {
+        socket.setSoTimeout(timeoutMillis);
+    }
+
+    /**
+     * Whether an I/O or protocol error left the connection in an unknown state.
+     */
+    boolean isBroken() {
+        return broken || socket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+
+    private byte[] readBulk() throws IOException {
+        int length = Integer.parseInt(readLine());
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = in.readNBytes(length);
+        if (value.length != length || in.read() != '\r' || in.read() != '\n') {
+            throw new EOFException("Truncated RESP bulk string");
+        }
+        return value;
+    }
+
+    private List<Object> readArray() throws IOException {
+        int count = Integer.parseInt(readLine());
+        if (count < 0) {
+            return null;
+        }
+        List<Object> elements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            elements.add(read());
+        }
+        return elements;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(16);
+        while (true) {
+            int c = in.read();
+            if (c == -1) {
+                throw new EOFException("Truncated RESP line");
+            }
+            if (c == '\r') {
+                if (in.read() != '\n') {
+                    throw new IOException("Malformed RESP line ending");
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+    }
+
+    private void writeDecimal(int value) throws IOException {
+        out.write(ascii(Integer.toString(value)));
+        out.write(CRLF);
+    }
+
+    static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Marks an error reply while reading, so it is not mistaken for a broken connection.
+     */
+    private static final class RedisErrorReply extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private RedisErrorReply(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
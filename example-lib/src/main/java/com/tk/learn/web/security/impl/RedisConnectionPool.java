@@ -0,0 +1,117 @@
+package com.tk.learn.web.security.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of {@link RedisConnection}s.
+ * <p>
+ * At most {@code maxTotal} connections exist at once. Connections are created on demand
+ * and reused most-recently-returned first, so a quiet pool keeps its working set warm.
+ * A connection that hit an I/O or protocol error is closed instead of being returned.
+ * Callers wait at most the borrow timeout for a free connection.
+ */
+final class RedisConnectionPool {
+
+    @FunctionalInterface
+    interface Callback<T> {
+        T doWith(RedisConnection connection) throws IOException;
+    }
+
+    private final String host;
+    private final int port;
+    private final boolean ssl;
+    private final String password;
+    private final int database;
+    private final int timeoutMillis;
+    private final long borrowTimeoutMillis;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<RedisConnection> idle = new ConcurrentLinkedDeque<>();
+    private volatile boolean closed;
+
+    RedisConnectionPool(String host, int port, boolean ssl, String password, int database,
+                        int timeoutMillis, int maxTotal, long borrowTimeoutMillis) {
+        if (maxTotal <= 0) {
+            throw new IllegalArgumentException("Redis pool size must be positive");
+        }
+        this.host = host;
+        this.port = port;
+        this.ssl = ssl;
+        this.password = password;
+        this.database = database;
+        this.timeoutMillis = timeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxTotal);
+    }
+
+    /**
+     * Runs the callback on a pooled connection.
+     *
+     * @throws UncheckedIOException if no connection could be obtained or the call failed
+     */
+    <T> T execute(Callback<T> callback) {
+        RedisConnection connection = borrow();
+        try {
+            return callback.doWith(connection);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Redis call failed: " + e.getMessage(), e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    void close() {
+        closed = true;
+        RedisConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    private RedisConnection borrow() {
+        if (closed) {
+            throw new IllegalStateException("Redis connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new UncheckedIOException(new IOException(
+                        "Timed out after " + borrowTimeoutMillis + " ms waiting for a Redis connection"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a Redis connection", e);
+        }
+        RedisConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (!connection.isBroken()) {
+                return connection;
+            }
+            connection.close();
+        }
+        try {
+            return new RedisConnection(host, port, ssl, password, database, timeoutMillis);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e instanceof IOException io
+                    ? new UncheckedIOException("Cannot connect to Redis at " + host + ":" + port, io)
+                    : (RuntimeException) e;
+        }
+    }
+
+    private void release(RedisConnection connection) {
+        if (connection.isBroken() || closed) {
+            connection.close();
+        } else {
+            idle.offerFirst(connection);
+        }
+        permits.release();
+    }
+}
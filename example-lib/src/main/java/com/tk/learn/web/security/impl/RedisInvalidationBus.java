@@ -0,0 +1,209 @@
+package com.tk.learn.web.security.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link com.tk.learn.web.security.InvalidationBus} over Redis pub/sub.
+ * <p>
+ * Each batch is one {@code PUBLISH} on the channel, carrying this node's ID and the keys by
+ * topic; every node runs a subscriber thread on its own connection and ignores its own
+ * messages. Pub/sub is fire-and-forget, so after the subscriber loses its connection it
+ * resubscribes with backoff and tells the listeners to drop everything, since invalidations
+ * may have been missed in between.
+ * <p>
+ * Uses the Redis server configured for the user cache.
+ *
+ * Configuration:
+ * - jwt.invalidation.transport: redis selects this bus (default: none)
+ * - jwt.invalidation.redis.channel: Pub/sub channel (default: "jwt:invalidation")
+ * - jwt.invalidation.window-millis: Coalescing window before a batch is sent (default: 10)
+ * - jwt.invalidation.max-batch-size: Pending keys that trigger an immediate send (default: 500)
+ * - jwt.cache.redis.host / port / ssl / password / timeout-millis: Redis server
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.invalidation.transport",
+    havingValue = "redis",
+    matchIfMissing = false
+)
+public class RedisInvalidationBus extends BatchingInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisInvalidationBus.class);
+
+    private static final byte[] PUBLISH = RedisConnection.ascii("PUBLISH");
+    private static final byte[] SUBSCRIBE = RedisConnection.ascii("SUBSCRIBE");
+    private static final int FORMAT_VERSION = 1;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final String host;
+    private final int port;
+    private final boolean ssl;
+    private final String password;
+    private final int timeoutMillis;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Thread subscriber;
+    private volatile RedisConnection subscription;
+    private volatile boolean closed;
+    private RedisConnection publisher;
+
+    @Autowired
+    public RedisInvalidationBus(@Value("${jwt.cache.redis.host:localhost}") String host,
+                                @Value("${jwt.cache.redis.port:6379}") int port,
+                                @Value("${jwt.cache.redis.ssl:false}") boolean ssl,
+                                @Value("${jwt.cache.redis.password:}") String password,
+                                @Value("${jwt.cache.redis.timeout-millis:2000}") int timeoutMillis,
+                                @Value("${jwt.invalidation.redis.channel:jwt:invalidation}") String channel,
+                                @Value("${jwt.invalidation.window-millis:10}") long windowMillis,
+                                @Value("${jwt.invalidation.max-batch-size:500}") int maxBatchSize) {
+        super("invalidation-publish", windowMillis, maxBatchSize);
+        this.host = host;
+        this.port = port;
+        this.ssl = ssl;
+        this.password = password;
+        this.timeoutMillis = timeoutMillis;
+        this.channel = channel;
+        this.subscriber = new Thread(this::subscribeLoop, "invalidation-subscribe");
+        subscriber.setDaemon(true);
+        subscriber.start();
+        log.info("Publishing cache invalidations on Redis channel {} at {}:{}", channel, host, port);
+    }
+
+    @Override
+    protected void send(Map<String, Set<String>> batch) {
+        byte[] message = encode(batch);
+        try {
+            if (publisher == null || publisher.isBroken()) {
+                closeQuietly(publisher);
+                publisher = connect();
+            }
+            publisher.write(PUBLISH, channel.getBytes(StandardCharsets.UTF_8), message);
+            publisher.flush();
+            publisher.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot publish to Redis channel " + channel, e);
+        }
+    }
+
+    /**
+     * Whether the subscriber currently holds a live subscription.
+     */
+    public boolean isSubscribed() {
+        RedisConnection connection = subscription;
+        return connection != null && !connection.isBroken();
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        closeQuietly(subscription);
+        subscriber.interrupt();
+        super.destroy();
+        closeQuietly(publisher);
+    }
+
+    private void subscribeLoop() {
+        long backoffMillis = 100;
+        boolean resubscribing = false;
+        while (!closed) {
+            try (RedisConnection connection = connect()) {
+                connection.write(SUBSCRIBE, channel.getBytes(StandardCharsets.UTF_8));
+                connection.flush();
+                connection.read();
+                connection.setReadTimeout(0);
+                subscription = connection;
+                backoffMillis = 100;
+                if (resubscribing) {
+                    log.info("Resubscribed to Redis channel {}; dropping local cache entries", channel);
+                    deliverAll();
+                }
+                resubscribing = true;
+                while (!closed) {
+                    if (connection.read() instanceof List<?> reply && reply.size() == 3
+                            && reply.get(2) instanceof byte[] payload) {
+                        receive(payload);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("Redis invalidation subscriber disconnected: {}; retrying in {} ms",
+                        e.getMessage(), backoffMillis);
+                resubscribing = true;
+                LockSupport.parkNanos(backoffMillis * 1_000_000);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void receive(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readUnsignedByte() != FORMAT_VERSION || nodeId.equals(in.readUTF())) {
+                return;
+            }
+            int topics = in.readInt();
+            for (int t = 0; t < topics; t++) {
+                String topic = in.readUTF();
+                int count = in.readInt();
+                List<String> keys = new ArrayList<>(Math.min(count, 1024));
+                for (int k = 0; k < count; k++) {
+                    keys.add(in.readUTF());
+                }
+                deliver(topic, keys);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring malformed invalidation message: {}", e.getMessage());
+        }
+    }
+
+    private byte[] encode(Map<String, Set<String>> batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(nodeId);
+            out.writeInt(batch.size());
+            for (Map.Entry<String, Set<String>> entry : batch.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String key : entry.getValue()) {
+                    out.writeUTF(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private RedisConnection connect() throws IOException {
+        // Pub/sub is not scoped to a database, so none is selected
+        return new RedisConnection(host, port, ssl, password, 0, timeoutMillis);
+    }
+
+    private static void closeQuietly(RedisConnection connection) {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
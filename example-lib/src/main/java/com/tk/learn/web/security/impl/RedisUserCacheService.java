@@ -0,0 +1,254 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserCacheService;
+import com.tk.learn.web.security.UserDetailsCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis-backed {@link UserCacheService}.
+ * <p>
+ * Entries are stored under {@code keyPrefix + sessionId} in a compact binary encoding
+ * ({@link CompactUserDetailsCodec} by default) rather than Java serialization, with the
+ * TTL enforced server-side by {@code SET ... EX}. Connections come from a bounded pool, and the
+ * batch operations pipeline all their commands in a single round trip.
+ * <p>
+ * An entry that cannot be decoded (e.g. written by an older encoding) is treated as a miss
+ * and overwritten by the next write. Connection and protocol errors are thrown, so callers
+ * such as {@code JwtAuthFilter} can apply their own fallbacks.
+ *
+ * Configuration:
+ * - jwt.cache.redis.enabled: Enables the Redis cache (default: false)
+ * - jwt.cache.redis.host / port: Redis server (default: localhost:6379)
+ * - jwt.cache.redis.ssl: Connect over TLS, e.g. Azure Cache for Redis on 6380 (default: false)
+ * - jwt.cache.redis.password: AUTH password (optional)
+ * - jwt.cache.redis.database: Database index (default: 0)
+ * - jwt.cache.redis.timeout-millis: Connect and read timeout (default: 2000)
+ * - jwt.cache.redis.pool.max-total: Maximum connections (default: 16)
+ * - jwt.cache.redis.pool.borrow-timeout-millis: Wait for a free connection (default: 1000)
+ * - jwt.cache.redis.key-prefix: Key prefix (default: "jwt:user:")
+ * - jwt.cache.redis.encoding: compact, length-prefixed or java (default: compact)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.cache.redis.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class RedisUserCacheService implements UserCacheService, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisUserCacheService.class);
+
+    private static final byte[] GET = RedisConnection.ascii("GET");
+    private static final byte[] SET = RedisConnection.ascii("SET");
+    private static final byte[] DEL = RedisConnection.ascii("DEL");
+    private static final byte[] EX = RedisConnection.ascii("EX");
+
+    private final RedisConnectionPool pool;
+    private final String keyPrefix;
+    private final UserDetailsCodec codec;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder decodeFailures = new LongAdder();
+
+    @Autowired
+    public RedisUserCacheService(@Value("${jwt.cache.redis.host:localhost}") String host,
+                                 @Value("${jwt.cache.redis.port:6379}") int port,
+                                 @Value("${jwt.cache.redis.ssl:false}") boolean ssl,
+                                 @Value("${jwt.cache.redis.password:}") String password,
+                                 @Value("${jwt.cache.redis.database:0}") int database,
+                                 @Value("${jwt.cache.redis.timeout-millis:2000}") int timeoutMillis,
+                                 @Value("${jwt.cache.redis.pool.max-total:16}") int maxTotal,
+                                 @Value("${jwt.cache.redis.pool.borrow-timeout-millis:1000}") long borrowTimeoutMillis,
+                                 @Value("${jwt.cache.redis.key-prefix:jwt:user:}") String keyPrefix,
+                                 @Value("${jwt.cache.redis.encoding:compact}") String encoding) {
+        this(new RedisConnectionPool(host, port, ssl, password, database, timeoutMillis, maxTotal, borrowTimeoutMillis),
+                keyPrefix, UserDetailsCodecs.forName(encoding, "jwt.cache.redis.encoding"));
+        log.info("Redis user cache at {}:{} (db {}, pool {}, {} encoding)", host, port, database, maxTotal, encoding);
+    }
+
+    RedisUserCacheService(RedisConnectionPool pool, String keyPrefix, UserDetailsCodec codec) {
+        this.pool = pool;
+        this.keyPrefix = keyPrefix;
+        this.codec = codec;
+    }
+
+    @Override
+    public UserDetailsDto getUserFromCache(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        byte[] value = pool.execute(connection -> {
+            connection.write(GET, key(sessionId));
+            connection.flush();
+            return (byte[]) connection.read();
+        });
+        return decode(sessionId, value);
+    }
+
+    @Override
+    public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+        if (sessionId == null) {
+            return;
+        }
+        byte[] value = codec.encode(userDetails);
+        pool.execute(connection -> {
+            writeSet(connection, sessionId, value, ttlSeconds);
+            connection.flush();
+            return connection.read();
+        });
+    }
+
+    @Override
+    public void removeUserFromCache(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        pool.execute(connection -> {
+            connection.write(DEL, key(sessionId));
+            connection.flush();
+            return connection.read();
+        });
+    }
+
+    /**
+     * Pipelines one GET per session in a single round trip.
+     */
+    @Override
+    public Map<String, UserDetailsDto> getUsersFromCache(Collection<String> sessionIds) {
+        List<String> keys = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds) {
+            if (sessionId != null) {
+                keys.add(sessionId);
+            }
+        }
+        if (keys.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Object> values = pool.execute(connection -> {
+            for (String sessionId : keys) {
+                connection.write(GET, key(sessionId));
+            }
+            connection.flush();
+            return readAll(connection, keys.size());
+        });
+        Map<String, UserDetailsDto> result = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            UserDetailsDto userDetails = decode(keys.get(i), (byte[]) values.get(i));
+            if (userDetails != null) {
+                result.put(keys.get(i), userDetails);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pipelines one SET per session in a single round trip.
+     */
+    @Override
+    public void cacheUsers(Map<String, UserDetailsDto> usersBySessionId, long ttlSeconds) {
+        Map<String, byte[]> values = new HashMap<>();
+        usersBySessionId.forEach((sessionId, userDetails) -> {
+            if (sessionId != null) {
+                values.put(sessionId, codec.encode(userDetails));
+            }
+        });
+        if (values.isEmpty()) {
+            return;
+        }
+        pool.execute(connection -> {
+            for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+                writeSet(connection, entry.getKey(), entry.getValue(), ttlSeconds);
+            }
+            connection.flush();
+            return readAll(connection, values.size());
+        });
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of entries found but not decodable, counted as misses too.
+     */
+    public long getDecodeFailureCount() {
+        return decodeFailures.sum();
+    }
+
+    @Override
+    public void destroy() {
+        pool.close();
+    }
+
+    /**
+     * Reads the replies of {@code count} pipelined commands. Every reply is drained before the
+     * first error reply is rethrown, so the connection stays in sync for its next user.
+     */
+    private static List<Object> readAll(RedisConnection connection, int count) throws IOException {
+        List<Object> replies = new ArrayList<>(count);
+        IllegalStateException error = null;
+        for (int i = 0; i < count; i++) {
+            try {
+                replies.add(connection.read());
+            } catch (IllegalStateException e) {
+                error = error != null ? error : e;
+                replies.add(null);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return replies;
+    }
+
+    private void writeSet(RedisConnection connection, String sessionId, byte[] value, long ttlSeconds)
+            throws IOException {
+        if (ttlSeconds > 0) {
+            connection.write(SET, key(sessionId), value, EX, RedisConnection.ascii(Long.toString(ttlSeconds)));
+        } else {
+            connection.write(SET, key(sessionId), value);
+        }
+    }
+
+    private UserDetailsDto decode(String sessionId, byte[] value) {
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+        try {
+            UserDetailsDto userDetails = codec.decode(value);
+            hits.increment();
+            return userDetails;
+        } catch (IllegalArgumentException e) {
+            decodeFailures.increment();
+            misses.increment();
+            log.debug("Ignoring undecodable cache entry for session {}: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] key(String sessionId) {
+        return (keyPrefix + sessionId).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.UserCacheService;
+import com.tk.learn.web.security.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Wraps the application's {@link UserCacheService} in a {@link RefreshAheadUserCacheService},
+ * so cached user details get jittered TTLs and are reloaded shortly before they expire.
+ * <p>
+ * The {@link UserService} is resolved lazily at refresh time, so it is still created (and
+ * decorated) as a regular bean rather than during post-processor registration. Spring only
+ * destroys the beans it created, not the wrappers returned here, so this post-processor stops
+ * their refresh threads itself.
+ *
+ * Configuration:
+ * - jwt.cache.refresh-ahead.enabled: Enables refresh-ahead and TTL jitter (default: false)
+ * - jwt.cache.refresh-ahead.seconds: How long before expiry a read triggers a refresh (default: 300)
+ * - jwt.cache.refresh-ahead.jitter-percent: Maximum TTL reduction per write (default: 10)
+ * - jwt.cache.refresh-ahead.max-tracked: Maximum number of sessions tracked for refresh (default: 100000)
+ * - jwt.cache.refresh-ahead.threads: Number of refresh threads (default: 2)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.cache.refresh-ahead.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class RefreshAheadPostProcessor implements BeanPostProcessor, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshAheadPostProcessor.class);
+
+    private final ObjectProvider<UserService> userService;
+    private final long refreshAheadSeconds;
+    private final int jitterPercent;
+    private final int maxTracked;
+    private final int threads;
+
+    private final List<RefreshAheadUserCacheService> wrappers = new CopyOnWriteArrayList<>();
+
+    public RefreshAheadPostProcessor(ObjectProvider<UserService> userService,
+                                     @Value("${jwt.cache.refresh-ahead.seconds:300}") long refreshAheadSeconds,
+                                     @Value("${jwt.cache.refresh-ahead.jitter-percent:10}") int jitterPercent,
+                                     @Value("${jwt.cache.refresh-ahead.max-tracked:100000}") int maxTracked,
+                                     @Value("${jwt.cache.refresh-ahead.threads:2}") int threads) {
+        this.userService = userService;
+        this.refreshAheadSeconds = refreshAheadSeconds;
+        this.jitterPercent = jitterPercent;
+        this.maxTracked = maxTracked;
+        this.threads = threads;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof UserCacheService userCacheService && !(bean instanceof RefreshAheadUserCacheService)) {
+            log.info("Refreshing {} entries {} s ahead of expiry with up to {}% TTL jitter",
+                    beanName, refreshAheadSeconds, jitterPercent);
+            RefreshAheadUserCacheService wrapper = new RefreshAheadUserCacheService(userCacheService,
+                    userService::getIfAvailable, refreshAheadSeconds, jitterPercent, maxTracked, threads);
+            wrappers.add(wrapper);
+            return wrapper;
+        }
+        return bean;
+    }
+
+    @Override
+    public void destroy() {
+        wrappers.forEach(RefreshAheadUserCacheService::destroy);
+        wrappers.clear();
+    }
+}
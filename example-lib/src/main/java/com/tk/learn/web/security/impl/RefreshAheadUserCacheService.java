@@ -0,0 +1,321 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserCacheService;
+import com.tk.learn.web.security.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@link UserCacheService} decorator that spreads out and refreshes ahead of cache expiry, so
+ * sessions created together (e.g. at the start of the business day) do not all fall back to
+ * the {@link UserService} at the same moment.
+ * <p>
+ * Every write has its TTL shortened by a random jitter of up to the configured percentage.
+ * A read that hits an entry within the refresh-ahead window before its expiry still returns
+ * the cached value, and schedules one asynchronous reload from the {@link UserService}; the
+ * reloaded details are merged into the cached ones and written back with a fresh TTL.
+ * <p>
+ * A refresh writes back only while it still holds its claim on the session: a
+ * {@link #removeUserFromCache} or {@link #evictUser} during the reload cancels the claim and the
+ * result is dropped, and one that lands while the result is being written has the write undone,
+ * so a refresh never brings back a session that was logged out or evicted.
+ * <p>
+ * Write times are tracked in-process, so only entries written through this instance are
+ * refreshed ahead; the others simply expire as before. Tracking is bounded by the maximum
+ * tracked size. Refreshes run on a small daemon pool with a bounded queue; when the queue is
+ * full the refresh is skipped and the entry expires normally.
+ */
+public class RefreshAheadUserCacheService implements UserCacheService, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshAheadUserCacheService.class);
+
+    private static final long RETRY_DELAY_MILLIS = 30_000;
+    private static final int QUEUE_CAPACITY = 1_000;
+
+    private final UserCacheService cache;
+    private final Supplier<UserService> userService;
+    private final long refreshAheadMillis;
+    private final int jitterPercent;
+    private final int maxTracked;
+
+    private final Map<String, Expiry> expiries = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private final LongAdder refreshesTriggered = new LongAdder();
+    private final LongAdder refreshesFailed = new LongAdder();
+    private final LongAdder refreshesSkipped = new LongAdder();
+
+    /**
+     * @param cache the underlying cache
+     * @param userService resolves the user service at refresh time
+     * @param refreshAheadSeconds how long before expiry a read triggers a refresh
+     * @param jitterPercent maximum percentage by which a write's TTL is shortened
+     * @param maxTracked maximum number of sessions whose expiry is tracked
+     * @param refreshThreads number of threads performing refreshes
+     */
+    public RefreshAheadUserCacheService(UserCacheService cache, Supplier<UserService> userService,
+                                        long refreshAheadSeconds, int jitterPercent, int maxTracked,
+                                        int refreshThreads) {
+        if (jitterPercent < 0 || jitterPercent >= 100) {
+            throw new IllegalArgumentException("TTL jitter percent must be between 0 and 99");
+        }
+        this.cache = cache;
+        this.userService = userService;
+        this.refreshAheadMillis = refreshAheadSeconds * 1000;
+        this.jitterPercent = jitterPercent;
+        this.maxTracked = maxTracked;
+        this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "user-cache-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public UserDetailsDto getUserFromCache(String sessionId) {
+        UserDetailsDto userDetails = cache.getUserFromCache(sessionId);
+        if (userDetails == null) {
+            if (sessionId != null) {
+                expiries.remove(sessionId);
+            }
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Expiry expiry = sessionId != null ? expiries.get(sessionId) : null;
+        if (expiry != null && expiry.refreshAtMillis <= now && expiry.expiresAtMillis > now) {
+            // Claim the refresh; only the caller that swaps the entry schedules it
+            if (expiries.replace(sessionId, expiry, expiry.inFlight())) {
+                scheduleRefresh(sessionId, new UserDetailsDto(userDetails), expiry);
+            }
+        }
+        return userDetails;
+    }
+
+    @Override
+    public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+        long ttl = jitter(ttlSeconds);
+        cache.cacheUser(sessionId, userDetails, ttl);
+        if (sessionId == null || ttl <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (expiries.size() >= maxTracked && !expiries.containsKey(sessionId)) {
+            sweep(now);
+        }
+        expiries.put(sessionId, expiry(now, ttl, ttlSeconds, userDetails != null ? userDetails.getUserId() : null));
+    }
+
+    @Override
+    public void removeUserFromCache(String sessionId) {
+        if (sessionId != null) {
+            expiries.remove(sessionId);
+        }
+        cache.removeUserFromCache(sessionId);
+    }
+
+    @Override
+    public int evictUser(String userId) {
+        if (userId != null) {
+            // Cancel refreshes in flight before evicting, so none of them writes a session back
+            expiries.values().removeIf(expiry -> userId.equals(expiry.userId));
+        }
+        return cache.evictUser(userId);
+    }
+
+    @Override
+    public boolean supportsEvictUser() {
+        return cache.supportsEvictUser();
+    }
+
+    public UserCacheService getCache() {
+        return cache;
+    }
+
+    /**
+     * Number of asynchronous refreshes scheduled.
+     */
+    public long getRefreshTriggeredCount() {
+        return refreshesTriggered.sum();
+    }
+
+    /**
+     * Number of refreshes whose user service call failed.
+     */
+    public long getRefreshFailedCount() {
+        return refreshesFailed.sum();
+    }
+
+    /**
+     * Number of refreshes dropped because the refresh queue was full.
+     */
+    public long getRefreshSkippedCount() {
+        return refreshesSkipped.sum();
+    }
+
+    public int getTrackedCount() {
+        return expiries.size();
+    }
+
+    /**
+     * Whether {@link #destroy()} has stopped the refresh threads.
+     */
+    public boolean isShutdown() {
+        return refreshExecutor.isShutdown();
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private void scheduleRefresh(String sessionId, UserDetailsDto current, Expiry expiry) {
+        try {
+            refreshExecutor.execute(() -> refresh(sessionId, current, expiry));
+            refreshesTriggered.increment();
+        } catch (RejectedExecutionException e) {
+            refreshesSkipped.increment();
+            expiries.replace(sessionId, expiry.inFlight(), expiry);
+        }
+    }
+
+    private void refresh(String sessionId, UserDetailsDto current, Expiry expiry) {
+        try {
+            UserDetailsDto enriched = lookup(current);
+            if (enriched == null) {
+                // Nothing newer to write; let the entry expire as usual
+                expiries.remove(sessionId, expiry.inFlight());
+                return;
+            }
+            writeBack(sessionId, refreshed(current, enriched), expiry);
+        } catch (RuntimeException e) {
+            refreshesFailed.increment();
+            log.warn("Refresh-ahead of cached user details failed for session {}: {}", sessionId, e.getMessage());
+            // Retry on a later read while the cached value is still valid
+            expiries.replace(sessionId, expiry.inFlight(),
+                    expiry.withRefreshAt(System.currentTimeMillis() + RETRY_DELAY_MILLIS));
+        }
+    }
+
+    /**
+     * Writes the refreshed details if the refresh still holds its claim. The claim is swapped
+     * for the new expiry before the write; if a removal takes that expiry away while the write
+     * is under way, the session is removed again, since a miss is always safe.
+     */
+    private void writeBack(String sessionId, UserDetailsDto refreshed, Expiry expiry) {
+        long ttl = jitter(expiry.ttlSeconds);
+        Expiry written = expiry(System.currentTimeMillis(), ttl, expiry.ttlSeconds, expiry.userId);
+        if (!expiries.replace(sessionId, expiry.inFlight(), written)) {
+            log.debug("Dropped refresh of cached user details removed during the refresh for session: {}", sessionId);
+            return;
+        }
+        cache.cacheUser(sessionId, refreshed, ttl);
+        if (expiries.get(sessionId) != written) {
+            log.debug("Undid refresh of cached user details removed during the write for session: {}", sessionId);
+            expiries.remove(sessionId);
+            cache.removeUserFromCache(sessionId);
+            return;
+        }
+        log.debug("Refreshed cached user details ahead of expiry for session: {}", sessionId);
+    }
+
+    /**
+     * The cached session with the user service's current profile. Unlike
+     * {@link UserDetailsDto#mergeFrom}, which keeps the old roles and permissions when the
+     * response has none, the authority lists are taken from the response as is: a refresh must
+     * carry revocations, or it would keep revoked privileges alive past the TTL indefinitely.
+     */
+    static UserDetailsDto refreshed(UserDetailsDto current, UserDetailsDto enriched) {
+        UserDetailsDto refreshed = new UserDetailsDto(current);
+        if (enriched.getEmail() != null) {
+            refreshed.setEmail(enriched.getEmail());
+        }
+        if (enriched.getUsername() != null) {
+            refreshed.setUsername(enriched.getUsername());
+        }
+        refreshed.setRoles(enriched.getRoles() != null ? enriched.getRoles() : List.of());
+        refreshed.setPermissions(enriched.getPermissions() != null ? enriched.getPermissions() : List.of());
+        return refreshed;
+    }
+
+    private UserDetailsDto lookup(UserDetailsDto current) {
+        UserService service = userService.get();
+        if (service == null) {
+            return null;
+        }
+        if (current.getUserId() != null && !current.getUserId().isEmpty()) {
+            return service.getUserDetailsById(current.getUserId());
+        }
+        if (current.getEmail() != null && !current.getEmail().isEmpty()) {
+            return service.getUserDetailsByEmail(current.getEmail());
+        }
+        return null;
+    }
+
+    private Expiry expiry(long now, long ttl, long ttlSeconds, String userId) {
+        long ttlMillis = ttl * 1000;
+        // Never refresh earlier than halfway through the entry's life
+        long refreshAt = now + Math.max(ttlMillis - refreshAheadMillis, ttlMillis / 2);
+        return new Expiry(now + ttlMillis, refreshAt, ttlSeconds, userId);
+    }
+
+    private long jitter(long ttlSeconds) {
+        if (ttlSeconds <= 0 || jitterPercent == 0) {
+            return ttlSeconds;
+        }
+        long maxJitter = ttlSeconds * jitterPercent / 100;
+        return maxJitter > 0 ? ttlSeconds - ThreadLocalRandom.current().nextLong(maxJitter + 1) : ttlSeconds;
+    }
+
+    /**
+     * Drops expired tracking entries, then arbitrary live ones, until below 90% of the
+     * maximum. Untracked entries are still served; they just are not refreshed ahead.
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxTracked - Math.max(1, maxTracked / 10);
+            expiries.values().removeIf(expiry -> expiry.expiresAtMillis <= now);
+            for (Iterator<Expiry> it = expiries.values().iterator(); it.hasNext() && expiries.size() > target; ) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * When a tracked entry expires and when a read should refresh it; a refresh in flight is
+     * marked with a refresh time of {@link Long#MAX_VALUE}. The user id lets {@link #evictUser}
+     * cancel the user's refreshes.
+     */
+    private record Expiry(long expiresAtMillis, long refreshAtMillis, long ttlSeconds, String userId) {
+
+        Expiry inFlight() {
+            return new Expiry(expiresAtMillis, Long.MAX_VALUE, ttlSeconds, userId);
+        }
+
+        Expiry withRefreshAt(long refreshAt) {
+            return new Expiry(expiresAtMillis, refreshAt, ttlSeconds, userId);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.UserCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Wraps the application's {@link UserCacheService} in a {@link SessionIndexUserCacheService},
+ * enabling {@link UserCacheService#evictUser}.
+ * <p>
+ * Sessions are removed through the final {@link UserCacheService} bean, resolved lazily, so
+ * every decorating tier sees the removal whatever order the decorators were applied in.
+ * User evictions are shared with other nodes over the {@link InvalidationBus}, if one is configured.
+ * Spring only destroys the beans it created, not the wrappers returned here, so this
+ * post-processor stops their sweep threads itself.
+ *
+ * Configuration:
+ * - jwt.cache.session-index.enabled: Enables the userId to sessions index (default: false)
+ * - jwt.cache.session-index.max-users: Maximum number of indexed users (default: 100000)
+ * - jwt.cache.session-index.max-sessions-per-user: Maximum sessions indexed per user (default: 32)
+ * - jwt.cache.session-index.sweep-interval-seconds: Interval between expiry sweeps (default: 60)
+ */
+@Component
+@ConditionalOnProperty(
+    name = "jwt.cache.session-index.enabled",
+    havingValue = "true",
+    matchIfMissing = false
+)
+public class SessionIndexPostProcessor implements BeanPostProcessor, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionIndexPostProcessor.class);
+
+    private final ObjectProvider<UserCacheService> userCacheService;
+    private final ObjectProvider<InvalidationBus> invalidationBus;
+    private final int maxUsers;
+    private final int maxSessionsPerUser;
+    private final long ttlSeconds;
+    private final long sweepIntervalSeconds;
+    private final List<SessionIndexUserCacheService> wrappers = new CopyOnWriteArrayList<>();
+
+    public SessionIndexPostProcessor(ObjectProvider<UserCacheService> userCacheService,
+                                     ObjectProvider<InvalidationBus> invalidationBus,
+                                     @Value("${jwt.cache.session-index.max-users:100000}") int maxUsers,
+                                     @Value("${jwt.cache.session-index.max-sessions-per-user:32}") int maxSessionsPerUser,
+                                     @Value("${jwt.cache.ttl-seconds:3600}") long ttlSeconds,
+                                     @Value("${jwt.cache.session-index.sweep-interval-seconds:60}") long sweepIntervalSeconds) {
+        this.userCacheService = userCacheService;
+        this.invalidationBus = invalidationBus;
+        this.maxUsers = maxUsers;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.ttlSeconds = ttlSeconds;
+        this.sweepIntervalSeconds = sweepIntervalSeconds;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof UserCacheService cache && !(bean instanceof SessionIndexUserCacheService)) {
+            log.info("Indexing {} sessions by user (max {} users, {} sessions each)",
+                    beanName, maxUsers, maxSessionsPerUser);
+            SessionIndexUserCacheService wrapper = new SessionIndexUserCacheService(cache,
+                    userCacheService::getObject, maxUsers, maxSessionsPerUser, ttlSeconds,
+                    sweepIntervalSeconds, invalidationBus.getIfAvailable());
+            wrappers.add(wrapper);
+            return wrapper;
+        }
+        return bean;
+    }
+
+    @Override
+    public void destroy() {
+        wrappers.forEach(SessionIndexUserCacheService::destroy);
+        wrappers.clear();
+    }
+}
@@ -0,0 +1,353 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.InvalidationListener;
+import com.tk.learn.web.security.UserCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@link UserCacheService} decorator keeping a userId to sessionIds index, so
+ * {@link #evictUser} removes all of a user's cached sessions in time proportional to their
+ * session count instead of flushing the cache.
+ * <p>
+ * Sessions are indexed when written and when read back, so entries written by another node
+ * of a shared cache are covered once this node has seen them. Each indexed session expires
+ * with its cache entry (the configured cache TTL when unknown). Expired sessions are pruned
+ * whenever their user is touched and by a periodic sweep on a background daemon thread, so a
+ * request only ever works on its own user's entry.
+ * <p>
+ * The index is bounded per user and in total. The total bound is enforced by the sweep thread:
+ * a request that takes the index over its user limit only schedules an immediate sweep, so the
+ * index may briefly hold more users until it runs. A session that has to leave the index to
+ * make room is removed from the cache too, so no cached session ever escapes {@link #evictUser}.
+ * Removals go through the outermost cache bean, so decorating tiers (e.g. an L1 near cache)
+ * drop their copies as well.
+ * <p>
+ * With an {@link InvalidationBus}, {@link #evictUser} is published under {@link #USER_TOPIC}
+ * and each node evicts the sessions it has indexed, which covers sessions of a shared cache
+ * that only other nodes have seen. A user eviction missed while the bus was disconnected
+ * falls back to the entries' TTL.
+ */
+public class SessionIndexUserCacheService implements UserCacheService, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionIndexUserCacheService.class);
+
+    /**
+     * Invalidation topic carrying user IDs.
+     */
+    public static final String USER_TOPIC = "user";
+
+    private final UserCacheService cache;
+    private final Supplier<UserCacheService> removeThrough;
+    private final int maxUsers;
+    private final int maxSessionsPerUser;
+    private final long defaultTtlMillis;
+    private final InvalidationBus bus;
+
+    private final Map<String, Sessions> index = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor sweeper;
+    private final AtomicBoolean sweepRequested = new AtomicBoolean();
+
+    private final LongAdder evictedUsers = new LongAdder();
+    private final LongAdder evictedSessions = new LongAdder();
+    private final LongAdder overflowRemovals = new LongAdder();
+
+    /**
+     * @param cache the cache to index
+     * @param removeThrough the cache to remove sessions through, normally the outermost
+     *                      {@link UserCacheService} bean; {@code null} for this decorator
+     * @param maxUsers maximum number of indexed users
+     * @param maxSessionsPerUser maximum number of indexed sessions per user
+     * @param defaultTtlSeconds lifetime of sessions indexed without a known TTL
+     * @param sweepIntervalSeconds how often expired sessions are swept from the whole index
+     */
+    public SessionIndexUserCacheService(UserCacheService cache, Supplier<UserCacheService> removeThrough,
+                                        int maxUsers, int maxSessionsPerUser,
+                                        long defaultTtlSeconds, long sweepIntervalSeconds) {
+        this(cache, removeThrough, maxUsers, maxSessionsPerUser, defaultTtlSeconds, sweepIntervalSeconds, null);
+    }
+
+    /**
+     * @param bus bus to exchange user evictions with other nodes, or {@code null}
+     */
+    public SessionIndexUserCacheService(UserCacheService cache, Supplier<UserCacheService> removeThrough,
+                                        int maxUsers, int maxSessionsPerUser,
+                                        long defaultTtlSeconds, long sweepIntervalSeconds,
+                                        InvalidationBus bus) {
+        if (maxUsers <= 0 || maxSessionsPerUser <= 0) {
+            throw new IllegalArgumentException("Session index limits must be positive");
+        }
+        if (sweepIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("Session index sweep interval must be positive");
+        }
+        this.cache = cache;
+        this.removeThrough = removeThrough != null ? removeThrough : () -> this;
+        this.maxUsers = maxUsers;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.defaultTtlMillis = defaultTtlSeconds * 1000;
+        this.bus = bus;
+        this.sweeper = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "session-index-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+        if (bus != null) {
+            bus.subscribe(USER_TOPIC, new InvalidationListener() {
+                @Override
+                public void invalidate(Collection<String> userIds) {
+                    userIds.forEach(SessionIndexUserCacheService.this::evictLocally);
+                }
+
+                @Override
+                public void invalidateAll() {
+                    // Sessions of a missed eviction are unknown here; their TTL bounds them
+                }
+            });
+        }
+    }
+
+    @Override
+    public UserDetailsDto getUserFromCache(String sessionId) {
+        UserDetailsDto userDetails = cache.getUserFromCache(sessionId);
+        if (userDetails != null) {
+            track(userDetails.getUserId(), sessionId, 0, false);
+        }
+        return userDetails;
+    }
+
+    @Override
+    public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+        cache.cacheUser(sessionId, userDetails, ttlSeconds);
+        track(userDetails.getUserId(), sessionId, ttlSeconds, true);
+    }
+
+    @Override
+    public void removeUserFromCache(String sessionId) {
+        // The index entry is left to expire; evicting an already removed session is harmless
+        cache.removeUserFromCache(sessionId);
+    }
+
+    @Override
+    public Map<String, UserDetailsDto> getUsersFromCache(Collection<String> sessionIds) {
+        Map<String, UserDetailsDto> users = cache.getUsersFromCache(sessionIds);
+        users.forEach((sessionId, userDetails) -> track(userDetails.getUserId(), sessionId, 0, false));
+        return users;
+    }
+
+    @Override
+    public void cacheUsers(Map<String, UserDetailsDto> usersBySessionId, long ttlSeconds) {
+        cache.cacheUsers(usersBySessionId, ttlSeconds);
+        usersBySessionId.forEach((sessionId, userDetails) ->
+                track(userDetails.getUserId(), sessionId, ttlSeconds, true));
+    }
+
+    /**
+     * Evicts the user's sessions known to this node and, with a bus, asks the other nodes to
+     * do the same.
+     *
+     * @return the number of sessions removed on this node
+     */
+    @Override
+    public int evictUser(String userId) {
+        if (userId == null) {
+            return 0;
+        }
+        int evicted = evictLocally(userId);
+        if (bus != null) {
+            bus.publish(USER_TOPIC, userId);
+        }
+        return evicted;
+    }
+
+    @Override
+    public boolean supportsEvictUser() {
+        return true;
+    }
+
+    private int evictLocally(String userId) {
+        Sessions sessions = index.remove(userId);
+        if (sessions == null) {
+            return 0;
+        }
+        List<String> sessionIds = sessions.live(System.currentTimeMillis());
+        remove(sessionIds);
+        evictedUsers.increment();
+        evictedSessions.add(sessionIds.size());
+        log.debug("Evicted {} cached sessions of user {}", sessionIds.size(), userId);
+        return sessionIds.size();
+    }
+
+    public UserCacheService getCache() {
+        return cache;
+    }
+
+    public long getEvictedUserCount() {
+        return evictedUsers.sum();
+    }
+
+    public long getEvictedSessionCount() {
+        return evictedSessions.sum();
+    }
+
+    /**
+     * Number of sessions removed from the cache because the index had no room for them.
+     */
+    public long getOverflowRemovalCount() {
+        return overflowRemovals.sum();
+    }
+
+    public int getIndexedUserCount() {
+        return index.size();
+    }
+
+    /**
+     * Whether {@link #destroy()} has stopped the sweep thread.
+     */
+    public boolean isShutdown() {
+        return sweeper.isShutdown();
+    }
+
+    @Override
+    public void destroy() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Sessions currently indexed for a user, including expired ones not yet pruned.
+     */
+    public int getIndexedSessionCount(String userId) {
+        int[] count = new int[1];
+        index.computeIfPresent(userId, (id, sessions) -> {
+            count[0] = sessions.size();
+            return sessions;
+        });
+        return count[0];
+    }
+
+    private void track(String userId, String sessionId, long ttlSeconds, boolean written) {
+        if (userId == null || sessionId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = now + (ttlSeconds > 0 ? ttlSeconds * 1000 : defaultTtlMillis);
+        List<String> displaced = new ArrayList<>(0);
+        index.compute(userId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = new Sessions();
+            }
+            sessions.put(sessionId, expiresAt, written, now, maxSessionsPerUser, displaced);
+            return sessions;
+        });
+        if (!displaced.isEmpty()) {
+            overflowRemovals.add(displaced.size());
+            remove(displaced);
+        }
+        if (index.size() > maxUsers && sweepRequested.compareAndSet(false, true)) {
+            sweeper.execute(this::sweep);
+        }
+    }
+
+    /**
+     * Drops expired sessions and users left without sessions; if the index is still over its
+     * user limit, drops arbitrary users until it is back under 90% of the limit, removing their
+     * sessions from the cache. Runs on the sweep thread only.
+     */
+    private void sweep() {
+        sweepRequested.set(false);
+        try {
+            long now = System.currentTimeMillis();
+            for (String userId : index.keySet()) {
+                index.computeIfPresent(userId, (id, sessions) -> sessions.pruneExpired(now) ? null : sessions);
+            }
+            int target = maxUsers - Math.max(1, maxUsers / 10);
+            for (Iterator<String> it = index.keySet().iterator(); it.hasNext() && index.size() > target; ) {
+                Sessions sessions = index.remove(it.next());
+                if (sessions != null) {
+                    List<String> sessionIds = sessions.live(now);
+                    overflowRemovals.add(sessionIds.size());
+                    remove(sessionIds);
+                }
+            }
+            log.debug("User session index swept; {} users indexed", index.size());
+        } catch (RuntimeException e) {
+            // A failure must not cancel the periodic sweep
+            log.warn("User session index sweep failed", e);
+        }
+    }
+
+    private void remove(List<String> sessionIds) {
+        UserCacheService target = removeThrough.get();
+        for (String sessionId : sessionIds) {
+            target.removeUserFromCache(sessionId);
+        }
+    }
+
+    /**
+     * One user's sessions in insertion order, with their expiry times. Only accessed inside
+     * the index map's per-key compute functions, or after removal from the map.
+     */
+    private static final class Sessions {
+
+        private final LinkedHashMap<String, Long> expiries = new LinkedHashMap<>(4);
+
+        /**
+         * Adds or refreshes a session. A read only extends a session the index does not know
+         * yet; a write resets its expiry. Displaced sessions are added to {@code displaced}.
+         */
+        void put(String sessionId, long expiresAt, boolean written, long now, int maxSessions,
+                 List<String> displaced) {
+            if (!written && expiries.containsKey(sessionId)) {
+                return;
+            }
+            expiries.remove(sessionId);
+            if (expiries.size() >= maxSessions) {
+                pruneExpired(now);
+            }
+            for (Iterator<String> it = expiries.keySet().iterator(); it.hasNext() && expiries.size() >= maxSessions; ) {
+                displaced.add(it.next());
+                it.remove();
+            }
+            expiries.put(sessionId, expiresAt);
+        }
+
+        /**
+         * @return whether no sessions are left
+         */
+        boolean pruneExpired(long now) {
+            expiries.values().removeIf(expiresAt -> expiresAt <= now);
+            return expiries.isEmpty();
+        }
+
+        List<String> live(long now) {
+            List<String> sessionIds = new ArrayList<>(expiries.size());
+            expiries.forEach((sessionId, expiresAt) -> {
+                if (expiresAt > now) {
+                    sessionIds.add(sessionId);
+                }
+            });
+            return sessionIds;
+        }
+
+        int size() {
+            return expiries.size();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.UserDetailsCodec;
+
+/**
+ * Resolves the {@link UserDetailsCodec} named by a cache's {@code encoding} property.
+ */
+final class UserDetailsCodecs {
+
+    private UserDetailsCodecs() {
+    }
+
+    /**
+     * @param encoding {@code compact}, {@code length-prefixed} or {@code java}
+     * @param property the configuration key, for the error message
+     */
+    static UserDetailsCodec forName(String encoding, String property) {
+        return switch (encoding) {
+            case "compact" -> new CompactUserDetailsCodec();
+            case "length-prefixed" -> new LengthPrefixedUserDetailsCodec();
+            case "java" -> new JavaSerializationUserDetailsCodec();
+            default -> throw new IllegalArgumentException("Unknown " + property + ": " + encoding);
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.tk.learn.model.dto;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AuthorityDictionary Tests")
+class AuthorityDictionaryTest {
+
+    @Test
+    @DisplayName("Should assign stable sequential IDs")
+    void testIds() {
+        // Arrange
+        AuthorityDictionary dictionary = new AuthorityDictionary(16);
+
+        // Act
+        int admin = dictionary.idOf("ADMIN");
+        int user = dictionary.idOf("USER");
+
+        // Assert
+        assertEquals(0, admin);
+        assertEquals(1, user);
+        assertEquals(admin, dictionary.idOf("ADMIN"));
+        assertEquals(user, dictionary.find("USER"));
+        assertEquals(-1, dictionary.find("AUDITOR"));
+        assertEquals("USER", dictionary.nameOf(user));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    @DisplayName("Should share one instance per name")
+    void testIntern() {
+        // Arrange
+        AuthorityDictionary dictionary = new AuthorityDictionary(16);
+        String first = new String("ADMIN");
+        List<String> roles = new ArrayList<>(List.of(new String("ADMIN"), new String("USER")));
+
+        // Act
+        dictionary.intern(first);
+        dictionary.internAll(roles);
+
+        // Assert
+        assertSame(first, roles.get(0));
+        assertSame(dictionary.intern("USER"), roles.get(1));
+        assertNull(dictionary.internAll(null));
+    }
+
+    @Test
+    @DisplayName("Should stop assigning IDs once full")
+    void testBounded() {
+        // Arrange
+        AuthorityDictionary dictionary = new AuthorityDictionary(2);
+        dictionary.idOf("A");
+        dictionary.idOf("B");
+
+        // Act
+        int overflow = dictionary.idOf("C");
+        for (int i = 0; i < 1_000; i++) {
+            dictionary.idOf("name-" + i);
+        }
+
+        // Assert
+        assertEquals(-1, overflow);
+        assertEquals(2, dictionary.size());
+        assertEquals("C", dictionary.intern("C"));
+        assertEquals(-1, dictionary.idOf(null));
+    }
+}
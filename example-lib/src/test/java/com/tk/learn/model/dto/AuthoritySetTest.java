@@ -0,0 +1,128 @@
+package com.tk.learn.model.dto;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AuthoritySet Tests")
+class AuthoritySetTest {
+
+    @Test
+    @DisplayName("Should test membership by dictionary ID")
+    void testContains() {
+        // Arrange
+        AuthorityDictionary dictionary = new AuthorityDictionary(256);
+        for (int i = 0; i < 100; i++) {
+            dictionary.idOf("filler-" + i);
+        }
+
+        // Act
+        AuthoritySet set = AuthoritySet.of(dictionary, List.of("ADMIN", "filler-3", "USER"));
+
+        // Assert
+        assertTrue(set.contains("ADMIN"));
+        assertTrue(set.contains("filler-3"));
+        assertTrue(set.contains("USER"));
+        assertFalse(set.contains("filler-4"));
+        assertFalse(set.contains("UNKNOWN"));
+        assertFalse(set.contains(null));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    @DisplayName("Should check requirement sets word by word")
+    void testContainsAllAndAny() {
+        // Arrange
+        AuthorityDictionary dictionary = new AuthorityDictionary(256);
+        AuthoritySet granted = AuthoritySet.of(dictionary, "read", "write", "audit");
+        for (int i = 0; i < 100; i++) {
+            dictionary.idOf("filler-" + i);
+        }
+        AuthoritySet readWrite = AuthoritySet.of(dictionary, "read", "write");
+        AuthoritySet readDelete = AuthoritySet.of(dictionary, "read", "delete");
+        AuthoritySet highId = AuthoritySet.of(dictionary, "filler-99");
+
+        // Act & Assert
+        assertTrue(granted.containsAll(readWrite));
+        assertFalse(granted.containsAll(readDelete));
+        assertFalse(granted.containsAll(highId));
+        assertTrue(granted.containsAny(readDelete));
+        assertFalse(granted.containsAny(highId));
+        assertTrue(granted.containsAll(AuthoritySet.of(dictionary, List.of())));
+    }
+
+    @Test
+    @DisplayName("Should keep names beyond the dictionary capacity by name")
+    void testOverflow() {
+        // Arrange
+        AuthorityDictionary dictionary = new AuthorityDictionary(1);
+
+        // Act
+        AuthoritySet set = AuthoritySet.of(dictionary, List.of("ADMIN", "USER"));
+
+        // Assert
+        assertTrue(set.contains("ADMIN"));
+        assertTrue(set.contains("USER"));
+        assertTrue(set.containsAll(AuthoritySet.of(dictionary, "USER")));
+        assertFalse(set.containsAll(AuthoritySet.of(dictionary, "AUDITOR")));
+    }
+
+    @Test
+    @DisplayName("Should reject sets from different dictionaries")
+    void testDifferentDictionaries() {
+        AuthoritySet roles = AuthoritySet.of(new AuthorityDictionary(8), "ADMIN");
+        AuthoritySet other = AuthoritySet.of(new AuthorityDictionary(8), "ADMIN");
+
+        assertThrows(IllegalArgumentException.class, () -> roles.containsAll(other));
+    }
+
+    @Test
+    @DisplayName("Should answer user details role and permission checks")
+    void testUserDetailsChecks() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", null, null, "session-1",
+                new ArrayList<>(List.of("ADMIN")), List.of("orders:read", "orders:write"), 0L, 0L);
+        AuthoritySet required = AuthoritySet.of(AuthorityDictionary.PERMISSIONS, "orders:read", "orders:write");
+
+        // Act & Assert
+        assertTrue(userDetails.hasRole("ADMIN"));
+        assertFalse(userDetails.hasRole("USER"));
+        assertTrue(userDetails.hasPermission("orders:read"));
+        assertTrue(userDetails.hasAllPermissions(required));
+        assertTrue(userDetails.hasAllRoles(AuthoritySet.of(AuthorityDictionary.ROLES, "ADMIN")));
+    }
+
+    @Test
+    @DisplayName("Should see role changes made through the getter or setter, not through the caller's list")
+    void testUserDetailsRebuildsAfterChanges() {
+        // Arrange
+        List<String> given = new ArrayList<>(List.of("ADMIN"));
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", null, null, "session-1",
+                given, null, 0L, 0L);
+        assertFalse(userDetails.hasRole("USER"));
+        AuthoritySet beforeGet = userDetails.getRoleSet();
+
+        // Act
+        AuthoritySet afterGet = userDetails.getRoleSet();
+        given.add("AUDITOR");
+        boolean afterCallerChange = userDetails.getRoles().contains("AUDITOR");
+        userDetails.getRoles().add("USER");
+        boolean afterAdd = userDetails.hasRole("USER");
+        userDetails.getRoles().removeIf("USER"::equals);
+        boolean afterRemove = userDetails.hasRole("USER");
+        userDetails.setRoles(List.of("AUDITOR"));
+
+        // Assert
+        assertSame(beforeGet, afterGet);
+        assertFalse(afterCallerChange);
+        assertTrue(afterAdd);
+        assertFalse(afterRemove);
+        assertFalse(userDetails.hasRole("ADMIN"));
+        assertTrue(userDetails.hasRole("AUDITOR"));
+        assertFalse(userDetails.hasPermission("anything"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.tk.learn.model.dto;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DeferredUserDetailsDto Tests")
+class DeferredUserDetailsDtoTest {
+
+    @Test
+    @DisplayName("Should serve token identity fields without resolving")
+    void testIdentityFieldsDoNotResolve() {
+        // Arrange
+        AtomicInteger resolutions = new AtomicInteger();
+        DeferredUserDetailsDto userDetails = deferred(resolutions);
+
+        // Act
+        String userId = userDetails.getUserId();
+        String sessionId = userDetails.getSessionId();
+        long expiresAt = userDetails.getExpiresAt();
+
+        // Assert
+        assertEquals("user-123", userId);
+        assertEquals("session-123", sessionId);
+        assertEquals(1629903600L, expiresAt);
+        assertFalse(userDetails.isResolved());
+        assertEquals(0, resolutions.get());
+    }
+
+    @Test
+    @DisplayName("Should resolve once on first access to enriched fields")
+    void testResolvesOnceOnEnrichedAccess() {
+        // Arrange
+        AtomicInteger resolutions = new AtomicInteger();
+        DeferredUserDetailsDto userDetails = deferred(resolutions);
+
+        // Act
+        List<String> roles = userDetails.getRoles();
+        String email = userDetails.getEmail();
+        List<String> permissions = userDetails.getPermissions();
+
+        // Assert
+        assertEquals(List.of("ADMIN"), roles);
+        assertEquals("enriched@example.com", email);
+        assertEquals(List.of("WRITE"), permissions);
+        assertTrue(userDetails.isResolved());
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    @DisplayName("Should resolve before answering role checks")
+    void testRoleCheckResolves() {
+        // Arrange
+        AtomicInteger resolutions = new AtomicInteger();
+        DeferredUserDetailsDto userDetails = deferred(resolutions);
+
+        // Act
+        boolean admin = userDetails.hasRole("ADMIN");
+        boolean write = userDetails.hasPermission("WRITE");
+
+        // Assert
+        assertTrue(admin);
+        assertTrue(write);
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    @DisplayName("Should keep the token details when the resolver returns null")
+    void testNullResolutionKeepsTokenDetails() {
+        // Arrange
+        DeferredUserDetailsDto userDetails = new DeferredUserDetailsDto(tokenDetails(), () -> null);
+
+        // Act & Assert
+        assertEquals("token@example.com", userDetails.getEmail());
+        assertEquals(List.of("USER"), userDetails.getRoles());
+    }
+
+    @Test
+    @DisplayName("Should resolve before copying or serializing")
+    void testCopyAndSerializationResolve() throws Exception {
+        // Arrange
+        DeferredUserDetailsDto userDetails = deferred(new AtomicInteger());
+
+        // Act
+        UserDetailsDto copy = new UserDetailsDto(userDetails);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(deferred(new AtomicInteger()));
+        }
+        Object deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = in.readObject();
+        }
+
+        // Assert
+        assertEquals("enriched@example.com", copy.getEmail());
+        assertEquals(UserDetailsDto.class, deserialized.getClass());
+        assertEquals(List.of("ADMIN"), ((UserDetailsDto) deserialized).getRoles());
+    }
+
+    private static DeferredUserDetailsDto deferred(AtomicInteger resolutions) {
+        return new DeferredUserDetailsDto(tokenDetails(), () -> {
+            resolutions.incrementAndGet();
+            return new UserDetailsDto("user-123", "enriched@example.com", "enriched.user", "session-123",
+                    List.of("ADMIN"), List.of("WRITE"), 1629900000L, 1629903600L);
+        });
+    }
+
+    private static UserDetailsDto tokenDetails() {
+        return new UserDetailsDto("user-123", "token@example.com", "john.doe", "session-123",
+                List.of("USER"), null, 1629900000L, 1629903600L);
+    }
+}
@@ -0,0 +1,86 @@
+package com.tk.learn.web.context;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RequestContext Tests")
+class RequestContextTest {
+
+    @Test
+    @DisplayName("Should copy a map and read it back like a map")
+    void testOf() {
+        // Arrange
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("tenant", "acme");
+        attributes.put("region", null);
+        attributes.put(null, "ignored");
+
+        // Act
+        RequestContext context = RequestContext.of(attributes);
+        attributes.put("tenant", "changed");
+
+        // Assert
+        assertEquals("acme", context.get("tenant"));
+        assertTrue(context.containsKey("region"));
+        assertNull(context.get("region"));
+        assertNull(context.get("missing"));
+        assertEquals(2, context.size());
+        assertEquals("acme", context.<String>attribute("tenant"));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("tenant", "acme");
+        expected.put("region", null);
+        assertEquals(expected, context);
+        assertEquals(expected.hashCode(), context.hashCode());
+    }
+
+    @Test
+    @DisplayName("Should return new contexts from with() and leave the original unchanged")
+    void testWith() {
+        // Arrange
+        RequestContext context = RequestContext.of(Map.of("tenant", "acme"));
+
+        // Act
+        RequestContext added = context.with("user", "alice");
+        RequestContext replaced = added.with("tenant", "globex");
+
+        // Assert
+        assertEquals(Map.of("tenant", "acme"), context);
+        assertEquals(Map.of("tenant", "acme", "user", "alice"), added);
+        assertEquals(Map.of("tenant", "globex", "user", "alice"), replaced);
+        assertThrows(IllegalArgumentException.class, () -> context.with(null, "x"));
+    }
+
+    @Test
+    @DisplayName("Should overlay attributes with withAll()")
+    void testWithAll() {
+        // Arrange
+        RequestContext context = RequestContext.of(Map.of("tenant", "acme", "user", "header"));
+
+        // Act
+        RequestContext merged = context.withAll(Map.of("user", "alice"));
+
+        // Assert
+        assertEquals(Map.of("tenant", "acme", "user", "alice"), merged);
+        assertSame(context, context.withAll(Map.of()));
+        assertSame(context, RequestContext.EMPTY.withAll(context));
+    }
+
+    @Test
+    @DisplayName("Should reject modification through the Map interface")
+    void testImmutable() {
+        // Arrange
+        RequestContext context = RequestContext.of(Map.of("tenant", "acme"));
+
+        // Act & Assert
+        assertThrows(UnsupportedOperationException.class, () -> context.put("tenant", "x"));
+        assertThrows(UnsupportedOperationException.class, () -> context.remove("tenant"));
+        assertThrows(UnsupportedOperationException.class, () -> context.entrySet().iterator().next().setValue("x"));
+        assertThrows(UnsupportedOperationException.class, context::clear);
+    }
+}
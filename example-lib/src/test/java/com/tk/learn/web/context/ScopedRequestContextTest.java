@@ -0,0 +1,125 @@
+package com.tk.learn.web.context;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ScopedRequestContext Tests")
+class ScopedRequestContextTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.clear();
+    }
+
+    @Test
+    @DisplayName("Should bind for the scope only and restore the enclosing binding")
+    void testNestedScopes() throws Exception {
+        // Arrange
+        RequestContext outer = RequestContext.of(Map.of("tenant", "acme"));
+        RequestContext inner = outer.with("user", "alice");
+
+        // Act
+        String seen = ScopedRequestContext.call(outer, () -> {
+            ScopedRequestContext.run(inner, () -> assertEquals("alice", ScopedRequestContext.<String>get("user")));
+            assertNull(ScopedRequestContext.get("user"));
+            return ScopedRequestContext.get("tenant");
+        });
+
+        // Assert
+        assertEquals("acme", seen);
+        assertFalse(ScopedRequestContext.isBound());
+        assertSame(RequestContext.EMPTY, ScopedRequestContext.current());
+    }
+
+    @Test
+    @DisplayName("Should unbind when the scope ends with an exception")
+    void testUnbindsOnException() {
+        // Act
+        assertThrows(IllegalStateException.class, () -> ScopedRequestContext.run(
+                RequestContext.of(Map.of("tenant", "acme")), () -> {
+                    throw new IllegalStateException("boom");
+                }));
+
+        // Assert
+        assertFalse(ScopedRequestContext.isBound());
+    }
+
+    @Test
+    @DisplayName("Should make RequestContextHolder read the bound context and reject puts")
+    void testHolderDelegates() {
+        // Arrange
+        RequestContextHolder.put("legacy", "value");
+        RequestContext context = RequestContext.of(Map.of("tenant", "acme"));
+
+        ScopedRequestContext.Scope scope = ScopedRequestContext.open(context);
+        try {
+            // Act & Assert
+            assertSame(context, RequestContextHolder.getContext());
+            assertEquals("acme", RequestContextHolder.<String>get("tenant"));
+            assertNull(RequestContextHolder.get("legacy"));
+            assertThrows(IllegalStateException.class, () -> RequestContextHolder.put("user", "alice"));
+        } finally {
+            scope.close();
+        }
+        assertEquals("value", RequestContextHolder.<String>get("legacy"));
+    }
+
+    @Test
+    @DisplayName("Should not leak bindings to other threads unless the task is wrapped")
+    void testOtherThreads() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicReference<Object> plain = new AtomicReference<>("unset");
+        AtomicReference<Object> wrapped = new AtomicReference<>();
+
+        try {
+            // Act
+            ScopedRequestContext.call(RequestContext.of(Map.of("tenant", "acme")), () -> {
+                executor.submit(() -> plain.set(ScopedRequestContext.get("tenant"))).get();
+                executor.submit(ScopedRequestContext.wrap(() -> wrapped.set(ScopedRequestContext.get("tenant")))).get();
+                return null;
+            });
+            Future<Boolean> boundAfter = executor.submit(ScopedRequestContext::isBound);
+
+            // Assert
+            assertNull(plain.get());
+            assertEquals("acme", wrapped.get());
+            assertFalse(boundAfter.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should refuse to close a scope from another thread")
+    void testScopeOwner() throws Exception {
+        // Arrange
+        ScopedRequestContext.Scope scope = ScopedRequestContext.open(RequestContext.EMPTY);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Act
+        Thread other = new Thread(() -> {
+            try {
+                scope.close();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        other.start();
+        other.join();
+        scope.close();
+
+        // Assert
+        assertInstanceOf(IllegalStateException.class, failure.get());
+        assertFalse(ScopedRequestContext.isBound());
+    }
+}
@@ -0,0 +1,253 @@
+package com.tk.learn.web.filter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DependencyGuard Tests")
+class DependencyGuardTest {
+
+    private DependencyGuard guard;
+
+    @AfterEach
+    void tearDown() {
+        if (guard != null) {
+            guard.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should return the fallback once a slow call exceeds the timeout")
+    void testTimeoutFallsBack() {
+        // Arrange
+        guard = new DependencyGuard("slow", 50, 4, 5, 30);
+
+        // Act
+        long start = System.nanoTime();
+        String result = guard.call(() -> {
+            Thread.sleep(2_000);
+            return "late";
+        }, "fallback");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertEquals("fallback", result);
+        assertTrue(elapsedMillis < 1_000, "caller waited " + elapsedMillis + " ms");
+        assertEquals(1, guard.getTimeoutCount());
+        assertEquals(1, guard.getFallbackCount());
+        assertEquals(DependencyGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    @DisplayName("Should open after consecutive failures and close after a successful trial")
+    void testCircuitBreaker() throws Exception {
+        // Arrange
+        guard = new DependencyGuard("flaky", 1_000, 4, 3, 0);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            guard.call(() -> {
+                throw new IllegalStateException("down");
+            }, "fallback");
+        }
+        DependencyGuard.State afterFailures = guard.getState();
+        Thread.sleep(5);
+        String trial = guard.call(() -> "ok", "fallback");
+
+        // Assert
+        assertEquals(DependencyGuard.State.OPEN, afterFailures);
+        assertEquals("ok", trial);
+        assertEquals(DependencyGuard.State.CLOSED, guard.getState());
+        assertEquals(1, guard.getTransitionCount(DependencyGuard.State.OPEN));
+        assertEquals(1, guard.getTransitionCount(DependencyGuard.State.HALF_OPEN));
+        assertEquals(1, guard.getTransitionCount(DependencyGuard.State.CLOSED));
+        assertEquals(3, guard.getFailureCount());
+    }
+
+    @Test
+    @DisplayName("Should let another trial through when the caller of a half-open trial is interrupted")
+    void testInterruptedTrialReleasesTrial() throws Exception {
+        // Arrange
+        guard = new DependencyGuard("interrupted", 1_000, 4, 1, 0);
+        guard.call(() -> {
+            throw new IllegalStateException("down");
+        }, "fallback");
+        Thread.sleep(5);
+
+        // Act
+        Thread.currentThread().interrupt();
+        String interrupted = guard.call(() -> {
+            Thread.sleep(2_000);
+            return "late";
+        }, "fallback");
+        boolean interruptRestored = Thread.interrupted();
+        String trial = guard.call(() -> "ok", "fallback");
+
+        // Assert
+        assertEquals("fallback", interrupted);
+        assertTrue(interruptRestored);
+        assertEquals("ok", trial);
+        assertEquals(DependencyGuard.State.CLOSED, guard.getState());
+        assertEquals(0, guard.getShortCircuitCount());
+    }
+
+    @Test
+    @DisplayName("Should short-circuit calls while the circuit is open")
+    void testShortCircuitWhileOpen() {
+        // Arrange
+        guard = new DependencyGuard("down", 1_000, 4, 1, 60);
+        guard.call(() -> {
+            throw new IllegalStateException("down");
+        }, null);
+
+        // Act
+        String result = guard.call(() -> "ok", "fallback");
+
+        // Assert
+        assertEquals("fallback", result);
+        assertEquals(DependencyGuard.State.OPEN, guard.getState());
+        assertEquals(1, guard.getShortCircuitCount());
+        assertEquals(2, guard.getFallbackCount());
+    }
+
+    @Test
+    @DisplayName("Should reject calls beyond the bulkhead while slow calls hold their slots")
+    void testBulkheadRejects() throws Exception {
+        // Arrange
+        guard = new DependencyGuard("bounded", 20, 2, 100, 30);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Act
+        for (int i = 0; i < 2; i++) {
+            // Ignores the interrupt sent on timeout, like a blocking socket read
+            guard.call(() -> {
+                while (release.getCount() > 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                return true;
+            }, false);
+        }
+        Boolean rejected = guard.call(() -> true, false);
+        release.countDown();
+
+        // Assert
+        assertFalse(rejected);
+        assertEquals(2, guard.getTimeoutCount());
+        assertEquals(1, guard.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("Should return the permit of a call that timed out before it started, and never run it")
+    void testTimeoutBeforeStartReleasesPermit() throws Exception {
+        // Arrange: the only worker is busy, so guarded calls queue and never start in time
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        worker.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        guard = new DependencyGuard("queued", 20, 2, 100, 30, worker);
+        AtomicInteger runs = new AtomicInteger();
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            guard.call(runs::incrementAndGet, -1);
+        }
+        int permitsAfterTimeouts = guard.getAvailablePermits();
+        release.countDown();
+        worker.shutdown();
+        assertTrue(worker.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals(2, permitsAfterTimeouts);
+        assertEquals(2, guard.getAvailablePermits());
+        assertEquals(5, guard.getTimeoutCount());
+        assertEquals(0, guard.getRejectedCount());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    @DisplayName("Should run guarded calls on virtual threads, still bounded by the bulkhead")
+    void testVirtualThreads() {
+        // Arrange
+        guard = new DependencyGuard("virtual", 50, 1, 100, 30, true);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Act
+        Boolean virtual = guard.call(() -> Thread.currentThread().isVirtual(), false);
+        // Ignores the interrupt sent on timeout, like a blocking socket read
+        String slow = guard.call(() -> {
+            while (release.getCount() > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return "late";
+        }, "fallback");
+        Boolean rejected = guard.call(() -> true, false);
+        release.countDown();
+
+        // Assert
+        assertTrue(virtual);
+        assertEquals("fallback", slow);
+        assertFalse(rejected);
+        assertEquals(1, guard.getTimeoutCount());
+        assertEquals(1, guard.getRejectedCount());
+        assertEquals(1, guard.getBulkheadWaitCount());
+    }
+
+    @Test
+    @DisplayName("Should have virtual-thread callers wait for a bulkhead slot within the timeout instead of rejecting")
+    void testVirtualThreadsWaitForPermit() throws Exception {
+        // Arrange
+        guard = new DependencyGuard("waiting", 2_000, 1, 100, 30, true);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> guard.call(() -> {
+            started.countDown();
+            Thread.sleep(100);
+            return "first";
+        }, "fallback"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        String waited = guard.call(() -> "second", "fallback");
+        holder.join();
+
+        // Assert
+        assertEquals("second", waited);
+        assertEquals(0, guard.getRejectedCount());
+        assertEquals(1, guard.getBulkheadWaitCount());
+        assertEquals(2, guard.getSuccessCount());
+        assertEquals(1, guard.getAvailablePermits());
+    }
+
+    @Test
+    @DisplayName("Should run unguarded calls inline and convert failures to the fallback")
+    void testUnguarded() {
+        // Arrange
+        guard = DependencyGuard.unguarded("inline");
+        Thread caller = Thread.currentThread();
+
+        // Act
+        Boolean sameThread = guard.call(() -> Thread.currentThread() == caller, false);
+        String failed = guard.call(() -> {
+            throw new IllegalStateException("down");
+        }, "fallback");
+
+        // Assert
+        assertTrue(sameThread);
+        assertEquals("fallback", failed);
+        assertEquals(1, guard.getFailureCount());
+        assertEquals(DependencyGuard.State.CLOSED, guard.getState());
+    }
+}
@@ -0,0 +1,86 @@
+package com.tk.learn.web.filter;
+
+import com.tk.learn.web.context.RequestContext;
+import com.tk.learn.web.context.RequestContextHolder;
+import com.tk.learn.web.context.ScopedRequestContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SideCarRequestContextFilter Tests")
+class SideCarRequestContextFilterTest {
+
+    private static final String HEADER = "X-Request-Context";
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.clear();
+    }
+
+    @Test
+    @DisplayName("Should copy the header into the thread-local context by default")
+    void testThreadLocalMode() throws Exception {
+        // Arrange
+        SideCarRequestContextFilter filter = new SideCarRequestContextFilter(JsonMapper.builder().build(), HEADER);
+        AtomicReference<Map<String, Object>> seen = new AtomicReference<>();
+
+        // Act
+        filter.doFilter(request("{\"tenant\":\"acme\"}"), new MockHttpServletResponse(),
+                (req, res) -> seen.set(RequestContextHolder.getContext()));
+
+        // Assert
+        assertEquals(Map.of("tenant", "acme"), seen.get());
+        assertFalse(seen.get() instanceof RequestContext);
+        assertTrue(RequestContextHolder.getContext().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should bind one immutable context in scoped mode, earlier filters' attributes winning")
+    void testScopedMode() throws Exception {
+        // Arrange
+        SideCarRequestContextFilter filter = new SideCarRequestContextFilter(JsonMapper.builder().build(), HEADER, true);
+        RequestContextHolder.put("userDetails", "authenticated-user");
+        AtomicReference<Map<String, Object>> seen = new AtomicReference<>();
+
+        // Act
+        filter.doFilter(request("{\"tenant\":\"acme\",\"userDetails\":\"forged\"}"), new MockHttpServletResponse(),
+                (req, res) -> seen.set(RequestContextHolder.getContext()));
+
+        // Assert
+        assertInstanceOf(RequestContext.class, seen.get());
+        assertEquals(Map.of("tenant", "acme", "userDetails", "authenticated-user"), seen.get());
+        assertFalse(ScopedRequestContext.isBound());
+        assertTrue(RequestContextHolder.getContext().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid header JSON without calling the chain")
+    void testInvalidJson() throws Exception {
+        // Arrange
+        SideCarRequestContextFilter filter = new SideCarRequestContextFilter(JsonMapper.builder().build(), HEADER, true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        filter.doFilter(request("{not json"), response, (req, res) -> fail("chain called"));
+
+        // Assert
+        assertEquals(400, response.getStatus());
+        assertFalse(ScopedRequestContext.isBound());
+    }
+
+    private static MockHttpServletRequest request(String json) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/employees");
+        request.addHeader(HEADER, Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8)));
+        return request;
+    }
+}
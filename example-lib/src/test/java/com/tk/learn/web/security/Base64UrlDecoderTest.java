@@ -0,0 +1,64 @@
+package com.tk.learn.web.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Base64UrlDecoder Tests")
+class Base64UrlDecoderTest {
+
+    @Test
+    @DisplayName("Should match the JDK URL decoder for padded and unpadded input")
+    void testMatchesJdkDecoder() {
+        Random random = new Random(42);
+        for (int size = 0; size < 64; size++) {
+            byte[] original = new byte[size];
+            random.nextBytes(original);
+            String padded = Base64.getUrlEncoder().encodeToString(original);
+            String unpadded = Base64.getUrlEncoder().withoutPadding().encodeToString(original);
+
+            assertArrayEquals(original, decode(padded));
+            assertArrayEquals(original, decode(unpadded));
+        }
+    }
+
+    @Test
+    @DisplayName("Should decode a range of a larger token without copying it")
+    void testDecodeRange() {
+        // Arrange
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"userId\":\"user-123\"}".getBytes(StandardCharsets.UTF_8));
+        String token = "Bearer header." + payload + ".signature";
+        int from = token.indexOf('.') + 1;
+        int to = token.lastIndexOf('.');
+        byte[] buffer = new byte[Base64UrlDecoder.maxDecodedLength(to - from)];
+
+        // Act
+        int length = Base64UrlDecoder.decode(token, from, to, buffer);
+
+        // Assert
+        assertEquals("{\"userId\":\"user-123\"}", new String(buffer, 0, length, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should reject characters outside the URL-safe alphabet and bad lengths")
+    void testRejectInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> decode("ab+/"));
+        assertThrows(IllegalArgumentException.class, () -> decode("!!!invalid-base64!!!"));
+        assertThrows(IllegalArgumentException.class, () -> decode("abcde"));
+        assertThrows(IllegalArgumentException.class, () -> decode("ab=c"));
+        assertThrows(IllegalArgumentException.class, () -> decode("abc=="));
+    }
+
+    private static byte[] decode(String encoded) {
+        byte[] buffer = new byte[Base64UrlDecoder.maxDecodedLength(encoded.length())];
+        int length = Base64UrlDecoder.decode(encoded, 0, encoded.length(), buffer);
+        return Arrays.copyOf(buffer, length);
+    }
+}
@@ -0,0 +1,295 @@
+package com.tk.learn.web.security;
+
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.security.Jwks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("JwkSetProvider Tests")
+class JwkSetProviderTest {
+
+    private HttpServer server;
+    private JwkSetProvider provider;
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile String kid = "key-1";
+    private volatile long latencyMillis;
+    private volatile int status = 200;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/jwks.json", exchange -> {
+            requestCount.incrementAndGet();
+            sleep(latencyMillis);
+            byte[] body = status == 200
+                    ? jwkSet((RSAPublicKey) keyPair.getPublic(), kid).getBytes(StandardCharsets.UTF_8)
+                    : new byte[0];
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        provider = newProvider();
+    }
+
+    @AfterEach
+    void tearDown() {
+        provider.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Should fetch once for concurrent callers on a cold cache")
+    void testColdStartIsSingleFlight() throws Exception {
+        // Arrange
+        latencyMillis = 200;
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<VerificationKey>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return provider.getVerificationKey("key-1");
+            }));
+        }
+        start.countDown();
+
+        // Assert
+        for (Future<VerificationKey> result : results) {
+            assertEquals("key-1", result.get().keyId());
+        }
+        assertEquals(1, requestCount.get());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should serve the stale key set while a single background refresh runs")
+    void testStaleWhileRevalidate() {
+        // Arrange: a zero TTL makes every cached set stale
+        ReflectionTestUtils.setField(provider, "jwkCacheTtlMinutes", 0L);
+        assertNotNull(provider.getVerificationKey("key-1"));
+        kid = "key-2";
+        latencyMillis = 300;
+
+        // Act
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(provider.getVerificationKey("key-1"));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertTrue(elapsedMillis < latencyMillis, "callers blocked for " + elapsedMillis + " ms");
+        waitUntil(() -> provider.getVerificationKey("key-2") != null);
+        assertTrue(requestCount.get() <= 3, "fetched " + requestCount.get() + " times");
+    }
+
+    @Test
+    @DisplayName("Should keep serving the stale key set with backoff when the refresh fails")
+    void testFailedRefreshKeepsStaleSet() {
+        // Arrange
+        ReflectionTestUtils.setField(provider, "jwkCacheTtlMinutes", 0L);
+        assertNotNull(provider.getVerificationKey("key-1"));
+        status = 500;
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(provider.getVerificationKey("key-1"));
+            sleep(10);
+        }
+
+        // Assert: the first failure starts a one-second backoff, so no retry storm
+        assertTrue(requestCount.get() <= 2, "fetched " + requestCount.get() + " times");
+    }
+
+    @Test
+    @DisplayName("Should block and refresh an expired set when background refresh is disabled")
+    void testSynchronousRefreshWhenBackgroundDisabled() {
+        // Arrange
+        ReflectionTestUtils.setField(provider, "backgroundRefresh", false);
+        ReflectionTestUtils.setField(provider, "jwkCacheTtlMinutes", 0L);
+        assertNotNull(provider.getVerificationKey("key-1"));
+        kid = "key-2";
+
+        // Act
+        VerificationKey key = provider.getVerificationKey("key-2");
+
+        // Assert
+        assertNotNull(key);
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    @DisplayName("Should fail when the first fetch fails and there is no key set to fall back on")
+    void testColdStartFailure() {
+        status = 500;
+
+        assertThrows(RuntimeException.class, () -> provider.getVerificationKey("key-1"));
+        assertThrows(RuntimeException.class, () -> provider.getVerificationKey("key-1"));
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    @DisplayName("Should refresh once to resolve a rotated-in kid before the TTL elapses")
+    void testUnknownKidTriggersRefresh() {
+        // Arrange
+        assertNotNull(provider.getVerificationKey("key-1"));
+        kid = "key-2";
+
+        // Act
+        VerificationKey key = provider.getVerificationKey("key-2");
+
+        // Assert
+        assertNotNull(key);
+        assertEquals(2, requestCount.get());
+        assertEquals(1, provider.getUnknownKidRefreshCount());
+    }
+
+    @Test
+    @DisplayName("Should rate-limit refreshes for random unknown kids")
+    void testUnknownKidRefreshIsRateLimited() throws Exception {
+        // Arrange
+        assertNotNull(provider.getVerificationKey("key-1"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<VerificationKey>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            String randomKid = "random-" + i;
+            results.add(executor.submit(() -> provider.getVerificationKey(randomKid)));
+        }
+
+        // Assert
+        for (Future<VerificationKey> result : results) {
+            assertNull(result.get());
+        }
+        assertEquals(2, requestCount.get());
+        assertEquals(1, provider.getUnknownKidRefreshCount());
+        assertTrue(provider.getUnknownKidRefreshThrottledCount() > 0);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should start from the on-disk snapshot without fetching")
+    void testWarmStartFromSnapshot(@TempDir Path dir) {
+        // Arrange
+        Path snapshot = dir.resolve("jwks.json");
+        ReflectionTestUtils.setField(provider, "snapshotPath", snapshot.toString());
+        provider.afterPropertiesSet();
+        waitUntil(() -> Files.exists(snapshot));
+
+        JwkSetProvider restarted = newProvider();
+        ReflectionTestUtils.setField(restarted, "snapshotPath", snapshot.toString());
+
+        // Act
+        restarted.afterPropertiesSet();
+        VerificationKey key = restarted.getVerificationKey("key-1");
+
+        // Assert
+        assertNotNull(key);
+        assertEquals(1, requestCount.get());
+        restarted.destroy();
+    }
+
+    @Test
+    @DisplayName("Should ignore a snapshot older than the maximum age")
+    void testExpiredSnapshotIgnored(@TempDir Path dir) throws Exception {
+        // Arrange
+        Path snapshot = dir.resolve("jwks.json");
+        ReflectionTestUtils.setField(provider, "snapshotPath", snapshot.toString());
+        provider.afterPropertiesSet();
+        waitUntil(() -> Files.exists(snapshot));
+        Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis() - 2 * 60_000));
+
+        JwkSetProvider restarted = newProvider();
+        ReflectionTestUtils.setField(restarted, "snapshotPath", snapshot.toString());
+        ReflectionTestUtils.setField(restarted, "snapshotMaxAgeMinutes", 1L);
+        ReflectionTestUtils.setField(restarted, "prefetchOnStartup", false);
+
+        // Act
+        restarted.afterPropertiesSet();
+        assertEquals(1, requestCount.get());
+        VerificationKey key = restarted.getVerificationKey("key-1");
+
+        // Assert
+        assertNotNull(key);
+        assertEquals(2, requestCount.get());
+        restarted.destroy();
+    }
+
+    @Test
+    @DisplayName("Should prefetch the key set in the background on startup")
+    void testPrefetchOnStartup() {
+        // Act
+        provider.afterPropertiesSet();
+        waitUntil(() -> requestCount.get() == 1);
+
+        // Assert
+        assertTrue(provider.prefetch());
+        assertNotNull(provider.getVerificationKey("key-1"));
+        assertEquals(1, requestCount.get());
+    }
+
+    private JwkSetProvider newProvider() {
+        JwkSetProvider jwkSetProvider = new JwkSetProvider();
+        ReflectionTestUtils.setField(jwkSetProvider, "jwkSetUri",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/jwks.json");
+        ReflectionTestUtils.setField(jwkSetProvider, "jwkCacheTtlMinutes", 60L);
+        return jwkSetProvider;
+    }
+
+    private static String jwkSet(RSAPublicKey key, String kid) {
+        return "{\"keys\":[" + Jwks.json(Jwks.builder().key(key).id(kid).build()) + "]}";
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            sleep(20);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
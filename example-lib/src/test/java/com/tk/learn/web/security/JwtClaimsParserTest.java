@@ -0,0 +1,196 @@
+package com.tk.learn.web.security;
+
+import com.tk.learn.model.exceptions.InvalidJwtTokenException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("JwtClaimsParser Tests")
+class JwtClaimsParserTest {
+
+    @Test
+    @DisplayName("Should parse known claims regardless of whitespace")
+    void testParsePrettyPrintedPayload() {
+        // Arrange
+        String payload = """
+                {
+                  "userId" : "user-123",
+                  "email":"user@example.com",
+                  "username":\t"john.doe",
+                  "sessionId": "session-123",
+                  "iss": "https://issuer.example.com",
+                  "aud": "api",
+                  "exp": 1700000000,
+                  "iat": 1699990000
+                }
+                """;
+
+        // Act
+        JwtClaims claims = parse(payload);
+
+        // Assert
+        assertEquals("user-123", claims.userId);
+        assertEquals("user@example.com", claims.email);
+        assertEquals("john.doe", claims.username);
+        assertEquals("session-123", claims.sessionId);
+        assertEquals("https://issuer.example.com", claims.issuer);
+        assertEquals("api", claims.audience);
+        assertEquals(1700000000000L, claims.exp);
+        assertEquals(1699990000000L, claims.iat);
+    }
+
+    @Test
+    @DisplayName("Should skip nested objects, arrays and literals of unknown claims")
+    void testSkipUnknownNestedValues() {
+        // Arrange
+        String payload = "{\"realm_access\":{\"roles\":[\"a\",{\"userId\":\"nested\"}],\"x\":null},"
+                + "\"flag\":true,\"ratio\":-1.5e3,\"note\":\"has \\\"userId\\\":\\\"fake\\\" inside\","
+                + "\"userId\":\"user-123\"}";
+
+        // Act
+        JwtClaims claims = parse(payload);
+
+        // Assert
+        assertEquals("user-123", claims.userId);
+    }
+
+    @Test
+    @DisplayName("Should decode escape sequences and multi-byte UTF-8 in string claims")
+    void testDecodeEscapedStrings() {
+        // Arrange
+        String payload = "{\"userId\":\"a\\\"b\\\\c\\/d\\n\\u00e9\\ud83d\\ude00\",\"username\":\"José\","
+                + "\"user\\u0049d\":\"escaped-key\"}";
+
+        // Act
+        JwtClaims claims = parse(payload);
+
+        // Assert
+        assertEquals("escaped-key", claims.userId);
+        assertEquals("José", claims.username);
+        assertEquals("a\"b\\c/d\né😀", parse("{\"userId\":\"a\\\"b\\\\c\\/d\\n\\u00e9\\ud83d\\ude00\"}").userId);
+    }
+
+    @Test
+    @DisplayName("Should accept numeric strings, array audiences and application timestamps")
+    void testNumericStringsAndAudienceArray() {
+        // Arrange
+        String payload = "{\"userId\":42,\"aud\":[\"api\",7,\"web\"],\"exp\":\"1700000000\","
+                + "\"issuedAt\":\"1629900000\",\"expiresAt\":1629903600,\"iat\":null}";
+        JwtClaims claims = new JwtClaims();
+        claims.expectedAudience = "web";
+
+        // Act
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        JwtClaimsParser.parse(bytes, 0, bytes.length, claims);
+
+        // Assert
+        assertEquals("42", claims.userId);
+        assertTrue(claims.audienceMatched);
+        assertSame(claims.expectedAudience, claims.audience);
+        assertEquals(1700000000000L, claims.exp);
+        assertEquals(JwtClaims.ABSENT, claims.iat);
+        assertEquals(1629900000L, claims.issuedAt);
+        assertEquals(1629903600L, claims.expiresAt);
+        assertEquals(1629900000L, claims.effectiveIssuedAt());
+        assertEquals(1700000000000L, claims.effectiveExpiresAt());
+    }
+
+    @Test
+    @DisplayName("Should reuse the expected issuer instead of decoding an equal value")
+    void testExpectedIssuerIsReused() {
+        // Arrange
+        String expectedIssuer = new String("https://issuer.example.com");
+        JwtClaims claims = new JwtClaims();
+        claims.expectedIssuer = expectedIssuer;
+        claims.expectedAudience = "api";
+        byte[] bytes = "{\"iss\":\"https://issuer.example.com\",\"aud\":\"other\"}".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        JwtClaimsParser.parse(bytes, 0, bytes.length, claims);
+
+        // Assert
+        assertSame(expectedIssuer, claims.issuer);
+        assertEquals("other", claims.audience);
+        assertFalse(claims.audienceMatched);
+
+        claims.reset();
+        assertNull(claims.issuer);
+        assertEquals(JwtClaims.ABSENT, claims.exp);
+    }
+
+    @Test
+    @DisplayName("Should record which accepted audiences are present for multi-issuer routing")
+    void testAcceptedAudienceMask() {
+        // Arrange
+        JwtClaims claims = new JwtClaims();
+        claims.acceptedAudiences = new String[] {"web", "api", "admin"};
+        byte[] bytes = "{\"aud\":[\"admin\",\"other\",\"w\\u0065b\"]}".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        JwtClaimsParser.parse(bytes, 0, bytes.length, claims);
+
+        // Assert
+        assertEquals(0b101L, claims.acceptedAudienceMask);
+        assertSame(claims.acceptedAudiences[2], claims.audience);
+        assertFalse(claims.audienceMatched);
+    }
+
+    @Test
+    @DisplayName("Should read roles, permissions and scopes as string lists")
+    void testRolePermissionAndScopeClaims() {
+        // Act
+        JwtClaims arrays = parse("{\"roles\":[\"USER\", 7, \"ADMIN\"],\"permissions\":[],"
+                + "\"scp\":[\"read\",\"write\"]}");
+        JwtClaims strings = parse("{\"roles\":\"USER\",\"permissions\":null,\"scope\":\" read  write \"}");
+
+        // Assert
+        assertEquals(List.of("USER", "ADMIN"), arrays.roles);
+        assertEquals(List.of(), arrays.permissions);
+        assertEquals(List.of("read", "write"), arrays.scopes);
+        assertEquals(List.of("USER"), strings.roles);
+        assertNull(strings.permissions);
+        assertEquals(List.of("read", "write"), strings.scopes);
+    }
+
+    @Test
+    @DisplayName("Should reject malformed payloads")
+    void testMalformedPayloadsThrowException() {
+        assertThrows(InvalidJwtTokenException.class, () -> parse(""));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("[]"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"userId\":\"abc"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"userId\":\"abc\" \"email\":\"x\"}"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"userId\":\"a\\qb\"}"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"userId\":\"abc\"} trailing"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"other\":tru}"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"exp\":\"soon\"}"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"exp\":99999999999999999999}"));
+        assertThrows(InvalidJwtTokenException.class, () -> parse("{\"deep\":" + "[".repeat(100) + "]".repeat(100) + "}"));
+    }
+
+    @Test
+    @DisplayName("Should truncate decimal timestamps and reject huge exponents without expanding them")
+    void testDecimalTimestamps() {
+        // Act
+        JwtClaims decimal = parse("{\"exp\":1.7000000009e9,\"iat\":1e-9999999,\"issuedAt\":0e99999999}");
+        long start = System.nanoTime();
+        for (String literal : new String[] {"1e9999999", "1e40000000", "-1E+999999999", "12345678901234567890.5"}) {
+            assertThrows(InvalidJwtTokenException.class, () -> parse("{\"exp\":" + literal + "}"));
+            assertThrows(InvalidJwtTokenException.class, () -> parse("{\"expiresAt\":" + literal + "}"));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertEquals(1700000000000L, decimal.exp);
+        assertEquals(0L, decimal.iat);
+        assertEquals(0L, decimal.issuedAt);
+        assertTrue(elapsedMillis < 1_000, "rejecting huge exponents took " + elapsedMillis + " ms");
+    }
+
+    private static JwtClaims parse(String payload) {
+        return JwtClaimsParser.parse(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,6 +2,7 @@ package com.tk.learn.web.security;
 
 import com.tk.learn.model.dto.UserDetailsDto;
 import com.tk.learn.model.exceptions.InvalidJwtTokenException;
+import io.jsonwebtoken.security.Jwks;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,9 +10,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("JwtTokenValidator Tests")
@@ -52,6 +66,26 @@ class JwtTokenValidatorTest {
         assertEquals("session-123", result.getSessionId());
     }
 
+    @Test
+    @DisplayName("Should extract roles, and scopes as permissions when no permissions claim is present")
+    void testExtractRolesAndScopes() {
+        // Arrange
+        String payload = """
+                {
+                  "userId": "user-123",
+                  "roles": ["USER", "ADMIN"],
+                  "scope": "orders:read orders:write"
+                }""";
+        String token = "Bearer header." + Base64.getEncoder().encodeToString(payload.getBytes()) + ".signature";
+
+        // Act
+        UserDetailsDto result = jwtTokenValidator.validateAndExtractClaims(token);
+
+        // Assert
+        assertEquals(List.of("USER", "ADMIN"), result.getRoles());
+        assertEquals(List.of("orders:read", "orders:write"), result.getPermissions());
+    }
+
     @Test
     @DisplayName("Should throw exception for missing token")
     void testMissingTokenThrowsException() {
@@ -155,5 +189,256 @@ class JwtTokenValidatorTest {
             jwtTokenValidator.validateAndExtractClaims(token)
         );
     }
-}
 
+    @Test
+    @DisplayName("Should verify RS256 and ES256 signatures against keys resolved by kid")
+    void testVerifySignatures() throws Exception {
+        // Arrange
+        KeyPair rsa = generateKeyPair("RSA");
+        KeyPair ec = generateKeyPair("EC");
+        JwtTokenValidator validator = verifyingValidator(
+                jwkSet(jwk(rsa.getPublic(), "rsa-1"), jwk(ec.getPublic(), "ec-1")));
+        String payload = "{\"userId\":\"user-123\",\"sessionId\":\"session-123\"}";
+
+        // Act
+        UserDetailsDto rsaResult = validator.validateAndExtractClaims(
+                "Bearer " + sign(payload, "RS256", "rsa-1", "SHA256withRSA", rsa.getPrivate()));
+        UserDetailsDto ecResult = validator.validateAndExtractClaims(
+                "Bearer " + sign(payload, "ES256", "ec-1", "SHA256withECDSAinP1363Format", ec.getPrivate()));
+
+        // Assert
+        assertEquals("user-123", rsaResult.getUserId());
+        assertEquals("user-123", ecResult.getUserId());
+    }
+
+    @Test
+    @DisplayName("Should reject tampered payloads, unknown kids, foreign keys and unsupported algorithms")
+    void testRejectInvalidSignatures() throws Exception {
+        // Arrange
+        KeyPair rsa = generateKeyPair("RSA");
+        KeyPair other = generateKeyPair("RSA");
+        JwtTokenValidator validator = verifyingValidator(jwkSet(jwk(rsa.getPublic(), "rsa-1")));
+        String payload = "{\"userId\":\"user-123\"}";
+        String token = sign(payload, "RS256", "rsa-1", "SHA256withRSA", rsa.getPrivate());
+        String[] parts = token.split("\\.");
+        String tampered = parts[0] + "." + base64Url("{\"userId\":\"admin\"}") + "." + parts[2];
+
+        // Act & Assert
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(tampered));
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                sign(payload, "RS256", "unknown", "SHA256withRSA", rsa.getPrivate())));
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                sign(payload, "RS256", "rsa-1", "SHA256withRSA", other.getPrivate())));
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                base64Url("{\"alg\":\"none\",\"kid\":\"rsa-1\"}") + "." + base64Url(payload) + ".sig"));
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                base64Url("{\"alg\":\"HS256\",\"kid\":\"rsa-1\"}") + "." + base64Url(payload) + ".sig"));
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                base64Url("{\"alg\":\"RS256\",\"crit\":[\"exp\"]}") + "." + base64Url(payload) + ".sig"));
+    }
+
+    @Test
+    @DisplayName("Should escape and cap token-supplied values quoted in rejection reasons")
+    void testRejectionReasonsSanitizeClaims() throws Exception {
+        // Arrange
+        KeyPair rsa = generateKeyPair("RSA");
+        JwtTokenValidator validator = verifyingValidator(jwkSet(jwk(rsa.getPublic(), "rsa-1")));
+        String forgedKid = "x\\nWARN forged line " + "a".repeat(500);
+        String token = sign("{\"userId\":\"user-123\"}", "RS256", forgedKid, "SHA256withRSA", rsa.getPrivate());
+
+        // Act
+        InvalidJwtTokenException e = assertThrows(InvalidJwtTokenException.class,
+                () -> validator.validateAndExtractClaims(token));
+
+        // Assert
+        assertTrue(e.getMessage().startsWith("No JWK found for key id: x?WARN forged line aaa"));
+        assertTrue(e.getMessage().endsWith("..."));
+        assertFalse(e.getMessage().contains("\n"));
+        assertTrue(e.getMessage().length() < 120);
+        assertEquals("a?b?", JwtTokenValidator.loggable("a\rb\u2028"));
+    }
+
+    @Test
+    @DisplayName("Should reject structurally invalid tokens with shared, stackless exceptions before decoding")
+    void testCheapStructuralRejection() {
+        // Arrange
+        ReflectionTestUtils.setField(jwtTokenValidator, "maxTokenLength", 64);
+        String[] garbage = {
+                "Bearer a.b.c.d",
+                "Bearer .payload.signature",
+                "Bearer header..signature",
+                "Bearer head er.payload.signature",
+                "Bearer header.pay+load.signature",
+                "Bearer " + "x".repeat(40) + "." + "y".repeat(40) + ".z"
+        };
+
+        // Act
+        InvalidJwtTokenException[] rejections = new InvalidJwtTokenException[garbage.length];
+        for (int i = 0; i < garbage.length; i++) {
+            String token = garbage[i];
+            rejections[i] = assertThrows(InvalidJwtTokenException.class,
+                    () -> jwtTokenValidator.validateAndExtractClaims(token));
+        }
+        InvalidJwtTokenException again = assertThrows(InvalidJwtTokenException.class,
+                () -> jwtTokenValidator.validateAndExtractClaims("Bearer x.y.z.w"));
+
+        // Assert
+        for (InvalidJwtTokenException rejection : rejections) {
+            assertEquals(0, rejection.getStackTrace().length);
+            assertNull(rejection.getCause());
+        }
+        assertSame(rejections[0], again);
+        assertSame(rejections[3], rejections[4]);
+        assertEquals(garbage.length + 1, jwtTokenValidator.getRejectedTokenCount());
+    }
+
+    @Test
+    @DisplayName("Should turn key lookup failures into stackless rejections counted by the rejection log")
+    void testKeyLookupFailureRejection() throws Exception {
+        // Arrange
+        KeyPair rsa = generateKeyPair("RSA");
+        JwkSetProvider provider = mock(JwkSetProvider.class);
+        IllegalStateException outage = new IllegalStateException("JWK Set endpoint unreachable");
+        when(provider.isConfigured()).thenReturn(true);
+        when(provider.getVerificationKey(any())).thenThrow(outage);
+        JwtTokenValidator validator = new JwtTokenValidator(provider);
+        ReflectionTestUtils.setField(validator, "tokenPrefix", "Bearer ");
+        String token = sign("{\"userId\":\"alice\"}", "RS256", "rsa-1", "SHA256withRSA", rsa.getPrivate());
+
+        // Act
+        InvalidJwtTokenException first = assertThrows(InvalidJwtTokenException.class,
+                () -> validator.validateAndExtractClaims(token));
+        InvalidJwtTokenException second = assertThrows(InvalidJwtTokenException.class,
+                () -> validator.validateAndExtractClaims(token));
+
+        // Assert
+        for (InvalidJwtTokenException rejection : List.of(first, second)) {
+            assertEquals(0, rejection.getStackTrace().length);
+            assertSame(outage, rejection.getCause());
+            assertTrue(rejection.getMessage().contains("JWK Set endpoint unreachable"));
+        }
+        assertEquals(2, validator.getRejectedTokenCount());
+    }
+
+    @Test
+    @DisplayName("Should validate a batch with per-token results, deduplicating repeated tokens")
+    void testValidateAll() throws Exception {
+        // Arrange
+        KeyPair rsa = generateKeyPair("RSA");
+        JwtTokenValidator validator = verifyingValidator(jwkSet(jwk(rsa.getPublic(), "rsa-1")));
+        String alice = sign("{\"userId\":\"alice\"}", "RS256", "rsa-1", "SHA256withRSA", rsa.getPrivate());
+        String bob = sign("{\"userId\":\"bob\"}", "RS256", "rsa-1", "SHA256withRSA", rsa.getPrivate());
+        List<String> batch = Arrays.asList(alice, "not-a-token", bob, null, alice);
+
+        // Act
+        List<TokenValidationResult> sequential = validator.validateAll(batch);
+        List<TokenValidationResult> parallel = validator.validateAll(batch, new ForkJoinPool(4));
+
+        // Assert
+        for (List<TokenValidationResult> results : List.of(sequential, parallel)) {
+            assertEquals(5, results.size());
+            assertEquals("alice", results.get(0).userDetails().getUserId());
+            assertFalse(results.get(1).isValid());
+            assertNotNull(results.get(1).error());
+            assertEquals("bob", results.get(2).userDetails().getUserId());
+            assertFalse(results.get(3).isValid());
+            assertEquals("alice", results.get(4).userDetails().getUserId());
+            assertNotSame(results.get(0).userDetails(), results.get(4).userDetails());
+        }
+    }
+
+    @Test
+    @DisplayName("Should route tokens by issuer to that issuer's keys and audience in multi-issuer mode")
+    void testMultiIssuerRouting() throws Exception {
+        // Arrange
+        KeyPair uaa = generateKeyPair("RSA");
+        KeyPair azure = generateKeyPair("EC");
+        JwkSetProvider defaultProvider = mock(JwkSetProvider.class);
+        JwkSetProvider uaaProvider = keyProvider(jwkSet(jwk(uaa.getPublic(), "uaa-1")));
+        JwkSetProvider azureProvider = keyProvider(jwkSet(jwk(azure.getPublic(), "azure-1")));
+        when(defaultProvider.forJwkSetUri("https://uaa.example.com/token_keys")).thenReturn(uaaProvider);
+        when(defaultProvider.forJwkSetUri("https://login.example.com/keys")).thenReturn(azureProvider);
+
+        JwtIssuerRegistry registry = new JwtIssuerRegistry(defaultProvider);
+        registry.setIssuers(List.of(
+                new JwtIssuerRegistry.Issuer("https://uaa.example.com", "https://uaa.example.com/token_keys", "web"),
+                new JwtIssuerRegistry.Issuer("https://login.example.com", "https://login.example.com/keys", "api")));
+        registry.afterPropertiesSet();
+        JwtTokenValidator validator = new JwtTokenValidator(defaultProvider, null, registry);
+        ReflectionTestUtils.setField(validator, "tokenPrefix", "Bearer ");
+
+        String uaaPayload = "{\"userId\":\"uaa-user\",\"iss\":\"https://uaa.example.com\",\"aud\":[\"other\",\"web\"]}";
+        String azurePayload = "{\"userId\":\"azure-user\",\"aud\":\"api\",\"iss\":\"https://login.example.com\"}";
+
+        // Act
+        UserDetailsDto uaaResult = validator.validateAndExtractClaims(
+                sign(uaaPayload, "RS256", "uaa-1", "SHA256withRSA", uaa.getPrivate()));
+        UserDetailsDto azureResult = validator.validateAndExtractClaims(
+                sign(azurePayload, "ES256", "azure-1", "SHA256withECDSAinP1363Format", azure.getPrivate()));
+
+        // Assert
+        assertEquals("uaa-user", uaaResult.getUserId());
+        assertEquals("azure-user", azureResult.getUserId());
+        // Azure issuer claimed, but signed with the UAA key
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                sign(azurePayload, "RS256", "uaa-1", "SHA256withRSA", uaa.getPrivate())));
+        // Untrusted issuer
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                sign("{\"userId\":\"u\",\"iss\":\"https://evil.example.com\",\"aud\":\"web\"}",
+                        "RS256", "uaa-1", "SHA256withRSA", uaa.getPrivate())));
+        // UAA token carrying only the other issuer's audience
+        assertThrows(InvalidJwtTokenException.class, () -> validator.validateAndExtractClaims(
+                sign("{\"userId\":\"u\",\"iss\":\"https://uaa.example.com\",\"aud\":\"api\"}",
+                        "RS256", "uaa-1", "SHA256withRSA", uaa.getPrivate())));
+    }
+
+    private static JwkSetProvider keyProvider(String jwkSetJson) {
+        JwkKeySet keySet = JwkKeySet.parse(jwkSetJson, System.currentTimeMillis());
+        JwkSetProvider provider = mock(JwkSetProvider.class);
+        when(provider.getVerificationKey(any()))
+                .thenAnswer(invocation -> keySet.find(invocation.getArgument(0)));
+        return provider;
+    }
+
+    private static JwtTokenValidator verifyingValidator(String jwkSetJson) {
+        JwkKeySet keySet = JwkKeySet.parse(jwkSetJson, System.currentTimeMillis());
+        JwkSetProvider provider = mock(JwkSetProvider.class);
+        when(provider.isConfigured()).thenReturn(true);
+        when(provider.getVerificationKey(any()))
+                .thenAnswer(invocation -> keySet.find(invocation.getArgument(0)));
+        JwtTokenValidator validator = new JwtTokenValidator(provider);
+        ReflectionTestUtils.setField(validator, "tokenPrefix", "Bearer ");
+        return validator;
+    }
+
+    private static KeyPair generateKeyPair(String algorithm) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+        if ("EC".equals(algorithm)) {
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            generator.initialize(2048);
+        }
+        return generator.generateKeyPair();
+    }
+
+    private static String jwk(PublicKey key, String kid) {
+        return Jwks.json(Jwks.builder().key(key).id(kid).build());
+    }
+
+    private static String jwkSet(String... jwks) {
+        return "{\"keys\":[" + String.join(",", jwks) + "]}";
+    }
+
+    private static String sign(String payload, String alg, String kid, String jcaName, PrivateKey key) throws Exception {
+        String signingInput = base64Url("{\"alg\":\"" + alg + "\",\"kid\":\"" + kid + "\",\"typ\":\"JWT\"}")
+                + "." + base64Url(payload);
+        Signature signature = Signature.getInstance(jcaName);
+        signature.initSign(key);
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature.sign());
+    }
+
+    private static String base64Url(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,77 @@
+package com.tk.learn.web.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ScratchPool Tests")
+class ScratchPoolTest {
+
+    @Test
+    @DisplayName("Should keep one instance per platform thread")
+    void testPlatformThreadsUseThreadLocal() {
+        // Arrange
+        ScratchPool<StringBuilder> pool = new ScratchPool<>(StringBuilder::new, 4);
+
+        // Act
+        StringBuilder first = pool.acquire();
+        pool.release(first);
+        StringBuilder second = pool.acquire();
+        pool.release(second);
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(0, pool.pooled());
+    }
+
+    @Test
+    @DisplayName("Should share instances between virtual threads instead of creating one per thread")
+    void testVirtualThreadsBorrowFromPool() throws Exception {
+        // Arrange
+        AtomicInteger created = new AtomicInteger();
+        ScratchPool<StringBuilder> pool = new ScratchPool<>(() -> {
+            created.incrementAndGet();
+            return new StringBuilder();
+        }, 4);
+
+        // Act
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 100; i++) {
+                executor.submit(() -> {
+                    StringBuilder scratch = pool.acquire();
+                    pool.release(scratch);
+                }).get();
+            }
+        }
+
+        // Assert
+        assertEquals(1, created.get());
+        assertEquals(1, pool.pooled());
+    }
+
+    @Test
+    @DisplayName("Should retain at most its capacity when many virtual threads hold instances at once")
+    void testCapacityBoundsRetainedInstances() throws Exception {
+        // Arrange
+        ScratchPool<StringBuilder> pool = new ScratchPool<>(StringBuilder::new, 2);
+        StringBuilder[] held = new StringBuilder[5];
+
+        // Act
+        Thread.ofVirtual().start(() -> {
+            for (int i = 0; i < held.length; i++) {
+                held[i] = pool.acquire();
+            }
+            for (StringBuilder scratch : held) {
+                pool.release(scratch);
+            }
+        }).join();
+
+        // Assert
+        assertEquals(2, pool.pooled());
+    }
+}
@@ -0,0 +1,145 @@
+package com.tk.learn.web.security;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("VerifiedTokenCache Tests")
+class VerifiedTokenCacheTest {
+
+    @Test
+    @DisplayName("Should return a copy of cached user details on hit and count hits and misses")
+    void testHitReturnsCopy() {
+        // Arrange
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, 300);
+        VerifiedTokenCache.TokenDigest digest = cache.digest("Bearer a.b.c", 7);
+        UserDetailsDto userDetails = userDetails("user-123", System.currentTimeMillis() + 60_000);
+
+        // Act
+        assertNull(cache.get(digest));
+        cache.put(digest, userDetails);
+        UserDetailsDto first = cache.get(digest);
+        first.setEmail("mutated@example.com");
+        UserDetailsDto second = cache.get(digest);
+
+        // Assert
+        assertEquals("user-123", second.getUserId());
+        assertEquals("user@example.com", second.getEmail());
+        assertNotSame(first, second);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should keep roles and permissions and hand out independent copies of them")
+    void testRolesAndPermissionsCached() {
+        // Arrange
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, 300);
+        VerifiedTokenCache.TokenDigest digest = cache.digest("a.b.roles", 0);
+        UserDetailsDto userDetails = userDetails("user-123", System.currentTimeMillis() + 60_000);
+        userDetails.setRoles(new ArrayList<>(List.of("USER")));
+        userDetails.setPermissions(new ArrayList<>(List.of("read")));
+
+        // Act
+        cache.put(digest, userDetails);
+        cache.get(digest).getRoles().add("ADMIN");
+        UserDetailsDto cached = cache.get(digest);
+
+        // Assert
+        assertEquals(List.of("USER"), cached.getRoles());
+        assertEquals(List.of("read"), cached.getPermissions());
+    }
+
+    @Test
+    @DisplayName("Should key entries by token digest, ignoring the prefix offset")
+    void testDigestIgnoresPrefix() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, 300);
+
+        assertEquals(cache.digest("Bearer a.b.c", 7), cache.digest("a.b.c", 0));
+        assertNotEquals(cache.digest("a.b.c", 0), cache.digest("a.b.d", 0));
+        assertNull(cache.digest("a.b.é", 0));
+    }
+
+    @Test
+    @DisplayName("Should not cache or return tokens past their expiry")
+    void testEntriesExpireWithToken() {
+        // Arrange
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, 300);
+        VerifiedTokenCache.TokenDigest expired = cache.digest("a.b.expired", 0);
+        VerifiedTokenCache.TokenDigest expiring = cache.digest("a.b.expiring", 0);
+
+        // Act
+        cache.put(expired, userDetails("user-1", System.currentTimeMillis() - 1));
+        cache.put(expiring, userDetails("user-2", System.currentTimeMillis() + 50));
+
+        // Assert
+        assertNull(cache.get(expired));
+        assertNotNull(cache.get(expiring));
+        sleep(80);
+        assertNull(cache.get(expiring));
+        assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    @DisplayName("Should stay bounded by max size and count evictions")
+    void testBoundedByMaxSize() {
+        // Arrange
+        VerifiedTokenCache cache = new VerifiedTokenCache(50, 300);
+        long expiresAt = System.currentTimeMillis() + 60_000;
+
+        // Act
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(cache.digest("a.b." + i, 0), userDetails("user-" + i, expiresAt));
+        }
+
+        // Assert
+        assertTrue(cache.size() <= 50, "size was " + cache.size());
+        assertTrue(cache.getEvictionCount() >= 950);
+    }
+
+    @Test
+    @DisplayName("Should serve repeated tokens from the cache in JwtTokenValidator")
+    void testValidatorUsesCache() {
+        // Arrange
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, 300);
+        JwtTokenValidator validator = new JwtTokenValidator(null, cache);
+        ReflectionTestUtils.setField(validator, "tokenPrefix", "Bearer ");
+        long exp = System.currentTimeMillis() / 1000 + 600;
+        String payload = "{\"userId\":\"user-123\",\"sessionId\":\"session-123\",\"exp\":" + exp + "}";
+        String token = "Bearer header."
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + ".signature";
+
+        // Act
+        UserDetailsDto first = validator.validateAndExtractClaims(token);
+        UserDetailsDto second = validator.validateAndExtractClaims(token);
+
+        // Assert
+        assertEquals("user-123", second.getUserId());
+        assertEquals(first.getExpiresAt(), second.getExpiresAt());
+        assertNotSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    private static UserDetailsDto userDetails(String userId, long expiresAt) {
+        return new UserDetailsDto(userId, "user@example.com", "john.doe", "session-123",
+                null, null, System.currentTimeMillis(), expiresAt);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
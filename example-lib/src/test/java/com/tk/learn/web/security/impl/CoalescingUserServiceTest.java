@@ -0,0 +1,171 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.model.exceptions.UserLookupTimeoutException;
+import com.tk.learn.web.security.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CoalescingUserService Tests")
+class CoalescingUserServiceTest {
+
+    @Test
+    @DisplayName("Should send concurrent lookups of the same user to the delegate once")
+    void testConcurrentLookupsCoalesced() throws Exception {
+        // Arrange
+        BlockingUserService delegate = new BlockingUserService();
+        CoalescingUserService service = new CoalescingUserService(delegate, 5_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            // Act
+            List<Future<UserDetailsDto>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> service.getUserDetailsById("user-1")));
+            }
+            assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+            waitForCoalesced(service, 7);
+            delegate.release.countDown();
+
+            // Assert
+            List<UserDetailsDto> users = new ArrayList<>();
+            for (Future<UserDetailsDto> result : results) {
+                users.add(result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, delegate.calls.get());
+            assertEquals(1, service.getLookupCount());
+            assertEquals(7, service.getCoalescedCount());
+            users.forEach(user -> assertEquals("user-1", user.getUserId()));
+            assertEquals(8, users.stream().distinct().count(), "each caller gets its own copy");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should rethrow a failed lookup to every waiter")
+    void testFailurePropagatesToWaiters() throws Exception {
+        // Arrange
+        BlockingUserService delegate = new BlockingUserService();
+        delegate.failure = new IllegalStateException("directory unavailable");
+        CoalescingUserService service = new CoalescingUserService(delegate, 5_000);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // Act
+            Future<UserDetailsDto> leader = executor.submit(() -> service.getUserDetailsById("user-1"));
+            assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+            Future<UserDetailsDto> waiter = executor.submit(() -> service.getUserDetailsById("user-1"));
+            waitForCoalesced(service, 1);
+            delegate.release.countDown();
+
+            // Assert
+            Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception waiterError = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertSame(delegate.failure, leaderError.getCause());
+            assertSame(delegate.failure, waiterError.getCause());
+            assertEquals(1, delegate.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail waiters that exceed the maximum wait instead of returning null")
+    void testWaiterTimeout() throws Exception {
+        // Arrange
+        BlockingUserService delegate = new BlockingUserService();
+        CoalescingUserService service = new CoalescingUserService(delegate, 50);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<UserDetailsDto> leader = executor.submit(() -> service.getUserDetailsById("user-1"));
+            assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+
+            // Act
+            assertThrows(UserLookupTimeoutException.class, () -> service.getUserDetailsById("user-1"));
+            delegate.release.countDown();
+
+            // Assert
+            assertEquals(1, service.getTimeoutCount());
+            assertEquals("user-1", leader.get(5, TimeUnit.SECONDS).getUserId());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should not share in-flight lookups between different users or lookup kinds")
+    void testKeysAreIndependent() {
+        // Arrange
+        BlockingUserService delegate = new BlockingUserService();
+        delegate.release.countDown();
+        CoalescingUserService service = new CoalescingUserService(delegate, 5_000);
+
+        // Act
+        service.getUserDetailsById("user-1");
+        service.getUserDetailsById("user-1");
+        service.getUserDetailsById("user-2");
+        UserDetailsDto byEmail = service.getUserDetailsByEmail("user-1");
+
+        // Assert
+        assertEquals(4, delegate.calls.get());
+        assertEquals(0, service.getCoalescedCount());
+        assertEquals("user-1@example.com", byEmail.getEmail());
+    }
+
+    private static void waitForCoalesced(CoalescingUserService service, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.getCoalescedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, service.getCoalescedCount());
+    }
+
+    /**
+     * Delegate whose lookups block until released, so callers overlap deterministically.
+     */
+    private static final class BlockingUserService implements UserService {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile RuntimeException failure;
+
+        @Override
+        public UserDetailsDto getUserDetailsById(String userId) {
+            return lookup(userId, userId + "@example.com");
+        }
+
+        @Override
+        public UserDetailsDto getUserDetailsByEmail(String email) {
+            return lookup("user-1", email + "@example.com");
+        }
+
+        private UserDetailsDto lookup(String userId, String email) {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new UserDetailsDto(userId, email, "john.doe", null,
+                    new ArrayList<>(List.of("USER")), null, System.currentTimeMillis(), 0);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.AuthorityDictionary;
+import com.tk.learn.model.dto.UserDetailsDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CompactUserDetailsCodec Tests")
+class CompactUserDetailsCodecTest {
+
+    private final CompactUserDetailsCodec codec = new CompactUserDetailsCodec();
+
+    @Test
+    @DisplayName("Should round-trip every field including non-ASCII text")
+    void testRoundTrip() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", "jörg@example.com", "Jörg Müller", "session-1",
+                List.of("USER", "ADMIN"), List.of("orders:write", "orders:read", "rëports:read"),
+                1_700_000_000_000L, 1_700_000_360_000L);
+
+        // Act
+        UserDetailsDto decoded = codec.decode(codec.encode(userDetails));
+
+        // Assert
+        assertSameUser(userDetails, decoded);
+        assertEquals(List.of("USER", "ADMIN"), decoded.getRoles());
+        assertEquals(List.of("orders:write", "orders:read", "rëports:read"), decoded.getPermissions());
+    }
+
+    @Test
+    @DisplayName("Should keep duplicates, shared names and null elements in list order")
+    void testAuthorityTable() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", "user@example.com", "User One", "session-1",
+                Arrays.asList("AUDIT", null, "AUDIT", "AUDITOR"), Arrays.asList("AUDIT", "AUD", null),
+                -5L, -10L);
+
+        // Act
+        UserDetailsDto decoded = codec.decode(codec.encode(userDetails));
+
+        // Assert
+        assertSameUser(userDetails, decoded);
+        assertSame(AuthorityDictionary.ROLES.intern("AUDIT"), decoded.getRoles().get(0));
+        assertTrue(decoded.hasRole("AUDITOR"));
+    }
+
+    @Test
+    @DisplayName("Should distinguish null from empty strings and lists")
+    void testNullsPreserved() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto(null, null, "", "session-1", null, List.of(), 0L, 0L);
+
+        // Act
+        UserDetailsDto decoded = codec.decode(codec.encode(userDetails));
+
+        // Assert
+        assertSameUser(userDetails, decoded);
+        assertNull(decoded.getRoles());
+        assertEquals(List.of(), decoded.getPermissions());
+    }
+
+    @Test
+    @DisplayName("Should be smaller than the length-prefixed and Java serialization forms")
+    void testSize() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("3f1c2a9e-user", "user@example.com", "Example User",
+                "9b7d4e21-session", List.of("ADMIN", "USER", "AUDITOR"),
+                List.of("orders:read", "orders:write", "reports:read"), 1_700_000_000_000L, 1_700_000_360_000L);
+
+        // Act
+        int compact = codec.encode(userDetails).length;
+        int lengthPrefixed = new LengthPrefixedUserDetailsCodec().encode(userDetails).length;
+        int java = new JavaSerializationUserDetailsCodec().encode(userDetails).length;
+
+        // Assert
+        assertTrue(compact * 10 < lengthPrefixed * 9, "compact " + compact + " vs length-prefixed " + lengthPrefixed);
+        assertTrue(compact * 3 < java, "compact " + compact + " vs java " + java);
+    }
+
+    @Test
+    @DisplayName("Should reject other formats, unknown versions and malformed input")
+    void testRejectsMalformedInput() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", "user@example.com", "User One", "session-1",
+                List.of("ADMIN"), List.of("read"), 1_000L, 2_000L);
+        byte[] encoded = codec.encode(userDetails);
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        byte[] nextVersion = encoded.clone();
+        nextVersion[0] = CompactUserDetailsCodec.VERSION + 1;
+        byte[] hugeLength = encoded.clone();
+        hugeLength[2] = 0x7f;
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new LengthPrefixedUserDetailsCodec().encode(userDetails)));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(nextVersion));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(trailing));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(hugeLength));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[0]));
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThrows(IllegalArgumentException.class, () -> codec.decode(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail corrupted input only with IllegalArgumentException")
+    void testCorruptedInput() {
+        // Arrange
+        byte[] encoded = codec.encode(new UserDetailsDto("user-1", "user@example.com", "User One", "session-1",
+                List.of("ADMIN", "USER"), List.of("orders:read", "orders:write"), 1_000L, 2_000L));
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            byte[] corrupted = encoded.clone();
+            corrupted[1 + random.nextInt(corrupted.length - 1)] = (byte) random.nextInt(256);
+
+            // Act & Assert
+            try {
+                codec.decode(corrupted);
+            } catch (IllegalArgumentException expected) {
+                // Rejected cleanly
+            }
+        }
+    }
+
+    private static void assertSameUser(UserDetailsDto expected, UserDetailsDto actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getSessionId(), actual.getSessionId());
+        assertEquals(expected.getRoles(), actual.getRoles());
+        assertEquals(expected.getPermissions(), actual.getPermissions());
+        assertEquals(expected.getIssuedAt(), actual.getIssuedAt());
+        assertEquals(expected.getExpiresAt(), actual.getExpiresAt());
+    }
+}
@@ -0,0 +1,296 @@
+package com.tk.learn.web.security.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal single-process stand-in for Redis speaking RESP2: AUTH, SELECT, PING, GET,
+ * SET with EX, DEL, PUBLISH and SUBSCRIBE, with lazy expiry. One thread per connection.
+ */
+final class EmbeddedRedis implements AutoCloseable {
+
+    private record Value(byte[] bytes, long expiresAtMillis, long ttlSeconds) {
+    }
+
+    private final ServerSocket server;
+    private final Map<String, Value> data = new ConcurrentHashMap<>();
+    private final List<String> commands = Collections.synchronizedList(new ArrayList<>());
+    private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger readBatches = new AtomicInteger();
+    private final Map<String, List<OutputStream>> subscribers = new ConcurrentHashMap<>();
+    private volatile String nextError;
+    private volatile long replyDelayMillis;
+    private volatile boolean recording = true;
+
+    EmbeddedRedis() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "embedded-redis");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    /**
+     * Number of times a connection found no further buffered input, i.e. round trips.
+     */
+    int readBatches() {
+        return readBatches.get();
+    }
+
+    int subscriberCount(String channel) {
+        List<OutputStream> outs = subscribers.get(channel);
+        return outs == null ? 0 : outs.size();
+    }
+
+    List<String> commands() {
+        return new ArrayList<>(commands);
+    }
+
+    boolean containsKey(String key) {
+        return data.containsKey(key);
+    }
+
+    long ttlSeconds(String key) {
+        return data.get(key).ttlSeconds();
+    }
+
+    void put(String key, byte[] value) {
+        data.put(key, new Value(value, Long.MAX_VALUE, -1));
+    }
+
+    void failNext(String error) {
+        nextError = error;
+    }
+
+    /**
+     * Delays every reply, standing in for the network round trip to a remote server.
+     */
+    void delayReplies(long millis) {
+        replyDelayMillis = millis;
+    }
+
+    /**
+     * Stops recording commands, for long-running load (benchmarks).
+     */
+    void stopRecording() {
+        recording = false;
+    }
+
+    void dropConnections() {
+        synchronized (sockets) {
+            sockets.forEach(this::closeQuietly);
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(server);
+        dropConnections();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                connections.incrementAndGet();
+                sockets.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "embedded-redis-conn");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        OutputStream out = null;
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream());
+            while (true) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                long delay = replyDelayMillis;
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                synchronized (out) {
+                    handle(command, out);
+                    if (in.available() == 0) {
+                        readBatches.incrementAndGet();
+                        out.flush();
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // Client went away or the server was closed
+        } finally {
+            OutputStream closed = out;
+            subscribers.values().forEach(outs -> outs.remove(closed));
+        }
+    }
+
+    private void handle(List<byte[]> command, OutputStream out) throws IOException {
+        String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase();
+        if (recording) {
+            commands.add(name);
+        }
+        String error = nextError;
+        if (error != null && !name.equals("AUTH") && !name.equals("SELECT")) {
+            nextError = null;
+            out.write(("-" + error + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        switch (name) {
+            case "AUTH", "SELECT" -> out.write("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+            case "PING" -> out.write("+PONG\r\n".getBytes(StandardCharsets.US_ASCII));
+            case "GET" -> {
+                Value value = live(key(command));
+                if (value == null) {
+                    out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    out.write(("$" + value.bytes().length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.write(value.bytes());
+                    out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+            case "SET" -> {
+                long ttl = command.size() == 5 ? Long.parseLong(new String(command.get(4), StandardCharsets.US_ASCII)) : -1;
+                long expiresAt = ttl > 0 ? System.currentTimeMillis() + ttl * 1000 : Long.MAX_VALUE;
+                data.put(key(command), new Value(command.get(2), expiresAt, ttl));
+                out.write("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            case "DEL" -> {
+                long removed = data.remove(key(command)) != null ? 1 : 0;
+                out.write((":" + removed + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            }
+            case "PUBLISH" -> {
+                int delivered = 0;
+                for (OutputStream subscriber : subscribers.getOrDefault(key(command), List.of())) {
+                    if (send(subscriber, "message", command.get(1), command.get(2))) {
+                        delivered++;
+                    }
+                }
+                out.write((":" + delivered + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            }
+            case "SUBSCRIBE" -> {
+                subscribers.computeIfAbsent(key(command), c -> new CopyOnWriteArrayList<>()).add(out);
+                writeArray(out, "subscribe", command.get(1));
+                out.write(":1\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            default -> out.write(("-ERR unknown command '" + name + "'\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static boolean send(OutputStream subscriber, String kind, byte[] channel, byte[] payload) {
+        synchronized (subscriber) {
+            try {
+                writeArray(subscriber, kind, channel);
+                writeBulk(subscriber, payload);
+                subscriber.flush();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Writes the header and first two elements of a three-element reply.
+     */
+    private static void writeArray(OutputStream out, String kind, byte[] channel) throws IOException {
+        out.write("*3\r\n".getBytes(StandardCharsets.US_ASCII));
+        writeBulk(out, kind.getBytes(StandardCharsets.US_ASCII));
+        writeBulk(out, channel);
+    }
+
+    private static void writeBulk(OutputStream out, byte[] bytes) throws IOException {
+        out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Value live(String key) {
+        Value value = data.get(key);
+        if (value != null && value.expiresAtMillis() <= System.currentTimeMillis()) {
+            data.remove(key, value);
+            return null;
+        }
+        return value;
+    }
+
+    private static String key(List<byte[]> command) {
+        return new String(command.get(1), StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected a RESP array");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a RESP bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            args.add(Arrays.copyOf(in.readNBytes(length + 2), length));
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new IOException("Truncated line");
+            }
+            line.append((char) c);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    private void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // Best effort
+        }
+    }
+}
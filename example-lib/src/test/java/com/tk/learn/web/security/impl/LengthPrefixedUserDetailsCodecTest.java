@@ -0,0 +1,94 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LengthPrefixedUserDetailsCodec Tests")
+class LengthPrefixedUserDetailsCodecTest {
+
+    private final LengthPrefixedUserDetailsCodec codec = new LengthPrefixedUserDetailsCodec();
+
+    @Test
+    @DisplayName("Should round-trip every field including non-ASCII text")
+    void testRoundTrip() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", "jörg@example.com", "Jörg Müller", "session-1",
+                List.of("ADMIN", "USER"), List.of("read", "write"), 1_700_000_000_000L, 1_700_000_360_000L);
+
+        // Act
+        UserDetailsDto decoded = codec.decode(codec.encode(userDetails));
+
+        // Assert
+        assertSameUser(userDetails, decoded);
+        assertEquals("Jörg Müller", decoded.getUsername());
+        assertEquals(List.of("ADMIN", "USER"), decoded.getRoles());
+        assertEquals(List.of("read", "write"), decoded.getPermissions());
+        assertEquals(1_700_000_360_000L, decoded.getExpiresAt());
+    }
+
+    @Test
+    @DisplayName("Should distinguish null from empty strings and lists")
+    void testNullsPreserved() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", null, "", null, null, List.of(), 0L, 0L);
+
+        // Act
+        UserDetailsDto decoded = codec.decode(codec.encode(userDetails));
+
+        // Assert
+        assertNull(decoded.getEmail());
+        assertEquals("", decoded.getUsername());
+        assertNull(decoded.getRoles());
+        assertEquals(List.of(), decoded.getPermissions());
+    }
+
+    @Test
+    @DisplayName("Should be much smaller than the Java serialization form")
+    void testSmallerThanJavaSerialization() {
+        // Arrange
+        UserDetailsDto userDetails = new UserDetailsDto("user-1", "user@example.com", "User One", "session-1",
+                List.of("ADMIN", "USER"), List.of("read", "write"), 1_000L, 2_000L);
+
+        // Act
+        int compact = codec.encode(userDetails).length;
+        int java = new JavaSerializationUserDetailsCodec().encode(userDetails).length;
+
+        // Assert
+        assertTrue(compact * 2 < java, "compact " + compact + " bytes vs java " + java + " bytes");
+    }
+
+    @Test
+    @DisplayName("Should reject truncated, oversized and trailing input")
+    void testRejectsMalformedInput() {
+        // Arrange
+        byte[] encoded = codec.encode(new UserDetailsDto("user-1", "user@example.com", "User One", "session-1",
+                List.of("ADMIN"), List.of("read"), 1_000L, 2_000L));
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        byte[] hugeLength = encoded.clone();
+        hugeLength[0] = 0x7f;
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(Arrays.copyOf(encoded, encoded.length - 3)));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(trailing));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(hugeLength));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[0]));
+    }
+
+    private static void assertSameUser(UserDetailsDto expected, UserDetailsDto actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getSessionId(), actual.getSessionId());
+        assertEquals(expected.getRoles(), actual.getRoles());
+        assertEquals(expected.getPermissions(), actual.getPermissions());
+        assertEquals(expected.getIssuedAt(), actual.getIssuedAt());
+        assertEquals(expected.getExpiresAt(), actual.getExpiresAt());
+    }
+}
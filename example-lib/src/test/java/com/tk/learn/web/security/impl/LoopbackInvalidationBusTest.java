@@ -0,0 +1,210 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.InvalidationListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LoopbackInvalidationBus Tests")
+class LoopbackInvalidationBusTest {
+
+    private LoopbackInvalidationBus node1;
+    private LoopbackInvalidationBus node2;
+    private RecordingListener received1;
+    private RecordingListener received2;
+
+    @BeforeEach
+    void setUp() {
+        // A long window keeps batches pending until flushed explicitly
+        node1 = new LoopbackInvalidationBus(60_000, 4);
+        node2 = node1.newPeer();
+        received1 = new RecordingListener();
+        received2 = new RecordingListener();
+        node1.subscribe("user", received1);
+        node2.subscribe("user", received2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        node1.destroy();
+        node2.destroy();
+    }
+
+    @Test
+    @DisplayName("Should deliver to the other nodes but not back to the publisher")
+    void testDeliversToPeersOnly() {
+        // Act
+        node1.publish("user", "user-1");
+        node1.flush();
+
+        // Assert
+        assertEquals(List.of(List.of("user-1")), received2.batches);
+        assertTrue(received1.batches.isEmpty());
+        assertEquals(1, node2.getReceivedCount());
+    }
+
+    @Test
+    @DisplayName("Should coalesce repeated keys within a window into one batch")
+    void testCoalescing() {
+        // Act
+        node1.publish("user", "user-1");
+        node1.publish("user", "user-2");
+        node1.publish("user", "user-1");
+        node1.flush();
+
+        // Assert
+        assertEquals(List.of(List.of("user-1", "user-2")), received2.batches);
+        assertEquals(2, node1.getPublishedCount());
+        assertEquals(1, node1.getCoalescedCount());
+        assertEquals(1, node1.getBatchCount());
+    }
+
+    @Test
+    @DisplayName("Should only deliver a topic to its own listeners")
+    void testTopics() {
+        // Arrange
+        RecordingListener sessions = new RecordingListener();
+        node2.subscribe("user-session", sessions);
+
+        // Act
+        node1.publish("user-session", "session-1");
+        node1.publish("other", "x");
+        node1.flush();
+
+        // Assert
+        assertEquals(List.of(List.of("session-1")), sessions.batches);
+        assertTrue(received2.batches.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should send at once when the batch reaches its maximum size")
+    void testMaxBatchSize() throws InterruptedException {
+        // Act
+        for (int i = 0; i < 4; i++) {
+            node1.publish("user", "user-" + i);
+        }
+
+        // Assert
+        assertTrue(awaitBatches(received2, 1));
+        assertEquals(4, received2.batches.get(0).size());
+    }
+
+    @Test
+    @DisplayName("Should send when the window elapses")
+    void testWindow() throws InterruptedException {
+        // Arrange
+        LoopbackInvalidationBus windowed = new LoopbackInvalidationBus(5, 500);
+        LoopbackInvalidationBus peer = windowed.newPeer();
+        RecordingListener received = new RecordingListener();
+        peer.subscribe("user", received);
+        try {
+            // Act
+            windowed.publish("user", "user-1");
+            windowed.publish("user", "user-2");
+
+            // Assert
+            assertTrue(awaitBatches(received, 1));
+            assertEquals(List.of(List.of("user-1", "user-2")), received.batches);
+        } finally {
+            windowed.destroy();
+            peer.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Should stop delivering to an unsubscribed listener")
+    void testUnsubscribe() {
+        // Act
+        node2.unsubscribe("user", received2);
+        node1.publish("user", "user-1");
+        node1.flush();
+
+        // Assert
+        assertTrue(received2.batches.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep delivering to other listeners when one fails")
+    void testFailingListener() {
+        // Arrange
+        AtomicInteger failures = new AtomicInteger();
+        node2.subscribe("user", new InvalidationListener() {
+            @Override
+            public void invalidate(Collection<String> keys) {
+                failures.incrementAndGet();
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public void invalidateAll() {
+            }
+        });
+        RecordingListener after = new RecordingListener();
+        node2.subscribe("user", after);
+
+        // Act
+        node1.publish("user", "user-1");
+        node1.flush();
+
+        // Assert
+        assertEquals(1, failures.get());
+        assertEquals(1, after.batches.size());
+        assertEquals(1, received2.batches.size());
+    }
+
+    @Test
+    @DisplayName("Should flush pending keys and leave the network on destroy")
+    void testDestroy() {
+        // Arrange
+        LoopbackInvalidationBus node3 = node1.newPeer();
+        RecordingListener received3 = new RecordingListener();
+        node3.subscribe("user", received3);
+        node1.publish("user", "user-1");
+
+        // Act
+        node1.destroy();
+        node3.destroy();
+        node2.publish("user", "user-2");
+        node2.flush();
+
+        // Assert
+        assertEquals(List.of(List.of("user-1")), received2.batches);
+        assertEquals(List.of(List.of("user-1")), received3.batches);
+        assertEquals(List.of(), received1.batches);
+    }
+
+    private static boolean awaitBatches(RecordingListener listener, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (listener.batches.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private static final class RecordingListener implements InvalidationListener {
+
+        final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void invalidate(Collection<String> keys) {
+            batches.add(new ArrayList<>(keys));
+        }
+
+        @Override
+        public void invalidateAll() {
+            batches.clear();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.model.exceptions.UserLookupTimeoutException;
+import com.tk.learn.web.security.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MicroBatchingUserService Tests")
+class MicroBatchingUserServiceTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+    private MicroBatchingUserService service;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Should send lookups arriving within the window as one batch call")
+    void testLookupsWithinWindowBatched() throws Exception {
+        // Arrange
+        DirectoryUserService directory = new DirectoryUserService();
+        service = new MicroBatchingUserService(directory, 200, 100, 5_000);
+
+        // Act
+        List<Future<UserDetailsDto>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String userId = "user-" + (i % 5);
+            results.add(executor.submit(() -> service.getUserDetailsById(userId)));
+        }
+
+        // Assert
+        for (int i = 0; i < 10; i++) {
+            assertEquals("user-" + (i % 5), results.get(i).get(5, TimeUnit.SECONDS).getUserId());
+        }
+        assertEquals(1, directory.batchSizes.size());
+        assertEquals(5, directory.batchSizes.get(0));
+        assertEquals(10, service.getRequestCount());
+        assertEquals(5.0, service.getAverageBatchSize(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should dispatch as soon as the batch is full without waiting for the window")
+    void testFullBatchDispatchedImmediately() throws Exception {
+        // Arrange
+        DirectoryUserService directory = new DirectoryUserService();
+        service = new MicroBatchingUserService(directory, 60_000, 4, 5_000);
+
+        // Act
+        List<Future<UserDetailsDto>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String userId = "user-" + i;
+            results.add(executor.submit(() -> service.getUserDetailsById(userId)));
+        }
+
+        // Assert
+        for (Future<UserDetailsDto> result : results) {
+            assertNotNull(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(4, 4), directory.batchSizes);
+    }
+
+    @Test
+    @DisplayName("Should return null for unknown users and rethrow a failed batch to every caller")
+    void testMissingUsersAndFailures() throws Exception {
+        // Arrange
+        DirectoryUserService directory = new DirectoryUserService();
+        service = new MicroBatchingUserService(directory, 20, 100, 5_000);
+
+        // Act
+        UserDetailsDto missing = service.getUserDetailsById("unknown");
+        directory.failure = new IllegalStateException("directory unavailable");
+        Future<UserDetailsDto> first = executor.submit(() -> service.getUserDetailsById("user-1"));
+        Future<UserDetailsDto> second = executor.submit(() -> service.getUserDetailsById("user-2"));
+
+        // Assert
+        assertNull(missing);
+        assertSame(directory.failure, assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(directory.failure, assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+    }
+
+    @Test
+    @DisplayName("Should run batches concurrently so a slow batch does not hold up later windows")
+    void testSlowBatchDoesNotBlockLaterWindows() throws Exception {
+        // Arrange
+        DirectoryUserService directory = new DirectoryUserService();
+        directory.blockedUser = "user-slow";
+        service = new MicroBatchingUserService(directory, 5, 100, 5_000, 2);
+
+        try {
+            Future<UserDetailsDto> slow = executor.submit(() -> service.getUserDetailsById("user-slow"));
+            assertTrue(directory.blocked.await(5, TimeUnit.SECONDS));
+
+            // Act
+            UserDetailsDto fast = service.getUserDetailsById("user-fast");
+
+            // Assert
+            assertEquals("user-fast", fast.getUserId());
+            assertFalse(slow.isDone());
+        } finally {
+            directory.release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail callers whose batch exceeds the maximum wait instead of returning null")
+    void testTimeoutFails() throws Exception {
+        // Arrange
+        DirectoryUserService directory = new DirectoryUserService();
+        directory.blockedUser = "user-slow";
+        service = new MicroBatchingUserService(directory, 5, 100, 50, 2);
+
+        try {
+            // Act & Assert
+            assertThrows(UserLookupTimeoutException.class, () -> service.getUserDetailsById("user-slow"));
+            assertEquals(1, service.getTimeoutCount());
+        } finally {
+            directory.release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should shut down the wrappers it created when the post-processor is destroyed")
+    void testPostProcessorDestroysWrappers() throws Exception {
+        // Arrange
+        DirectoryUserService directory = new DirectoryUserService();
+        MicroBatchingPostProcessor postProcessor = new MicroBatchingPostProcessor(60_000, 100, 5_000, 2);
+        MicroBatchingUserService wrapper =
+                (MicroBatchingUserService) postProcessor.postProcessAfterInitialization(directory, "userService");
+        Future<UserDetailsDto> pending = executor.submit(() -> wrapper.getUserDetailsById("user-1"));
+        while (wrapper.getRequestCount() == 0) {
+            Thread.sleep(1);
+        }
+        // Let the lookup join the open batch
+        Thread.sleep(50);
+
+        // Act
+        postProcessor.destroy();
+
+        // Assert
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> pending.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+
+    @Test
+    @DisplayName("Should fall back to single lookups when the delegate has no batch implementation")
+    void testDefaultBatchFallsBackToSingleLookups() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        UserService single = new UserService() {
+            @Override
+            public UserDetailsDto getUserDetailsById(String userId) {
+                calls.incrementAndGet();
+                return userId.startsWith("user") ? userDetails(userId) : null;
+            }
+
+            @Override
+            public UserDetailsDto getUserDetailsByEmail(String email) {
+                return null;
+            }
+        };
+
+        // Act
+        Map<String, UserDetailsDto> result = single.getUserDetailsByIds(List.of("user-1", "user-2", "ghost"));
+
+        // Assert
+        assertEquals(3, calls.get());
+        assertEquals(2, result.size());
+        assertEquals("user-2", result.get("user-2").getUserId());
+        assertFalse(result.containsKey("ghost"));
+    }
+
+    private static UserDetailsDto userDetails(String userId) {
+        return new UserDetailsDto(userId, userId + "@example.com", "john.doe", null,
+                new ArrayList<>(List.of("USER")), null, System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * Directory stand-in with a native batch call that records batch sizes.
+     */
+    private static final class DirectoryUserService implements UserService {
+
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private volatile RuntimeException failure;
+        private volatile String blockedUser;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public UserDetailsDto getUserDetailsById(String userId) {
+            throw new AssertionError("single lookup not expected");
+        }
+
+        @Override
+        public UserDetailsDto getUserDetailsByEmail(String email) {
+            return null;
+        }
+
+        @Override
+        public Map<String, UserDetailsDto> getUserDetailsByIds(Collection<String> userIds) {
+            batchSizes.add(userIds.size());
+            if (failure != null) {
+                throw failure;
+            }
+            if (userIds.contains(blockedUser)) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Map<String, UserDetailsDto> result = new HashMap<>();
+            for (String userId : userIds) {
+                if (userId.startsWith("user")) {
+                    result.put(userId, userDetails(userId));
+                }
+            }
+            return result;
+        }
+    }
+}
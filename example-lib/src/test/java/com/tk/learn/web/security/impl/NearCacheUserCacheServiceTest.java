@@ -0,0 +1,174 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("NearCacheUserCacheService Tests")
+class NearCacheUserCacheServiceTest {
+
+    private InMemoryUserCacheService remote;
+    private NearCacheUserCacheService nearCache;
+
+    @BeforeEach
+    void setUp() {
+        remote = new InMemoryUserCacheService();
+        nearCache = new NearCacheUserCacheService(remote, 100, 30);
+    }
+
+    @Test
+    @DisplayName("Should serve repeated reads from L1 after one remote read")
+    void testReadThrough() {
+        // Arrange
+        remote.cacheUser("session-1", userDetails("user-1", 0), 3600);
+
+        // Act
+        UserDetailsDto first = nearCache.getUserFromCache("session-1");
+        UserDetailsDto second = nearCache.getUserFromCache("session-1");
+        UserDetailsDto third = nearCache.getUserFromCache("session-1");
+
+        // Assert
+        assertEquals("user-1", third.getUserId());
+        assertEquals(1, remote.reads.get());
+        assertEquals(2, nearCache.getL1HitCount());
+        assertEquals(1, nearCache.getL1MissCount());
+        assertEquals(1, nearCache.getRemoteHitCount());
+        assertEquals(2.0 / 3, nearCache.getL1HitRatio(), 1e-9);
+        assertEquals(1.0, nearCache.getRemoteHitRatio(), 1e-9);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    @DisplayName("Should write through to the remote tier and hand out independent copies")
+    void testWriteThrough() {
+        // Act
+        nearCache.cacheUser("session-1", userDetails("user-1", 0), 3600);
+        UserDetailsDto cached = nearCache.getUserFromCache("session-1");
+        cached.getRoles().add("ADMIN");
+
+        // Assert
+        assertNotNull(remote.entries.get("session-1"));
+        assertEquals(0, remote.reads.get());
+        assertEquals(List.of("USER"), nearCache.getUserFromCache("session-1").getRoles());
+    }
+
+    @Test
+    @DisplayName("Should expire L1 entries with the user's expiresAt and remove from both tiers")
+    void testExpiryAndRemoval() throws Exception {
+        // Arrange
+        nearCache.cacheUser("expiring", userDetails("user-1", System.currentTimeMillis() + 50), 3600);
+        nearCache.cacheUser("session-2", userDetails("user-2", 0), 3600);
+
+        // Act
+        Thread.sleep(80);
+        nearCache.getUserFromCache("expiring");
+        nearCache.removeUserFromCache("session-2");
+
+        // Assert
+        assertEquals(1, remote.reads.get());
+        assertNull(nearCache.getUserFromCache("session-2"));
+        assertNull(remote.entries.get("session-2"));
+    }
+
+    @Test
+    @DisplayName("Should stay bounded by max size")
+    void testBoundedByMaxSize() {
+        // Act
+        for (int i = 0; i < 1_000; i++) {
+            nearCache.cacheUser("session-" + i, userDetails("user-" + i, 0), 3600);
+        }
+
+        // Assert
+        assertTrue(nearCache.size() <= 100, "size was " + nearCache.size());
+        assertTrue(nearCache.getEvictionCount() > 0);
+    }
+
+    @Test
+    @DisplayName("Should drop another node's L1 copy when a session is rewritten through the bus")
+    void testCrossNodeInvalidation() {
+        // Arrange
+        LoopbackInvalidationBus bus1 = new LoopbackInvalidationBus(60_000, 500);
+        LoopbackInvalidationBus bus2 = bus1.newPeer();
+        NearCacheUserCacheService node1 = new NearCacheUserCacheService(remote, 100, 3600, bus1);
+        NearCacheUserCacheService node2 = new NearCacheUserCacheService(remote, 100, 3600, bus2);
+        node1.cacheUser("session-1", userDetails("user-1", 0), 3600);
+        assertEquals("user-1", node2.getUserFromCache("session-1").getUserId());
+
+        // Act
+        node1.cacheUser("session-1", userDetails("user-1b", 0), 3600);
+        String staleRead = node2.getUserFromCache("session-1").getUserId();
+        bus1.flush();
+        String freshRead = node2.getUserFromCache("session-1").getUserId();
+
+        // Assert
+        assertEquals("user-1", staleRead);
+        assertEquals("user-1b", freshRead);
+        assertEquals(1, bus2.getReceivedCount());
+        bus1.destroy();
+        bus2.destroy();
+    }
+
+    @Test
+    @DisplayName("Should not refill L1 with a session removed while it was being read remotely")
+    void testRemovalRacingRemoteRead() {
+        // Arrange
+        remote.cacheUser("session-1", userDetails("user-1", 0), 3600);
+        remote.duringRead = () -> nearCache.removeUserFromCache("session-1");
+
+        // Act
+        UserDetailsDto inFlight = nearCache.getUserFromCache("session-1");
+        remote.duringRead = null;
+        UserDetailsDto afterLogout = nearCache.getUserFromCache("session-1");
+
+        // Assert
+        assertNotNull(inFlight, "the racing read still returns what it read");
+        assertNull(afterLogout);
+        assertEquals(0, nearCache.size());
+    }
+
+    private static UserDetailsDto userDetails(String userId, long expiresAt) {
+        return new UserDetailsDto(userId, "user@example.com", "john.doe", "session-1",
+                new ArrayList<>(List.of("USER")), null, System.currentTimeMillis(), expiresAt);
+    }
+
+    /**
+     * Stand-in for the remote tier (e.g. Redis).
+     */
+    private static final class InMemoryUserCacheService implements UserCacheService {
+
+        private final Map<String, UserDetailsDto> entries = new ConcurrentHashMap<>();
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile Runnable duringRead;
+
+        @Override
+        public UserDetailsDto getUserFromCache(String sessionId) {
+            reads.incrementAndGet();
+            UserDetailsDto userDetails = entries.get(sessionId);
+            Runnable hook = duringRead;
+            if (hook != null) {
+                hook.run();
+            }
+            return userDetails != null ? new UserDetailsDto(userDetails) : null;
+        }
+
+        @Override
+        public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+            entries.put(sessionId, new UserDetailsDto(userDetails));
+        }
+
+        @Override
+        public void removeUserFromCache(String sessionId) {
+            entries.remove(sessionId);
+        }
+    }
+}
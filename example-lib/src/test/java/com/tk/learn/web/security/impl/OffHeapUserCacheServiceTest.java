@@ -0,0 +1,201 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("OffHeapUserCacheService Tests")
+class OffHeapUserCacheServiceTest {
+
+    @Test
+    @DisplayName("Should return an independent copy of the cached user")
+    void testRoundTrip() {
+        // Arrange
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(1 << 20, 1_000, 4, new LengthPrefixedUserDetailsCodec());
+        cache.cacheUser("session-1", user("session-1"), 60);
+
+        // Act
+        UserDetailsDto first = cache.getUserFromCache("session-1");
+        first.getRoles().add("MUTATED");
+        UserDetailsDto second = cache.getUserFromCache("session-1");
+
+        // Assert
+        assertEquals("user-session-1", second.getUserId());
+        assertEquals(List.of("ADMIN", "USER"), second.getRoles());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should replace an entry written twice for the same session")
+    void testOverwrite() {
+        // Arrange
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(1 << 20, 1_000, 4, new LengthPrefixedUserDetailsCodec());
+        cache.cacheUser("session-1", user("session-1"), 60);
+        UserDetailsDto updated = user("session-1");
+        updated.setEmail("changed@example.com");
+
+        // Act
+        cache.cacheUser("session-1", updated, 60);
+
+        // Assert
+        assertEquals("changed@example.com", cache.getUserFromCache("session-1").getEmail());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should drop an entry read after its TTL")
+    void testExpiry() throws InterruptedException {
+        // Arrange
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(1 << 20, 1_000, 1, new LengthPrefixedUserDetailsCodec());
+        cache.cacheUser("session-1", user("session-1"), 1);
+        cache.cacheUser("session-2", user("session-2"), 60);
+
+        // Act
+        Thread.sleep(1_100);
+
+        // Assert
+        assertNull(cache.getUserFromCache("session-1"));
+        assertNotNull(cache.getUserFromCache("session-2"));
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should remove an entry and keep colliding probe runs reachable")
+    void testRemove() {
+        // Arrange
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(1 << 20, 64, 1, new LengthPrefixedUserDetailsCodec());
+        for (int i = 0; i < 60; i++) {
+            cache.cacheUser("session-" + i, user("session-" + i), 60);
+        }
+
+        // Act
+        for (int i = 0; i < 60; i += 2) {
+            cache.removeUserFromCache("session-" + i);
+        }
+
+        // Assert
+        for (int i = 0; i < 60; i++) {
+            UserDetailsDto cached = cache.getUserFromCache("session-" + i);
+            if (i % 2 == 0) {
+                assertNull(cached, "session-" + i);
+            } else {
+                assertNotNull(cached, "session-" + i);
+            }
+        }
+        assertEquals(30, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should evict the oldest entries when the entry limit is reached")
+    void testEntryLimitEvictsOldest() {
+        // Arrange
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(1 << 20, 10, 1, new LengthPrefixedUserDetailsCodec());
+
+        // Act
+        for (int i = 0; i < 15; i++) {
+            cache.cacheUser("session-" + i, user("session-" + i), 60);
+        }
+
+        // Assert
+        assertEquals(10, cache.size());
+        assertEquals(5, cache.getEvictionCount());
+        assertNull(cache.getUserFromCache("session-0"));
+        assertNull(cache.getUserFromCache("session-4"));
+        assertNotNull(cache.getUserFromCache("session-5"));
+        assertNotNull(cache.getUserFromCache("session-14"));
+    }
+
+    @Test
+    @DisplayName("Should wrap the ring and evict the oldest entries when bytes run out")
+    void testCapacityEvictsOldest() {
+        // Arrange
+        int recordSize = new LengthPrefixedUserDetailsCodec().encode(user("session-00")).length + 24 + 10;
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(recordSize * 8L + recordSize / 2, 1_000, 1,
+                new LengthPrefixedUserDetailsCodec());
+
+        // Act
+        for (int i = 10; i < 50; i++) {
+            cache.cacheUser("session-" + i, user("session-" + i), 60);
+        }
+
+        // Assert
+        assertTrue(cache.size() <= 8);
+        assertTrue(cache.getUsedBytes() <= recordSize * 8L + recordSize / 2);
+        assertNull(cache.getUserFromCache("session-10"));
+        for (int i = 50 - cache.size(); i < 50; i++) {
+            assertEquals("user-session-" + i, cache.getUserFromCache("session-" + i).getUserId());
+        }
+    }
+
+    @Test
+    @DisplayName("Should skip entries larger than a segment")
+    void testRejectsOversizedEntry() {
+        // Arrange
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(64, 10, 1, new LengthPrefixedUserDetailsCodec());
+
+        // Act
+        cache.cacheUser("session-1", user("session-1"), 60);
+
+        // Assert
+        assertNull(cache.getUserFromCache("session-1"));
+        assertEquals(1, cache.getRejectionCount());
+    }
+
+    @Test
+    @DisplayName("Should stay consistent under concurrent writers and readers")
+    void testConcurrentAccess() throws Exception {
+        // Arrange
+        OffHeapUserCacheService cache = new OffHeapUserCacheService(1 << 20, 2_000, 4, new LengthPrefixedUserDetailsCodec());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            // Act
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        String sessionId = "session-" + ((thread * 2_000 + i) % 3_000);
+                        cache.cacheUser(sessionId, user(sessionId), 60);
+                        UserDetailsDto cached = cache.getUserFromCache(sessionId);
+                        if (cached != null) {
+                            assertEquals(sessionId, cached.getSessionId());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+
+            // Assert
+            assertTrue(cache.size() <= 2_000);
+            assertTrue(cache.size() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject a segment count that is not a power of two")
+    void testInvalidSegments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapUserCacheService(1 << 20, 1_000, 3, new LengthPrefixedUserDetailsCodec()));
+    }
+
+    private static UserDetailsDto user(String sessionId) {
+        return new UserDetailsDto("user-" + sessionId, sessionId + "@example.com", "name-" + sessionId,
+                sessionId, new ArrayList<>(List.of("ADMIN", "USER")), List.of("read", "write"), 1_000L, 2_000L);
+    }
+}
@@ -0,0 +1,40 @@
+package com.tk.learn.web.security.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RedisConnection Tests")
+class RedisConnectionTest {
+
+    @Test
+    @DisplayName("Should make TLS sockets verify the server certificate against the host name")
+    void testTlsVerifiesHostname() throws Exception {
+        // Arrange
+        try (SSLSocket socket = (SSLSocket) SSLSocketFactory.getDefault().createSocket()) {
+
+            // Act
+            RedisConnection.verifyingHostname(socket);
+
+            // Assert
+            assertEquals("HTTPS", socket.getSSLParameters().getEndpointIdentificationAlgorithm());
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail the TLS handshake before sending AUTH to a server that does not speak TLS")
+    void testTlsHandshakeBeforeAuth() throws Exception {
+        // Arrange
+        try (EmbeddedRedis redis = new EmbeddedRedis()) {
+
+            // Act & Assert
+            assertThrows(IOException.class,
+                    () -> new RedisConnection("localhost", redis.port(), true, "secret", 0, 2_000));
+        }
+    }
+}
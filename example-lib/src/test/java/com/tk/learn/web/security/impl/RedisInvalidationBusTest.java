@@ -0,0 +1,149 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.web.security.InvalidationListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RedisInvalidationBus Tests")
+class RedisInvalidationBusTest {
+
+    private static final String CHANNEL = "jwt:invalidation";
+
+    private EmbeddedRedis redis;
+    private RedisInvalidationBus node1;
+    private RedisInvalidationBus node2;
+    private RecordingListener received1;
+    private RecordingListener received2;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redis = new EmbeddedRedis();
+        node1 = bus();
+        node2 = bus();
+        received1 = new RecordingListener();
+        received2 = new RecordingListener();
+        node1.subscribe("user", received1);
+        node2.subscribe("user", received2);
+        assertTrue(await(() -> node1.isSubscribed() && node2.isSubscribed()
+                && redis.subscriberCount(CHANNEL) == 2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        node1.destroy();
+        node2.destroy();
+        redis.close();
+    }
+
+    @Test
+    @DisplayName("Should deliver a batch to the other node with one PUBLISH")
+    void testPublish() {
+        // Act
+        node1.publish("user", "user-1");
+        node1.publish("user", "user-2");
+        node1.publish("user", "user-1");
+        node1.flush();
+
+        // Assert
+        assertTrue(await(() -> received2.keys.size() == 2));
+        assertEquals(List.of("user-1", "user-2"), received2.keys);
+        assertEquals(1, redis.commands().stream().filter("PUBLISH"::equals).count());
+        assertEquals(2, node2.getReceivedCount());
+    }
+
+    @Test
+    @DisplayName("Should ignore its own messages")
+    void testIgnoresOwnMessages() {
+        // Act
+        node1.publish("user", "user-1");
+        node1.flush();
+        node2.publish("user", "user-2");
+        node2.flush();
+
+        // Assert
+        assertTrue(await(() -> received1.keys.size() == 1 && received2.keys.size() == 1));
+        assertEquals(List.of("user-2"), received1.keys);
+        assertEquals(List.of("user-1"), received2.keys);
+    }
+
+    @Test
+    @DisplayName("Should resubscribe after losing the connection and drop all local entries")
+    void testResubscribe() {
+        // Act
+        redis.dropConnections();
+
+        // Assert
+        assertTrue(await(() -> received2.invalidateAllCalls.get() == 1 && node2.isSubscribed()
+                && redis.subscriberCount(CHANNEL) == 2));
+        node1.publish("user", "user-1");
+        node1.flush();
+        assertTrue(await(() -> received2.keys.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should count a failed publish and recover on the next batch")
+    void testSendFailure() {
+        // Arrange
+        redis.failNext("ERR boom");
+
+        // Act
+        node1.publish("user", "user-1");
+        node1.flush();
+        node1.publish("user", "user-2");
+        node1.flush();
+
+        // Assert
+        assertEquals(1, node1.getSendFailureCount());
+        assertTrue(await(() -> received2.keys.contains("user-2")));
+    }
+
+    private RedisInvalidationBus bus() {
+        // A long window keeps batches pending until flushed explicitly
+        return new RedisInvalidationBus("127.0.0.1", redis.port(), false, "secret", 2_000,
+                CHANNEL, 60_000, 500);
+    }
+
+    private static boolean await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class RecordingListener implements InvalidationListener {
+
+        final List<String> keys = new CopyOnWriteArrayList<>();
+        final AtomicInteger invalidateAllCalls = new AtomicInteger();
+
+        @Override
+        public void invalidate(Collection<String> batch) {
+            keys.addAll(new ArrayList<>(batch));
+        }
+
+        @Override
+        public void invalidateAll() {
+            invalidateAllCalls.incrementAndGet();
+        }
+    }
+}
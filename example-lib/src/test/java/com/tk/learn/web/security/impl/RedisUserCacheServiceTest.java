@@ -0,0 +1,177 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RedisUserCacheService Tests")
+class RedisUserCacheServiceTest {
+
+    private EmbeddedRedis redis;
+    private RedisConnectionPool pool;
+    private RedisUserCacheService cacheService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redis = new EmbeddedRedis();
+        pool = new RedisConnectionPool("127.0.0.1", redis.port(), false, "secret", 2, 2_000, 4, 1_000);
+        cacheService = new RedisUserCacheService(pool, "jwt:user:", new LengthPrefixedUserDetailsCodec());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheService.destroy();
+        redis.close();
+    }
+
+    @Test
+    @DisplayName("Should round-trip user details through Redis")
+    void testRoundTrip() {
+        // Arrange
+        UserDetailsDto userDetails = user("session-1");
+
+        // Act
+        cacheService.cacheUser("session-1", userDetails, 60);
+        UserDetailsDto cached = cacheService.getUserFromCache("session-1");
+
+        // Assert
+        assertSameUser(userDetails, cached);
+        assertEquals(List.of("ADMIN", "USER"), cached.getRoles());
+        assertTrue(redis.containsKey("jwt:user:session-1"));
+        assertEquals(60L, redis.ttlSeconds("jwt:user:session-1"));
+        assertEquals(1, cacheService.getHitCount());
+    }
+
+    @Test
+    @DisplayName("Should authenticate and select the configured database on connect")
+    void testAuthAndSelect() {
+        // Act
+        cacheService.getUserFromCache("session-1");
+
+        // Assert
+        assertEquals(List.of("AUTH", "SELECT", "GET"), redis.commands().subList(0, 3));
+    }
+
+    @Test
+    @DisplayName("Should return null once the server-side TTL has expired")
+    void testExpiry() throws InterruptedException {
+        // Arrange
+        cacheService.cacheUser("session-1", user("session-1"), 1);
+
+        // Act
+        Thread.sleep(1_100);
+
+        // Assert
+        assertNull(cacheService.getUserFromCache("session-1"));
+        assertEquals(1, cacheService.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should remove a cached user")
+    void testRemove() {
+        // Arrange
+        cacheService.cacheUser("session-1", user("session-1"), 60);
+
+        // Act
+        cacheService.removeUserFromCache("session-1");
+
+        // Assert
+        assertNull(cacheService.getUserFromCache("session-1"));
+    }
+
+    @Test
+    @DisplayName("Should pipeline batch reads and writes in one round trip each")
+    void testPipelinedBatch() {
+        // Arrange
+        Map<String, UserDetailsDto> users = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            users.put("session-" + i, user("session-" + i));
+        }
+
+        // Act
+        cacheService.cacheUsers(users, 60);
+        Map<String, UserDetailsDto> cached = cacheService.getUsersFromCache(
+                List.of("session-0", "session-5", "session-9", "missing"));
+
+        // Assert
+        assertEquals(3, cached.size());
+        assertSameUser(users.get("session-5"), cached.get("session-5"));
+        assertFalse(cached.containsKey("missing"));
+        assertEquals(1, redis.connections(), "both batches share one pooled connection");
+        assertEquals(3, redis.readBatches(), "the connect handshake plus one round trip per batch");
+    }
+
+    @Test
+    @DisplayName("Should treat an undecodable entry as a miss")
+    void testUndecodableEntryIsMiss() {
+        // Arrange
+        redis.put("jwt:user:session-1", "not an encoded user".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        UserDetailsDto cached = cacheService.getUserFromCache("session-1");
+
+        // Assert
+        assertNull(cached);
+        assertEquals(1, cacheService.getDecodeFailureCount());
+        assertEquals(1, cacheService.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should keep a connection usable after an error reply")
+    void testErrorReplyKeepsConnection() {
+        // Arrange
+        redis.failNext("ERR simulated");
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> cacheService.getUserFromCache("session-1"));
+        cacheService.cacheUser("session-1", user("session-1"), 60);
+
+        // Assert
+        assertNotNull(cacheService.getUserFromCache("session-1"));
+        assertEquals(1, redis.connections());
+        assertEquals(1, pool.idleCount());
+    }
+
+    @Test
+    @DisplayName("Should replace a connection the server has dropped")
+    void testReconnectAfterDrop() {
+        // Arrange
+        cacheService.cacheUser("session-1", user("session-1"), 60);
+        redis.dropConnections();
+
+        // Act
+        assertThrows(RuntimeException.class, () -> cacheService.getUserFromCache("session-1"));
+        UserDetailsDto cached = cacheService.getUserFromCache("session-1");
+
+        // Assert
+        assertNotNull(cached);
+        assertEquals(2, redis.connections());
+    }
+
+    private static void assertSameUser(UserDetailsDto expected, UserDetailsDto actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getSessionId(), actual.getSessionId());
+        assertEquals(expected.getRoles(), actual.getRoles());
+        assertEquals(expected.getPermissions(), actual.getPermissions());
+        assertEquals(expected.getIssuedAt(), actual.getIssuedAt());
+        assertEquals(expected.getExpiresAt(), actual.getExpiresAt());
+    }
+
+    private static UserDetailsDto user(String sessionId) {
+        return new UserDetailsDto("user-" + sessionId, sessionId + "@example.com", "name-" + sessionId,
+                sessionId, List.of("ADMIN", "USER"), List.of("read", "write"), 1_000L, 2_000L);
+    }
+}
@@ -0,0 +1,261 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserCacheService;
+import com.tk.learn.web.security.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DisplayName("RefreshAheadUserCacheService Tests")
+class RefreshAheadUserCacheServiceTest {
+
+    private InMemoryUserCacheService cache;
+    private DirectoryUserService directory;
+    private RefreshAheadUserCacheService refreshAhead;
+
+    @BeforeEach
+    void setUp() {
+        cache = new InMemoryUserCacheService();
+        directory = new DirectoryUserService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (refreshAhead != null) {
+            refreshAhead.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Should serve the cached value and refresh it once when read near expiry")
+    void testRefreshNearExpiry() throws Exception {
+        // Arrange
+        refreshAhead = new RefreshAheadUserCacheService(cache, () -> directory, 1, 0, 100, 1);
+        refreshAhead.cacheUser("session-1", userDetails("user-1", "USER"), 2);
+
+        // Act
+        UserDetailsDto early = refreshAhead.getUserFromCache("session-1");
+        Thread.sleep(1_100);
+        directory.role = "ADMIN";
+        UserDetailsDto stale = refreshAhead.getUserFromCache("session-1");
+        refreshAhead.getUserFromCache("session-1");
+        waitUntil(() -> cache.get("session-1").getRoles().contains("ADMIN"));
+
+        // Assert
+        assertEquals(List.of("USER"), early.getRoles());
+        assertEquals(List.of("USER"), stale.getRoles());
+        assertEquals(1, directory.calls.get());
+        assertEquals(1, refreshAhead.getRefreshTriggeredCount());
+        assertEquals("session-1", cache.get("session-1").getSessionId());
+        assertEquals(2, cache.ttls.get("session-1"));
+    }
+
+    @Test
+    @DisplayName("Should drop revoked roles and permissions on refresh instead of keeping the cached ones")
+    void testRefreshCarriesRevocation() throws Exception {
+        // Arrange
+        refreshAhead = new RefreshAheadUserCacheService(cache, () -> directory, 1, 0, 100, 1);
+        UserDetailsDto admin = userDetails("user-1", "ADMIN");
+        admin.setPermissions(new ArrayList<>(List.of("orders:write")));
+        refreshAhead.cacheUser("session-1", admin, 2);
+        directory.role = null;
+
+        // Act
+        Thread.sleep(1_100);
+        UserDetailsDto stale = refreshAhead.getUserFromCache("session-1");
+        waitUntil(() -> cache.get("session-1").getRoles().isEmpty());
+        UserDetailsDto refreshed = cache.get("session-1");
+
+        // Assert
+        assertEquals(List.of("ADMIN"), stale.getRoles());
+        assertEquals(List.of(), refreshed.getPermissions());
+        assertEquals("user-1@example.com", refreshed.getEmail());
+        assertEquals("session-1", refreshed.getSessionId());
+    }
+
+    @Test
+    @DisplayName("Should shut down the wrappers it created when the post-processor is destroyed")
+    @SuppressWarnings("unchecked")
+    void testPostProcessorDestroysWrappers() {
+        // Arrange
+        RefreshAheadPostProcessor postProcessor = new RefreshAheadPostProcessor(mock(ObjectProvider.class), 1, 0, 100, 1);
+        RefreshAheadUserCacheService wrapper =
+                (RefreshAheadUserCacheService) postProcessor.postProcessAfterInitialization(cache, "userCacheService");
+
+        // Act
+        postProcessor.destroy();
+
+        // Assert
+        assertTrue(wrapper.isShutdown());
+    }
+
+    @Test
+    @DisplayName("Should not write back a session removed while its refresh is in flight")
+    void testRemovalRacingRefresh() throws Exception {
+        // Arrange
+        refreshAhead = new RefreshAheadUserCacheService(cache, () -> directory, 1, 0, 100, 1);
+        refreshAhead.cacheUser("session-1", userDetails("user-1", "USER"), 2);
+        refreshAhead.cacheUser("session-2", userDetails("user-1", "USER"), 2);
+        directory.duringLookup = () -> refreshAhead.removeUserFromCache("session-1");
+        Thread.sleep(1_100);
+
+        // Act
+        refreshAhead.getUserFromCache("session-1");
+        waitUntil(() -> directory.calls.get() == 1);
+        directory.duringLookup = null;
+        cache.beforeWrite = () -> refreshAhead.removeUserFromCache("session-2");
+        refreshAhead.getUserFromCache("session-2");
+        waitUntil(() -> cache.removals.get() == 3);
+
+        // Assert
+        assertNull(cache.get("session-1"));
+        assertNull(cache.get("session-2"));
+        assertEquals(0, refreshAhead.getTrackedCount());
+        assertEquals(0, refreshAhead.getRefreshFailedCount());
+    }
+
+    @Test
+    @DisplayName("Should count failed refreshes and keep serving the cached value")
+    void testFailedRefresh() throws Exception {
+        // Arrange
+        refreshAhead = new RefreshAheadUserCacheService(cache, () -> directory, 1, 0, 100, 1);
+        refreshAhead.cacheUser("session-1", userDetails("user-1", "USER"), 2);
+        directory.failure = new IllegalStateException("directory unavailable");
+
+        // Act
+        Thread.sleep(1_100);
+        refreshAhead.getUserFromCache("session-1");
+        waitUntil(() -> refreshAhead.getRefreshFailedCount() == 1);
+        UserDetailsDto cached = refreshAhead.getUserFromCache("session-1");
+
+        // Assert
+        assertEquals(List.of("USER"), cached.getRoles());
+        assertEquals(1, refreshAhead.getRefreshTriggeredCount());
+    }
+
+    @Test
+    @DisplayName("Should not refresh entries that are read well before expiry")
+    void testNoRefreshEarly() {
+        // Arrange
+        refreshAhead = new RefreshAheadUserCacheService(cache, () -> directory, 300, 0, 100, 1);
+        refreshAhead.cacheUser("session-1", userDetails("user-1", "USER"), 3600);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            refreshAhead.getUserFromCache("session-1");
+        }
+
+        // Assert
+        assertEquals(0, refreshAhead.getRefreshTriggeredCount());
+        assertEquals(0, directory.calls.get());
+    }
+
+    @Test
+    @DisplayName("Should spread TTLs within the jitter range")
+    void testTtlJitter() {
+        // Arrange
+        refreshAhead = new RefreshAheadUserCacheService(cache, () -> directory, 300, 10, 1_000, 1);
+
+        // Act
+        Set<Long> ttls = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            refreshAhead.cacheUser("session-" + i, userDetails("user-" + i, "USER"), 3600);
+            ttls.add(cache.ttls.get("session-" + i));
+        }
+
+        // Assert
+        assertTrue(ttls.size() > 10, "expected spread TTLs but got " + ttls);
+        ttls.forEach(ttl -> assertTrue(ttl >= 3240 && ttl <= 3600, "ttl out of range: " + ttl));
+    }
+
+    private static UserDetailsDto userDetails(String userId, String role) {
+        return new UserDetailsDto(userId, userId + "@example.com", "john.doe", "session-1",
+                new ArrayList<>(List.of(role)), null, System.currentTimeMillis(), 0);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean(), "condition not met in time");
+    }
+
+    private static final class DirectoryUserService implements UserService {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile String role = "USER";
+        private volatile RuntimeException failure;
+        private volatile Runnable duringLookup;
+
+        @Override
+        public UserDetailsDto getUserDetailsById(String userId) {
+            Runnable hook = duringLookup;
+            if (hook != null) {
+                hook.run();
+            }
+            calls.incrementAndGet();
+            if (failure != null) {
+                throw failure;
+            }
+            List<String> roles = role != null ? new ArrayList<>(List.of(role)) : new ArrayList<>();
+            return new UserDetailsDto(userId, null, null, null, roles, null, 0, 0);
+        }
+
+        @Override
+        public UserDetailsDto getUserDetailsByEmail(String email) {
+            return null;
+        }
+    }
+
+    private static final class InMemoryUserCacheService implements UserCacheService {
+
+        private final Map<String, UserDetailsDto> entries = new ConcurrentHashMap<>();
+        private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+        private final AtomicInteger removals = new AtomicInteger();
+        private volatile Runnable beforeWrite;
+
+        UserDetailsDto get(String sessionId) {
+            return entries.get(sessionId);
+        }
+
+        @Override
+        public UserDetailsDto getUserFromCache(String sessionId) {
+            UserDetailsDto userDetails = entries.get(sessionId);
+            return userDetails != null ? new UserDetailsDto(userDetails) : null;
+        }
+
+        @Override
+        public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+            Runnable hook = beforeWrite;
+            if (hook != null) {
+                beforeWrite = null;
+                hook.run();
+            }
+            entries.put(sessionId, new UserDetailsDto(userDetails));
+            ttls.put(sessionId, ttlSeconds);
+        }
+
+        @Override
+        public void removeUserFromCache(String sessionId) {
+            entries.remove(sessionId);
+            ttls.remove(sessionId);
+            removals.incrementAndGet();
+        }
+    }
+}
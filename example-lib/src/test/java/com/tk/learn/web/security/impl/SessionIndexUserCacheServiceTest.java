@@ -0,0 +1,256 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.InvalidationBus;
+import com.tk.learn.web.security.UserCacheService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SessionIndexUserCacheService Tests")
+class SessionIndexUserCacheServiceTest {
+
+    @Mock
+    private ObjectProvider<UserCacheService> userCacheServiceProvider;
+
+    @Mock
+    private ObjectProvider<InvalidationBus> invalidationBusProvider;
+
+    @Test
+    @DisplayName("Should evict every cached session of a user and no others")
+    void testEvictUser() {
+        // Arrange
+        InMemoryUserCacheService backing = new InMemoryUserCacheService();
+        SessionIndexUserCacheService cache = new SessionIndexUserCacheService(backing, null, 100, 10, 3600, 60);
+        cache.cacheUser("session-1", user("alice", "session-1"), 60);
+        cache.cacheUser("session-2", user("alice", "session-2"), 60);
+        cache.cacheUser("session-3", user("bob", "session-3"), 60);
+
+        // Act
+        int evicted = cache.evictUser("alice");
+
+        // Assert
+        assertEquals(2, evicted);
+        assertNull(backing.getUserFromCache("session-1"));
+        assertNull(backing.getUserFromCache("session-2"));
+        assertNotNull(backing.getUserFromCache("session-3"));
+        assertEquals(0, cache.evictUser("alice"));
+        assertEquals(1, cache.getEvictedUserCount());
+        assertEquals(2, cache.getEvictedSessionCount());
+    }
+
+    @Test
+    @DisplayName("Should index sessions first seen on a read")
+    void testIndexesReadHits() {
+        // Arrange
+        InMemoryUserCacheService backing = new InMemoryUserCacheService();
+        backing.cacheUser("session-1", user("alice", "session-1"), 60);
+        SessionIndexUserCacheService cache = new SessionIndexUserCacheService(backing, null, 100, 10, 3600, 60);
+
+        // Act
+        cache.getUserFromCache("session-1");
+        int evicted = cache.evictUser("alice");
+
+        // Assert
+        assertEquals(1, evicted);
+        assertNull(backing.getUserFromCache("session-1"));
+    }
+
+    @Test
+    @DisplayName("Should remove the oldest session from the cache when a user exceeds the limit")
+    void testPerUserLimit() {
+        // Arrange
+        InMemoryUserCacheService backing = new InMemoryUserCacheService();
+        SessionIndexUserCacheService cache = new SessionIndexUserCacheService(backing, null, 100, 2, 3600, 60);
+
+        // Act
+        cache.cacheUser("session-1", user("alice", "session-1"), 60);
+        cache.cacheUser("session-2", user("alice", "session-2"), 60);
+        cache.cacheUser("session-3", user("alice", "session-3"), 60);
+
+        // Assert
+        assertNull(backing.getUserFromCache("session-1"), "an unindexed session must not stay cached");
+        assertEquals(2, cache.getIndexedSessionCount("alice"));
+        assertEquals(1, cache.getOverflowRemovalCount());
+        assertEquals(2, cache.evictUser("alice"));
+        assertTrue(backing.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should return within the user limit on the sweep thread and keep evictUser complete")
+    void testUserLimit() throws InterruptedException {
+        // Arrange
+        InMemoryUserCacheService backing = new InMemoryUserCacheService();
+        SessionIndexUserCacheService cache = new SessionIndexUserCacheService(backing, null, 10, 10, 3600, 60);
+
+        // Act
+        for (int i = 0; i < 25; i++) {
+            cache.cacheUser("session-" + i, user("user-" + i, "session-" + i), 60);
+        }
+        waitUntil(() -> cache.getIndexedUserCount() <= 10 && backing.size() == cache.getIndexedUserCount());
+
+        // Assert
+        assertEquals(cache.getIndexedUserCount(), backing.size(), "every cached session is indexed");
+        assertEquals(Set.of("session-index-sweeper"), backing.removingThreads, "requests must not sweep");
+        cache.destroy();
+    }
+
+    @Test
+    @DisplayName("Should prune expired sessions so churn does not grow the index")
+    void testExpiredSessionsPruned() throws InterruptedException {
+        // Arrange
+        InMemoryUserCacheService backing = new InMemoryUserCacheService();
+        SessionIndexUserCacheService cache = new SessionIndexUserCacheService(backing, null, 100, 10, 3600, 1);
+        for (int i = 0; i < 20; i++) {
+            cache.cacheUser("session-" + i, user("user-" + i, "session-" + i), 1);
+        }
+
+        // Act
+        cache.cacheUser("session-new", user("user-new", "session-new"), 60);
+        waitUntil(() -> cache.getIndexedUserCount() == 1);
+
+        // Assert
+        assertEquals(0, cache.evictUser("user-0"));
+        assertEquals(1, cache.evictUser("user-new"));
+        cache.destroy();
+    }
+
+    @Test
+    @DisplayName("Should stop the sweep threads of the wrappers it created on destroy")
+    void testPostProcessorDestroysWrappers() {
+        // Arrange
+        SessionIndexPostProcessor postProcessor = new SessionIndexPostProcessor(
+                userCacheServiceProvider, invalidationBusProvider, 100, 10, 3600, 60);
+        SessionIndexUserCacheService wrapper = (SessionIndexUserCacheService)
+                postProcessor.postProcessAfterInitialization(new InMemoryUserCacheService(), "userCacheService");
+
+        // Act
+        postProcessor.destroy();
+
+        // Assert
+        assertTrue(wrapper.isShutdown());
+    }
+
+    @Test
+    @DisplayName("Should remove sessions through the outermost cache so an L1 tier drops them too")
+    void testRemovesThroughOutermostCache() {
+        // Arrange
+        InMemoryUserCacheService backing = new InMemoryUserCacheService();
+        AtomicReference<UserCacheService> outermost = new AtomicReference<>();
+        SessionIndexUserCacheService index = new SessionIndexUserCacheService(backing, outermost::get, 100, 10, 3600, 60);
+        NearCacheUserCacheService nearCache = new NearCacheUserCacheService(index, 100, 60);
+        outermost.set(nearCache);
+        nearCache.cacheUser("session-1", user("alice", "session-1"), 60);
+
+        // Act
+        int evicted = nearCache.evictUser("alice");
+
+        // Assert
+        assertEquals(1, evicted);
+        assertEquals(0, nearCache.size());
+        assertNull(nearCache.getUserFromCache("session-1"));
+    }
+
+    @Test
+    @DisplayName("Should report evictUser as unsupported and evict nothing without a session index")
+    void testUnsupportedWithoutIndex() {
+        // Arrange
+        InMemoryUserCacheService cache = new InMemoryUserCacheService();
+        cache.cacheUser("session-1", user("alice", "session-1"), 60);
+        SessionIndexUserCacheService indexed = new SessionIndexUserCacheService(cache, null, 100, 10, 3600, 60);
+
+        // Act
+        int evicted = cache.evictUser("alice");
+
+        // Assert
+        assertEquals(0, evicted);
+        assertNotNull(cache.getUserFromCache("session-1"));
+        assertFalse(cache.supportsEvictUser());
+        assertFalse(new NearCacheUserCacheService(cache, 100, 60).supportsEvictUser());
+        assertTrue(indexed.supportsEvictUser());
+        assertTrue(new NoOpUserCacheService().supportsEvictUser());
+        indexed.destroy();
+    }
+
+    @Test
+    @DisplayName("Should evict sessions only another node has indexed through the bus")
+    void testEvictUserAcrossNodes() {
+        // Arrange
+        InMemoryUserCacheService shared = new InMemoryUserCacheService();
+        LoopbackInvalidationBus bus1 = new LoopbackInvalidationBus(60_000, 500);
+        LoopbackInvalidationBus bus2 = bus1.newPeer();
+        SessionIndexUserCacheService node1 = new SessionIndexUserCacheService(shared, null, 100, 10, 3600, 60, bus1);
+        SessionIndexUserCacheService node2 = new SessionIndexUserCacheService(shared, null, 100, 10, 3600, 60, bus2);
+        node1.cacheUser("session-1", user("alice", "session-1"), 60);
+        node2.cacheUser("session-2", user("alice", "session-2"), 60);
+
+        // Act
+        int evicted = node1.evictUser("alice");
+        bus1.flush();
+
+        // Assert
+        assertEquals(1, evicted);
+        assertNull(shared.getUserFromCache("session-1"));
+        assertNull(shared.getUserFromCache("session-2"));
+        assertEquals(1, node2.getEvictedSessionCount());
+        assertEquals(0, bus1.getReceivedCount());
+        bus1.destroy();
+        bus2.destroy();
+    }
+
+    private static UserDetailsDto user(String userId, String sessionId) {
+        return new UserDetailsDto(userId, userId + "@example.com", userId, sessionId,
+                List.of("USER"), List.of("read"), 1_000L, 2_000L);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean(), "condition not met in time");
+    }
+
+    private static final class InMemoryUserCacheService implements UserCacheService {
+
+        private final Map<String, UserDetailsDto> entries = new ConcurrentHashMap<>();
+        private final Set<String> removingThreads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public UserDetailsDto getUserFromCache(String sessionId) {
+            return entries.get(sessionId);
+        }
+
+        @Override
+        public void cacheUser(String sessionId, UserDetailsDto userDetails, long ttlSeconds) {
+            entries.put(sessionId, userDetails);
+        }
+
+        @Override
+        public void removeUserFromCache(String sessionId) {
+            removingThreads.add(Thread.currentThread().getName());
+            entries.remove(sessionId);
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        boolean isEmpty() {
+            return entries.isEmpty();
+        }
+    }
+}
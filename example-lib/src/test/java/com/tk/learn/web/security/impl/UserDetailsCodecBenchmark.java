@@ -0,0 +1,86 @@
+package com.tk.learn.web.security.impl;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.security.UserDetailsCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode throughput of the cache encodings, against Jackson JSON as a baseline.
+ * Run with {@code ./gradlew :example-lib:jmh -Pjmh.includes=UserDetailsCodecBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDetailsCodecBenchmark {
+
+    @Param({"compact", "length-prefixed", "java", "jackson"})
+    public String encoding;
+
+    private UserDetailsCodec codec;
+    private UserDetailsDto userDetails;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        codec = "jackson".equals(encoding)
+                ? new JacksonUserDetailsCodec()
+                : UserDetailsCodecs.forName(encoding, "encoding");
+        userDetails = new UserDetailsDto("3f1c2a9e-user", "user@example.com", "Example User",
+                "9b7d4e21-session", List.of("ADMIN", "USER", "AUDITOR"),
+                List.of("orders:read", "orders:write", "reports:read"),
+                1_700_000_000_000L, 1_700_000_360_000L);
+        encoded = codec.encode(userDetails);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(userDetails);
+    }
+
+    @Benchmark
+    public UserDetailsDto decode() {
+        return codec.decode(encoded);
+    }
+
+    /**
+     * JSON through the application's Jackson 3 mapper, skipping the derived authority sets.
+     */
+    private static final class JacksonUserDetailsCodec implements UserDetailsCodec {
+
+        @JsonIgnoreProperties({"roleSet", "permissionSet"})
+        private interface IgnoreAuthoritySets {
+        }
+
+        private final JsonMapper mapper = JsonMapper.builder()
+                .addMixIn(UserDetailsDto.class, IgnoreAuthoritySets.class)
+                .build();
+
+        @Override
+        public byte[] encode(UserDetailsDto userDetails) {
+            return mapper.writeValueAsBytes(userDetails);
+        }
+
+        @Override
+        public UserDetailsDto decode(byte[] bytes) {
+            return mapper.readValue(bytes, UserDetailsDto.class);
+        }
+    }
+}
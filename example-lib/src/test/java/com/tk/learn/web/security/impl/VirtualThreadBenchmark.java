@@ -0,0 +1,229 @@
+package com.tk.learn.web.security.impl;
+
+import com.tk.learn.model.dto.UserDetailsDto;
+import com.tk.learn.web.context.RequestContextHolder;
+import com.tk.learn.web.filter.ClaimsSufficiencyPolicy;
+import com.tk.learn.web.filter.EnrichmentGuards;
+import com.tk.learn.web.filter.JwtAuthFilter;
+import com.tk.learn.web.security.JwtTokenValidator;
+import com.tk.learn.web.security.UserService;
+import com.tk.learn.web.security.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to serve a burst of concurrent authenticated requests on a Tomcat-sized pool of 200
+ * platform threads versus one virtual thread per request. Throughput is {@code clients}
+ * divided by the reported time per burst. Run with
+ * {@code ./gradlew :example-lib:jmh -Pjmh.includes=VirtualThreadBenchmark}.
+ * <p>
+ * Each request goes through {@link JwtAuthFilter}: JWT validation, then the user details
+ * lookup in {@link RedisUserCacheService} behind the {@link EnrichmentGuards}, over real
+ * sockets to an {@link EmbeddedRedis} delaying its replies by {@code cacheMillis}. The handler
+ * then reads the employee record through a second connection pool from another server
+ * delaying by {@code databaseMillis}.
+ * <p>
+ * Both connection pools hold {@code connections} connections, and callers beyond that wait
+ * for one. The guards are configured as in the shipped {@code azure} and {@code pcf} profiles:
+ * the user cache allows 50 calls in flight with a 100 ms timeout, the user service 20 with
+ * 1000 ms. On platform threads a lookup beyond the bulkhead is rejected at once; on virtual
+ * threads it waits for a slot within the timeout. Lookups that fall back to the JWT-only user
+ * details (including those short-circuited once a circuit opens) are reported per iteration
+ * as the {@code fallbacks} counter, since a burst that sheds load is faster but serves less.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    /**
+     * Tomcat's default {@code server.tomcat.threads.max}.
+     */
+    private static final int PLATFORM_THREADS = 200;
+
+    private static final int USERS = 1_000;
+
+    private static final byte[] GET = RedisConnection.ascii("GET");
+
+    @Param({"1000", "10000"})
+    public int clients;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"2"})
+    public long cacheMillis;
+
+    @Param({"5"})
+    public long databaseMillis;
+
+    @Param({"1000"})
+    public int connections;
+
+    private EmbeddedRedis cacheServer;
+    private EmbeddedRedis databaseServer;
+    private RedisConnectionPool database;
+    private RedisUserCacheService userCache;
+    private EnrichmentGuards guards;
+    private JwtAuthFilter filter;
+    private String[] tokens;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        boolean virtual = "virtual".equals(threads);
+        cacheServer = new EmbeddedRedis();
+        databaseServer = new EmbeddedRedis();
+        userCache = new RedisUserCacheService(pool(cacheServer), "jwt:user:", new CompactUserDetailsCodec());
+        database = pool(databaseServer);
+
+        long expiresAt = System.currentTimeMillis() / 1000 + 3600;
+        tokens = new String[USERS];
+        for (int user = 0; user < USERS; user++) {
+            tokens[user] = token("user-" + user, "session-" + user, expiresAt);
+            userCache.cacheUser("session-" + user, userDetails("user-" + user, "session-" + user), 3600);
+            databaseServer.put("employee:" + user, ("{\"id\":" + user + "}").getBytes(StandardCharsets.US_ASCII));
+        }
+        for (EmbeddedRedis server : List.of(cacheServer, databaseServer)) {
+            server.stopRecording();
+        }
+        cacheServer.delayReplies(cacheMillis);
+        databaseServer.delayReplies(databaseMillis);
+
+        guards = new EnrichmentGuards(100, 50, 5, 30, 1_000, 20, 5, 30, virtual);
+        JwtTokenValidator validator = new JwtTokenValidator(null, new VerifiedTokenCache(2 * USERS, 300));
+        ReflectionTestUtils.setField(validator, "tokenPrefix", "Bearer ");
+        filter = new JwtAuthFilter(validator, userCache, new DirectoryUserService(), 3600,
+                ClaimsSufficiencyPolicy.NEVER, guards, false);
+        executor = virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        guards.destroy();
+        userCache.destroy();
+        database.close();
+        cacheServer.close();
+        databaseServer.close();
+    }
+
+    /**
+     * Guarded lookups answered with the fallback, summed over the iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Fallbacks {
+
+        public long fallbacks;
+    }
+
+    @Benchmark
+    public int burst(Fallbacks counters) throws Exception {
+        long fallbacksBefore = fallbacks();
+        List<Future<Integer>> requests = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            int user = i % USERS;
+            requests.add(executor.submit(() -> handle(user)));
+        }
+        int served = 0;
+        for (Future<Integer> request : requests) {
+            served += request.get();
+        }
+        if (served != clients) {
+            throw new IllegalStateException((clients - served) + " requests were not served");
+        }
+        counters.fallbacks += fallbacks() - fallbacksBefore;
+        return served;
+    }
+
+    private long fallbacks() {
+        return guards.cache().getFallbackCount() + guards.userService().getFallbackCount();
+    }
+
+    /**
+     * One request: the filter authenticates and enriches it, the handler queries the database.
+     */
+    private int handle(int user) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/employees/" + user);
+        request.addHeader("Authorization", "Bearer " + tokens[user]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        int[] found = new int[1];
+        try {
+            filter.doFilter(request, response, (req, res) -> found[0] = query("employee:" + user) != null ? 1 : 0);
+        } finally {
+            RequestContextHolder.clear();
+        }
+        return found[0];
+    }
+
+    private byte[] query(String key) {
+        return database.execute(connection -> {
+            connection.write(GET, RedisConnection.ascii(key));
+            connection.flush();
+            return (byte[]) connection.read();
+        });
+    }
+
+    private RedisConnectionPool pool(EmbeddedRedis server) {
+        return new RedisConnectionPool("localhost", server.port(), false, null, 0, 10_000, connections, 30_000);
+    }
+
+    private static String token(String userId, String sessionId, long expiresAt) {
+        String payload = "{\"userId\":\"" + userId + "\",\"sessionId\":\"" + sessionId
+                + "\",\"expiresAt\":" + expiresAt + "}";
+        return "header." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+
+    private static UserDetailsDto userDetails(String userId, String sessionId) {
+        return new UserDetailsDto(userId, userId + "@example.com", userId, sessionId,
+                List.of("USER"), List.of("read"), System.currentTimeMillis(), System.currentTimeMillis() + 3_600_000);
+    }
+
+    /**
+     * Only reached on a cache miss, which the pre-populated cache does not produce.
+     */
+    private static final class DirectoryUserService implements UserService {
+
+        @Override
+        public UserDetailsDto getUserDetailsById(String userId) {
+            return userDetails(userId, null);
+        }
+
+        @Override
+        public UserDetailsDto getUserDetailsByEmail(String email) {
+            return null;
+        }
+    }
+}